@@ -0,0 +1,791 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import com.google.common.collect.ImmutableSet;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlDependencies;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.Util;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 简单 DML 的快速路径: 不经过 Calcite 的解析与反解析，在词法单元流上识别语句结构，
+ * 边识别边应用同一套表名、列名规则并输出与 Calcite 路径逐字节相同的 SQL。
+ * <p>
+ * 只识别以下形态(MySQL 子集):
+ * 1. SELECT [DISTINCT] 列 [[AS] 别名], ... FROM 表 [[AS] 别名] [WHERE 条件]
+ * 2. INSERT INTO 表 [(列, ...)] VALUES (值, ...), ...
+ * 3. UPDATE 表 [[AS] 别名] SET 列 = 值, ... [WHERE 条件]
+ * 4. DELETE FROM 表 [[AS] 别名] [WHERE 条件]
+ * 条件是以 AND/OR 连接的简单谓词(比较、[NOT] LIKE、[NOT] IN (值, ...)、IS [NOT] NULL)，不含括号和 NOT 前缀；
+ * 值为字符串、数值、NULL/TRUE/FALSE、动态参数，比较与 SET 的右侧还可以是列。
+ * <p>
+ * 遇到其他任何内容(注释、引号标识符、Calcite 保留字、会被 Calcite 规范化的数值写法、含非 ASCII 字符的字符串等)
+ * 都返回 null，由调用方回退到 Calcite 路径。快速路径只影响速度，不影响结果:
+ * 创建时用 {@link #VERIFY_SQL} 对比两条路径的输出，方言或规则使结果不一致时不启用。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class SimpleDmlFastPath {
+
+    /**
+     * 创建时对比两条路径输出的校验语句, 覆盖快速路径识别的每一种结构
+     */
+    private static final String[] VERIFY_SQL = {
+            "select a, b.c, d e, f as g, * from s.t x where a = 1 and b <> 'it''s' or c is not null and d like ? "
+                    + "and e not in (1, -2.50, null) and f >= g.h or i is null and j in (?, 'x') and k not like 'y%' and l = true",
+            "select distinct t.* from t where a < 0.5 and b > c and d <= -7 and e = false",
+            "insert into s.t (a, b) values (1, 'x'), (?, null)",
+            "insert into t values (-1)",
+            "update t x set a = 1, b = ?, c = d where e = 'z' or f = 2",
+            "update t set a = null",
+            "delete from t as x where x.a = 1",
+            "delete from t"
+    };
+
+    /**
+     * 函数规则命中这些操作符时 Calcite 路径会改写条件, 快速路径无法复现
+     */
+    private static final String[] OPERATORS = {
+            "=", "<>", "<", ">", "<=", ">=", "AND", "OR", "LIKE", "NOT LIKE", "IN", "NOT IN", "IS NULL", "IS NOT NULL", "AS"
+    };
+
+    /**
+     * Calcite 标识符的默认最大长度, 超出时解析失败
+     */
+    private static final int IDENTIFIER_MAX_LENGTH = 128;
+
+    /**
+     * 不是保留字、但后面跟标识符时会被 Calcite 按 MATCH_RECOGNIZE 语法解析的关键字(如 "select final x" 解析失败)
+     */
+    private static final Set<String> CONTEXTUAL_KEYWORDS = ImmutableSet.of("FINAL", "RUNNING");
+
+    private static final int EOF = 0;
+    private static final int WORD = 1;
+    private static final int NUMBER = 2;
+    private static final int STRING = 3;
+    private static final int PARAM = 4;
+    private static final int STAR = 5;
+    private static final int COMMA = 6;
+    private static final int DOT = 7;
+    private static final int LPAREN = 8;
+    private static final int RPAREN = 9;
+    private static final int COMPARE = 10;
+    private static final int MINUS = 11;
+    /**
+     * 快速路径不认识的词法单元, 遇到即回退
+     */
+    private static final int UNKNOWN = 12;
+
+    private final SqlDialect dialect;
+    private final TranslateRules rules;
+    private final SqlAbstractParserImpl.Metadata metadata;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    private SimpleDmlFastPath(SqlDialect dialect, TranslateRules rules, SqlAbstractParserImpl.Metadata metadata) {
+        this.dialect = dialect;
+        this.rules = rules;
+        this.metadata = metadata;
+    }
+
+    /**
+     * 创建快速路径并用校验语句对比 Calcite 路径的输出。
+     *
+     * @param parserConfig Calcite 路径使用的解析配置, 用于判断保留字
+     * @param calcite      Calcite 路径, 无法翻译时返回 null
+     * @return 方言、规则不适用或校验不一致时返回 null
+     */
+    @Nullable
+    public static SimpleDmlFastPath create(SqlDialect dialect, TranslateRules rules, SqlParser.Config parserConfig,
+                                           Function<String, String> calcite) {
+        if (dialect.getClass() != SqlDialect.class) {
+            log.info("SimpleDmlFastPath disabled, dialect [{}] customizes unparse", dialect.getClass().getName());
+            return null;
+        }
+        for (String operator : OPERATORS) {
+            if (rules.hasFunctionTranslate(operator)) {
+                log.info("SimpleDmlFastPath disabled, function translate of operator [{}]", operator);
+                return null;
+            }
+        }
+        SimpleDmlFastPath fastPath = new SimpleDmlFastPath(dialect, rules, SqlParser.create("", parserConfig).getMetadata());
+        for (String sql : VERIFY_SQL) {
+            String expected;
+            String actual;
+            try {
+                expected = calcite.apply(sql);
+                actual = fastPath.doTranslate(sql);
+            } catch (RuntimeException e) {
+                log.warn("SimpleDmlFastPath disabled, verify sql : [{}], cause : {}", sql, e.toString());
+                return null;
+            }
+            if (null == actual || !actual.equals(expected)) {
+                log.warn("SimpleDmlFastPath disabled, verify sql : [{}], expected : [{}], actual : [{}]", sql, expected, actual);
+                return null;
+            }
+        }
+        return fastPath;
+    }
+
+    /**
+     * 翻译简单 DML
+     *
+     * @return 无法识别时返回 null, 由调用方交给 Calcite 路径
+     */
+    @Nullable
+    public String translate(String sql) {
+        String translated = doTranslate(sql);
+        (null != translated ? hits : fallbacks).increment();
+        return translated;
+    }
+
+    /**
+     * 由快速路径完成的翻译次数
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 回退到 Calcite 路径的次数
+     */
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    @Nullable
+    private String doTranslate(String sql) {
+        return new Recognizer(sql).statement();
+    }
+
+    /**
+     * 单条语句的词法扫描与识别, 输出直接写入 out; 任一步返回 false 即整体回退
+     */
+    private final class Recognizer {
+
+        private final String sql;
+        private final int len;
+        private final StringBuilder out;
+        private int index;
+        private int line = 1;
+        private int lineStart;
+
+        /**
+         * 当前词法单元
+         */
+        private int type;
+        private int start;
+        private int end;
+        private int tokenLine;
+        private int tokenColumn;
+
+        Recognizer(String sql) {
+            this.sql = sql;
+            this.len = sql.length();
+            this.out = new StringBuilder(len + 32);
+        }
+
+        @Nullable
+        String statement() {
+            next();
+            boolean recognized;
+            if (isKeyword("SELECT")) {
+                recognized = select();
+            } else if (isKeyword("INSERT")) {
+                recognized = insert();
+            } else if (isKeyword("UPDATE")) {
+                recognized = update();
+            } else if (isKeyword("DELETE")) {
+                recognized = delete();
+            } else {
+                recognized = false;
+            }
+            return recognized && type == EOF ? out.toString() : null;
+        }
+
+        private boolean select() {
+            out.append("SELECT ");
+            next();
+            if (isKeyword("DISTINCT")) {
+                out.append("DISTINCT ");
+                next();
+            }
+            do {
+                if (!selectItem()) {
+                    return false;
+                }
+            } while (comma(", "));
+            if (!isKeyword("FROM")) {
+                return false;
+            }
+            out.append("\nFROM ");
+            next();
+            return table(true) && where();
+        }
+
+        /**
+         * 列表项: * | 列[.列...][.*] [[AS] 别名], 没有别名的项经过列名规则
+         */
+        private boolean selectItem() {
+            SqlIdentifier identifier = compoundIdentifier(true);
+            if (null == identifier) {
+                return false;
+            }
+            String alias = null;
+            if (!identifier.isStar()) {
+                if (isKeyword("AS")) {
+                    next();
+                    if (!isIdentifier()) {
+                        return false;
+                    }
+                    alias = text();
+                    next();
+                } else if (isIdentifier()) {
+                    alias = text();
+                    next();
+                }
+            }
+            if (null == alias) {
+                return column(identifier);
+            }
+            // 带别名的项在 Calcite 路径中是 AS 调用, 不经过列名规则
+            appendIdentifier(identifier);
+            out.append(" AS ");
+            appendName(alias);
+            return true;
+        }
+
+        private boolean insert() {
+            next();
+            if (!isKeyword("INTO")) {
+                return false;
+            }
+            out.append("INSERT INTO ");
+            next();
+            if (!table(false)) {
+                return false;
+            }
+            if (type == LPAREN) {
+                out.append(" (");
+                next();
+                do {
+                    SqlIdentifier identifier = simpleIdentifier();
+                    if (null == identifier || !column(identifier)) {
+                        return false;
+                    }
+                } while (comma(", "));
+                if (type != RPAREN) {
+                    return false;
+                }
+                out.append(')');
+                next();
+            }
+            if (!isKeyword("VALUES")) {
+                return false;
+            }
+            out.append("\nVALUES ");
+            next();
+            do {
+                if (type != LPAREN) {
+                    return false;
+                }
+                out.append("ROW(");
+                next();
+                do {
+                    if (!value(false)) {
+                        return false;
+                    }
+                } while (comma(", "));
+                if (type != RPAREN) {
+                    return false;
+                }
+                out.append(')');
+                next();
+            } while (comma(",\n"));
+            return true;
+        }
+
+        private boolean update() {
+            out.append("UPDATE ");
+            next();
+            if (!table(true) || !isKeyword("SET")) {
+                return false;
+            }
+            out.append(" SET ");
+            next();
+            do {
+                SqlIdentifier identifier = simpleIdentifier();
+                if (null == identifier || !column(identifier) || type != COMPARE || end - start != 1 || sql.charAt(start) != '=') {
+                    return false;
+                }
+                out.append(" = ");
+                next();
+                if (!value(true)) {
+                    return false;
+                }
+            } while (comma(", "));
+            return where();
+        }
+
+        private boolean delete() {
+            next();
+            if (!isKeyword("FROM")) {
+                return false;
+            }
+            out.append("DELETE FROM ");
+            next();
+            return table(true) && where();
+        }
+
+        /**
+         * 表名经过表名规则, 别名原样输出
+         */
+        private boolean table(boolean aliasAllowed) {
+            SqlIdentifier identifier = compoundIdentifier(false);
+            if (null == identifier) {
+                return false;
+            }
+            SqlDependencies.record(SqlDependencies.table(String.join(".", identifier.names)));
+            SqlNode translated = rules.translateTableName(identifier);
+            if (!(translated instanceof SqlIdentifier) || !appendTranslated((SqlIdentifier) translated)) {
+                return false;
+            }
+            if (!aliasAllowed) {
+                return true;
+            }
+            if (isKeyword("AS")) {
+                next();
+                if (!isIdentifier()) {
+                    return false;
+                }
+            } else if (!isIdentifier()) {
+                return true;
+            }
+            out.append(" AS ");
+            appendName(text());
+            next();
+            return true;
+        }
+
+        /**
+         * 列名经过列名规则(与 {@link StandardSqlTranslateActuator#processColumnName} 记录相同的依赖)
+         */
+        private boolean column(SqlIdentifier identifier) {
+            if (!identifier.isStar()) {
+                SqlDependencies.record(SqlDependencies.keyword(Util.last(identifier.names)));
+            }
+            SqlNode translated = rules.translateColumn(identifier);
+            return translated instanceof SqlIdentifier && appendTranslated((SqlIdentifier) translated);
+        }
+
+        /**
+         * [WHERE 谓词 {AND|OR 谓词}]
+         */
+        private boolean where() {
+            if (type == EOF) {
+                return true;
+            }
+            if (!isKeyword("WHERE")) {
+                return false;
+            }
+            out.append("\nWHERE ");
+            next();
+            while (predicate()) {
+                if (isKeyword("AND")) {
+                    out.append(" AND ");
+                } else if (isKeyword("OR")) {
+                    out.append(" OR ");
+                } else {
+                    return true;
+                }
+                next();
+            }
+            return false;
+        }
+
+        private boolean predicate() {
+            SqlIdentifier identifier = compoundIdentifier(false);
+            if (null == identifier) {
+                return false;
+            }
+            appendIdentifier(identifier);
+            if (type == COMPARE) {
+                out.append(' ').append(sql, start, end).append(' ');
+                next();
+                return value(true);
+            }
+            boolean not = isKeyword("NOT");
+            if (not) {
+                next();
+            }
+            if (isKeyword("LIKE")) {
+                out.append(not ? " NOT LIKE " : " LIKE ");
+                next();
+                if (type != STRING && type != PARAM) {
+                    return false;
+                }
+                out.append(sql, start, end);
+                next();
+                return true;
+            }
+            if (isKeyword("IN")) {
+                out.append(not ? " NOT IN (" : " IN (");
+                next();
+                if (type != LPAREN) {
+                    return false;
+                }
+                next();
+                do {
+                    if (!value(false)) {
+                        return false;
+                    }
+                } while (comma(", "));
+                if (type != RPAREN) {
+                    return false;
+                }
+                out.append(')');
+                next();
+                return true;
+            }
+            if (not || !isKeyword("IS")) {
+                return false;
+            }
+            next();
+            if (isKeyword("NOT")) {
+                out.append(" IS NOT");
+                next();
+            } else {
+                out.append(" IS");
+            }
+            if (!isKeyword("NULL")) {
+                return false;
+            }
+            out.append(" NULL");
+            next();
+            return true;
+        }
+
+        /**
+         * 值: 字符串 | 数值 | -数值 | NULL | TRUE | FALSE | ? [| 列]
+         */
+        private boolean value(boolean columnAllowed) {
+            switch (type) {
+                case STRING:
+                case NUMBER:
+                case PARAM:
+                    out.append(sql, start, end);
+                    next();
+                    return true;
+                case MINUS:
+                    next();
+                    // -0、-0.0 会被规范化为 0、0.0
+                    if (type != NUMBER || isZero()) {
+                        return false;
+                    }
+                    out.append('-').append(sql, start, end);
+                    next();
+                    return true;
+                case WORD:
+                    if (isKeyword("NULL") || isKeyword("TRUE") || isKeyword("FALSE")) {
+                        out.append(text().toUpperCase(Locale.ROOT));
+                        next();
+                        return true;
+                    }
+                    if (!columnAllowed) {
+                        return false;
+                    }
+                    SqlIdentifier identifier = compoundIdentifier(false);
+                    if (null == identifier) {
+                        return false;
+                    }
+                    appendIdentifier(identifier);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * 名称[.名称...], starAllowed 时可以是 * 或以 .* 结尾; 不符合时返回 null
+         */
+        @Nullable
+        private SqlIdentifier compoundIdentifier(boolean starAllowed) {
+            final int firstLine = tokenLine;
+            final int firstColumn = tokenColumn;
+            List<String> names = new ArrayList<>(2);
+            List<SqlParserPos> positions = new ArrayList<>(2);
+            while (true) {
+                if (type == STAR && starAllowed) {
+                    names.add("");
+                    positions.add(tokenPos());
+                    SqlParserPos pos = new SqlParserPos(firstLine, firstColumn, tokenLine, tokenColumn);
+                    next();
+                    return SqlIdentifier.star(names, pos, positions);
+                }
+                if (!isIdentifier()) {
+                    return null;
+                }
+                names.add(text());
+                positions.add(tokenPos());
+                SqlParserPos pos = new SqlParserPos(firstLine, firstColumn, tokenLine, tokenColumn + end - start - 1);
+                next();
+                if (type != DOT) {
+                    return new SqlIdentifier(names, null, pos, positions);
+                }
+                next();
+            }
+        }
+
+        @Nullable
+        private SqlIdentifier simpleIdentifier() {
+            if (!isIdentifier()) {
+                return null;
+            }
+            SqlIdentifier identifier = new SqlIdentifier(text(), tokenPos());
+            next();
+            return identifier;
+        }
+
+        /**
+         * 原样输出未经规则处理的标识符, 与 Calcite 相同地经过方言的引号处理
+         */
+        private void appendIdentifier(SqlIdentifier identifier) {
+            for (int i = 0; i < identifier.names.size(); i++) {
+                if (i > 0) {
+                    out.append('.');
+                }
+                String name = identifier.names.get(i);
+                if (name.isEmpty()) {
+                    out.append('*');
+                } else {
+                    appendName(name);
+                }
+            }
+        }
+
+        /**
+         * 输出规则返回的标识符; 带排序规则或名称是保留字(Calcite 可能按函数输出)时回退
+         */
+        private boolean appendTranslated(SqlIdentifier identifier) {
+            if (null != identifier.getCollation()) {
+                return false;
+            }
+            for (String name : identifier.names) {
+                if (metadata.isReservedWord(name.toUpperCase(Locale.ROOT))) {
+                    return false;
+                }
+            }
+            appendIdentifier(identifier);
+            return true;
+        }
+
+        private void appendName(String name) {
+            dialect.quoteIdentifier(out, name);
+        }
+
+        private boolean comma(String separator) {
+            if (type != COMMA) {
+                return false;
+            }
+            out.append(separator);
+            next();
+            return true;
+        }
+
+        private boolean isKeyword(String keyword) {
+            return type == WORD && end - start == keyword.length() && sql.regionMatches(true, start, keyword, 0, keyword.length());
+        }
+
+        /**
+         * 可以作为标识符的单词: 不是 Calcite 保留字或上下文关键字, 且不超过最大长度
+         */
+        private boolean isIdentifier() {
+            if (type != WORD || end - start > IDENTIFIER_MAX_LENGTH) {
+                return false;
+            }
+            String upper = text().toUpperCase(Locale.ROOT);
+            return !metadata.isReservedWord(upper) && !CONTEXTUAL_KEYWORDS.contains(upper);
+        }
+
+        private boolean isZero() {
+            for (int i = start; i < end; i++) {
+                if (sql.charAt(i) != '0' && sql.charAt(i) != '.') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String text() {
+            return sql.substring(start, end);
+        }
+
+        private SqlParserPos tokenPos() {
+            return new SqlParserPos(tokenLine, tokenColumn, tokenLine, tokenColumn + end - start - 1);
+        }
+
+        /**
+         * 读取下一个词法单元
+         */
+        private void next() {
+            while (index < len) {
+                char c = sql.charAt(index);
+                if (c == '\n') {
+                    line++;
+                    lineStart = index + 1;
+                } else if (c != ' ' && c != '\t' && c != '\r') {
+                    break;
+                }
+                index++;
+            }
+            start = index;
+            tokenLine = line;
+            tokenColumn = index - lineStart + 1;
+            if (index >= len) {
+                type = EOF;
+                end = index;
+                return;
+            }
+            char c = sql.charAt(index);
+            if (isLetter(c)) {
+                int i = index + 1;
+                while (i < len && (isLetter(sql.charAt(i)) || isDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+                    i++;
+                }
+                // N'..'、X'..' 等带前缀的字符串, 或含 $、非 ASCII 字符的标识符
+                type = i < len && (sql.charAt(i) == '\'' || sql.charAt(i) == '$' || sql.charAt(i) > 0x7f) ? UNKNOWN : WORD;
+                index = end = i;
+                return;
+            }
+            if (isDigit(c)) {
+                number();
+                return;
+            }
+            if (c == '\'') {
+                string();
+                return;
+            }
+            int width = 1;
+            switch (c) {
+                case '?':
+                    type = PARAM;
+                    break;
+                case '*':
+                    type = STAR;
+                    break;
+                case ',':
+                    type = COMMA;
+                    break;
+                case '(':
+                    type = LPAREN;
+                    break;
+                case ')':
+                    type = RPAREN;
+                    break;
+                case '.':
+                    // .5 会被规范化为 0.5
+                    type = index + 1 < len && isDigit(sql.charAt(index + 1)) ? UNKNOWN : DOT;
+                    break;
+                case '=':
+                    type = COMPARE;
+                    break;
+                case '<':
+                    type = COMPARE;
+                    if (index + 1 < len && (sql.charAt(index + 1) == '=' || sql.charAt(index + 1) == '>')) {
+                        width = 2;
+                    }
+                    break;
+                case '>':
+                    type = COMPARE;
+                    if (index + 1 < len && sql.charAt(index + 1) == '=') {
+                        width = 2;
+                    }
+                    break;
+                case '-':
+                    // -- 行注释
+                    type = index + 1 < len && sql.charAt(index + 1) == '-' ? UNKNOWN : MINUS;
+                    break;
+                default:
+                    type = UNKNOWN;
+                    break;
+            }
+            index = end = index + width;
+            // ==、=>、<<、>> 等连续的运算符
+            if (type == COMPARE && index < len && "=<>!".indexOf(sql.charAt(index)) >= 0) {
+                type = UNKNOWN;
+            }
+        }
+
+        /**
+         * 数值: 整数或小数, 以 0 开头的多位整数部分、指数形式、5. 这类写法会被 Calcite 规范化, 视为不认识
+         */
+        private void number() {
+            int i = index;
+            while (i < len && isDigit(sql.charAt(i))) {
+                i++;
+            }
+            boolean normalized = sql.charAt(index) == '0' && i - index > 1;
+            if (i < len && sql.charAt(i) == '.') {
+                i++;
+                int fraction = i;
+                while (i < len && isDigit(sql.charAt(i))) {
+                    i++;
+                }
+                normalized |= i == fraction;
+            }
+            if (i < len && (isLetter(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$'
+                    || sql.charAt(i) == '.' || sql.charAt(i) == '\'' || sql.charAt(i) > 0x7f)) {
+                normalized = true;
+            }
+            type = normalized ? UNKNOWN : NUMBER;
+            index = end = i;
+        }
+
+        /**
+         * 字符串: 成对的单引号视为转义; 含控制字符或非 ASCII 字符时 Calcite 会输出 Unicode 转义形式, 视为不认识
+         */
+        private void string() {
+            int i = index + 1;
+            while (i < len) {
+                char c = sql.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+                        i += 2;
+                        continue;
+                    }
+                    type = STRING;
+                    index = end = i + 1;
+                    return;
+                }
+                if (c < 0x20 || c > 0x7e) {
+                    break;
+                }
+                i++;
+            }
+            type = UNKNOWN;
+            index = end = len;
+        }
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
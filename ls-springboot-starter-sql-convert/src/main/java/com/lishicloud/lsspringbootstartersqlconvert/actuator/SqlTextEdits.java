@@ -0,0 +1,239 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSyntax;
+import org.apache.calcite.sql.parser.SqlParserPos;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * 一次翻译中规则对原始SQL的改动, 按被替换节点的 {@link SqlParserPos} 记录为原始SQL中的区间与替换节点,
+ * 翻译结束后按区间顺序一次拼接回原始SQL, 不重新生成整条语句。
+ * <p>
+ * 只有局部替换可以拼接:
+ * 1. 被替换的节点在原始SQL中有确定的区间, 且区间内的文本与节点一致(标识符逐字相同、调用以函数名开头);
+ * 2. 替换节点自带边界, 不受上下文的优先级影响: 标识符、动态参数、字面量、函数形式的调用、CASE、CAST;
+ * 3. 各区间互不重叠。
+ * 出现其他改动时 {@link #apply(SqlDialect)} 返回 null, 由执行器重新生成整条语句。
+ *
+ * @author ztq
+ */
+final class SqlTextEdits {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final String sql;
+
+    /**
+     * 各行首字符在 sql 中的偏移, 第一次记录改动时计算; 与 Calcite 相同, \r\n、\r、\n 都作为换行
+     */
+    private int[] lineStarts;
+    private int lineCount;
+
+    private int[] begins = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private SqlNode[] replacements = new SqlNode[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * 目前记录的改动是否都可以局部替换, 一旦为 false 不再记录
+     */
+    private boolean local = true;
+
+    SqlTextEdits(String sql) {
+        assert null != sql;
+        this.sql = sql;
+    }
+
+    void replace(SqlNode original, SqlNode replacement) {
+        if (!local) {
+            return;
+        }
+        SqlParserPos pos = original.getParserPosition();
+        int begin = offset(pos.getLineNum(), pos.getColumnNum());
+        int end = offset(pos.getEndLineNum(), pos.getEndColumnNum()) + 1;
+        if (begin < 0 || end <= begin || !isSelfDelimited(replacement) || !matches(original, begin, end)) {
+            local = false;
+            return;
+        }
+        if (size == begins.length) {
+            begins = Arrays.copyOf(begins, size << 1);
+            ends = Arrays.copyOf(ends, size << 1);
+            replacements = Arrays.copyOf(replacements, size << 1);
+        }
+        begins[size] = begin;
+        ends[size] = end;
+        replacements[size] = replacement;
+        size++;
+    }
+
+    /**
+     * 把改动拼接回原始SQL
+     *
+     * @return 存在无法局部替换的改动时返回 null; 没有改动时返回原始SQL
+     */
+    @Nullable
+    String apply(SqlDialect dialect) {
+        if (!local) {
+            return null;
+        }
+        if (size == 0) {
+            return sql;
+        }
+        sortByBegin();
+        StringBuilder out = new StringBuilder(sql.length() + (size << 4));
+        int last = 0;
+        for (int i = 0; i < size; i++) {
+            if (begins[i] < last) {
+                return null;
+            }
+            out.append(sql, last, begins[i]);
+            if (!appendReplacement(out, replacements[i], dialect)) {
+                return null;
+            }
+            last = ends[i];
+        }
+        return out.append(sql, last, sql.length()).toString();
+    }
+
+    /**
+     * 输出替换节点; 标识符直接按方言加引号, 其余节点只单独生成该节点。
+     * 以 '-' 开头的文本(负数)可能与前面的减号组成注释, 不拼接
+     */
+    private boolean appendReplacement(StringBuilder out, SqlNode replacement, SqlDialect dialect) {
+        if (replacement instanceof SqlIdentifier) {
+            SqlIdentifier identifier = (SqlIdentifier) replacement;
+            for (int i = 0; i < identifier.names.size(); i++) {
+                if (i > 0) {
+                    out.append('.');
+                }
+                String name = identifier.names.get(i);
+                if (name.isEmpty()) {
+                    out.append('*');
+                } else {
+                    dialect.quoteIdentifier(out, name);
+                }
+            }
+            return true;
+        }
+        String text = replacement.toSqlString(dialect).getSql();
+        if (text.startsWith("-")) {
+            return false;
+        }
+        out.append(text);
+        return true;
+    }
+
+    private static boolean isSelfDelimited(SqlNode replacement) {
+        if (replacement instanceof SqlIdentifier) {
+            return null == ((SqlIdentifier) replacement).getCollation();
+        }
+        if (replacement instanceof SqlDynamicParam || replacement instanceof SqlLiteral) {
+            return true;
+        }
+        if (replacement instanceof SqlCall) {
+            SqlCall call = (SqlCall) replacement;
+            SqlSyntax syntax = call.getOperator().getSyntax();
+            return syntax == SqlSyntax.FUNCTION || syntax == SqlSyntax.FUNCTION_STAR || syntax == SqlSyntax.FUNCTION_ID
+                    || call.getKind() == SqlKind.CASE || call.getKind() == SqlKind.CAST;
+        }
+        return false;
+    }
+
+    /**
+     * 区间内的文本是否就是被替换的节点: 标识符逐字相同(不含引号与空白), 调用以操作符名称开头并以 ')' 或 END 结尾
+     */
+    private boolean matches(SqlNode original, int begin, int end) {
+        if (original instanceof SqlIdentifier) {
+            int offset = begin;
+            SqlIdentifier identifier = (SqlIdentifier) original;
+            for (int i = 0; i < identifier.names.size(); i++) {
+                String name = identifier.names.get(i);
+                if (name.isEmpty()) {
+                    name = "*";
+                }
+                if (i > 0 && (offset >= end || sql.charAt(offset++) != '.')) {
+                    return false;
+                }
+                if (offset + name.length() > end || !sql.startsWith(name, offset)) {
+                    return false;
+                }
+                offset += name.length();
+            }
+            return offset == end;
+        }
+        if (original instanceof SqlCall) {
+            SqlCall call = (SqlCall) original;
+            String name = call.getOperator().getName();
+            if (end - begin < name.length() || !sql.regionMatches(true, begin, name, 0, name.length())) {
+                return false;
+            }
+            if (call.getOperator().getSyntax() == SqlSyntax.FUNCTION_ID) {
+                return end - begin == name.length();
+            }
+            return call.getKind() == SqlKind.CASE
+                    ? sql.regionMatches(true, end - 3, "END", 0, 3)
+                    : sql.charAt(end - 1) == ')';
+        }
+        return false;
+    }
+
+    /**
+     * 行号、列号(从 1 开始)对应的偏移, 超出范围时返回 -1
+     */
+    private int offset(int line, int column) {
+        if (null == lineStarts) {
+            computeLineStarts();
+        }
+        if (line < 1 || line > lineCount || column < 1) {
+            return -1;
+        }
+        int offset = lineStarts[line - 1] + column - 1;
+        int limit = line < lineCount ? lineStarts[line] : sql.length();
+        return offset < limit ? offset : -1;
+    }
+
+    private void computeLineStarts() {
+        int[] starts = new int[INITIAL_CAPACITY];
+        int count = 1;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == sql.length() || sql.charAt(i + 1) != '\n'))) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count << 1);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        lineStarts = starts;
+        lineCount = count;
+    }
+
+    /**
+     * 按区间起点排序, 改动通常只有几处, 使用插入排序
+     */
+    private void sortByBegin() {
+        for (int i = 1; i < size; i++) {
+            int begin = begins[i];
+            int end = ends[i];
+            SqlNode replacement = replacements[i];
+            int j = i - 1;
+            while (j >= 0 && begins[j] > begin) {
+                begins[j + 1] = begins[j];
+                ends[j + 1] = ends[j];
+                replacements[j + 1] = replacements[j];
+                j--;
+            }
+            begins[j + 1] = begin;
+            ends[j + 1] = end;
+            replacements[j + 1] = replacement;
+        }
+    }
+}
@@ -1,33 +1,41 @@
 package com.lishicloud.lsspringbootstartersqlconvert.actuator;
 
 
-import com.lishicloud.lsspringbootstartersqlconvert.translate.ColumnsTranslate;
-import com.lishicloud.lsspringbootstartersqlconvert.translate.FunctionTranslate;
-import com.lishicloud.lsspringbootstartersqlconvert.translate.TableNameTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlDependencies;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.util.Util;
 
 /**
  * 标准 SQL 解析执行器的抽象基类。
  * 定义了所有 SQL 翻译执行器必须实现的基本行为和结构。
  * 此类旨在被继承并根据特定的数据操作语言（DML）类型进行定制。
+ * <p>
+ * 执行器只持有引擎级别的方言与转换规则，语句相关的状态放在 {@link TranslateContext} 中，
+ * 每个引擎的每种 DML 只有一个执行器，由所有线程共享。
  *
  * @author ztq
  */
 @Slf4j
 public abstract class StandardSqlTranslateActuator implements TranslateActuator {
 
-    protected final SqlNode rootNode;
-
     protected final SqlDialect dialect;
 
-    protected StandardSqlTranslateActuator(SqlNode rootNode, SqlDialect dialect) {
-        this.rootNode = rootNode;
+    /**
+     * 所属引擎的转换规则
+     */
+    protected final TranslateRules rules;
+
+    protected StandardSqlTranslateActuator(SqlDialect dialect, TranslateRules rules) {
         this.dialect = dialect;
+        this.rules = rules;
     }
 
     /**
@@ -35,27 +43,60 @@ public abstract class StandardSqlTranslateActuator implements TranslateActuator
      *
      * @return 处理的 SqlKind 类型。例如，对于 SELECT 语句的处理器，应返回 SqlKind.SELECT。
      */
-    protected abstract SqlKind DML();
+    public abstract SqlKind DML();
 
 
-    protected static SqlNode processFunction(SqlNode functionNode) {
-        return FunctionTranslate.doTranslateOfPipeline(functionNode);
+    /**
+     * 以下处理方法同时记录翻译依赖, 用于规则变更后精确失效缓存, 参见 {@link SqlDependencies};
+     * 规则改写了节点时把改动记入上下文, 参见 {@link TranslateContext#replace(SqlNode, SqlNode)}
+     */
+    protected SqlNode processFunction(TranslateContext context, SqlNode functionNode) {
+        return processFunction(context, functionNode, rules.translateFunction(functionNode));
     }
 
-    protected static SqlNode processColumnName(SqlNode item) {
-        return ColumnsTranslate.doTranslateOfPipeline(item);
+    /**
+     * 与 {@link #processFunction(TranslateContext, SqlNode)} 相同, 但沿用已经执行过的函数规则的结果 translated
+     */
+    protected SqlNode processFunction(TranslateContext context, SqlNode functionNode, SqlNode translated) {
+        if (functionNode instanceof SqlCall && ((SqlCall) functionNode).getOperator() instanceof SqlFunction) {
+            SqlDependencies.record(SqlDependencies.function(((SqlCall) functionNode).getOperator().getName()));
+        }
+        context.replace(functionNode, translated);
+        return translated;
     }
 
-    protected static SqlNode processTableName(SqlIdentifier sqlIdentifier) {
-        return TableNameTranslate.doTranslateOfPipeline(sqlIdentifier);
+    protected SqlNode processColumnName(TranslateContext context, SqlNode item) {
+        if (item instanceof SqlIdentifier && !((SqlIdentifier) item).isStar()) {
+            SqlDependencies.record(SqlDependencies.keyword(Util.last(((SqlIdentifier) item).names)));
+        }
+        SqlNode translated = rules.translateColumn(item);
+        context.replace(item, translated);
+        return translated;
+    }
+
+    protected SqlNode processTableName(TranslateContext context, SqlIdentifier sqlIdentifier) {
+        SqlDependencies.record(SqlDependencies.table(String.join(".", sqlIdentifier.names)));
+        SqlNode translated = rules.translateTableName(sqlIdentifier);
+        context.replace(sqlIdentifier, translated);
+        return translated;
+    }
+
+    /**
+     * 生成翻译结果: 上下文记录的改动都可以局部替换时直接拼接原始SQL, 否则由 Calcite 重新生成整条语句
+     *
+     * @param result 翻译后的语法树
+     */
+    protected String toSqlString(TranslateContext context, SqlNode result) {
+        String spliced = context.splice(dialect);
+        return null != spliced ? spliced : result.toSqlString(dialect).getSql();
     }
 
     @Override
-    public String translateActuatorSql() throws SqlParseException {
-        return translateSql(true);
+    public String translateActuatorSql(TranslateContext context) throws SqlParseException {
+        return translateSql(context, true);
     }
 
-    public abstract String translateSql(boolean fromOrJoin) throws SqlParseException;
+    public abstract String translateSql(TranslateContext context, boolean fromOrJoin) throws SqlParseException;
 
 
     @Override
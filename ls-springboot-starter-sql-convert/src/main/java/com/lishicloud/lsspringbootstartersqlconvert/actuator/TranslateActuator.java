@@ -24,11 +24,13 @@ public interface TranslateActuator {
 
     /**
      * 将 SQL 语句转换为目标数据库方言。
+     * 实现不得保存随语句变化的状态, 同一个执行器会被多个线程同时调用。
      *
+     * @param context 本次翻译的上下文
      * @return 转换后的 SQL 语句。
      * @throws SqlParseException 如果 SQL 语句解析过程中遇到问题。
      */
-    String translateActuatorSql() throws SqlParseException;
+    String translateActuatorSql(TranslateContext context) throws SqlParseException;
 
 
     /**
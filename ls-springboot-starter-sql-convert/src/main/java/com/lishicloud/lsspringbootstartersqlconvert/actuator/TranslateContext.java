@@ -0,0 +1,69 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlNode;
+
+import javax.annotation.Nullable;
+
+/**
+ * 单次翻译的上下文，持有本次解析得到的语法树等随语句变化的状态。
+ * <p>
+ * 每次翻译新建一个，只在当前调用线程上使用；执行器本身不保存任何随语句变化的状态，
+ * 因此同一个执行器可以被多个线程同时使用。
+ * <p>
+ * 以原始SQL创建时(SPLICE 模式)同时记录规则的改动，翻译结果由 {@link #splice(SqlDialect)} 拼接原始SQL得到，
+ * 参见 {@link com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode#SPLICE}。
+ *
+ * @author ztq
+ */
+public final class TranslateContext {
+
+    private final SqlNode rootNode;
+
+    /**
+     * 规则对原始SQL的改动, 为 null 时不记录(UNPARSE 模式)
+     */
+    @Nullable
+    private final SqlTextEdits edits;
+
+    public TranslateContext(SqlNode rootNode) {
+        assert null != rootNode;
+        this.rootNode = rootNode;
+        this.edits = null;
+    }
+
+    /**
+     * @param sql 解析出 rootNode 的原始SQL, 规则的改动按位置拼接回该SQL
+     */
+    public TranslateContext(SqlNode rootNode, String sql) {
+        assert null != rootNode && null != sql;
+        this.rootNode = rootNode;
+        this.edits = new SqlTextEdits(sql);
+    }
+
+    /**
+     * 本次翻译的语法树根节点, 翻译过程中可能被就地修改
+     */
+    public SqlNode getRootNode() {
+        return rootNode;
+    }
+
+    /**
+     * 记录规则把 original 替换为 replacement, 两者相同或不记录改动时忽略
+     */
+    public void replace(SqlNode original, SqlNode replacement) {
+        if (null != edits && original != replacement) {
+            edits.replace(original, replacement);
+        }
+    }
+
+    /**
+     * 把记录的改动拼接回原始SQL
+     *
+     * @return 不记录改动或存在无法局部替换的改动时返回 null, 此时需要重新生成整条语句
+     */
+    @Nullable
+    public String splice(SqlDialect dialect) {
+        return null == edits ? null : edits.apply(dialect);
+    }
+}
@@ -1,6 +1,8 @@
 package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
 
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.StandardSqlTranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateContext;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.parser.SqlParseException;
 
@@ -11,18 +13,19 @@ import org.apache.calcite.sql.parser.SqlParseException;
  */
 public class DeleteTranslateActuator extends StandardSqlTranslateActuator {
 
-    public DeleteTranslateActuator(SqlNode rootNode, SqlDialect dialect) {
-        super(rootNode, dialect);
+    public DeleteTranslateActuator(SqlDialect dialect, TranslateRules rules) {
+        super(dialect, rules);
     }
 
     @Override
-    protected SqlKind DML() {
+    public SqlKind DML() {
         return SqlKind.DELETE;
     }
 
 
     @Override
-    public String translateSql(boolean fromOrJoin) throws SqlParseException {
+    public String translateSql(TranslateContext context, boolean fromOrJoin) throws SqlParseException {
+        SqlNode rootNode = context.getRootNode();
         if (!(rootNode instanceof SqlDelete)) {
             // 如果不是 DELETE 语句，则不进行处理
             return null;
@@ -31,11 +34,11 @@ public class DeleteTranslateActuator extends StandardSqlTranslateActuator {
         SqlNode targetTable = deleteNode.getTargetTable();
         // 处理表名
         if (targetTable instanceof SqlIdentifier) {
-            SqlNode modifiedTable = processTableName((SqlIdentifier) targetTable);
+            SqlNode modifiedTable = processTableName(context, (SqlIdentifier) targetTable);
             deleteNode = new SqlDelete(deleteNode.getParserPosition(), modifiedTable, deleteNode.getCondition(), deleteNode.getSourceSelect(), deleteNode.getAlias());
         }
         // 适用于不同数据库方言的转换
-        return deleteNode.toSqlString(dialect).getSql();
+        return toSqlString(context, deleteNode);
     }
 
 
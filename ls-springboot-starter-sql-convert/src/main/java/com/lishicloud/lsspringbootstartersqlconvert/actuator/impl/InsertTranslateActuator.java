@@ -1,6 +1,8 @@
 package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
 
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.StandardSqlTranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateContext;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParserPos;
@@ -15,18 +17,19 @@ import java.util.List;
  */
 public class InsertTranslateActuator extends StandardSqlTranslateActuator {
 
-    public InsertTranslateActuator(SqlNode rootNode, SqlDialect dialect) {
-        super(rootNode, dialect);
+    public InsertTranslateActuator(SqlDialect dialect, TranslateRules rules) {
+        super(dialect, rules);
     }
 
     @Override
-    protected SqlKind DML() {
+    public SqlKind DML() {
         return SqlKind.INSERT;
     }
 
 
     @Override
-    public String translateSql( boolean fromOrJoin) throws SqlParseException {
+    public String translateSql(TranslateContext context, boolean fromOrJoin) throws SqlParseException {
+        SqlNode rootNode = context.getRootNode();
         if (!(rootNode instanceof SqlInsert)) {
             // 如果不是 INSERT 语句，则不进行处理
             return null;
@@ -37,13 +40,13 @@ public class InsertTranslateActuator extends StandardSqlTranslateActuator {
         SqlNodeList columnList = insertNode.getTargetColumnList();
         // 处理表名
         if (targetTable instanceof SqlIdentifier) {
-            targetTable = processTableName((SqlIdentifier) targetTable);
+            targetTable = processTableName(context, (SqlIdentifier) targetTable);
         }
         // 处理列名关键字
         if (columnList != null) {
             List<SqlNode> modifiedColumns = new ArrayList<>();
             for (SqlNode column : columnList) {
-                modifiedColumns.add(processColumnName(column));
+                modifiedColumns.add(processColumnName(context, column));
             }
             columnList = new SqlNodeList(modifiedColumns, columnList.getParserPosition());
         }
@@ -55,7 +58,7 @@ public class InsertTranslateActuator extends StandardSqlTranslateActuator {
                 source,
                 columnList);
         // 适用于不同数据库方言的转换
-        return modifiedInsert.toSqlString(dialect).getSql();
+        return toSqlString(context, modifiedInsert);
     }
 
 
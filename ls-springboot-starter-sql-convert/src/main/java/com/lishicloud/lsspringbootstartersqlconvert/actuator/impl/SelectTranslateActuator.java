@@ -1,10 +1,14 @@
 package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
 
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.StandardSqlTranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateContext;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParserPos;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,20 +16,66 @@ import java.util.List;
  * 该执行器负责处理和转换 SELECT 类型的 SQL 语句。
  * 它通过解析和修改 SQL 语法树中的各个节点来实现特定的转换逻辑。
  * <p>
- * 此类提供两种访问模式: 对象和静态
+ * 语法树由 {@link Walker} 单次遍历，表名、列名、函数规则在同一次访问中分派，
+ * 只有子节点确实发生变化的路径才会产生新节点(写时复制)，未变化的子树原样返回。
+ * 遍历使用显式的工作栈，嵌套深度和条件数量不受线程栈大小的限制。
  *
  * @author ztq
  */
 public class SelectTranslateActuator extends StandardSqlTranslateActuator {
 
-    public SelectTranslateActuator(SqlNode rootNode, SqlDialect dialect) {
-        super(rootNode, dialect);
+    /**
+     * 节点所处的上下文: FROM/JOIN 中的来源, 标识符即表名
+     */
+    private static final byte SOURCE = 0;
+    /**
+     * 节点所处的上下文: 表达式
+     */
+    private static final byte EXPR = 1;
+    /**
+     * 节点所处的上下文: SELECT 列表项, 非调用项即列名
+     */
+    private static final byte ITEM = 2;
+
+    private static final byte F_SELECT = 0;
+    private static final byte F_JOIN = 1;
+    private static final byte F_AS_SOURCE = 2;
+    private static final byte F_CALL = 3;
+    private static final byte F_LIST = 4;
+    private static final byte F_CHAIN = 5;
+
+    /**
+     * 同一二元操作符的左深链达到该长度时按扁平的项列表处理
+     */
+    private static final int CHAIN_MIN_LENGTH = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 工作栈在线程内复用, 遍历过超深语法树后超过该容量的数组不再保留
+     */
+    private static final int RETAINED_CAPACITY = 1024;
+
+    /**
+     * 占位结果: 已压入新帧, 节点的结果在其子节点处理完后产生
+     */
+    private static final SqlNode PUSHED = SqlLiteral.createNull(SqlParserPos.ZERO);
+
+    /**
+     * 每个线程一份工作栈, 执行器本身仍由所有线程共享
+     */
+    private final ThreadLocal<Walker> walkers = ThreadLocal.withInitial(Walker::new);
+
+    public SelectTranslateActuator(SqlDialect dialect, TranslateRules rules) {
+        super(dialect, rules);
     }
 
 
     @Override
-    public String translateSql(boolean fromOrJoin) throws SqlParseException {
-        return extractAndModify(rootNode, dialect, fromOrJoin);
+    public String translateSql(TranslateContext context, boolean fromOrJoin) throws SqlParseException {
+        SqlNode result = extractAndModifySourceTableInSelectSql(context, fromOrJoin);
+        assert result != null;
+        return toSqlString(context, result);
     }
 
     /**
@@ -34,7 +84,7 @@ public class SelectTranslateActuator extends StandardSqlTranslateActuator {
      * @return DML 类型，这里是 SELECT。
      */
     @Override
-    protected SqlKind DML() {
+    public SqlKind DML() {
         return SqlKind.SELECT;
     }
 
@@ -47,88 +97,436 @@ public class SelectTranslateActuator extends StandardSqlTranslateActuator {
      * @param fromOrJoin 指示 SQL 节点是否来源于 FROM 或 JOIN 子句。
      * @return 转换后的 SQL 字符串。
      */
-    public static String extractAndModify(SqlNode sqlNode, SqlDialect dialect, boolean fromOrJoin) throws SqlParseException {
+    public String extractAndModify(SqlNode sqlNode, SqlDialect dialect, boolean fromOrJoin) throws SqlParseException {
         SqlNode result = extractAndModifySourceTableInSelectSql(sqlNode, fromOrJoin);
         assert result != null;
         return result.toSqlString(dialect).getSql();
     }
 
     /**
-     * 递归地提取和修改 SELECT SQL 语句中的源表。
+     * 提取和修改 SELECT SQL 语句中的源表。
      *
      * @param sqlNode    待处理的 SQL 节点。
      * @param fromOrJoin 指示当前节点是否来自 FROM 或 JOIN 子句。
-     * @return 修改后的 SQL 节点。
+     * @return 修改后的 SQL 节点, 没有发生变化时返回 sqlNode 本身。
      */
-    public static SqlNode extractAndModifySourceTableInSelectSql(SqlNode sqlNode, boolean fromOrJoin) throws SqlParseException {
+    public SqlNode extractAndModifySourceTableInSelectSql(SqlNode sqlNode, boolean fromOrJoin) {
         if (sqlNode == null) {
             return null;
         }
-        final SqlKind sqlKind = sqlNode.getKind();
-        if (SqlKind.SELECT.equals(sqlKind)) {
-            SqlSelect selectNode = (SqlSelect) sqlNode;
-            SqlNode modifiedFrom = extractAndModifySourceTableInSelectSql(selectNode.getFrom(), true);
-            selectNode.setFrom(modifiedFrom);
-            if (selectNode.getSelectList() != null) {
-                List<SqlNode> modifiedSelectList = new ArrayList<>();
-                for (SqlNode item : selectNode.getSelectList()) {
-                    if (item instanceof SqlCall) {
-                        modifiedSelectList.add(extractAndModifySourceTableInSelectSql(item, false));
-                    } else {
-                        //处理其他列名 他们的类型是IDENTIFIER 但他们来至FROM
-                        modifiedSelectList.add(processColumnName(item));
-                    }
+        return extractAndModifySourceTableInSelectSql(new TranslateContext(sqlNode), fromOrJoin);
+    }
+
+    /**
+     * 翻译上下文中的语法树, 规则的改动同时记入上下文
+     */
+    private SqlNode extractAndModifySourceTableInSelectSql(TranslateContext context, boolean fromOrJoin) {
+        Walker walker = walkers.get();
+        if (walker.isBusy()) {
+            // 规则在遍历过程中再次翻译时使用独立的工作栈
+            walker = new Walker();
+        }
+        try {
+            return walker.walk(context, fromOrJoin ? SOURCE : EXPR);
+        } finally {
+            walker.reset();
+        }
+    }
+
+    /**
+     * 写时复制的单次遍历:
+     * 1. SELECT、JOIN 属于本次翻译独占的语法树(参见 {@link TranslateContext})，子句变化时就地替换，不复制节点。
+     * 2. 其余调用先尝试函数规则，命中即返回新节点；否则访问操作数，只有操作数变化时才以原操作符、
+     * 原修饰符(例如 DISTINCT)重新创建调用，操作数数组在第一次变化时才复制。
+     * 3. 列名规则只作用于 SELECT 列表中的非调用项，表名规则只作用于 FROM/JOIN 中的标识符。
+     * <p>
+     * 遍历不使用递归: 待处理的节点保存在显式的工作栈(几组平行数组)中，每一帧记录节点、帧类型、
+     * 下一个子节点的序号和写时复制的状态，Java 栈的深度与语法树的深度无关。
+     * 同一二元操作符的左深链(例如上千个 OR 条件)作为一帧处理，链上各项按扁平列表依次访问，
+     * 结束后只重建发生变化的项以上的链节点。
+     */
+    private final class Walker {
+
+        private SqlNode[] nodes = new SqlNode[INITIAL_CAPACITY];
+        private byte[] types = new byte[INITIAL_CAPACITY];
+        private int[] cursors = new int[INITIAL_CAPACITY];
+        private Object[] states = new Object[INITIAL_CAPACITY];
+        private int top = -1;
+        private TranslateContext translateContext;
+
+        boolean isBusy() {
+            return translateContext != null;
+        }
+
+        SqlNode walk(TranslateContext context, byte rootContext) {
+            this.translateContext = context;
+            SqlNode value = enter(context.getRootNode(), rootContext);
+            while (top >= 0) {
+                if (value != PUSHED) {
+                    accept(value);
+                }
+                value = advance();
+            }
+            return value;
+        }
+
+        /**
+         * 清理工作栈, 异常中断时丢弃剩余的帧; 超过保留容量的数组不再复用
+         */
+        void reset() {
+            translateContext = null;
+            if (top >= 0) {
+                Arrays.fill(nodes, 0, top + 1, null);
+                Arrays.fill(states, 0, top + 1, null);
+                top = -1;
+            }
+            if (nodes.length > RETAINED_CAPACITY) {
+                nodes = new SqlNode[INITIAL_CAPACITY];
+                types = new byte[INITIAL_CAPACITY];
+                cursors = new int[INITIAL_CAPACITY];
+                states = new Object[INITIAL_CAPACITY];
+            }
+        }
+
+        /**
+         * 进入一个节点: 叶子节点直接返回处理结果, 需要访问子节点时压入新帧并返回 {@link #PUSHED}
+         */
+        private SqlNode enter(SqlNode node, byte context) {
+            if (node == null) {
+                return null;
+            }
+            if (context == ITEM) {
+                //处理其他列名 他们的类型是IDENTIFIER 但他们来至FROM
+                if (!(node instanceof SqlCall)) {
+                    return processColumnName(translateContext, node);
                 }
-                selectNode.setSelectList(new SqlNodeList(modifiedSelectList, selectNode.getSelectList().getParserPosition()));
-            }
-            // 处理 WHERE 子句
-            if (selectNode.getWhere() != null) {
-                SqlNode modifiedWhere = extractAndModifySourceTableInSelectSql(selectNode.getWhere(), false);
-                selectNode.setWhere(modifiedWhere);
-            }
-            // 处理 HAVING 子句
-            if (selectNode.getHaving() != null) {
-                SqlNode modifiedHaving = extractAndModifySourceTableInSelectSql(selectNode.getHaving(), false);
-                selectNode.setHaving(modifiedHaving);
-            }
-            return selectNode;
-        }
-        if (SqlKind.JOIN.equals(sqlKind)) {
-            SqlJoin sqlJoin = (SqlJoin) sqlNode;
-            SqlNode modifiedLeft = extractAndModifySourceTableInSelectSql(sqlJoin.getLeft(), true);
-            SqlNode modifiedRight = extractAndModifySourceTableInSelectSql(sqlJoin.getRight(), true);
-            sqlJoin.setLeft(modifiedLeft);
-            sqlJoin.setRight(modifiedRight);
-            return sqlJoin;
-        }
-        if (SqlKind.AS.equals(sqlKind)) {
-            SqlCall sqlCall = (SqlCall) sqlNode;
-            SqlNode modifiedOperand = extractAndModifySourceTableInSelectSql(sqlCall.operand(0), fromOrJoin);
-            sqlCall.setOperand(0, modifiedOperand);
-            return sqlCall;
-        }
-        // 处理表名
-        if (SqlKind.IDENTIFIER.equals(sqlKind) && fromOrJoin) {
-            SqlIdentifier sqlIdentifier = (SqlIdentifier) sqlNode;
-            return processTableName(sqlIdentifier);
-        }
-        if (sqlNode instanceof SqlCall) {
-            SqlCall call = (SqlCall) sqlNode;
-            // 使用 FunctionTranslate 对函数调用进行转换
-            SqlNode modifiedCall = processFunction(call);
-            if (!modifiedCall.equals(call)) {
-                // 如果发生了转换，返回修改后的函数调用
+            } else if (context == SOURCE) {
+                // FROM/JOIN 中的节点: 标识符即表名, AS 继承来源上下文
+                switch (node.getKind()) {
+                    case IDENTIFIER:
+                        return processTableName(translateContext, (SqlIdentifier) node);
+                    case AS:
+                        return push(node, F_AS_SOURCE, null);
+                    default:
+                        break;
+                }
+            }
+            if (node instanceof SqlNodeList) {
+                return ((SqlNodeList) node).size() == 0 ? node : push(node, F_LIST, null);
+            }
+            if (!(node instanceof SqlCall)) {
+                return node;
+            }
+            SqlCall call = (SqlCall) node;
+            switch (call.getKind()) {
+                case SELECT:
+                    return push(call, F_SELECT, null);
+                case JOIN:
+                    return push(call, F_JOIN, null);
+                default:
+                    break;
+            }
+            // 使用 FunctionTranslate 对函数调用进行转换, 发生转换时不再访问新节点
+            SqlNode modifiedCall = processFunction(translateContext, call);
+            if (modifiedCall != call) {
                 return modifiedCall;
             }
-            // 如果没有转换规则，对操作数进行递归处理
-            List<SqlNode> modifiedOperands = new ArrayList<>();
-            for (SqlNode operand : call.getOperandList()) {
-                modifiedOperands.add(extractAndModifySourceTableInSelectSql(operand, false));
+            if (call.operandCount() == 0) {
+                return call;
+            }
+            Chain chain = chainOf(call);
+            return chain == null ? push(call, F_CALL, null) : push(call, F_CHAIN, chain);
+        }
+
+        /**
+         * 访问栈顶帧的下一个子节点, 没有剩余子节点时弹出该帧并返回其结果
+         */
+        private SqlNode advance() {
+            final int frame = top;
+            final int cursor = ++cursors[frame];
+            final SqlNode node = nodes[frame];
+            switch (types[frame]) {
+                case F_SELECT: {
+                    SqlSelect select = (SqlSelect) node;
+                    SqlNodeList selectList = select.getSelectList();
+                    int size = selectList == null ? 0 : selectList.size();
+                    if (cursor == 0) {
+                        return enter(select.getFrom(), SOURCE);
+                    } else if (cursor <= size) {
+                        return enter(selectList.get(cursor - 1), ITEM);
+                    } else if (cursor == size + 1) {
+                        return enter(select.getWhere(), EXPR);
+                    } else if (cursor == size + 2) {
+                        return enter(select.getHaving(), EXPR);
+                    }
+                    break;
+                }
+                case F_JOIN: {
+                    SqlJoin join = (SqlJoin) node;
+                    if (cursor == 0) {
+                        return enter(join.getLeft(), SOURCE);
+                    } else if (cursor == 1) {
+                        return enter(join.getRight(), SOURCE);
+                    }
+                    break;
+                }
+                case F_AS_SOURCE:
+                    if (cursor == 0) {
+                        return enter(((SqlCall) node).operand(0), SOURCE);
+                    }
+                    break;
+                case F_CALL: {
+                    SqlCall call = (SqlCall) node;
+                    if (cursor < call.operandCount()) {
+                        return enter(call.operand(cursor), EXPR);
+                    }
+                    break;
+                }
+                case F_LIST: {
+                    SqlNodeList nodeList = (SqlNodeList) node;
+                    if (cursor < nodeList.size()) {
+                        return enter(nodeList.get(cursor), EXPR);
+                    }
+                    break;
+                }
+                case F_CHAIN: {
+                    Chain chain = (Chain) states[frame];
+                    if (cursor == 0 && chain.translatedHead != null) {
+                        // 第一项是构建链时已经命中函数规则的链节点, 沿用其结果
+                        return processFunction(translateContext, chain.term(0), chain.translatedHead);
+                    }
+                    if (cursor < chain.terms.length) {
+                        return enter(chain.term(cursor), EXPR);
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("unknown frame type " + types[frame]);
+            }
+            return complete();
+        }
+
+        /**
+         * 接收栈顶帧当前子节点的处理结果
+         */
+        @SuppressWarnings("unchecked")
+        private void accept(SqlNode value) {
+            final int frame = top;
+            final int cursor = cursors[frame];
+            final SqlNode node = nodes[frame];
+            switch (types[frame]) {
+                case F_SELECT: {
+                    SqlSelect select = (SqlSelect) node;
+                    SqlNodeList selectList = select.getSelectList();
+                    int size = selectList == null ? 0 : selectList.size();
+                    if (cursor == 0) {
+                        if (value != select.getFrom()) {
+                            select.setFrom(value);
+                        }
+                    } else if (cursor <= size) {
+                        if (value != selectList.get(cursor - 1)) {
+                            List<SqlNode> modifiedSelectList = (List<SqlNode>) states[frame];
+                            if (modifiedSelectList == null) {
+                                modifiedSelectList = new ArrayList<>(selectList.getList());
+                                states[frame] = modifiedSelectList;
+                            }
+                            modifiedSelectList.set(cursor - 1, value);
+                        }
+                    } else if (cursor == size + 1) {
+                        if (value != select.getWhere()) {
+                            select.setWhere(value);
+                        }
+                    } else if (value != select.getHaving()) {
+                        select.setHaving(value);
+                    }
+                    break;
+                }
+                case F_JOIN: {
+                    SqlJoin join = (SqlJoin) node;
+                    if (cursor == 0) {
+                        if (value != join.getLeft()) {
+                            join.setLeft(value);
+                        }
+                    } else if (value != join.getRight()) {
+                        join.setRight(value);
+                    }
+                    break;
+                }
+                case F_AS_SOURCE: {
+                    SqlCall call = (SqlCall) node;
+                    if (value != call.operand(0)) {
+                        call.setOperand(0, value);
+                    }
+                    break;
+                }
+                case F_CALL: {
+                    SqlCall call = (SqlCall) node;
+                    if (value != call.operand(cursor)) {
+                        SqlNode[] operands = (SqlNode[]) states[frame];
+                        if (operands == null) {
+                            operands = call.getOperandList().toArray(new SqlNode[0]);
+                            states[frame] = operands;
+                        }
+                        operands[cursor] = value;
+                    }
+                    break;
+                }
+                case F_LIST: {
+                    SqlNodeList nodeList = (SqlNodeList) node;
+                    if (value != nodeList.get(cursor)) {
+                        List<SqlNode> modifiedList = (List<SqlNode>) states[frame];
+                        if (modifiedList == null) {
+                            modifiedList = new ArrayList<>(nodeList.getList());
+                            states[frame] = modifiedList;
+                        }
+                        modifiedList.set(cursor, value);
+                    }
+                    break;
+                }
+                case F_CHAIN:
+                    ((Chain) states[frame]).terms[cursor] = value;
+                    break;
+                default:
+                    throw new IllegalStateException("unknown frame type " + types[frame]);
+            }
+        }
+
+        /**
+         * 弹出栈顶帧, 按写时复制的状态生成该节点的结果
+         */
+        @SuppressWarnings("unchecked")
+        private SqlNode complete() {
+            final int frame = top--;
+            final SqlNode node = nodes[frame];
+            final Object state = states[frame];
+            nodes[frame] = null;
+            states[frame] = null;
+            if (state == null) {
+                return node;
+            }
+            switch (types[frame]) {
+                case F_SELECT: {
+                    SqlSelect select = (SqlSelect) node;
+                    select.setSelectList(new SqlNodeList((List<SqlNode>) state, select.getSelectList().getParserPosition()));
+                    return select;
+                }
+                case F_CALL: {
+                    SqlCall call = (SqlCall) node;
+                    return call.getOperator().createCall(call.getFunctionQuantifier(), call.getParserPosition(), (SqlNode[]) state);
+                }
+                case F_LIST:
+                    return new SqlNodeList((List<SqlNode>) state, node.getParserPosition());
+                case F_CHAIN:
+                    return ((Chain) state).rebuild();
+                default:
+                    return node;
+            }
+        }
+
+        private SqlNode push(SqlNode node, byte type, Object state) {
+            int frame = ++top;
+            if (frame == nodes.length) {
+                int capacity = frame << 1;
+                nodes = Arrays.copyOf(nodes, capacity);
+                types = Arrays.copyOf(types, capacity);
+                cursors = Arrays.copyOf(cursors, capacity);
+                states = Arrays.copyOf(states, capacity);
+            }
+            nodes[frame] = node;
+            types[frame] = type;
+            cursors[frame] = -1;
+            states[frame] = state;
+            return PUSHED;
+        }
+
+        /**
+         * 同一二元操作符的左深链达到 {@link #CHAIN_MIN_LENGTH} 时返回链, 否则返回 null。
+         * 链节点同样先尝试函数规则, 命中的节点及其以下部分作为链的第一项, 规则的结果保存在链中, 不再重复执行。
+         */
+        private Chain chainOf(SqlCall call) {
+            SqlOperator operator = call.getOperator();
+            if (!(operator instanceof SqlBinaryOperator) || call.operandCount() != 2) {
+                return null;
+            }
+            int length = 1;
+            SqlNode left = call.operand(0);
+            while (length < CHAIN_MIN_LENGTH && isLink(left, operator)) {
+                left = ((SqlCall) left).operand(0);
+                length++;
+            }
+            if (length < CHAIN_MIN_LENGTH) {
+                return null;
+            }
+            List<SqlCall> spine = new ArrayList<>();
+            spine.add(call);
+            left = call.operand(0);
+            SqlNode translatedHead = null;
+            while (isLink(left, operator)) {
+                SqlCall link = (SqlCall) left;
+                SqlNode translated = rules.translateFunction(link);
+                if (translated != link) {
+                    // 命中的链节点作为第一项访问时才记录依赖与改动
+                    translatedHead = translated;
+                    break;
+                }
+                spine.add(link);
+                left = link.operand(0);
+            }
+            return new Chain(spine.toArray(new SqlCall[0]), translatedHead);
+        }
+
+        private boolean isLink(SqlNode node, SqlOperator operator) {
+            return node instanceof SqlCall
+                    && ((SqlCall) node).getOperator() == operator
+                    && ((SqlCall) node).operandCount() == 2;
+        }
+    }
+
+    /**
+     * 同一二元操作符的左深链, 例如 a OR b OR c 解析为 ((a OR b) OR c)。
+     * spine[0] 为最外层节点, 最内层节点的两个操作数为第 0、1 项, 其余链节点的右操作数依次为后续各项。
+     */
+    private static final class Chain {
+
+        private final SqlCall[] spine;
+        private final SqlNode[] terms;
+        /**
+         * 第一项(命中函数规则的链节点)的规则结果, 第一项未命中时为 null
+         */
+        private final SqlNode translatedHead;
+
+        Chain(SqlCall[] spine, SqlNode translatedHead) {
+            this.spine = spine;
+            this.terms = new SqlNode[spine.length + 1];
+            this.translatedHead = translatedHead;
+        }
+
+        SqlNode term(int index) {
+            int last = spine.length - 1;
+            return index == 0 ? spine[last].operand(0) : spine[last - index + 1].operand(1);
+        }
+
+        /**
+         * 自内向外重建链, 链节点及其下方的项都未变化时沿用原节点
+         */
+        SqlNode rebuild() {
+            int last = spine.length - 1;
+            SqlCall innermost = spine[last];
+            SqlNode current = innermost;
+            if (terms[0] != innermost.operand(0) || terms[1] != innermost.operand(1)) {
+                current = recreate(innermost, terms[0], terms[1]);
+            }
+            for (int i = last - 1; i >= 0; i--) {
+                SqlCall link = spine[i];
+                SqlNode term = terms[last - i + 1];
+                current = current == link.operand(0) && term == link.operand(1) ? link : recreate(link, current, term);
             }
-            // 创建一个新的 SqlCall 节点
-            return call.getOperator().createCall(new SqlNodeList(modifiedOperands, call.getParserPosition()));
+            return current;
+        }
+
+        private static SqlNode recreate(SqlCall call, SqlNode left, SqlNode right) {
+            return call.getOperator().createCall(call.getFunctionQuantifier(), call.getParserPosition(), left, right);
         }
-        return sqlNode;
     }
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
 
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.StandardSqlTranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateContext;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.parser.SqlParseException;
 
@@ -15,18 +17,19 @@ import java.util.List;
  */
 public class UpdateTranslateActuator extends StandardSqlTranslateActuator {
 
-    public UpdateTranslateActuator(SqlNode rootNode, SqlDialect dialect) {
-        super(rootNode, dialect);
+    public UpdateTranslateActuator(SqlDialect dialect, TranslateRules rules) {
+        super(dialect, rules);
     }
 
     @Override
-    protected SqlKind DML() {
+    public SqlKind DML() {
         return SqlKind.UPDATE;
     }
 
 
     @Override
-    public String translateSql(boolean fromOrJoin) throws SqlParseException {
+    public String translateSql(TranslateContext context, boolean fromOrJoin) throws SqlParseException {
+        SqlNode rootNode = context.getRootNode();
         if (!(rootNode instanceof SqlUpdate)) {
             // 如果不是 UPDATE 语句，则不进行处理
             return null;
@@ -40,13 +43,13 @@ public class UpdateTranslateActuator extends StandardSqlTranslateActuator {
         SqlIdentifier alias = updateNode.getAlias();
         // 处理表名
         if (targetTable instanceof SqlIdentifier) {
-            targetTable = processTableName((SqlIdentifier) targetTable);
+            targetTable = processTableName(context, (SqlIdentifier) targetTable);
         }
         // 处理列名关键字
         if (targetColumnList != null) {
             List<SqlNode> modifiedColumns = new ArrayList<>();
             for (SqlNode column : targetColumnList) {
-                modifiedColumns.add(processColumnName(column));
+                modifiedColumns.add(processColumnName(context, column));
             }
             targetColumnList = new SqlNodeList(modifiedColumns, targetColumnList.getParserPosition());
         }
@@ -60,6 +63,6 @@ public class UpdateTranslateActuator extends StandardSqlTranslateActuator {
                 alias);
 
         // 适用于不同数据库方言的转换
-        return modifiedUpdate.toSqlString(dialect).getSql();
+        return toSqlString(context, modifiedUpdate);
     }
 }
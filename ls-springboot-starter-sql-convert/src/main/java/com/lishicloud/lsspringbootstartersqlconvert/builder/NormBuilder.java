@@ -1,5 +1,6 @@
 package com.lishicloud.lsspringbootstartersqlconvert.builder;
 
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.Translate;
 import org.apache.calcite.sql.SqlDialect;
 
@@ -28,4 +29,10 @@ public interface NormBuilder {
      */
     boolean isEnableSqlCache();
 
+
+    /**
+     *
+     */
+    SqlCacheMode getSqlCacheMode();
+
 }
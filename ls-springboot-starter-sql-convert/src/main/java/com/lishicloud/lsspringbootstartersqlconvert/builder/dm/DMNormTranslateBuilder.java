@@ -2,18 +2,40 @@ package com.lishicloud.lsspringbootstartersqlconvert.builder.dm;
 
 
 import com.lishicloud.lsspringbootstartersqlconvert.builder.NormBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NearSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NegativeSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.OffHeapValueStore;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SecondLevelCacheGateway;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SecondLevelSqlCache;
 import com.lishicloud.lsspringbootstartersqlconvert.cache.SimpleSqlCache;
-import com.lishicloud.lsspringbootstartersqlconvert.provide.ProvideAbility;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SingleFlight;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.NegativeCachePolicy;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheKeyMode;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
 import com.lishicloud.lsspringbootstartersqlconvert.provide.SQLConvert;
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.FunctionTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TableNameTranslate;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.Translate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.KeyWordTranslator;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.TemplateFunctionTranslate;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.DMNorm;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.DMReservedWords;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerResolver;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.TableRoutes;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -32,9 +54,67 @@ public class DMNormTranslateBuilder implements DMNorm, NormBuilder {
 
     private final SQLConvert sqlConvert;
     /**
-     * 是否启用SQL缓存
+     * 是否启用SQL缓存, 以及缓存参数; 缓存实例在 build 时为每个引擎单独创建
      */
     private boolean enableSqlCache = false;
+    private long sqlCacheExpiredTime;
+    private long sqlCacheBufferTime;
+    private TimeUnit sqlCacheTimeUnit;
+    private int sqlCacheDelThreshold;
+    private long sqlCacheMaximumWeight;
+    /**
+     * 堆外值存储参数, offHeapCapacity 为 0 时不启用
+     */
+    private long offHeapCapacity;
+    private boolean offHeapCompress;
+    /**
+     * SQL缓存 key 模式, 默认原始SQL精确匹配
+     */
+    private SqlCacheMode sqlCacheMode = SqlCacheMode.EXACT;
+    /**
+     * SQL缓存 Map 的 key 形式, 默认SQL全文
+     */
+    private SqlCacheKeyMode sqlCacheKeyMode = SqlCacheKeyMode.TEXT;
+    /**
+     * SQL缓存快照, snapshotFile 为 null 时不启用
+     */
+    private Path snapshotFile;
+    private long snapshotInterval;
+    private TimeUnit snapshotIntervalUnit;
+    private int snapshotMaxEntries;
+    /**
+     * 未命中合并参数, singleFlightTimeout 为 0 时不启用
+     */
+    private long singleFlightTimeout;
+    private TimeUnit singleFlightTimeUnit;
+    /**
+     * 负缓存参数, negativeCachePolicy 为 null 时不启用
+     */
+    private long negativeCacheTtl;
+    private TimeUnit negativeCacheTimeUnit;
+    private int negativeCacheMaxEntries;
+    private NegativeCachePolicy negativeCachePolicy;
+    /**
+     * 线程私有的近端缓存每个线程的槽位数, 为 0 时不启用
+     */
+    private int nearCacheSlots;
+    /**
+     * 二级缓存实现及其访问参数, backend 为 null 时不启用; 网关在 build 时按规则指纹创建
+     */
+    private SecondLevelSqlCache secondLevelBackend;
+    private long secondLevelTimeout;
+    private int secondLevelBatchSize;
+    private int secondLevelFailureThreshold;
+    private long secondLevelOpenTime;
+    private TimeUnit secondLevelTimeUnit;
+    /**
+     * 是否启用简单 DML 的快速路径, 默认启用
+     */
+    private boolean simpleDmlFastPath = true;
+    /**
+     * 翻译结果的生成方式, 默认由 Calcite 重新生成整条语句
+     */
+    private SqlRewriteMode rewriteMode = SqlRewriteMode.UNPARSE;
 
     public DMNormTranslateBuilder(SQLConvert sqlConvert) {
         assert null != sqlConvert;
@@ -54,16 +134,60 @@ public class DMNormTranslateBuilder implements DMNorm, NormBuilder {
         return this;
     }
 
+    /**
+     * 每个租户一个 schema: 表拥有者在每次转换时由 ownerResolver 解析(例如 {@link com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.ThreadLocalOwnerResolver}),
+     * 翻译结果与缓存中只保存拥有者占位符, 所有租户共享同一个引擎与缓存。
+     * 与 ownerOfTableDefault 二选一, 同时配置时只有先登记的表名规则生效
+     */
+    public DMNormTranslateBuilder ownerOfTableResolver(OwnerResolver ownerResolver) {
+        assert null != ownerResolver;
+        this.normTranslates.add(new OwnerOfTable(ownerResolver));
+        return this;
+    }
+
+    /**
+     * 按表路由文件改写表的拥有者与表名(格式参见 {@link TableRoutes}), 未命中路由的表使用默认拥有者。
+     * 与 ownerOfTableDefault 二选一, 同时配置时只有先登记的表名规则生效
+     *
+     * @param ownerName  默认拥有者, 为 null 时未命中路由的表名保持不变
+     * @param routesFile 表路由文件, 在此加载
+     * @throws UncheckedIOException     读取文件失败
+     * @throws IllegalArgumentException 文件中存在格式错误或重复的路由
+     */
+    public DMNormTranslateBuilder ownerOfTableRoutes(String ownerName, Path routesFile) {
+        assert null != routesFile;
+        try {
+            return ownerOfTableRoutes(ownerName, TableRoutes.load(routesFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load table routes : " + routesFile, e);
+        }
+    }
+
+    public DMNormTranslateBuilder ownerOfTableRoutes(String ownerName, TableRoutes tableRoutes) {
+        assert null != tableRoutes;
+        this.normTranslates.add(new OwnerOfTable(ownerName, tableRoutes));
+        return this;
+    }
+
     public DMNormTranslateBuilder translateFunctionDefault(FunctionTranslate... functionTranslate) {
         assert null != functionTranslate;
         for (FunctionTranslate translate : functionTranslate) {
             if (translate.valid()) {
                 throw new IllegalArgumentException("functionTranslate Must valid");
             }
+            this.normTranslates.add(translate);
         }
         return this;
     }
 
+    /**
+     * 以模板登记函数改写, $n 表示原函数的第 n 个参数(从 0 开始)
+     * 例如 translateFunctionTemplate("IF", "CASE WHEN $0 THEN $1 ELSE $2 END")
+     */
+    public DMNormTranslateBuilder translateFunctionTemplate(String functionName, String template) {
+        return translateFunctionDefault(new TemplateFunctionTranslate(functionName, template));
+    }
+
     @Override
     public boolean isEnableSqlCache() {
         return enableSqlCache;
@@ -74,11 +198,203 @@ public class DMNormTranslateBuilder implements DMNorm, NormBuilder {
     }
 
     public DMNormTranslateBuilder enableSqlCache(long expiredTime, long bufferTime, TimeUnit timeUnit, int delThreshold) {
+        return enableSqlCache(expiredTime, bufferTime, timeUnit, delThreshold, SimpleSqlCache.DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * @param maximumWeight 缓存占用上限(字节), 按 key + value 长度估算
+     */
+    public DMNormTranslateBuilder enableSqlCache(long expiredTime, long bufferTime, TimeUnit timeUnit, int delThreshold, long maximumWeight) {
+        assert maximumWeight > 0;
         this.enableSqlCache = true;
-        new SimpleSqlCache(expiredTime, timeUnit, bufferTime, timeUnit, delThreshold);
+        this.sqlCacheExpiredTime = expiredTime;
+        this.sqlCacheBufferTime = bufferTime;
+        this.sqlCacheTimeUnit = timeUnit;
+        this.sqlCacheDelThreshold = delThreshold;
+        this.sqlCacheMaximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * 启用堆外值存储, 需配合 enableSqlCache 使用
+     * 超过 1024 字符的翻译结果存放在堆外 slab 中, 缓存节点只持有句柄
+     *
+     * @param capacity 堆外容量上限(字节), 按 4MB slab 申请
+     * @param compress 是否压缩超过 4KB 的值
+     */
+    public DMNormTranslateBuilder offHeapValueStore(long capacity, boolean compress) {
+        assert capacity > 0;
+        this.offHeapCapacity = capacity;
+        this.offHeapCompress = compress;
+        return this;
+    }
+
+    /**
+     * 切换缓存 Map 的 key 形式, 需配合 enableSqlCache 使用
+     * FINGERPRINT: 以 128 位指纹作为 key, 命中后比对全文
+     * FINGERPRINT_UNVERIFIED: 以 128 位指纹作为 key, 不保留全文, 不能与 sqlCacheSnapshot 同时使用
+     */
+    public DMNormTranslateBuilder sqlCacheKeyMode(SqlCacheKeyMode sqlCacheKeyMode) {
+        assert null != sqlCacheKeyMode;
+        this.sqlCacheKeyMode = sqlCacheKeyMode;
+        return this;
+    }
+
+    /**
+     * 启用SQL缓存快照, 需配合 enableSqlCache 使用
+     * 每 5 分钟及应用关闭时写入最近使用的 10000 条缓存项, 启动时加载(翻译规则变化时拒绝)
+     */
+    public DMNormTranslateBuilder sqlCacheSnapshot(Path snapshotFile) {
+        return sqlCacheSnapshot(snapshotFile, 5, TimeUnit.MINUTES, 10000);
+    }
+
+    public DMNormTranslateBuilder sqlCacheSnapshot(Path snapshotFile, long interval, TimeUnit timeUnit, int maxEntries) {
+        assert null != snapshotFile && interval > 0 && maxEntries > 0;
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = interval;
+        this.snapshotIntervalUnit = timeUnit;
+        this.snapshotMaxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * 启用未命中合并: 同一条SQL并发未命中时只翻译一次, 其余线程最多等待 3 秒
+     */
+    public DMNormTranslateBuilder enableSingleFlight() {
+        return enableSingleFlight(3, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param timeout 等待进行中翻译的超时时间, 超时后自行翻译
+     */
+    public DMNormTranslateBuilder enableSingleFlight(long timeout, TimeUnit timeUnit) {
+        assert timeout > 0;
+        this.singleFlightTimeout = timeout;
+        this.singleFlightTimeUnit = timeUnit;
+        return this;
+    }
+
+    /**
+     * 启用负缓存: 解析失败或不受支持的SQL在 10 分钟内不再解析, 直接抛出首次失败的异常, 最多记录 10000 条
+     */
+    public DMNormTranslateBuilder enableNegativeCache() {
+        return enableNegativeCache(10, TimeUnit.MINUTES, 10000, NegativeCachePolicy.RETHROW);
+    }
+
+    /**
+     * @param ttl        失败记录的有效期
+     * @param maxEntries 最多记录的SQL条数
+     * @param policy     PASSTHROUGH 原样返回原始SQL, RETHROW 抛出首次失败的异常
+     */
+    public DMNormTranslateBuilder enableNegativeCache(long ttl, TimeUnit timeUnit, int maxEntries, NegativeCachePolicy policy) {
+        assert ttl > 0 && maxEntries > 0 && null != policy;
+        this.negativeCacheTtl = ttl;
+        this.negativeCacheTimeUnit = timeUnit;
+        this.negativeCacheMaxEntries = maxEntries;
+        this.negativeCachePolicy = policy;
+        return this;
+    }
+
+    /**
+     * 启用线程私有的近端缓存, 需配合 enableSqlCache 使用, 每个线程保留 4096 个槽位
+     */
+    public DMNormTranslateBuilder enableNearCache() {
+        return enableNearCache(4096);
+    }
+
+    /**
+     * @param slots 每个线程的槽位数(向上取整为2的幂), 取线程上反复执行的SQL条数的10倍以上可避免组冲突
+     */
+    public DMNormTranslateBuilder enableNearCache(int slots) {
+        assert slots > 0;
+        this.nearCacheSlots = slots;
+        return this;
+    }
+
+    /**
+     * 启用二级缓存, 需配合 enableSqlCache 使用
+     * 本地未命中时先查询二级缓存(超时 50ms, 每批最多 64 条), 连续失败 5 次后熔断 10 秒
+     */
+    public DMNormTranslateBuilder secondLevelCache(SecondLevelSqlCache backend) {
+        return secondLevelCache(backend, 50, 64, 5, 10_000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param timeout          查询超时, 超时后本地翻译
+     * @param batchSize        单次批量请求的最大条数
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openTime         熔断时长, 期间不访问二级缓存
+     */
+    public DMNormTranslateBuilder secondLevelCache(SecondLevelSqlCache backend, long timeout, int batchSize,
+                                                   int failureThreshold, long openTime, TimeUnit timeUnit) {
+        assert null != backend;
+        assert timeout > 0 && batchSize > 0 && failureThreshold > 0 && openTime > 0;
+        this.secondLevelBackend = backend;
+        this.secondLevelTimeout = timeout;
+        this.secondLevelBatchSize = batchSize;
+        this.secondLevelFailureThreshold = failureThreshold;
+        this.secondLevelOpenTime = openTime;
+        this.secondLevelTimeUnit = timeUnit;
+        return this;
+    }
+
+    /**
+     * 启用或关闭简单 DML 的快速路径(默认启用)
+     * 单表 SELECT/INSERT/UPDATE/DELETE 不经过 Calcite 直接翻译, 结果与 Calcite 路径一致, 无法识别的语句仍交给 Calcite
+     */
+    public DMNormTranslateBuilder simpleDmlFastPath(boolean enable) {
+        this.simpleDmlFastPath = enable;
+        return this;
+    }
+
+    /**
+     * 切换翻译结果的生成方式
+     * SPLICE: 只把规则改动的表名、列名、函数按位置替换回原始SQL, 保留原有格式、注释与提示, 省去重新生成整条语句
+     */
+    public DMNormTranslateBuilder rewriteMode(SqlRewriteMode rewriteMode) {
+        assert null != rewriteMode;
+        this.rewriteMode = rewriteMode;
         return this;
     }
 
+    /**
+     * 翻译规则指纹: 方言、缓存模式、结果生成方式以及所有转换规则的配置, 任一变化都会使旧快照失效
+     */
+    public long ruleFingerprint() {
+        StringBuilder rules = new StringBuilder()
+                .append(sqlDialect.getClass().getName()).append('\n')
+                .append(sqlCacheMode).append('\n')
+                .append(rewriteMode).append('\n');
+        for (Translate translate : normTranslates) {
+            rules.append(translate.ruleFingerprint()).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rules.toString().getBytes(StandardCharsets.UTF_8));
+            long fingerprint = 0;
+            for (int i = 0; i < 8; i++) {
+                fingerprint = (fingerprint << 8) | (digest[i] & 0xff);
+            }
+            return fingerprint;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 切换缓存 key 模式, 需配合 enableSqlCache 使用
+     * TEMPLATE: 提取字符串/数值字面量后以模板作为 key, 仅字面量不同的SQL共享同一条缓存
+     */
+    public DMNormTranslateBuilder sqlCacheMode(SqlCacheMode sqlCacheMode) {
+        assert null != sqlCacheMode;
+        this.sqlCacheMode = sqlCacheMode;
+        return this;
+    }
+
+    @Override
+    public SqlCacheMode getSqlCacheMode() {
+        return sqlCacheMode;
+    }
+
     public DMNormTranslateBuilder updateSqlDialect(SqlDialect sqlDialect) {
         assert null != sqlDialect;
         this.sqlDialect = sqlDialect;
@@ -104,13 +420,68 @@ public class DMNormTranslateBuilder implements DMNorm, NormBuilder {
         return this;
     }
 
+    /**
+     * 转义作为列名使用的关键字: 默认关键字、达梦保留字({@link DMReservedWords})与 keyWords,
+     * 以双引号转义为大写的引号标识符({@link #QUOTED_EPP}), 例如 comment -> "COMMENT"。
+     * 与 keyWordTranslatorDefault 二选一
+     */
+    public DMNormTranslateBuilder keyWordTranslatorDm(String... keyWords) {
+        this.normTranslates.add(new KeyWordTranslator(QUOTED_EPP,
+                ArrayUtils.addAll(DMReservedWords.WORDS.toArray(ArrayUtils.EMPTY_STRING_ARRAY), keyWords)));
+        return this;
+    }
+
     public final <T extends Translate & DMNorm> void addNormTranslate(List<T> translates) {
         normTranslates.addAll(translates);
     }
 
-    public DMNormTranslateBuilder build() {
-        new ProvideAbility(sqlDialect, enableSqlCache, sqlConvert);
-        return this;
+    /**
+     * 以当前配置创建翻译引擎, 并注册为 sqlConvert 的转换函数。
+     * 引擎持有独立的规则快照与缓存实例, 同一个 builder 可多次 build, 各次得到的引擎互不共享状态。
+     * 被替换的引擎需要 {@link TranslationEngine#close()} 以停止其缓存线程。
+     */
+    public TranslationEngine build() {
+        assert null == snapshotFile || sqlCacheKeyMode != SqlCacheKeyMode.FINGERPRINT_UNVERIFIED;
+        SimpleSqlCache sqlCache = null;
+        NearSqlCache nearCache = null;
+        SecondLevelCacheGateway secondLevelCache = null;
+        if (enableSqlCache) {
+            sqlCache = new SimpleSqlCache(sqlCacheExpiredTime, sqlCacheTimeUnit, sqlCacheBufferTime, sqlCacheTimeUnit,
+                    sqlCacheDelThreshold, sqlCacheMaximumWeight);
+            sqlCache.useKeyMode(sqlCacheKeyMode);
+            if (offHeapCapacity > 0) {
+                sqlCache.useOffHeapValueStore(new OffHeapValueStore(offHeapCapacity, offHeapCompress));
+            }
+            if (null != snapshotFile) {
+                sqlCache.enableSnapshot(snapshotFile, ruleFingerprint(), snapshotInterval, snapshotIntervalUnit, snapshotMaxEntries);
+            }
+            if (nearCacheSlots > 0) {
+                nearCache = new NearSqlCache(sqlCache, nearCacheSlots);
+            }
+            if (null != secondLevelBackend) {
+                secondLevelCache = new SecondLevelCacheGateway(secondLevelBackend, ruleFingerprint(), secondLevelTimeout,
+                        secondLevelBatchSize, secondLevelFailureThreshold, secondLevelOpenTime, secondLevelTimeUnit);
+            }
+        }
+        TranslationEngine engine = new TranslationEngine(sqlDialect, TranslateRules.of(normTranslates), rewriteMode,
+                simpleDmlFastPath, sqlCache, sqlCacheMode,
+                singleFlightTimeout > 0 ? new SingleFlight(singleFlightTimeout, singleFlightTimeUnit) : null,
+                null != negativeCachePolicy ? new NegativeSqlCache(negativeCacheTtl, negativeCacheTimeUnit, negativeCacheMaxEntries, negativeCachePolicy) : null,
+                nearCache, secondLevelCache, ownerResolverOfRules());
+        sqlConvert.setConverter(engine::convert);
+        return engine;
+    }
+
+    /**
+     * 生效的表名规则(第一个, 与 {@link TranslateRules} 一致)按调用解析拥有者时返回其解析器
+     */
+    private OwnerResolver ownerResolverOfRules() {
+        for (Translate translate : normTranslates) {
+            if (translate instanceof TableNameTranslate) {
+                return translate instanceof OwnerOfTable ? ((OwnerOfTable) translate).getOwnerResolver() : null;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -0,0 +1,210 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 缓存快照，用于重启后的缓存预热。
+ * <p>
+ * 以紧凑的二进制格式把热点缓存项写入本地内存映射文件，启动时整体加载。
+ * 快照携带翻译规则指纹，规则发生变化(例如表拥有者、关键字列表、函数规则变更)时拒绝加载，
+ * 避免把旧规则的翻译结果带入新版本。
+ * <p>
+ * 文件格式:
+ * [magic:int][version:int][fingerprint:long][createTime:long][count:int][checksum:int]
+ * count * ([keyLength:int][key:utf8][valueLength:int][value:utf8][useSize:int]
+ *          [dependencyCount:int] dependencyCount * ([dependencyLength:int][dependency:utf8]))
+ * <p>
+ * checksum 为头部之后全部内容的 CRC32, 长度字段完好而内容损坏(例如磁盘坏块)的快照同样拒绝加载, 不会带入错误的翻译结果。
+ * 写入先落到临时文件，完成后原子替换，进程中途退出不会留下半个快照。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x53514c43;
+    private static final int VERSION = 3;
+    private static final int CHECKSUM_OFFSET = 4 + 4 + 8 + 8 + 4;
+    private static final int HEADER_SIZE = CHECKSUM_OFFSET + 4;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * 快照中的一个缓存项
+     */
+    public static final class Entry {
+        private final String key;
+        private final String value;
+        private final int useSize;
+        private final String[] dependencies;
+
+        public Entry(String key, String value, int useSize, String[] dependencies) {
+            this.key = key;
+            this.value = value;
+            this.useSize = useSize;
+            this.dependencies = dependencies;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getUseSize() {
+            return useSize;
+        }
+
+        public String[] getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * 写入快照。
+     *
+     * @param file        快照文件
+     * @param fingerprint 当前翻译规则指纹
+     * @param entries     缓存项, 按加载顺序排列
+     */
+    public static void write(Path file, long fingerprint, List<Entry> entries) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(entries.size() * 2);
+        long size = HEADER_SIZE;
+        for (Entry entry : entries) {
+            byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+            byte[] value = entry.value.getBytes(StandardCharsets.UTF_8);
+            encoded.add(key);
+            encoded.add(value);
+            size += 4 + key.length + 4 + value.length + 4 + 4;
+            for (String dependency : entry.dependencies) {
+                byte[] bytes = dependency.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                size += 4 + bytes.length;
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + size);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).putLong(System.currentTimeMillis()).putInt(entries.size())
+                    .putInt(0);
+            int index = 0;
+            for (Entry entry : entries) {
+                byte[] key = encoded.get(index++);
+                byte[] value = encoded.get(index++);
+                buffer.putInt(key.length).put(key).putInt(value.length).put(value).putInt(entry.useSize);
+                buffer.putInt(entry.dependencies.length);
+                for (int i = 0; i < entry.dependencies.length; i++) {
+                    byte[] dependency = encoded.get(index++);
+                    buffer.putInt(dependency.length).put(dependency);
+                }
+            }
+            buffer.putInt(CHECKSUM_OFFSET, checksum(buffer));
+            buffer.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 加载快照。文件不存在、格式错误或规则指纹不一致时返回空列表。
+     *
+     * @param file        快照文件
+     * @param fingerprint 当前翻译规则指纹
+     */
+    public static List<Entry> load(Path file, long fingerprint) {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                log.warn("SimpleSqlCache snapshot [{}] rejected: bad size {}", file, size);
+                return Collections.emptyList();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("SimpleSqlCache snapshot [{}] rejected: unknown format", file);
+                return Collections.emptyList();
+            }
+            long snapshotFingerprint = buffer.getLong();
+            if (snapshotFingerprint != fingerprint) {
+                log.info("SimpleSqlCache snapshot [{}] rejected: translate rules changed", file);
+                return Collections.emptyList();
+            }
+            buffer.getLong();
+            int count = buffer.getInt();
+            if (buffer.getInt() != checksum(buffer)) {
+                log.warn("SimpleSqlCache snapshot [{}] rejected: checksum mismatch", file);
+                return Collections.emptyList();
+            }
+            List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, 1 << 16)));
+            for (int i = 0; i < count; i++) {
+                String key = readString(buffer);
+                String value = readString(buffer);
+                int useSize = buffer.getInt();
+                int dependencyCount = buffer.getInt();
+                if (dependencyCount < 0 || dependencyCount > buffer.remaining() / 4) {
+                    throw new IllegalArgumentException("corrupt dependency count " + dependencyCount);
+                }
+                String[] dependencies = new String[dependencyCount];
+                for (int j = 0; j < dependencyCount; j++) {
+                    dependencies[j] = readString(buffer);
+                }
+                entries.add(new Entry(key, value, useSize, dependencies));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("trailing bytes " + buffer.remaining());
+            }
+            return entries;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("SimpleSqlCache snapshot [{}] rejected: {}", file, e.toString());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 头部之后全部内容的 CRC32, 不改变 buffer 的位置
+     */
+    private static int checksum(ByteBuffer buffer) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE).limit(body.capacity());
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("corrupt entry length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+/**
+ * 4-bit Count-Min Sketch，用于估算缓存 key 的近期访问频率(TinyLFU 准入过滤)。
+ * <p>
+ * 1. 每个 key 映射到4个计数器，频率取最小值，计数器饱和于15。
+ * 2. 累计增量达到采样上限后所有计数器减半(老化)，使频率反映近期而非历史访问。
+ * 3. 非线程安全，只由缓存维护线程 linkedActuator 访问。
+ * 4. 计数器表的长度与预估条目数相当(每个 long 含16个计数器)，上限为 {@link #MAXIMUM_TABLE_LENGTH}，
+ * 超出后估算的误差变大，但不会因为很大的 maximumWeight 分配巨大的数组。
+ *
+ * @author ztq
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * 计数器表的最大长度(8 MB), 足以支撑百万级条目的估算
+     */
+    static final int MAXIMUM_TABLE_LENGTH = 1 << 20;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param expectedSize 预估的缓存条目数，决定计数器表大小
+     */
+    FrequencySketch(long expectedSize) {
+        int maximum = (int) Math.min(Math.max(expectedSize, 16), MAXIMUM_TABLE_LENGTH);
+        int length = Integer.highestOneBit(maximum - 1) << 1;
+        table = new long[length];
+        tableMask = length - 1;
+        sampleSize = (int) Math.min(10L * maximum, Integer.MAX_VALUE);
+    }
+
+    int tableLength() {
+        return table.length;
+    }
+
+    /**
+     * 估算频率，范围 [0, 15]
+     */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 频率加一，达到采样上限时整体老化
+     */
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
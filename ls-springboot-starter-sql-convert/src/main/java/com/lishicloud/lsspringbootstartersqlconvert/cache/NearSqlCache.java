@@ -0,0 +1,178 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程私有的近端缓存(L1)，位于共享的 {@link SimpleSqlCache}(L2) 之前。
+ * <p>
+ * 请求线程大多反复执行同样的几百条 SQL，L1 命中时只访问当前线程自己的数组，不读写任何共享结构。
+ * <p>
+ * 1. 每个线程一个固定大小的两路组相联表(按 key 散列到组，组内两个槽位，替换较早使用的一个)，不加锁、不扩容。
+ * 直接映射表在几百条 SQL 时冲突率就有 20% 以上，两路组相联基本消除了冲突。
+ * 2. 一致性: 每个槽位记录填充时 {@link SimpleSqlCache#generation()} 的值，L2 每次失效(无论是否还有受影响的缓存项)、
+ * 显式移除与值替换都会递增代数，代数不一致的槽位视为未命中。这些操作很少发生，命中路径上读取的代数几乎总在本核缓存中。
+ * 代数在读取 L2 之前获取，保证不会把失效前读到的旧值标记为新代数。
+ * 3. L1 命中只累加线程私有的计数，每个线程累计 {@link #FLUSH_HITS} 次命中或槽位被替换时，
+ * 才把各槽位的命中数批量提交给 L2(每个节点一次)，L2 据此维护使用次数、访问时间与频率，
+ * 主要由 L1 提供服务的 SQL 不会在 L2 中显得空闲而被过期或淘汰。提交前每个线程至多滞后 FLUSH_HITS - 1 次命中，
+ * {@link #nearHitCount()} 同样按批累加。
+ *
+ * @author ztq
+ */
+public final class NearSqlCache {
+
+    /**
+     * 每个线程累计多少次 L1 命中后提交给 L2
+     */
+    static final int FLUSH_HITS = 64;
+
+    private final SimpleSqlCache shared;
+    private final int slots;
+    private final ThreadLocal<Local> locals;
+
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param shared 共享的 L2
+     * @param slots  每个线程的槽位数, 向上取整为2的幂(至少为2)
+     */
+    public NearSqlCache(SimpleSqlCache shared, int slots) {
+        assert null != shared && slots > 0;
+        this.shared = shared;
+        int size = 2;
+        while (size < slots) {
+            size <<= 1;
+        }
+        this.slots = size;
+        this.locals = ThreadLocal.withInitial(() -> new Local(this.slots));
+    }
+
+    /**
+     * 依次查找 L1、L2, L2 命中时填充 L1
+     */
+    @Nullable
+    public String get(String key) {
+        Local local = locals.get();
+        int hash = key.hashCode();
+        int set = (hash ^ (hash >>> 16) ^ (hash >>> 8)) & ((slots >>> 1) - 1);
+        int first = set << 1;
+        long generation = shared.generation();
+        for (int index = first; index <= first + 1; index++) {
+            String cachedKey = local.keys[index];
+            if (null != cachedKey && local.generations[index] == generation && cachedKey.equals(key)) {
+                local.recent[set] = (byte) (index - first);
+                local.pending[index]++;
+                if (++local.pendingTotal >= FLUSH_HITS) {
+                    flush(local);
+                }
+                return local.values[index];
+            }
+        }
+        String value = shared.get(key, local.hitNode);
+        if (null == value) {
+            misses.increment();
+            return null;
+        }
+        sharedHits.increment();
+        // 替换组内较早使用的槽位
+        int way = 1 - local.recent[set];
+        int index = first + way;
+        flushSlot(local, index);
+        local.keys[index] = key;
+        local.values[index] = value;
+        local.nodes[index] = local.hitNode[0];
+        local.hitNode[0] = null;
+        local.generations[index] = generation;
+        local.recent[set] = (byte) way;
+        return value;
+    }
+
+    /**
+     * 立即提交当前线程累计的 L1 命中
+     */
+    void flushHits() {
+        flush(locals.get());
+    }
+
+    private void flush(Local local) {
+        for (int index = 0; index < slots && local.pendingTotal > 0; index++) {
+            flushSlot(local, index);
+        }
+    }
+
+    private void flushSlot(Local local, int index) {
+        int hits = local.pending[index];
+        if (hits > 0) {
+            local.pending[index] = 0;
+            local.pendingTotal -= hits;
+            nearHits.add(hits);
+            shared.recordHits(local.nodes[index], hits);
+        }
+    }
+
+    /**
+     * L1 命中次数(已提交的部分)
+     */
+    public long nearHitCount() {
+        return nearHits.sum();
+    }
+
+    /**
+     * L1 未命中、L2 命中次数
+     */
+    public long sharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    /**
+     * 两级均未命中次数
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * L1 命中率
+     */
+    public double nearHitRate() {
+        long near = nearHitCount();
+        long total = near + sharedHitCount() + missCount();
+        return total == 0 ? 0 : (double) near / total;
+    }
+
+    /**
+     * L2 命中率(只统计 L1 未命中的查找)
+     */
+    public double sharedHitRate() {
+        long shared = sharedHitCount();
+        long total = shared + missCount();
+        return total == 0 ? 0 : (double) shared / total;
+    }
+
+    private static final class Local {
+        private final String[] keys;
+        private final String[] values;
+        // 值所在的 L2 节点, 用于记录访问
+        private final SimpleSqlCache.CacheNode[] nodes;
+        private final long[] generations;
+        // 每组最近命中的槽位(0 或 1)
+        private final byte[] recent;
+        // 各槽位尚未提交给 L2 的命中数及其总和
+        private final int[] pending;
+        private int pendingTotal;
+        // 接收 L2 命中的节点, 避免每次填充分配
+        private final SimpleSqlCache.CacheNode[] hitNode = new SimpleSqlCache.CacheNode[1];
+
+        Local(int slots) {
+            keys = new String[slots];
+            values = new String[slots];
+            nodes = new SimpleSqlCache.CacheNode[slots];
+            generations = new long[slots];
+            recent = new byte[slots >>> 1];
+            pending = new int[slots];
+        }
+    }
+}
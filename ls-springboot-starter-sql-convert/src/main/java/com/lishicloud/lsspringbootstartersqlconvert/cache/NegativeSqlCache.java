@@ -0,0 +1,189 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import com.google.common.collect.Maps;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.NegativeCachePolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无法翻译的 SQL 的负缓存。
+ * <p>
+ * 解析失败或语句类型不受支持(DDL、ORDER BY 根节点、UNION、MERGE 等)的 SQL 每次都会重新解析并失败，
+ * 批处理反复发送同一条 DDL 时代价很高。负缓存记住每条 SQL 的失败，在有效期内直接按 {@link NegativeCachePolicy} 处理:
+ * 原样返回或抛出以首次失败的异常为 cause 的新异常，不再解析。
+ * <p>
+ * 1. 与 {@link SimpleSqlCache} 相互独立，有自己的有效期，翻译规则修复后失败记录会自然过期。
+ * 2. 条目数有上限，记录按写入顺序排队(所有记录的有效期相同，写入顺序即过期顺序)，
+ * 每次写入从队首清理已过期的记录，仍然写满则淘汰最早的记录(计入 evictions)，每条记录至多出队一次，写入的摊还成本为 O(1)。
+ * 3. 只有首次失败打印日志。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class NegativeSqlCache {
+
+    private final ConcurrentMap<String, Failure> failures = Maps.newConcurrentMap();
+
+    /**
+     * 记录的写入顺序, 可能含有已被移除或覆盖的记录, 出队时跳过
+     */
+    private final Queue<Failure> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final NegativeCachePolicy policy;
+    private final Ticker ticker;
+
+    /**
+     * 命中负缓存(跳过解析)的次数
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * 记录的失败次数
+     */
+    private final LongAdder records = new LongAdder();
+
+    /**
+     * 因条目数达到上限而提前淘汰的记录数
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    public NegativeSqlCache(long ttl, TimeUnit timeUnit, int maxEntries, NegativeCachePolicy policy) {
+        this(ttl, timeUnit, maxEntries, policy, Ticker.SYSTEM);
+    }
+
+    public NegativeSqlCache(long ttl, TimeUnit timeUnit, int maxEntries, NegativeCachePolicy policy, Ticker ticker) {
+        assert ttl > 0 && maxEntries > 0;
+        assert null != policy && null != ticker;
+        this.ttlMillis = timeUnit.toMillis(ttl);
+        this.maxEntries = maxEntries;
+        this.policy = policy;
+        this.ticker = ticker;
+    }
+
+    /**
+     * 查找 SQL 的失败记录。
+     *
+     * @return 未记录或已过期时返回 null; 否则按策略处理: PASSTHROUGH 返回原始 SQL, RETHROW 抛出以记录的异常为 cause 的新异常
+     */
+    @Nullable
+    public String lookup(String sql) {
+        Failure failure = failures.get(sql);
+        if (failure == null) {
+            return null;
+        }
+        if (ticker.read() - failure.createTime > ttlMillis) {
+            failures.remove(sql, failure);
+            return null;
+        }
+        hits.increment();
+        if (policy == NegativeCachePolicy.PASSTHROUGH) {
+            return sql;
+        }
+        throw copyOf(failure.exception);
+    }
+
+    /**
+     * 记录一次失败并按策略处理: PASSTHROUGH 时正常返回, 由调用方原样返回 SQL。
+     *
+     * @throws RuntimeException RETHROW 时抛出 exception
+     */
+    public void record(String sql, RuntimeException exception) {
+        log.warn("SQLDialect --> untranslatable sql, cached for {} ms : [{}], cause : {}", ttlMillis, sql, exception.toString());
+        long now = ticker.read();
+        evict(now);
+        Failure failure = new Failure(sql, exception, now);
+        failures.put(sql, failure);
+        insertionOrder.add(failure);
+        records.increment();
+        if (policy == NegativeCachePolicy.RETHROW) {
+            throw exception;
+        }
+    }
+
+    /**
+     * 从队首移除已过期的记录, 条目数仍达到上限时继续移除最早的记录
+     */
+    private void evict(long now) {
+        Failure head;
+        while ((head = insertionOrder.peek()) != null) {
+            boolean expired = now - head.createTime > ttlMillis;
+            if (!expired && failures.size() < maxEntries) {
+                return;
+            }
+            if (insertionOrder.remove(head) && failures.remove(head.sql, head) && !expired) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 记录的异常被所有命中的线程共享, 命中时抛出新的异常(保持类型与消息, 以记录的异常为 cause),
+     * 避免多个线程同时抛出、修改同一个异常实例(堆栈、suppressed 列表)。{@link SingleFlight} 的等待方同样使用
+     */
+    static RuntimeException copyOf(RuntimeException recorded) {
+        if (recorded instanceof UnsupportedOperationException) {
+            return new UnsupportedOperationException(recorded.getMessage(), recorded);
+        }
+        return new RuntimeException(recorded.getMessage(), recorded);
+    }
+
+    /**
+     * 清空失败记录, 例如翻译规则变更后
+     */
+    public void invalidateAll() {
+        failures.clear();
+        insertionOrder.clear();
+    }
+
+    public NegativeCachePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 命中负缓存(跳过解析)的次数
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 记录的失败次数
+     */
+    public long recordCount() {
+        return records.sum();
+    }
+
+    /**
+     * 因条目数达到上限而提前淘汰的记录数
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 当前记录数(可能包含尚未清理的过期记录)
+     */
+    public int size() {
+        return failures.size();
+    }
+
+    private static final class Failure {
+        private final String sql;
+        private final RuntimeException exception;
+        private final long createTime;
+
+        Failure(String sql, RuntimeException exception, long createTime) {
+            this.sql = sql;
+            this.exception = exception;
+            this.createTime = createTime;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 翻译结果的堆外存储。
+ * <p>
+ * 大 SQL(几十到几百 KB)以 String 形式常驻堆内会撑大老年代并拉长 GC 停顿，
+ * 启用后缓存节点只持有一个 long 句柄和一个 int 戳记，值本身存放在 DirectByteBuffer 中。
+ * <p>
+ * 1. Slab 分配器: 按固定大小申请 slab，slab 内按2的幂切分 chunk，每个尺寸级别维护独立的空闲链，释放后复用。
+ * 2. 读取通常不加锁: 以 {@link StampedLock} 的乐观读复制数据，复制后校验期间没有分配或释放
+ *    (校验带有读屏障，保证复制的字节不是被改写到一半的数据)；校验失败时改为持有读锁重新复制。
+ *    数据复制到线程私有的缓冲中，命中时只创建结果字符串。
+ *    chunk 头部保存分配戳记，chunk 已被释放或复用时读取失败(按未命中处理)。
+ * 3. 分配与释放持有写锁，它们只出现在未命中后的 put 和维护线程的淘汰上。
+ * 4. 可选压缩: 超过阈值的值使用 Deflater(BEST_SPEED) 压缩后存储，压缩与解压都在锁外进行。
+ * <p>
+ * chunk 布局: [stamp:int][storedLength:int][rawLength:int][data...], rawLength 为 -1 表示未压缩。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class OffHeapValueStore {
+
+    /**
+     * 单个 slab 大小, 超过此大小的值不进入堆外
+     */
+    static final int SLAB_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * 最小 chunk 为 2^MIN_SHIFT 字节
+     */
+    private static final int MIN_SHIFT = 6;
+    private static final int HEADER_SIZE = 12;
+    private static final int UNCOMPRESSED = -1;
+
+    /**
+     * 超过此字节数的值才尝试压缩
+     */
+    private static final int COMPRESS_THRESHOLD = 4096;
+
+    /**
+     * 读取缓冲的初始大小与常驻上限(字节)
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAINED_CAPACITY = 256 * 1024;
+
+    private final long capacity;
+    private final boolean compress;
+
+    /**
+     * slab 数组, 写时复制, 读取方无锁访问
+     */
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /**
+     * 写锁保护分配、释放与 chunk 内容的修改, 读取方使用乐观读
+     */
+    private final StampedLock lock = new StampedLock();
+
+    private final ThreadLocal<ReadBuffer> readBuffers = ThreadLocal.withInitial(ReadBuffer::new);
+
+    /**
+     * 以下字段只在持有写锁时访问
+     */
+    private final ArrayDeque<Long>[] freeLists;
+    private int bumpSlab = -1;
+    private int bumpOffset = SLAB_SIZE;
+    private int stampSequence = 0;
+    private long allocatedBytes = 0;
+
+    /**
+     * @param capacity 堆外容量上限(字节)
+     * @param compress 是否压缩大值
+     */
+    // 泛型数组无法直接创建, 元素均为 ArrayDeque<Long>, 转换是安全的
+    @SuppressWarnings("unchecked")
+    public OffHeapValueStore(long capacity, boolean compress) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        this.compress = compress;
+        int classes = Integer.numberOfTrailingZeros(SLAB_SIZE) - MIN_SHIFT + 1;
+        this.freeLists = (ArrayDeque<Long>[]) new ArrayDeque<?>[classes];
+        for (int i = 0; i < classes; i++) {
+            freeLists[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 写入一个值。
+     *
+     * @return 写入成功返回 {@link Slot}，容量不足或值过大时返回 null，调用方应保留堆内存储。
+     */
+    @Nullable
+    public Slot write(String value) {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        byte[] data = raw;
+        int rawLength = UNCOMPRESSED;
+        if (compress && raw.length >= COMPRESS_THRESHOLD) {
+            byte[] deflated = deflate(raw);
+            if (deflated.length < raw.length) {
+                data = deflated;
+                rawLength = raw.length;
+            }
+        }
+        int need = HEADER_SIZE + data.length;
+        if (need > SLAB_SIZE) {
+            return null;
+        }
+        int sizeClass = sizeClassOf(need);
+        long writeStamp = lock.writeLock();
+        try {
+            long address = allocate(sizeClass);
+            if (address < 0) {
+                return null;
+            }
+            int stamp = ++stampSequence == 0 ? ++stampSequence : stampSequence;
+            ByteBuffer slab = slabs[slabOf(address)].duplicate();
+            int offset = offsetOf(address);
+            slab.putInt(offset + 4, data.length);
+            slab.putInt(offset + 8, rawLength);
+            slab.position(offset + HEADER_SIZE);
+            slab.put(data);
+            slab.putInt(offset, stamp);
+            return new Slot(address, stamp, sizeClass);
+        } finally {
+            lock.unlockWrite(writeStamp);
+        }
+    }
+
+    /**
+     * 读取一个值，chunk 已被释放或复用时返回 null。
+     * 数据复制到当前线程的读取缓冲中, 命中时只创建结果字符串。
+     */
+    @Nullable
+    public String read(Slot slot) {
+        ReadBuffer buffer = readBuffers.get();
+        try {
+            int storedLength;
+            long optimistic = lock.tryOptimisticRead();
+            try {
+                storedLength = copy(slot, buffer);
+            } catch (RuntimeException e) {
+                // 并发改写时可能读到不一致的长度, 以校验结果为准
+                storedLength = -1;
+            }
+            if (!lock.validate(optimistic)) {
+                long readStamp = lock.readLock();
+                try {
+                    storedLength = copy(slot, buffer);
+                } finally {
+                    lock.unlockRead(readStamp);
+                }
+            }
+            if (storedLength < 0) {
+                return null;
+            }
+            if (buffer.rawLength == UNCOMPRESSED) {
+                return new String(buffer.data, 0, storedLength, StandardCharsets.UTF_8);
+            }
+            byte[] raw = buffer.inflate(storedLength);
+            return raw == null ? null : new String(raw, 0, buffer.rawLength, StandardCharsets.UTF_8);
+        } finally {
+            buffer.trim();
+        }
+    }
+
+    /**
+     * 把 chunk 的内容复制到读取缓冲, 返回存储的字节数; 戳记不一致(已被释放或复用)时返回 -1。
+     * 需持有读锁, 或在乐观读中调用并在之后校验。
+     */
+    private int copy(Slot slot, ReadBuffer buffer) {
+        ByteBuffer[] current = slabs;
+        int slabIndex = slabOf(slot.address);
+        if (slabIndex >= current.length) {
+            return -1;
+        }
+        ByteBuffer slab = buffer.view(current, slabIndex);
+        int offset = offsetOf(slot.address);
+        if (slab.getInt(offset) != slot.stamp) {
+            return -1;
+        }
+        int storedLength = slab.getInt(offset + 4);
+        int rawLength = slab.getInt(offset + 8);
+        if (storedLength < 0 || storedLength > SLAB_SIZE - HEADER_SIZE) {
+            return -1;
+        }
+        slab.position(offset + HEADER_SIZE);
+        slab.get(buffer.data(storedLength), 0, storedLength);
+        buffer.rawLength = rawLength;
+        return storedLength;
+    }
+
+    /**
+     * 释放一个值，之后持有旧句柄的读取都会失败。
+     */
+    public void free(Slot slot) {
+        long writeStamp = lock.writeLock();
+        try {
+            ByteBuffer[] current = slabs;
+            int slabIndex = slabOf(slot.address);
+            if (slabIndex >= current.length) {
+                return;
+            }
+            ByteBuffer slab = current[slabIndex];
+            int offset = offsetOf(slot.address);
+            if (slab.getInt(offset) != slot.stamp) {
+                return;
+            }
+            slab.putInt(offset, 0);
+            freeLists[slot.sizeClass].push(slot.address);
+        } finally {
+            lock.unlockWrite(writeStamp);
+        }
+    }
+
+    /**
+     * 已申请的堆外字节数
+     */
+    public long allocatedBytes() {
+        long readStamp = lock.readLock();
+        try {
+            return allocatedBytes;
+        } finally {
+            lock.unlockRead(readStamp);
+        }
+    }
+
+    /**
+     * 释放全部 slab, DirectByteBuffer 的内存随其回收
+     */
+    public void release() {
+        long writeStamp = lock.writeLock();
+        try {
+            slabs = new ByteBuffer[0];
+            for (ArrayDeque<Long> freeList : freeLists) {
+                freeList.clear();
+            }
+            bumpSlab = -1;
+            bumpOffset = SLAB_SIZE;
+            allocatedBytes = 0;
+        } finally {
+            lock.unlockWrite(writeStamp);
+        }
+        log.info("OffHeapValueStore Release Successful!");
+    }
+
+    private long allocate(int sizeClass) {
+        Long reused = freeLists[sizeClass].poll();
+        if (reused != null) {
+            return reused;
+        }
+        int chunkSize = 1 << (sizeClass + MIN_SHIFT);
+        if (bumpOffset + chunkSize > SLAB_SIZE) {
+            if (allocatedBytes + SLAB_SIZE > capacity) {
+                return -1;
+            }
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+            grown[grown.length - 1] = ByteBuffer.allocateDirect(SLAB_SIZE);
+            allocatedBytes += SLAB_SIZE;
+            slabs = grown;
+            bumpSlab = grown.length - 1;
+            bumpOffset = 0;
+        }
+        long address = ((long) bumpSlab << 32) | bumpOffset;
+        bumpOffset += chunkSize;
+        return address;
+    }
+
+    private static int sizeClassOf(int need) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(need, 1 << MIN_SHIFT) - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 线程私有的读取缓冲: 各 slab 的视图、复制出的数据、解压结果与 Inflater 都在多次读取间复用。
+     * 超过 {@link #RETAINED_CAPACITY} 的数组只用于本次读取, 不常驻线程。
+     * 视图引用着 slab, 存储释放后由 ThreadLocal 随存储本身回收, 与 {@link NearSqlCache} 的线程私有副本相同
+     */
+    private static final class ReadBuffer {
+
+        /**
+         * 创建 views 时的 slab 数组, slab 数组替换后(扩容或释放)视图随之重建
+         */
+        private ByteBuffer[] source;
+        private ByteBuffer[] views;
+        private byte[] data = new byte[INITIAL_CAPACITY];
+        private byte[] raw = new byte[INITIAL_CAPACITY];
+        private Inflater inflater;
+        private int rawLength;
+
+        private ByteBuffer view(ByteBuffer[] current, int slabIndex) {
+            if (source != current) {
+                source = current;
+                views = new ByteBuffer[current.length];
+            }
+            ByteBuffer view = views[slabIndex];
+            if (null == view) {
+                view = current[slabIndex].duplicate();
+                views[slabIndex] = view;
+            }
+            return view;
+        }
+
+        private byte[] data(int length) {
+            if (data.length < length) {
+                data = new byte[length];
+            }
+            return data;
+        }
+
+        @Nullable
+        private byte[] inflate(int storedLength) {
+            if (rawLength < 0) {
+                return null;
+            }
+            if (raw.length < rawLength) {
+                raw = new byte[rawLength];
+            }
+            if (null == inflater) {
+                inflater = new Inflater();
+            } else {
+                inflater.reset();
+            }
+            try {
+                inflater.setInput(data, 0, storedLength);
+                int n = inflater.inflate(raw, 0, rawLength);
+                return n == rawLength ? raw : null;
+            } catch (DataFormatException e) {
+                log.error("OffHeapValueStore inflate failed: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        private void trim() {
+            if (data.length > RETAINED_CAPACITY) {
+                data = new byte[INITIAL_CAPACITY];
+            }
+            if (raw.length > RETAINED_CAPACITY) {
+                raw = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * 堆外值的句柄: 地址(slab 序号 + 偏移)、分配戳记、尺寸级别
+     */
+    public static final class Slot {
+        private final long address;
+        private final int stamp;
+        private final int sizeClass;
+
+        Slot(long address, int stamp, int sizeClass) {
+            this.address = address;
+            this.stamp = stamp;
+            this.sizeClass = sizeClass;
+        }
+    }
+}
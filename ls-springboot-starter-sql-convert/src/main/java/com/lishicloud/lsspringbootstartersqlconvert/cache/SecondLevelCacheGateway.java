@@ -0,0 +1,378 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import com.lishicloud.lsspringbootstartersqlconvert.translate.Pipeline;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二级翻译缓存的访问入口，包装一个 {@link SecondLevelSqlCache} 实现。
+ * <p>
+ * 1. 批量: 查询与写入先进入有界队列，由单一派发线程合并为 getAll/putAll 批量请求，
+ * 并发未命中的多条 SQL 只产生一次往返。
+ * 2. 超时: 查询最多等待 timeout，超时按未命中处理，调用方继续本地翻译；写入不等待结果。
+ * 3. 熔断: 连续失败(超时或异常)达到阈值后熔断 openMillis，期间不访问后端，直接按未命中处理；
+ * 熔断到期后进入半开状态，只放行一个查询作为探测，成功则恢复正常，失败则重新熔断 openMillis；
+ * 半开期间其余查询与全部写入仍按未命中处理，后端恢复前不会被积压的请求一起压垮。
+ * 4. 降级: 队列已满、熔断中、后端异常都只会退回本地翻译，二级缓存不可用不影响翻译结果。
+ * 5. 命名空间: key 以翻译规则指纹为前缀，规则不同的实例互不共享翻译结果。
+ * 6. 翻译依赖随值一起存储，从二级缓存加载的缓存项同样可以按依赖失效。
+ *
+ * @author ztq
+ */
+@Slf4j
+public class SecondLevelCacheGateway extends Pipeline implements AutoCloseable {
+
+    private static final char DEPENDENCY_SEPARATOR = '\n';
+    private static final char VALUE_SEPARATOR = '\u0000';
+
+    private final SecondLevelSqlCache backend;
+    private final String namespace;
+    private final long timeoutNanos;
+    private final int batchSize;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final BlockingQueue<Request> requests;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 熔断状态: 为 0 时关闭; 非 0 且未到期时打开; 到期后半开, 由 probing 保证只有一个探测查询
+     */
+    private volatile long openUntil = 0;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param backend          二级缓存实现
+     * @param ruleFingerprint  翻译规则指纹, 作为 key 的命名空间
+     * @param timeout          查询超时
+     * @param batchSize        单次批量请求的最大条数
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openTime         熔断时长
+     */
+    public SecondLevelCacheGateway(SecondLevelSqlCache backend, long ruleFingerprint, long timeout, int batchSize,
+                                   int failureThreshold, long openTime, TimeUnit timeUnit) {
+        super();
+        assert null != backend;
+        assert timeout > 0 && batchSize > 0 && failureThreshold > 0 && openTime > 0;
+        this.backend = backend;
+        this.namespace = Long.toHexString(ruleFingerprint) + ':';
+        this.timeoutNanos = timeUnit.toNanos(timeout);
+        this.batchSize = batchSize;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = timeUnit.toMillis(openTime);
+        this.requests = new ArrayBlockingQueue<>(batchSize * 16);
+        this.dispatcher = new Thread(this::dispatch, "SecondLevelCache-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 二级缓存中的翻译结果与翻译依赖
+     */
+    public static final class Loaded {
+        private final String value;
+        private final String[] dependencies;
+
+        Loaded(String value, String[] dependencies) {
+            this.value = value;
+            this.dependencies = dependencies;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String[] getDependencies() {
+            return dependencies;
+        }
+    }
+
+    /**
+     * 查询二级缓存, 最多阻塞 timeout。
+     *
+     * @return 未命中、超时、熔断或后端异常时返回 null
+     */
+    @Nullable
+    public Loaded get(String key) {
+        boolean probe = false;
+        long until = openUntil;
+        if (until != 0) {
+            if (System.currentTimeMillis() < until || !probing.compareAndSet(false, true)) {
+                fallbacks.increment();
+                return null;
+            }
+            probe = true;
+        }
+        Request request = new Request(namespace + key, null);
+        if (!requests.offer(request)) {
+            if (probe) {
+                probing.set(false);
+            }
+            fallbacks.increment();
+            return null;
+        }
+        String encoded;
+        try {
+            encoded = request.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            if (probe) {
+                reopen(e);
+            } else {
+                recordFailure(e);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (probe) {
+                probing.set(false);
+            }
+            fallbacks.increment();
+            return null;
+        }
+        if (probe) {
+            closeCircuit();
+        } else {
+            consecutiveFailures.set(0);
+        }
+        if (null == encoded) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return decode(encoded);
+    }
+
+    /**
+     * 异步写入二级缓存, 不等待结果, 队列已满、熔断中或半开时丢弃
+     */
+    public void put(String key, String value, String[] dependencies) {
+        if (openUntil != 0 || !requests.offer(new Request(namespace + key, encode(value, dependencies)))) {
+            fallbacks.increment();
+        }
+    }
+
+    /**
+     * 关闭状态下的失败计数, 达到阈值时熔断; 熔断或半开期间到达的(较早请求的)失败不再计数
+     */
+    private void recordFailure(Throwable e) {
+        fallbacks.increment();
+        if (openUntil == 0 && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            consecutiveFailures.set(0);
+            openUntil = System.currentTimeMillis() + openMillis;
+            log.warn("SecondLevelCache circuit open for {} ms, cause : {}", openMillis, e.toString());
+        }
+    }
+
+    /**
+     * 半开探测失败, 重新熔断
+     */
+    private void reopen(Exception e) {
+        fallbacks.increment();
+        openUntil = System.currentTimeMillis() + openMillis;
+        probing.set(false);
+        log.warn("SecondLevelCache probe failed, circuit open for {} ms, cause : {}", openMillis, e.toString());
+    }
+
+    /**
+     * 半开探测成功, 恢复正常
+     */
+    private void closeCircuit() {
+        consecutiveFailures.set(0);
+        openUntil = 0;
+        probing.set(false);
+        log.info("SecondLevelCache probe succeeded, circuit closed");
+    }
+
+    /**
+     * 派发线程: 取出一批请求, 查询合并为 getAll, 写入合并为 putAll
+     */
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Request first = requests.poll(100, TimeUnit.MILLISECONDS);
+                if (null == first) {
+                    continue;
+                }
+                batch.add(first);
+                requests.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("SecondLevelCache dispatch failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Request> batch) {
+        batches.increment();
+        List<Request> gets = new ArrayList<>(batch.size());
+        Map<String, String> puts = new LinkedHashMap<>();
+        for (Request request : batch) {
+            if (null == request.value) {
+                gets.add(request);
+            } else {
+                puts.put(request.key, request.value);
+            }
+        }
+        if (!gets.isEmpty()) {
+            List<String> keys = new ArrayList<>(gets.size());
+            for (Request request : gets) {
+                keys.add(request.key);
+            }
+            CompletableFuture<Map<String, String>> future;
+            try {
+                future = backend.getAll(keys);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((found, e) -> {
+                for (Request request : gets) {
+                    if (null != e) {
+                        request.result.completeExceptionally(e);
+                    } else {
+                        request.result.complete(found.get(request.key));
+                    }
+                }
+            });
+        }
+        if (!puts.isEmpty()) {
+            try {
+                backend.putAll(puts).whenComplete((v, e) -> {
+                    if (null != e) {
+                        recordFailure(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                recordFailure(e);
+            }
+        }
+    }
+
+    private static String encode(String value, String[] dependencies) {
+        StringBuilder builder = new StringBuilder(value.length() + 16 * dependencies.length + 1);
+        for (String dependency : dependencies) {
+            builder.append(dependency).append(DEPENDENCY_SEPARATOR);
+        }
+        return builder.append(VALUE_SEPARATOR).append(value).toString();
+    }
+
+    @Nullable
+    private static Loaded decode(String encoded) {
+        int split = encoded.indexOf(VALUE_SEPARATOR);
+        if (split < 0) {
+            return null;
+        }
+        String value = encoded.substring(split + 1);
+        if (split == 0) {
+            return new Loaded(value, ArrayUtils.EMPTY_STRING_ARRAY);
+        }
+        List<String> dependencies = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < split; i++) {
+            if (encoded.charAt(i) == DEPENDENCY_SEPARATOR) {
+                dependencies.add(encoded.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return new Loaded(value, dependencies.toArray(ArrayUtils.EMPTY_STRING_ARRAY));
+    }
+
+    /**
+     * 二级缓存命中次数
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * 二级缓存未命中次数(后端正常应答)
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 降级次数: 超时、后端异常、熔断中或队列已满
+     */
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * 发往后端的批量请求数
+     */
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * 是否处于熔断中(含等待探测结果的半开状态)
+     */
+    public boolean isCircuitOpen() {
+        return openUntil != 0;
+    }
+
+    /**
+     * 停止派发线程并关闭后端, 同时从关闭钩子中注销; 重复调用无效
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    protected void destroy() {
+        synchronized (DESTROY_LOCK) {
+            running = false;
+            dispatcher.interrupt();
+            try {
+                backend.close();
+            } catch (Exception e) {
+                log.error("SecondLevelCache close backend failed: {}", e.getMessage(), e);
+            }
+            log.info("SecondLevelCacheGateway Destroy Successful!");
+        }
+    }
+
+    private static final class Request {
+        private final String key;
+        // 为 null 表示查询
+        private final String value;
+        private final CompletableFuture<String> result;
+
+        Request(String key, @Nullable String value) {
+            this.key = key;
+            this.value = value;
+            this.result = null == value ? new CompletableFuture<>() : null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 二级翻译缓存 SPI。
+ * <p>
+ * 多个实例执行同一批 SQL 时，本地缓存未命中后先查询共享存储，命中则跳过解析与翻译。
+ * 实现只负责存取，批量合并、超时、熔断与降级由 {@link SecondLevelCacheGateway} 统一处理，
+ * 参考实现见 {@link com.lishicloud.lsspringbootstartersqlconvert.cache.impl.LoopbackSqlCacheClient}。
+ * <p>
+ * 实现要求:
+ * 1. 方法不应阻塞调用线程，通过返回的 future 异步完成；失败时以异常完成 future。
+ * 2. key 与 value 均为不透明字符串，实现不需要理解其内容。
+ *
+ * @author ztq
+ */
+public interface SecondLevelSqlCache extends AutoCloseable {
+
+    /**
+     * 批量查询。
+     *
+     * @param keys 缓存 key
+     * @return 命中的 key -> value, 未命中的 key 不出现在结果中
+     */
+    CompletableFuture<Map<String, String>> getAll(List<String> keys);
+
+    /**
+     * 批量写入。
+     *
+     * @param entries key -> value
+     */
+    CompletableFuture<Void> putAll(Map<String, String> entries);
+
+    /**
+     * 释放连接等资源
+     */
+    @Override
+    default void close() {
+    }
+}
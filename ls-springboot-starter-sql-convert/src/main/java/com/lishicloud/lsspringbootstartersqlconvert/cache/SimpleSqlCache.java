@@ -1,16 +1,27 @@
 package com.lishicloud.lsspringbootstartersqlconvert.cache;
 
 import com.google.common.collect.Maps;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheKeyMode;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.Pipeline;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nullable;
-import java.lang.ref.SoftReference;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.LockSupport;
 
 /**
@@ -18,30 +29,69 @@ import java.util.concurrent.locks.LockSupport;
  * 它特别适用于频繁执行的模板化 SQL 查询，例如 "SELECT * FROM XX WHERE XX.ID = ?"。
  * <p>
  * 该缓存系统的特点包括：
- * 1. 使用软引用存储缓存项，优化内存使用并减轻内存压力。
- * 2. 利用优先级队列管理缓存操作，确保高效处理缓存添加、更新和清理任务。
- * 3. 基于链表的策略动态管理缓存项，支持高效的缓存项访问和淘汰。
- * 4. 自我资源管理，通过智能过期策略和缓冲时间设置，减少频繁的缓存清理操作。
+ * 1. 按 key + value 长度计算权重，总权重受 maximumWeight 约束，淘汰确定且不依赖软引用/GC。
+ * 2. 命中路径只做 map 读取并向分段有损缓冲区记录访问(使用次数在超过阈值前直接累加到节点，不会丢失)，写操作经命令队列交由单线程批量处理。
+ * 3. 基于链表的策略动态管理缓存项，超出容量时以 TinyLFU 频率估算决定准入，避免一次性SQL挤出热点模板。
+ * 4. 自我资源管理，通过分层时间轮回收过期项(与访问顺序无关)，并随维护线程按固定节奏推进。
  * 5. 最大化的无锁设计，提高并发处理能力。
+ * 6. 可选的堆外值存储，大 SQL 的翻译结果存放在堆外，节点只持有句柄。
+ * 7. 可选的持久化快照，定时及销毁时写入热点缓存项，重启后整体加载以避免冷启动。
+ * 8. 可选的 128 位指纹 key，长 SQL 的查找只需一次遍历计算指纹，比较与 SQL 长度无关。
+ * 9. 记录每个缓存项的翻译依赖(表、关键字、函数)，规则变更时按依赖失效，耗时与受影响的条目数成正比。
+ * 10. 内置统计(分段计数器，常开)，通过 {@link #stats()} 获取快照。
  * <p>
  * 此缓存实现适合需要高性能和灵活内存管理的应用场景，尤其适合于数据访问模式具有高度动态性的环境。
  *
  * @author ztq
  */
 @Slf4j
-public class SimpleSqlCache extends Pipeline {
+public class SimpleSqlCache extends Pipeline implements AutoCloseable {
 
-    // 使用线程安全的 ConcurrentMap 作为缓存存储
-    private static Map<String, CacheNode> simpleCache = Maps.newConcurrentMap();
+    // 使用线程安全的 ConcurrentMap 作为缓存存储, key 为 SQL 全文或其指纹, 由 keyMode 决定
+    private Map<Object, CacheNode> simpleCache = Maps.newConcurrentMap();
 
-    // 优先级命令队列，用于按优先级顺序处理缓存命令
-    private static Queue<LikedCommand> linkedCommands = new PriorityBlockingQueue<>();
+    /**
+     * 依赖反向索引: 依赖(参见 {@link SqlDependencies}) -> 翻译时使用了它的缓存节点
+     * 写入时登记(调用方线程), 节点清除时注销(linkedActuator), 失效时整体摘除
+     */
+    private final ConcurrentMap<String, Set<CacheNode>> dependents = Maps.newConcurrentMap();
+
+    /**
+     * 缓存代数: 每次调用 invalidate、缓存项被显式移除或替换为不同的值时递增, 供 {@link NearSqlCache} 判断近端副本是否仍然有效。
+     * 过期与容量淘汰不递增: 翻译结果只取决于 SQL 与规则, 被回收的缓存项在近端仍然正确, 规则变更经由 invalidate 使其失效
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 缓存 key 的形式
+     */
+    private volatile SqlCacheKeyMode keyMode = SqlCacheKeyMode.TEXT;
 
-    // 单线程链表执行器，确保线程安全并支持优先级作业处理
-    private static Thread linkedActuator;
+    /**
+     * 命中记录缓冲区
+     * 命中路径只向其中记录一次访问(有损、无锁、不分配对象), 由 linkedActuator 批量消费并调整链表
+     */
+    private final StripedReadBuffer<CacheNode> readBuffer = new StripedReadBuffer<>();
+
+    /**
+     * 写命令队列(新增、移除节点)
+     * 只在未命中后的 put 和 remove 上产生, 数量受限于未命中次数, 不按优先级排序
+     */
+    private Queue<LikedCommand> linkedCommands = new ConcurrentLinkedQueue<>();
+
+    // 单线程链表执行器，确保线程安全并负责批量消费命中记录与写命令
+    private Thread linkedActuator;
 
     // 线程运行状态标志
-    private static volatile boolean running;
+    private volatile boolean running;
+
+    // 维护线程命名用的实例序号
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /**
+     * 维护线程在没有被唤醒时的最长休眠时间
+     */
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
 
     /**
      * 链表头尾节点，用于快速访问和淘汰缓存项
@@ -49,197 +99,578 @@ public class SimpleSqlCache extends Pipeline {
      * 因为它们并没有"暴露"出来
      * 而是由单一线程 linkedActuator处理 所以不存在并发问题
      */
-    private static CacheNode FIRST = null;
-    private static CacheNode TAIL = null;
+    private CacheNode FIRST = null;
+    private CacheNode TAIL = null;
+
+    /**
+     * 时间源, 过期判断与时间轮推进均通过它读取时间
+     */
+    private volatile Ticker ticker = Ticker.SYSTEM;
 
     /**
-     * 强制清理阈值
-     * 为了预防长时间的get set 而导致的clear 饥饿
-     * 单线程作业是安全的
+     * 过期时间轮, 只由 linkedActuator 读写
      */
-    private static int mandatoryCleaningThresholdOfDefault = 10000;
+    private TimerWheel timerWheel = new TimerWheel(Ticker.SYSTEM.read());
 
     // 缓存参数：过期时间,缓冲时间,时间单位和删除阈值
-    private static long expiredTime;
-    private static long bufferTime;
-    private static int delThreshold;
+    private final long expiredTime;
+    private final long bufferTime;
+    private final int delThreshold;
+
+    /**
+     * 节点使用次数的计数器, 参见 {@link #recordHits(CacheNode, int)}
+     */
+    private static final AtomicIntegerFieldUpdater<CacheNode> USE_SIZE =
+            AtomicIntegerFieldUpdater.newUpdater(CacheNode.class, "useSize");
+
+    /**
+     * 默认最大权重(字节)
+     */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+    /**
+     * 最大权重与当前权重(字节), 当前权重只由 linkedActuator 读写
+     */
+    private final long maximumWeight;
+    private volatile long weightedSize = 0;
+
+    /**
+     * 访问频率估算, 只由 linkedActuator 读写
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * 可选的堆外值存储, 为 null 时所有值保存在堆内
+     */
+    private volatile OffHeapValueStore offHeapStore;
+
+    /**
+     * 长度达到此值(字符数)的翻译结果才进入堆外, 小值保存在堆内更划算
+     */
+    private static final int OFF_HEAP_MIN_VALUE_LENGTH = 1024;
+
+    /**
+     * 快照配置, snapshotFile 为 null 时不启用
+     */
+    private volatile Path snapshotFile;
+    private long snapshotFingerprint;
+    private long snapshotIntervalNanos;
+    private int snapshotMaxEntries;
+    // 上次写入快照的时间, 只由 linkedActuator 读写
+    private long lastSnapshotNanos = System.nanoTime();
+
+    /**
+     * 统计计数器, 分段计数(LongAdder), 命中路径上只增加一次无竞争的累加
+     */
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder removalCount = new LongAdder();
+    private final LongAdder readBufferDropCount = new LongAdder();
+    // 命令队列深度, ConcurrentLinkedQueue.size() 需要遍历, 单独计数
+    private final LongAdder pendingCommands = new LongAdder();
+    // 最近一轮维护完成的时间(System.nanoTime), 用于估算维护滞后
+    private volatile long lastMaintenanceNanos = System.nanoTime();
+    // 已完成的维护轮数, 参见 cleanUp
+    private volatile long maintenanceRounds = 0;
 
 
     /**
-     * 构造函数，初始化缓存配置。
-     * 设计为 "伪单例"，即整个应用中只应实例化一次。
+     * 构造函数，初始化缓存配置并启动维护线程。
+     * 每个翻译引擎持有独立的实例, 实例之间不共享任何状态。
      */
     public SimpleSqlCache(long expiredTime, TimeUnit expiredTimeUtil, long bufferTime, TimeUnit bufferTimeUtil, int delThreshold) {
+        this(expiredTime, expiredTimeUtil, bufferTime, bufferTimeUtil, delThreshold, DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * @param maximumWeight 缓存总权重上限(字节), 按 (key.length + value.length) * 2 估算
+     */
+    public SimpleSqlCache(long expiredTime, TimeUnit expiredTimeUtil, long bufferTime, TimeUnit bufferTimeUtil, int delThreshold, long maximumWeight) {
         super();
-        assert !running;
-        SimpleSqlCache.expiredTime = expiredTimeUtil.toMillis(expiredTime);
-        SimpleSqlCache.delThreshold = delThreshold;
-        SimpleSqlCache.bufferTime = bufferTimeUtil.toMillis(bufferTime);
+        assert maximumWeight > 0;
+        this.expiredTime = expiredTimeUtil.toMillis(expiredTime);
+        this.delThreshold = delThreshold;
+        this.bufferTime = bufferTimeUtil.toMillis(bufferTime);
+        this.maximumWeight = maximumWeight;
+        this.sketch = new FrequencySketch(expectedSize(maximumWeight));
         running = true;
+        startLinkedActuator();
     }
 
     /**
-     * 添加新的缓存项或更新现有项，并按优先级加入命令到队列。
+     * 替换时间源, 需在缓存写入前调用, 主要用于以可控时钟验证过期行为
      */
-    public static void put(final  String key, final String v) {
-        simpleCache.compute(key, (k, existingValue) -> {
-            CacheNode cacheNode = existingValue;
-            if (null == cacheNode) {
-                cacheNode = new CacheNode(key, new SoftReference<>(v), simpleCache);
-            } else {
-                cacheNode.updateVal(v);
+    public void useTicker(Ticker ticker) {
+        assert null != ticker;
+        this.timerWheel = new TimerWheel(ticker.read());
+        this.ticker = ticker;
+    }
+
+    /**
+     * 切换缓存 key 的形式, 需在缓存写入前调用
+     */
+    public void useKeyMode(SqlCacheKeyMode keyMode) {
+        assert null != keyMode;
+        this.keyMode = keyMode;
+    }
+
+    /**
+     * 启用堆外值存储, 需在缓存写入前调用
+     */
+    public void useOffHeapValueStore(OffHeapValueStore store) {
+        assert null != store;
+        offHeapStore = store;
+    }
+
+    /**
+     * 启用持久化快照: 立即加载已有快照(规则指纹不一致时拒绝), 之后由 linkedActuator 定时写入, 销毁时再写入一次。
+     *
+     * @param file        快照文件
+     * @param fingerprint 翻译规则指纹
+     * @param interval    定时写入间隔
+     * @param maxEntries  最多写入的缓存项数, 从最近使用的开始
+     */
+    public void enableSnapshot(Path file, long fingerprint, long interval, TimeUnit unit, int maxEntries) {
+        assert null != file && interval > 0 && maxEntries > 0;
+        // 快照以 SQL 全文还原 key, 不保留全文的模式无法写入快照
+        assert keyMode != SqlCacheKeyMode.FINGERPRINT_UNVERIFIED;
+        snapshotFingerprint = fingerprint;
+        snapshotIntervalNanos = unit.toNanos(interval);
+        snapshotMaxEntries = maxEntries;
+        List<CacheSnapshot.Entry> entries = CacheSnapshot.load(file, fingerprint);
+        for (CacheSnapshot.Entry entry : entries) {
+            OffHeapValueStore.Slot slot = writeOffHeap(entry.getValue());
+            CacheNode stored = simpleCache.computeIfAbsent(keyOf(entry.getKey()), k -> {
+                CacheNode cacheNode = new CacheNode(k, entry.getKey(), entry.getValue(), slot, entry.getDependencies(), simpleCache);
+                cacheNode.useSize = entry.getUseSize();
+                cacheNode.registerDependencies();
+                pushLinkedCommandsQueue(new LikedCommand(cacheNode, LikedMode.ADD2HEAD));
+                return cacheNode;
+            });
+            freeUnused(slot, stored);
+        }
+        log.info("SimpleSqlCache load snapshot [{}], entries : [{}]", file, entries.size());
+        snapshotFile = file;
+        LockSupport.unpark(linkedActuator);
+    }
+
+    /**
+     * 从最近使用的节点开始收集热点缓存项并写入快照, 只能由 linkedActuator 调用(或在其结束后调用)。
+     * 快照按最久到最近的顺序写入, 加载时依次头插即可还原链表顺序。
+     */
+    private void writeSnapshot(Path file) {
+        List<CacheSnapshot.Entry> entries = new ArrayList<>();
+        for (CacheNode node = FIRST; node != null && entries.size() < snapshotMaxEntries; node = node.next) {
+            // 快照读取不算访问, 不能推迟节点的空闲过期
+            String value = node.peekValue();
+            if (value != null && node.key != null && !node.expired()) {
+                entries.add(new CacheSnapshot.Entry(node.key, value, node.useSize, node.dependencies));
+            }
+        }
+        Collections.reverse(entries);
+        try {
+            CacheSnapshot.write(file, snapshotFingerprint, entries);
+            if (log.isDebugEnabled()) {
+                log.debug("SimpleSqlCache write snapshot [{}], entries : [{}]", file, entries.size());
+            }
+        } catch (IOException e) {
+            log.error("SimpleSqlCache write snapshot [{}] failed: {}", file, e.getMessage(), e);
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long r = a + b;
+        return ((a ^ r) & (b ^ r)) < 0 ? Long.MAX_VALUE : r;
+    }
+
+    /**
+     * 按平均每条 512 字节预估条目数, 用于确定频率估算的规模
+     */
+    private static long expectedSize(long maximumWeight) {
+        return Math.max(maximumWeight / 512, 1024);
+    }
+
+    /**
+     * 需要时把值写入堆外, 在 Map 的 compute 之外调用, 压缩与复制不占用 Map 的桶锁
+     *
+     * @return 堆外句柄, 未启用堆外、值较小或堆外容量不足时返回 null
+     */
+    @Nullable
+    private OffHeapValueStore.Slot writeOffHeap(String value) {
+        OffHeapValueStore store = offHeapStore;
+        return store != null && value.length() >= OFF_HEAP_MIN_VALUE_LENGTH ? store.write(value) : null;
+    }
+
+    /**
+     * 预先写入的堆外值没有被新节点使用(保留了已有节点)时释放
+     */
+    private void freeUnused(@Nullable OffHeapValueStore.Slot slot, @Nullable CacheNode stored) {
+        OffHeapValueStore store = offHeapStore;
+        if (slot != null && store != null && (stored == null || stored.slot != slot)) {
+            store.free(slot);
+        }
+    }
+
+    /**
+     * 按 keyMode 构建 Map 的 key
+     */
+    private Object keyOf(String sql) {
+        return keyMode == SqlCacheKeyMode.TEXT ? sql : SqlFingerprint.of(sql);
+    }
+
+    /**
+     * 按 keyMode 构建只用于查找的 key, 指纹模式下复用当前线程的实例, 不能保存到 Map 中
+     */
+    private Object lookupKeyOf(String sql) {
+        return keyMode == SqlCacheKeyMode.TEXT ? sql : SqlFingerprint.probe(sql);
+    }
+
+    /**
+     * 添加新的缓存项或更新现有项。
+     * 已过期、值不同或指纹碰撞的旧节点会被替换(节点权重不可变), 旧节点交由 linkedActuator 从链表中摘除。
+     * 新节点是否最终保留由 linkedActuator 的准入策略决定。
+     */
+    public void put(final String key, final String v) {
+        put(key, v, ArrayUtils.EMPTY_STRING_ARRAY);
+    }
+
+    /**
+     * @param dependencies 翻译依赖, 用于 {@link #invalidate(String)}
+     */
+    public void put(final String key, final String v, final String[] dependencies) {
+        OffHeapValueStore.Slot slot = writeOffHeap(v);
+        CacheNode stored = simpleCache.compute(keyOf(key), (k, existingValue) -> {
+            if (null == existingValue || existingValue.expired() || !existingValue.sameKey(key) || !existingValue.sameValue(v)) {
+                if (null != existingValue) {
+                    pushLinkedCommandsQueue(new LikedCommand(existingValue, LikedMode.REMOVE));
+                    generation.incrementAndGet();
+                }
+                CacheNode cacheNode = new CacheNode(k, key, v, slot, dependencies, simpleCache);
+                cacheNode.registerDependencies();
+                putCount.increment();
+                pushLinkedCommandsQueue(new LikedCommand(cacheNode, LikedMode.ADD2HEAD));
+                return cacheNode;
+            }
+            countUses(existingValue, 1);
+            if (readBuffer.offer(existingValue)) {
+                readBufferDropCount.increment();
             }
-            pushLinkedCommandsQueue(new LikedCommand(cacheNode, LikedMode.ADD2HEAD));
-            unParkAndNotifyClear();
-            return cacheNode;
+            return existingValue;
         });
+        freeUnused(slot, stored);
+        LockSupport.unpark(linkedActuator);
     }
 
 
     /**
      * 获取缓存项的值。如果缓存项不存在或已过期，则返回 null。
+     * 命中路径不加锁、不分配对象: 普通的 map 读取 + 记录一次命中(参见 {@link #recordHits(CacheNode, int)})。
      */
     @Nullable
-    public static String get(final String key) {
-        CacheNode cacheNode = simpleCache.computeIfPresent(key, (k, v) -> {
-            CacheNode n = null;
-            if (!v.expired()) {
-                v.addUseSize();
-                pushLinkedCommandsQueue(new LikedCommand(v, LikedMode.MOVE2HEAD));
-                n = v;
-            }
-            unParkAndNotifyClear();
-            return n;
-        });
-        return cacheNode != null ? cacheNode.getValue() : null;
+    public String get(final String key) {
+        return get(key, null);
     }
 
     /**
-     * 外部手动清理的支持
+     * @param hitNode 不为 null 时, 命中的节点写入 hitNode[0], 供 {@link NearSqlCache} 之后经由 {@link #recordHits(CacheNode, int)} 记录访问
      */
-    public static void unParkAndNotifyClear() {
-        if (!registeredOfClearCommand) {
-            registeredOfClearCommand = true;
-            pushLinkedCommandsQueue(new LikedCommand(null, LikedMode.CLEAR));
+    @Nullable
+    String get(final String key, @Nullable CacheNode[] hitNode) {
+        CacheNode cacheNode = simpleCache.get(lookupKeyOf(key));
+        if (cacheNode == null || cacheNode.expired() || !cacheNode.sameKey(key)) {
+            missCount.increment();
+            return null;
+        }
+        String value = cacheNode.peekValue();
+        if (value == null) {
+            // 堆外值已被淘汰
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        if (null != hitNode) {
+            hitNode[0] = cacheNode;
         }
+        recordHits(cacheNode, 1);
+        return value;
+    }
+
+    /**
+     * 记录 hits 次命中(含 {@link NearSqlCache} 批量提交的近端命中):
+     * 1. 使用次数不经过缓冲区, 直接累加到节点上(不丢失), 只用于判断是否超过 delThreshold,
+     * 超过后不再写节点, 因此热点节点只在最初的 delThreshold 次命中时有写竞争。
+     * 2. 向有损缓冲区写入一条访问记录, linkedActuator 据此刷新访问时间、频率与链表位置。
+     * 竞争激烈时记录可能被丢弃, 但热点节点的记录源源不断, 丢弃只会使访问时间稍有滞后, 不会使其过期。
+     */
+    void recordHits(CacheNode cacheNode, int hits) {
+        countUses(cacheNode, hits);
+        if (readBuffer.offer(cacheNode)) {
+            // 缓冲区已满, 唤醒维护线程批量消费
+            readBufferDropCount.increment();
+            LockSupport.unpark(linkedActuator);
+        }
+    }
+
+    /**
+     * 外部手动清理的支持
+     * 立即唤醒维护线程推进时间轮, 否则按 DRAIN_INTERVAL_NANOS 的节奏推进
+     */
+    public void unParkAndNotifyClear() {
         LockSupport.unpark(linkedActuator);
     }
 
+    /**
+     * 唤醒维护线程并等待其完成一轮完整的维护(写命令、命中记录、时间轮), 主要用于以可控时钟验证过期行为。
+     * 调用时可能有一轮维护正在进行, 因此等待两轮。
+     */
+    void cleanUp() {
+        long target = maintenanceRounds + 2;
+        while (maintenanceRounds < target && running) {
+            LockSupport.unpark(linkedActuator);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
     /**
      * 从缓存中移除指定的键。
      */
-    public static void remove(final String key) {
-        //safe del
-        simpleCache.computeIfPresent(key,(k,v)->{
-            v.clear();
-            return null;
-        });
+    public void remove(final String key) {
+        Object mapKey = keyOf(key);
+        CacheNode cacheNode = simpleCache.get(mapKey);
+        if (cacheNode != null && cacheNode.sameKey(key) && simpleCache.remove(mapKey, cacheNode)) {
+            //safe del, 链表只由 linkedActuator 修改
+            pushLinkedCommandsQueue(new LikedCommand(cacheNode, LikedMode.REMOVE));
+            generation.incrementAndGet();
+            removalCount.increment();
+            LockSupport.unpark(linkedActuator);
+        }
+    }
+
+    /**
+     * 统计快照, 各项计数自实例创建起累计
+     */
+    public SqlCacheStats stats() {
+        Map<Object, CacheNode> map = simpleCache;
+        OffHeapValueStore store = offHeapStore;
+        return new SqlCacheStats(
+                hitCount.sum(),
+                missCount.sum(),
+                putCount.sum(),
+                evictionCount.sum(),
+                rejectionCount.sum(),
+                expirationCount.sum(),
+                removalCount.sum(),
+                readBufferDropCount.sum(),
+                null == map ? 0 : map.size(),
+                weightedSize,
+                maximumWeight,
+                null == store ? 0 : store.allocatedBytes(),
+                Math.max(0, pendingCommands.sum()),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastMaintenanceNanos));
+    }
+
+    /**
+     * 当前缓存代数, 参见 {@link NearSqlCache}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 失效所有依赖于 dependency 的缓存项, 例如表拥有者或关键字列表变更后。
+     * 只访问受影响的节点, 返回后这些 SQL 的查找立即未命中, 链表与权重由 linkedActuator 随后回收。
+     *
+     * @param dependency 依赖, 参见 {@link SqlDependencies#table(String)} 等
+     * @return 失效的缓存项数
+     */
+    public int invalidate(final String dependency) {
+        Set<CacheNode> nodes = dependents.remove(dependency);
+        int count = 0;
+        if (null != nodes) {
+            for (CacheNode node : nodes) {
+                if (simpleCache.remove(node.mapKey, node)) {
+                    pushLinkedCommandsQueue(new LikedCommand(node, LikedMode.REMOVE));
+                    count++;
+                }
+            }
+            removalCount.add(count);
+        }
+        // 无论本级是否还有受影响的节点都递增: 已过期或被淘汰的节点可能仍有近端副本
+        generation.incrementAndGet();
+        LockSupport.unpark(linkedActuator);
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidate Of Dependency [{}], entries : [{}]", dependency, count);
+        }
+        return count;
     }
 
     /**
      * 向命令队列添加新命令。
      */
-    private static void pushLinkedCommandsQueue(LikedCommand clearCommand) {
-        linkedCommands.add(clearCommand);
+    private void pushLinkedCommandsQueue(LikedCommand command) {
+        linkedCommands.add(command);
+        pendingCommands.increment();
     }
 
 
-    static {
+    /**
+     * 在配置完成后启动维护线程, 确保线程启动时 running 已经为 true
+     */
+    private void startLinkedActuator() {
         linkedActuator = new Thread(() -> {
             while (running && !Thread.currentThread().isInterrupted()) {
                 try {
-                    if (linkedCommands.isEmpty()) {
-                        LockSupport.park();
-                    }
-                    LikedCommand command = linkedCommands.poll();
-                    if (command != null) {
-                        if (log.isDebugEnabled()) {
-                            log.info("actuator of command : [{}]", command.getMode());
-                        }
-                        processCommand(command);
-                    }
+                    LockSupport.parkNanos(DRAIN_INTERVAL_NANOS);
+                    maintenance();
                 } catch (Exception e) {
                     log.error("Error processing commands: {}", e.getMessage(), e);
                 }
             }
-        });
+        }, "SimpleSqlCache-linkedActuator-" + INSTANCES.incrementAndGet());
+        linkedActuator.setDaemon(true);
         linkedActuator.start();
     }
 
     /**
-     * 处理队列中的命令，根据命令类型执行相应操作。
+     * 一轮维护: 先处理写命令(保证节点已入链), 再批量消费命中记录, 最后推进时间轮回收过期节点。
      */
-    private static void processCommand(LikedCommand command) {
-        CacheNode node = command.getNode();
-        if (command.getMode() != LikedMode.CLEAR) {
-            if (command.getMode() == LikedMode.ADD2HEAD) {
-                node.add2Head();
-            } else if (command.getMode() == LikedMode.MOVE2HEAD) {
-                node.move2Head();
-            }
-            if (--mandatoryCleaningThresholdOfDefault <= 0) {
-                clearExpiredNodes();
+    private void maintenance() {
+        LikedCommand command;
+        while ((command = linkedCommands.poll()) != null) {
+            pendingCommands.decrement();
+            if (log.isDebugEnabled()) {
+                log.debug("actuator of command : [{}]", command.getMode());
             }
-            return;
+            processCommand(command);
         }
-        clearExpiredNodes();
+        readBuffer.drainTo(this::recordAccess);
+        timerWheel.advance(ticker.read(), this::expire);
+        Path file = snapshotFile;
+        if (file != null && System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos) {
+            writeSnapshot(file);
+            lastSnapshotNanos = System.nanoTime();
+        }
+        lastMaintenanceNanos = System.nanoTime();
+        maintenanceRounds++;
     }
 
+    /**
+     * 使用次数累加到超过 delThreshold 为止(饱和), 之后的命中不再写节点
+     */
+    private void countUses(CacheNode node, int uses) {
+        int current;
+        while ((current = node.useSize) <= delThreshold) {
+            if (USE_SIZE.compareAndSet(node, current, (int) Math.min((long) current + uses, Integer.MAX_VALUE))) {
+                return;
+            }
+        }
+    }
 
-    private static volatile boolean registeredOfClearCommand = false;
-
-
+    /**
+     * 消费一条命中记录: 刷新访问时间、累加频率并移到链表头部, 已移除的节点忽略
+     */
+    private void recordAccess(CacheNode node) {
+        if (!node.linked) {
+            return;
+        }
+        node.lastTime = ticker.read();
+        sketch.increment(node.hash);
+        node.move2Head();
+    }
 
+    private void expire(TimerWheel.Node node) {
+        expirationCount.increment();
+        ((CacheNode) node).clear();
+    }
 
-    private static void clearExpiredNodes() {
-        /**。
-         * 1. 'registeredOfClearCommand作为一个volatile变量，类似于门口的警示灯。它的主要作用是指示清理操作是否正在进行，
-         *    而不是强制保证操作的原子性。这样，它可以有效地过滤掉在清理过程中的重复清理命令注册。
-         *
-         * 2. 移除重复的CLEAR命令：在执行清理操作之前，我们首先检查并移除队列中的重复CLEAR命令，确保清理操作只执行一次。
-         *    这是一种有效的无害化并发处理，允许系统在高并发环境下维持较高性能。
-         *
-         * 3. 清理过期节点：接下来，从TAIL开始清理过期的缓存节点。这一步骤也需注意线程安全和数据一致性。
-         *
-         * 4. 重置状态：在清理操作完成后，我们重置'mandatoryCleaningThresholdOfDefault'和'registeredOfClearCommand'。
-         *    将'registeredOfClearCommand'设置为false是关键，它意味着新的清理命令可以被接受，类似于“重新打开门”。
-         */
-        while (!linkedCommands.isEmpty() && (linkedCommands.peek()).getMode() == LikedMode.CLEAR) {
-            linkedCommands.poll();
-        }
-        // 从TAIL开始清理过期节点
-        CacheNode tailNode;
-        while ((tailNode = TAIL) != null && tailNode.expired()) {
-            tailNode.clear();
+    /**
+     * 处理队列中的命令，根据命令类型执行相应操作。
+     */
+    private void processCommand(LikedCommand command) {
+        CacheNode node = command.getNode();
+        if (command.getMode() == LikedMode.ADD2HEAD) {
+            if (!node.retired) {
+                sketch.increment(node.hash);
+                node.add2Head();
+                evictIfOverweight(node);
+                if (node.linked) {
+                    timerWheel.schedule(node);
+                }
+            }
+        } else if (command.getMode() == LikedMode.REMOVE) {
+            node.clear();
         }
-        mandatoryCleaningThresholdOfDefault = 10000;
-        registeredOfClearCommand = false;
     }
 
 
+    /**
+     * 超出最大权重时淘汰, 确定性且不依赖GC:
+     * 以新加入的节点为候选者、TAIL 为牺牲者, 比较两者的估算频率(TinyLFU),
+     * 候选者频率更高才淘汰牺牲者, 否则拒绝候选者, 保证一次性SQL无法挤出热点模板。
+     */
+    private void evictIfOverweight(CacheNode candidate) {
+        while (weightedSize > maximumWeight && TAIL != null) {
+            CacheNode victim = TAIL;
+            if (victim == candidate || !candidate.linked) {
+                rejectionCount.increment();
+                candidate.clear();
+                return;
+            }
+            if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evictionCount.increment();
+                victim.clear();
+            } else {
+                rejectionCount.increment();
+                candidate.clear();
+            }
+        }
+    }
 
+    /**
+     * 停止维护线程、写入快照并释放堆外内存, 同时从关闭钩子中注销; 重复调用无效
+     */
+    @Override
+    public void close() {
+        release();
+    }
 
     @Override
     protected void destroy() {
         synchronized (DESTROY_LOCK) {
             running = false; // 设置标志，指示线程停止运行
             LockSupport.unpark(linkedActuator); // 确保线程从park状态中唤醒
+            // 安全地终止线程, 之后链表不再有并发修改
+            try {
+                linkedActuator.join(); // 等待线程安全地结束
+            } catch (InterruptedException e) {
+                log.error("Error waiting for linkedActuator to finish: {}", e.getMessage(), e);
+            }
+            // 先处理剩余的写命令, 再写入最终快照
+            LikedCommand command;
+            while ((command = linkedCommands.poll()) != null) {
+                pendingCommands.decrement();
+                processCommand(command);
+            }
+            if (snapshotFile != null) {
+                writeSnapshot(snapshotFile);
+            }
             // 清理资源
             CacheNode cacheNode;
             while (null != (cacheNode = FIRST)) {
-                FIRST = FIRST.next;
                 cacheNode.clear();
             }
             log.info("SimpleSqlCache Destroy Linked Successful!");
+            if (offHeapStore != null) {
+                offHeapStore.release();
+                offHeapStore = null;
+            }
             TAIL = null;
             simpleCache = null;
             linkedCommands = null;
-            // 安全地终止线程
-            try {
-                linkedActuator.join(); // 等待线程安全地结束
-            } catch (InterruptedException e) {
-                log.error("Error waiting for linkedActuator to finish: {}", e.getMessage(), e);
-            }
             linkedActuator = null;
             log.info("SimpleSqlCache Destroy Of All Successful!");
         }
@@ -248,52 +679,110 @@ public class SimpleSqlCache extends Pipeline {
     /**
      * 缓存节点类，代表缓存中的一个项。
      * 包含对应的 SQL 语句的软引用、使用频率统计，以及链表的前后节点引用。
+     * {@link NearSqlCache} 持有节点引用以记录近端命中, 除此之外不对外暴露。
      */
-    private static class CacheNode {
-
-        private final String key;  // 缓存项的键
-        private SoftReference<String> value;  // 缓存项的值（SQL语句），使用软引用
+    class CacheNode extends TimerWheel.Node {
+
+        private final Object mapKey;  // 缓存 Map 中的键(SQL 全文或指纹)
+        private final String key;  // 缓存项的键(SQL 全文), FINGERPRINT_UNVERIFIED 模式下为 null
+        private final int hash;  // mapKey 的散列值, 用于频率估算
+        private final String value;  // 缓存项的值（SQL语句）, 存放在堆外时为 null
+        private final OffHeapValueStore.Slot slot;  // 堆外值句柄, 存放在堆内时为 null
+        private final String[] dependencies;  // 翻译依赖
+        private final long weight;  // 权重(字节), 按 key + value 的字符数估算
+        private boolean retired = false;  // 是否已被移除, 只由 linkedActuator 读写
         private CacheNode prev = null;  // 前一个节点的引用
         private CacheNode next = null;  // 后一个节点的引用
-        private int useSize;  // 使用次数统计
+        private boolean linked = false;  // 是否已在链表中, 只由 linkedActuator 读写
+        volatile int useSize;  // 使用次数统计, 由命中线程以 CAS 累加至超过 delThreshold 为止(经 USE_SIZE 访问, 不能为 private)
         private final long createTime;
-        private long lastTime;
+        private volatile long lastTime;  // 最后访问时间, 只由 linkedActuator 消费命中记录时更新
 
-        private final Map<String, CacheNode> map;  // 引用缓存的 Map，用于从缓存中移除节点
+        private final Map<Object, CacheNode> map;  // 引用缓存的 Map，用于从缓存中移除节点
 
         /**
          * 构造一个新的缓存节点。
          *
-         * @param key   缓存项的键。
-         * @param value 缓存项的值。
-         * @param map   引用缓存的 Map。
+         * @param mapKey 缓存 Map 中的键。
+         * @param key    缓存项的键。
+         * @param value  缓存项的值。
+         * @param slot   已写入堆外的值的句柄, 为 null 时值保存在堆内。
+         * @param dependencies 翻译依赖。
+         * @param map    引用缓存的 Map。
          */
-        CacheNode(String key, SoftReference<String> value, Map<String, CacheNode> map) {
-            this.key = key;
-            this.value = value;
+        CacheNode(Object mapKey, String key, String value, @Nullable OffHeapValueStore.Slot slot, String[] dependencies, Map<Object, CacheNode> map) {
+            this.mapKey = mapKey;
+            this.key = keyMode == SqlCacheKeyMode.FINGERPRINT_UNVERIFIED ? null : key;
+            this.hash = mapKey.hashCode();
+            // 不保留全文时按指纹的 16 个 char 计算
+            this.dependencies = dependencies;
+            long chars = (this.key != null ? this.key.length() : 16) + value.length();
+            for (String dependency : dependencies) {
+                chars += dependency.length();
+            }
+            this.weight = 2L * chars;
+            this.slot = slot;
+            this.value = slot == null ? value : null;
             this.map = map;
             this.useSize = 0;
-            lastTime = createTime = System.currentTimeMillis();
+            lastTime = createTime = ticker.read();
         }
 
-        public String getValue() {
-            lastTime = System.currentTimeMillis();
-            return null != value ? value.get() : null;
+        /**
+         * 读取值, 不记录访问(访问只经由 readBuffer 记录)
+         */
+        public String peekValue() {
+            if (value != null) {
+                return value;
+            }
+            OffHeapValueStore store = offHeapStore;
+            return store != null ? store.read(slot) : null;
         }
 
+        /**
+         * 比对 SQL 全文, TEXT 模式下 Map 已完成比对, 不保留全文时视为相同
+         */
+        public boolean sameKey(String k) {
+            return key == null || key == mapKey || key.equals(k);
+        }
 
-        public void updateVal(String val) {
-            this.value = new SoftReference<>(val);
+        public boolean sameValue(String v) {
+            return v.equals(peekValue());
         }
 
-        public void addUseSize() {
-            this.useSize++;
+        /**
+         * 登记到依赖反向索引, compute 保证与 invalidate 的整体摘除互斥
+         */
+        void registerDependencies() {
+            for (String dependency : dependencies) {
+                dependents.compute(dependency, (k, nodes) -> {
+                    if (null == nodes) {
+                        nodes = Collections.newSetFromMap(Maps.newConcurrentMap());
+                    }
+                    nodes.add(this);
+                    return nodes;
+                });
+            }
+        }
+
+        private void unregisterDependencies() {
+            for (String dependency : dependencies) {
+                dependents.computeIfPresent(dependency, (k, nodes) -> {
+                    nodes.remove(this);
+                    return nodes.isEmpty() ? null : nodes;
+                });
+            }
         }
 
         /**
          * 将该节点使用头插法添加到链表头部。
          */
         public void add2Head() {
+            if (linked) {
+                return;
+            }
+            linked = true;
+            weightedSize += weight;
             if (FIRST != null) {
                 FIRST.prev = this;
                 this.next = FIRST;
@@ -308,7 +797,7 @@ public class SimpleSqlCache extends Pipeline {
          * 将该节点添加到链表头部。
          */
         public void move2Head() {
-            if (this == FIRST) { //已经是first
+            if (!linked || this == FIRST) { //已被移除或已经是first
                 return;
             }
             // del this of linked
@@ -318,7 +807,11 @@ public class SimpleSqlCache extends Pipeline {
 
 
         public boolean expired() {
-            long now = System.currentTimeMillis();
+            return expired(ticker.read());
+        }
+
+        @Override
+        boolean expired(long now) {
             // 首先检查是否还在缓冲期内
             if (now < createTime + bufferTime) {
                 return false; // 如果在缓冲期内，则不算过期
@@ -328,19 +821,45 @@ public class SimpleSqlCache extends Pipeline {
         }
 
 
+        /**
+         * 按当前状态计算到期时间: 缓冲期结束时使用次数不足则到期, 否则在最后访问后 expiredTime 到期。
+         * 之后的访问只会推迟到期时间, 由时间轮到期时重新计算。
+         */
+        @Override
+        long deadline() {
+            long bufferEnd = saturatedAdd(createTime, bufferTime);
+            if (useSize <= delThreshold) {
+                return bufferEnd;
+            }
+            return Math.max(bufferEnd, saturatedAdd(lastTime, expiredTime) + 1);
+        }
+
         /**
          * 清除该缓存节点。
          * 从链表中移除并从缓存 Map 中删除该节点。
          */
         public void clear() {
+            retired = true;
             removeFromList();
-            map.remove(this.key);
+            timerWheel.deschedule(this);
+            unregisterDependencies();
+            OffHeapValueStore store = offHeapStore;
+            if (slot != null && store != null) {
+                store.free(slot);
+            }
+            // 只移除自身, 避免误删同 key 的新节点
+            map.remove(this.mapKey, this);
             if (log.isDebugEnabled()) {
-                log.info("Clear Of CacheKey [{}]", this.key);
+                log.debug("Clear Of CacheKey [{}]", this.mapKey);
             }
         }
 
         private void removeFromList() {
+            if (!linked) {
+                return;
+            }
+            linked = false;
+            weightedSize -= weight;
             if (prev != null) {
                 prev.next = next;
             }
@@ -364,9 +883,9 @@ public class SimpleSqlCache extends Pipeline {
 
 
     /**
-     * 优先级命令
+     * 链表写命令
      */
-    static class LikedCommand implements Comparable<LikedCommand> {
+    static class LikedCommand {
         private final CacheNode node;
         private final int mode;
 
@@ -382,23 +901,15 @@ public class SimpleSqlCache extends Pipeline {
         public int getMode() {
             return mode;
         }
-
-        @Override
-        public int compareTo(LikedCommand other) {
-            return Integer.compare(this.mode, other.mode);
-        }
     }
 
 
     /**
-     * 优先级支持
+     * 写命令类型
+     * 访问顺序(MOVE2HEAD)由 readBuffer 记录, 过期清理(CLEAR)由时间轮负责, 均不再进入命令队列
      */
     interface LikedMode {
         int ADD2HEAD = 0;
-        int MOVE2HEAD = 1;
-        /**
-         * CLEAR 并不是一个立即执行的命令 而是类似于.gc()的运作模式
-         */
-        int CLEAR = 2;
+        int REMOVE = 1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 未命中合并(single-flight)。
+ * <p>
+ * 同一条 SQL 同时在多个线程上未命中时，只有第一个线程(leader)执行解析与翻译，
+ * 其余线程等待同一个进行中的 future 并共享结果; leader 失败时每个等待方抛出新的异常(类型与消息相同, 以 leader 的异常为 cause)。
+ * 等待超过超时时间的线程放弃等待，自行翻译，避免被一条异常缓慢的 SQL 拖住。
+ * <p>
+ * leader 的加载动作应当包含写入缓存，保证 future 完成时缓存已可见，
+ * 否则在 future 移除与缓存写入之间到达的线程仍会重复翻译。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = Maps.newConcurrentMap();
+
+    private final long timeoutNanos;
+
+    /**
+     * 等待并复用了 leader 结果的次数, 即避免的重复翻译次数
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 等待超时后自行翻译的次数
+     */
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(long timeout, TimeUnit timeUnit) {
+        assert timeout > 0;
+        this.timeoutNanos = timeUnit.toNanos(timeout);
+    }
+
+    /**
+     * 以 key 合并并发的加载。
+     *
+     * @param key    合并的 key, 通常是缓存 key
+     * @param loader 加载动作(翻译并写入缓存)
+     * @return 加载结果
+     */
+    public String execute(String key, Supplier<String> loader) {
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            try {
+                String value = loader.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+        try {
+            String value = existing.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            coalesced.increment();
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            if (log.isDebugEnabled()) {
+                log.debug("SingleFlight wait timeout, translate by self : [{}]", key);
+            }
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return loader.get();
+        } catch (ExecutionException e) {
+            coalesced.increment();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw NegativeSqlCache.copyOf((RuntimeException) cause);
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 避免的重复翻译次数
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 等待超时后自行翻译的次数
+     */
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 当前进行中的加载数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,173 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+/**
+ * {@link SimpleSqlCache} 的统计快照，不可变。
+ * <p>
+ * 计数类指标自进程启动起累计，比较两次快照的差值即可得到区间内的速率；
+ * 其余为取快照时的瞬时值。
+ *
+ * @author ztq
+ */
+public final class SqlCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long evictionCount;
+    private final long rejectionCount;
+    private final long expirationCount;
+    private final long removalCount;
+    private final long readBufferDropCount;
+    private final long entryCount;
+    private final long weightedSize;
+    private final long maximumWeight;
+    private final long offHeapBytes;
+    private final long pendingCommands;
+    private final long maintenanceLagMillis;
+
+    SqlCacheStats(long hitCount, long missCount, long putCount, long evictionCount, long rejectionCount,
+                  long expirationCount, long removalCount, long readBufferDropCount, long entryCount,
+                  long weightedSize, long maximumWeight, long offHeapBytes, long pendingCommands,
+                  long maintenanceLagMillis) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.evictionCount = evictionCount;
+        this.rejectionCount = rejectionCount;
+        this.expirationCount = expirationCount;
+        this.removalCount = removalCount;
+        this.readBufferDropCount = readBufferDropCount;
+        this.entryCount = entryCount;
+        this.weightedSize = weightedSize;
+        this.maximumWeight = maximumWeight;
+        this.offHeapBytes = offHeapBytes;
+        this.pendingCommands = pendingCommands;
+        this.maintenanceLagMillis = maintenanceLagMillis;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 未命中次数(含已过期、堆外值已释放)
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 命中率, 没有查找时为 0
+     */
+    public double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * 写入的新缓存项数
+     */
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * 超出最大权重时被淘汰的已有缓存项数
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 超出最大权重时被准入策略拒绝的新缓存项数
+     */
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    /**
+     * 过期回收的缓存项数
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * 显式移除或按依赖失效的缓存项数
+     */
+    public long getRemovalCount() {
+        return removalCount;
+    }
+
+    /**
+     * 因读缓冲区已满而丢弃的访问记录数, 持续增长说明维护线程跟不上命中速率
+     */
+    public long getReadBufferDropCount() {
+        return readBufferDropCount;
+    }
+
+    /**
+     * 当前缓存项数
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 当前权重(字节), 即缓存项占用的估算内存
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * 最大权重(字节)
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * 已申请的堆外内存(字节)
+     */
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * 等待维护线程处理的写命令数
+     */
+    public long getPendingCommands() {
+        return pendingCommands;
+    }
+
+    /**
+     * 距最近一轮维护完成的时间(毫秒), 正常情况下不超过维护间隔(500ms)
+     */
+    public long getMaintenanceLagMillis() {
+        return maintenanceLagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlCacheStats{hitCount=" + hitCount
+                + ", missCount=" + missCount
+                + ", hitRate=" + String.format("%.4f", getHitRate())
+                + ", putCount=" + putCount
+                + ", evictionCount=" + evictionCount
+                + ", rejectionCount=" + rejectionCount
+                + ", expirationCount=" + expirationCount
+                + ", removalCount=" + removalCount
+                + ", readBufferDropCount=" + readBufferDropCount
+                + ", entryCount=" + entryCount
+                + ", weightedSize=" + weightedSize
+                + ", maximumWeight=" + maximumWeight
+                + ", offHeapBytes=" + offHeapBytes
+                + ", pendingCommands=" + pendingCommands
+                + ", maintenanceLagMillis=" + maintenanceLagMillis
+                + '}';
+    }
+}
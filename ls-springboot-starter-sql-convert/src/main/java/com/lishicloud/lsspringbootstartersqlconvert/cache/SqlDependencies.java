@@ -0,0 +1,75 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 翻译依赖的收集与命名。
+ * <p>
+ * 翻译一条 SQL 时记录它经过了哪些翻译规则的输入(表名、列名关键字、函数)，随缓存项写入 {@link SimpleSqlCache}。
+ * 规则变更后按依赖精确失效受影响的缓存项，而不必清空整个缓存。
+ * <p>
+ * 1. 依赖以 "类型:名称(大写)" 的字符串表示，通过 {@link #table(String)} 等方法构造。
+ * 2. 收集器绑定在当前线程上，由 {@link #begin()} 开启、{@link #end()} 结束；未开启时 {@link #record(String)} 不做任何事。
+ *
+ * @author ztq
+ */
+public final class SqlDependencies {
+
+    private static final ThreadLocal<Set<String>> COLLECTOR = new ThreadLocal<>();
+
+    private SqlDependencies() {
+    }
+
+    /**
+     * 表名依赖(可以是 schema.table 形式)
+     */
+    public static String table(String name) {
+        return "TABLE:" + name.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 列名依赖, 经过关键字转义规则检查的列名
+     */
+    public static String keyword(String name) {
+        return "KEYWORD:" + name.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 函数依赖, 经过函数转换规则检查的函数名
+     */
+    public static String function(String name) {
+        return "FUNCTION:" + name.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * 在当前线程开始收集依赖, 覆盖之前未结束的收集
+     */
+    public static void begin() {
+        COLLECTOR.set(new LinkedHashSet<>());
+    }
+
+    /**
+     * 记录一个依赖, 当前线程未开始收集时忽略
+     */
+    public static void record(String dependency) {
+        Set<String> dependencies = COLLECTOR.get();
+        if (null != dependencies) {
+            dependencies.add(dependency);
+        }
+    }
+
+    /**
+     * 结束当前线程的收集
+     *
+     * @return 收集到的依赖
+     */
+    public static String[] end() {
+        Set<String> dependencies = COLLECTOR.get();
+        COLLECTOR.remove();
+        return null == dependencies ? ArrayUtils.EMPTY_STRING_ARRAY : dependencies.toArray(ArrayUtils.EMPTY_STRING_ARRAY);
+    }
+}
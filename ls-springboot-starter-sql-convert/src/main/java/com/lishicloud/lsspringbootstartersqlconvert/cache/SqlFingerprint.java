@@ -0,0 +1,146 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+/**
+ * SQL 的 128 位指纹，作为缓存 Map 的定宽 key。
+ * <p>
+ * 1. 一次遍历 SQL 的 char 数据计算 MurmurHash3 x64_128(每个 char 按两个字节参与计算)，不做编码转换、不复制字符串。
+ * 2. 比较只涉及两个 long，与 SQL 长度无关。
+ * 3. 指纹相同不代表 SQL 相同，需要精确匹配时由调用方比对全文。
+ * 4. 查找使用 {@link #probe(String)} 在当前线程复用的实例上计算，命中路径不创建对象；
+ *    作为 Map key 保存的实例由 {@link #of(String)} 创建，之后不再修改。
+ *
+ * @author ztq
+ */
+final class SqlFingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final ThreadLocal<SqlFingerprint> PROBES = ThreadLocal.withInitial(SqlFingerprint::new);
+
+    private long high;
+    private long low;
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * 创建可以作为 Map key 保存的指纹
+     */
+    static SqlFingerprint of(String sql) {
+        SqlFingerprint fingerprint = new SqlFingerprint();
+        fingerprint.compute(sql);
+        return fingerprint;
+    }
+
+    /**
+     * 在当前线程复用的实例上计算指纹, 只能作为 Map 查找的参数, 不能保存; 在当前线程下一次调用前有效
+     */
+    static SqlFingerprint probe(String sql) {
+        SqlFingerprint probe = PROBES.get();
+        probe.compute(sql);
+        return probe;
+    }
+
+    private void compute(String sql) {
+        int length = sql.length();
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+        // 每 8 个 char(16 字节)为一块
+        for (int blockEnd = length & ~7; i < blockEnd; i += 8) {
+            long k1 = pack(sql, i);
+            long k2 = pack(sql, i + 4);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        // 剩余不足一块的 char
+        long k1 = 0;
+        long k2 = 0;
+        for (int j = 0; i < length; i++, j++) {
+            long c = sql.charAt(i);
+            if (j < 4) {
+                k1 |= c << (j << 4);
+            } else {
+                k2 |= c << ((j - 4) << 4);
+            }
+        }
+        int tail = length & 7;
+        if (tail > 4) {
+            h2 ^= mixK2(k2);
+        }
+        if (tail > 0) {
+            h1 ^= mixK1(k1);
+        }
+
+        long bytes = 2L * length;
+        h1 ^= bytes;
+        h2 ^= bytes;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        this.high = h1;
+        this.low = h2;
+    }
+
+    private static long pack(String sql, int i) {
+        return (long) sql.charAt(i)
+                | (long) sql.charAt(i + 1) << 16
+                | (long) sql.charAt(i + 2) << 32
+                | (long) sql.charAt(i + 3) << 48;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SqlFingerprint)) {
+            return false;
+        }
+        SqlFingerprint that = (SqlFingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
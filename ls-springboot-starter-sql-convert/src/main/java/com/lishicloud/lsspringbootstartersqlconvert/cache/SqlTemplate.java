@@ -0,0 +1,365 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 字面量归一化的 SQL 模板。
+ * <p>
+ * 对原始 SQL 做一次轻量的词法扫描，把字符串字面量和数值字面量提取到槽位中，
+ * 并在原位置放入带序号的哨兵字面量（例如 '#$L0$#'），得到的模板 SQL 同时作为缓存 key。
+ * 例如 "SELECT * FROM t WHERE id = 1" 与 "... id = 2" 会得到同一个模板。
+ * <p>
+ * 模板交给翻译器翻译后，哨兵会原样出现在结果中，命中缓存时只需按序号把原始字面量回填，
+ * 整个过程不需要经过 Calcite。
+ * <p>
+ * 以下情况不提取字面量，保留在模板中：
+ * 1. 注释、双引号/反引号标识符中的内容。
+ * 2. 带前缀的字符串（N'..'、X'..'、_utf8'..'）以及 DATE/TIME/TIMESTAMP/INTERVAL 之后的字符串，它们的格式会被解析器校验。
+ * 3. LIMIT/OFFSET/FETCH/TOP 等之后的数值，解析器要求它们必须是数值。
+ * 4. 重新生成后与原文不同的字面量: 方言会改写的字符串(例如非 ASCII 字符输出为 U&'..')、
+ * 非规范写法的数值(1e3、007、0.0000001)、紧跟在正负号之后的数值(- 1 会被解析器合并为 -1)、
+ * 相邻的字符串(解析器会将其拼接)。回填的是原文，只有原文与重新生成的结果一致时，模板模式的结果才与精确模式相同。
+ * <p>
+ * 模板 key 总是包含哨兵，含有哨兵前缀的原始 SQL 可能与某个模板全文相同，调用方不应以其读写缓存
+ * (参见 {@link #containsSentinel(String)})，否则会读到 {@link #NOT_TEMPLATABLE} 标记。
+ *
+ * @author ztq
+ */
+public final class SqlTemplate {
+
+    /**
+     * 哨兵字面量前后缀，序号位于两者之间
+     */
+    private static final String SENTINEL_PREFIX = "'#$L";
+    private static final String SENTINEL_SUFFIX = "$#'";
+
+    /**
+     * 翻译器改写了哨兵（例如函数规则消费了字面量）的模板，在缓存中以此值标记，后续直接走精确模式
+     */
+    public static final String NOT_TEMPLATABLE = "#$NOT_TEMPLATABLE$#";
+
+    private final String template;
+    private final String[] literals;
+
+    private SqlTemplate(String template, String[] literals) {
+        this.template = template;
+        this.literals = literals;
+    }
+
+    /**
+     * 模板 SQL，同时也是缓存 key
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    public int literalSize() {
+        return literals.length;
+    }
+
+    /**
+     * 原始 SQL 是否含有哨兵前缀, 含有时不做模板化, 也不能以原始 SQL 作为缓存 key
+     */
+    public static boolean containsSentinel(String sql) {
+        return sql.contains(SENTINEL_PREFIX);
+    }
+
+    /**
+     * 对原始 SQL 做字面量归一化。
+     *
+     * @param sql     原始 SQL, 不含哨兵前缀
+     * @param dialect 翻译结果的方言, 用于判断字符串字面量重新生成后是否与原文一致
+     * @return 归一化后的模板。
+     */
+    public static SqlTemplate parse(String sql, SqlDialect dialect) {
+        final int len = sql.length();
+        StringBuilder template = new StringBuilder(len + 16);
+        List<String> literals = new ArrayList<>();
+        // 上一个单词(关键字或标识符)，用于判断当前字面量是否允许提取
+        String lastWord = null;
+        int i = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+            // 行注释
+            if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                end = end < 0 ? len : end;
+                template.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            // 块注释
+            if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? len : end + 2;
+                template.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            // 引号标识符
+            if (c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                template.append(sql, i, end);
+                lastWord = null;
+                i = end;
+                continue;
+            }
+            // 字符串字面量
+            if (c == '\'') {
+                int end = skipQuoted(sql, i, '\'');
+                boolean prefixed = i > 0 && isWordPart(sql.charAt(i - 1));
+                if (prefixed || isTypedLiteralKeyword(lastWord) || lastSignificant(template) == '\''
+                        || nextSignificant(sql, end) == '\'' || !roundTrips(sql.substring(i, end), dialect)) {
+                    template.append(sql, i, end);
+                } else {
+                    appendSentinel(template, literals.size());
+                    literals.add(sql.substring(i, end));
+                }
+                lastWord = null;
+                i = end;
+                continue;
+            }
+            // 数值字面量
+            if (Character.isDigit(c) && (i == 0 || !isWordPart(sql.charAt(i - 1)) && sql.charAt(i - 1) != '.')) {
+                int end = skipNumber(sql, i);
+                char sign = lastSignificant(template);
+                if (end < len && isWordPart(sql.charAt(end)) || isRowCountKeyword(lastWord)
+                        || sign == '-' || sign == '+' || !isCanonicalNumber(sql, i, end)) {
+                    // 形如 1abc 的片段不是数值，或者是行数限定、带符号或非规范写法的数值
+                    template.append(sql, i, end);
+                } else {
+                    appendSentinel(template, literals.size());
+                    literals.add(sql.substring(i, end));
+                }
+                lastWord = null;
+                i = end;
+                continue;
+            }
+            // 关键字或标识符
+            if (isWordPart(c)) {
+                int end = i + 1;
+                while (end < len && isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+                lastWord = sql.substring(i, end);
+                template.append(lastWord);
+                i = end;
+                continue;
+            }
+            if (!Character.isWhitespace(c)) {
+                lastWord = null;
+            }
+            template.append(c);
+            i++;
+        }
+        return new SqlTemplate(template.toString(), literals.toArray(new String[0]));
+    }
+
+    /**
+     * 校验翻译后的模板：每一个哨兵必须恰好出现一次，否则说明翻译规则改写了字面量，模板不可复用。
+     */
+    public boolean verify(String translatedTemplate) {
+        if (StringUtils.isBlank(translatedTemplate)) {
+            return false;
+        }
+        int[] counts = new int[literals.length];
+        int from = 0;
+        int idx;
+        while ((idx = translatedTemplate.indexOf(SENTINEL_PREFIX, from)) >= 0) {
+            int slot = readSlot(translatedTemplate, idx);
+            if (slot < 0 || slot >= counts.length || ++counts[slot] > 1) {
+                return false;
+            }
+            from = idx + SENTINEL_PREFIX.length();
+        }
+        for (int count : counts) {
+            if (count != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把原始字面量回填到翻译后的模板中，单次线性拼接。
+     */
+    public String inline(String translatedTemplate) {
+        if (literals.length == 0) {
+            return translatedTemplate;
+        }
+        StringBuilder sb = new StringBuilder(translatedTemplate.length() + 16 * literals.length);
+        int from = 0;
+        int idx;
+        while ((idx = translatedTemplate.indexOf(SENTINEL_PREFIX, from)) >= 0) {
+            int slot = readSlot(translatedTemplate, idx);
+            if (slot < 0 || slot >= literals.length) {
+                sb.append(translatedTemplate, from, idx + SENTINEL_PREFIX.length());
+                from = idx + SENTINEL_PREFIX.length();
+                continue;
+            }
+            sb.append(translatedTemplate, from, idx).append(literals[slot]);
+            from = translatedTemplate.indexOf(SENTINEL_SUFFIX, idx) + SENTINEL_SUFFIX.length();
+        }
+        sb.append(translatedTemplate, from, translatedTemplate.length());
+        return sb.toString();
+    }
+
+    /**
+     * 字符串字面量按方言重新生成后是否与原文一致
+     */
+    private static boolean roundTrips(String quoted, SqlDialect dialect) {
+        if (quoted.length() < 2 || quoted.charAt(quoted.length() - 1) != '\'') {
+            // 未闭合
+            return false;
+        }
+        String value = quoted.substring(1, quoted.length() - 1).replace("''", "'");
+        return quoted.equals(dialect.quoteStringLiteral(value));
+    }
+
+    /**
+     * 数值字面量是否为规范写法: 不含指数, 且与其重新生成的结果(BigDecimal#toString)一致
+     */
+    private static boolean isCanonicalNumber(String sql, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = sql.charAt(i);
+            if (c == 'e' || c == 'E') {
+                return false;
+            }
+        }
+        String text = sql.substring(start, end);
+        return new BigDecimal(text).toString().equals(text);
+    }
+
+    /**
+     * 模板中最后一个非空白字符, 没有时返回 0
+     */
+    private static char lastSignificant(StringBuilder template) {
+        for (int i = template.length() - 1; i >= 0; i--) {
+            char c = template.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * from 之后第一个非空白字符, 没有时返回 0
+     */
+    private static char nextSignificant(String sql, int from) {
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 读取哨兵中的序号，格式不匹配时返回 -1
+     */
+    private static int readSlot(String s, int sentinelStart) {
+        int i = sentinelStart + SENTINEL_PREFIX.length();
+        int slot = 0;
+        int digits = 0;
+        while (i < s.length() && Character.isDigit(s.charAt(i))) {
+            slot = slot * 10 + (s.charAt(i++) - '0');
+            digits++;
+        }
+        return digits > 0 && s.startsWith(SENTINEL_SUFFIX, i) ? slot : -1;
+    }
+
+    private static void appendSentinel(StringBuilder sb, int slot) {
+        sb.append(SENTINEL_PREFIX).append(slot).append(SENTINEL_SUFFIX);
+    }
+
+    /**
+     * 跳过引号包裹的片段，成对的引号视为转义
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        final int len = sql.length();
+        while (i < len) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return len;
+    }
+
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        final int len = sql.length();
+        while (i < len && Character.isDigit(sql.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < len && sql.charAt(i) == '.' && Character.isDigit(sql.charAt(i + 1))) {
+            i++;
+            while (i < len && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+        }
+        if (i < len && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < len && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < len && Character.isDigit(sql.charAt(j))) {
+                while (j < len && Character.isDigit(sql.charAt(j))) {
+                    j++;
+                }
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isTypedLiteralKeyword(String word) {
+        if (word == null) {
+            return false;
+        }
+        switch (word.toUpperCase(Locale.ROOT)) {
+            case "DATE":
+            case "TIME":
+            case "TIMESTAMP":
+            case "INTERVAL":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRowCountKeyword(String word) {
+        if (word == null) {
+            return false;
+        }
+        switch (word.toUpperCase(Locale.ROOT)) {
+            case "LIMIT":
+            case "OFFSET":
+            case "FETCH":
+            case "FIRST":
+            case "NEXT":
+            case "TOP":
+            case "INTERVAL":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 分段的有损环形缓冲区，用于记录缓存命中后的访问顺序。
+ * <p>
+ * 1. 按线程 id 散列到不同的段，降低多线程命中同一热点 SQL 时的竞争。
+ * 2. 每段是固定大小的环形数组，写入只有一次 CAS，不分配对象，也不会阻塞。
+ * 3. 段写满时直接丢弃本次记录(有损)，访问顺序只是淘汰策略的参考，丢失少量记录不影响正确性。
+ * 4. 只允许一个消费线程(缓存维护线程)批量读取。
+ *
+ * @author ztq
+ */
+final class StripedReadBuffer<E> {
+
+    /**
+     * 每段容量, 必须是2的幂
+     */
+    static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    // 泛型数组无法直接创建, 数组只在本类内部使用且元素均为 Stripe<E>, 转换是安全的
+    @SuppressWarnings("unchecked")
+    StripedReadBuffer() {
+        int size = 1;
+        int target = Runtime.getRuntime().availableProcessors() * 2;
+        while (size < target) {
+            size <<= 1;
+        }
+        stripes = (Stripe<E>[]) new Stripe<?>[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeMask = size - 1;
+    }
+
+    /**
+     * 记录一次访问。
+     *
+     * @return 所在段已满(本次记录被丢弃)时返回 true，调用方可据此唤醒消费线程。
+     */
+    boolean offer(E e) {
+        long id = Thread.currentThread().getId();
+        Stripe<E> stripe = stripes[(int) (id ^ (id >>> 16)) & stripeMask];
+        return !stripe.offer(e);
+    }
+
+    /**
+     * 批量消费所有段中的记录，只能由单一消费线程调用。
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Stripe<E> stripe : stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    private static final class Stripe<E> {
+
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicLong readCounter = new AtomicLong();
+
+        boolean offer(E e) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            if (tail - head >= BUFFER_SIZE) {
+                return false;
+            }
+            // CAS 失败说明有其他线程同时写入同一段, 同样按有损处理
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) tail & BUFFER_MASK, e);
+                return true;
+            }
+            return false;
+        }
+
+        void drainTo(Consumer<E> consumer) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) head & BUFFER_MASK;
+                E e = buffer.get(index);
+                if (e == null) {
+                    // 写入方已占位但尚未发布, 留给下一轮
+                    break;
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(e);
+            }
+            readCounter.lazySet(head);
+        }
+    }
+}
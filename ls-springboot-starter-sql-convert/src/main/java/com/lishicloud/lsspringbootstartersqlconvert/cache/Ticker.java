@@ -0,0 +1,22 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+/**
+ * 缓存时间源(毫秒)。
+ * 缓存的过期判断与时间轮推进都只通过它读取时间，测试时可替换为手动推进的实现。
+ *
+ * @author ztq
+ */
+@FunctionalInterface
+public interface Ticker {
+
+    /**
+     * 系统时钟
+     */
+    Ticker SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return 当前时间(毫秒)
+     */
+    long read();
+
+}
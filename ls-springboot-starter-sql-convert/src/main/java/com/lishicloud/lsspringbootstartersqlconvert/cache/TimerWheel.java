@@ -0,0 +1,160 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮，负责缓存项的过期回收。
+ * <p>
+ * 1. 每一层由若干桶组成，桶内是按到期时间散列的双向链表，调度与撤销都是 O(1)。
+ * 2. 推进时间时只处理跨过的桶；高层桶到期后把尚未过期的节点重新调度到更精细的层级，
+ *    每个节点的摊还成本为 O(1)，且所有过期节点都会被回收，与访问顺序无关。
+ * 3. 节点的访问只会推迟过期时间，不在访问时调整时间轮，而是在桶到期时重新计算(惰性重调度)。
+ * 4. 非线程安全，只由缓存维护线程 linkedActuator 访问。
+ * <p>
+ * 层级(毫秒): 1.02秒 * 64, 65.5秒 * 64, 69.9分钟 * 64, 3.1天 * 64, 198.8天 * 1(溢出层)。
+ * 每一层的 桶数 * 桶宽 恰好等于上一层的桶宽(BUCKETS[i] == 1 << (SHIFT[i + 1] - SHIFT[i]))，
+ * 落入某一层的到期时间不会绕回到该层更早的桶。
+ *
+ * @author ztq
+ */
+final class TimerWheel {
+
+    private static final int[] BUCKETS = {64, 64, 64, 64, 1};
+    private static final int[] SHIFT = {10, 16, 22, 28, 34};
+    private static final long[] SPANS = {1L << 10, 1L << 16, 1L << 22, 1L << 28, 1L << 34};
+
+    private final Node[][] wheel;
+    private long currentTime;
+
+    TimerWheel(long now) {
+        this.currentTime = now;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new Sentinel();
+            }
+        }
+    }
+
+    /**
+     * 按节点当前的到期时间调度。
+     */
+    void schedule(Node node) {
+        long deadline = Math.max(node.deadline(), currentTime + 1);
+        link(findBucket(deadline), node);
+    }
+
+    /**
+     * 撤销节点的调度。
+     */
+    void deschedule(Node node) {
+        if (node.wheelNext != null) {
+            node.wheelPrev.wheelNext = node.wheelNext;
+            node.wheelNext.wheelPrev = node.wheelPrev;
+            node.wheelNext = null;
+            node.wheelPrev = null;
+        }
+    }
+
+    /**
+     * 推进时间，回收所有跨过的桶中已过期的节点，未过期的节点重新调度。
+     *
+     * @param now     当前时间
+     * @param evictor 过期节点的回收动作
+     */
+    void advance(long now, Consumer<Node> evictor) {
+        long previousTime = currentTime;
+        currentTime = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTime >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L) {
+                break;
+            }
+            expire(i, previousTicks, currentTicks - previousTicks, evictor);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<Node> evictor) {
+        Node[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = 0; i < steps; i++) {
+            Node sentinel = buckets[(start + i) & mask];
+            Node node = sentinel.wheelNext;
+            // 先摘下整个桶, 重新调度的节点可能落回同一个桶
+            sentinel.wheelNext = sentinel;
+            sentinel.wheelPrev = sentinel;
+            while (node != sentinel) {
+                Node next = node.wheelNext;
+                node.wheelNext = null;
+                node.wheelPrev = null;
+                if (node.expired(currentTime)) {
+                    evictor.accept(node);
+                } else {
+                    schedule(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node findBucket(long deadline) {
+        long duration = deadline - currentTime;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+
+    private static void link(Node sentinel, Node node) {
+        node.wheelPrev = sentinel.wheelPrev;
+        node.wheelNext = sentinel;
+        sentinel.wheelPrev.wheelNext = node;
+        sentinel.wheelPrev = node;
+    }
+
+    /**
+     * 时间轮中的节点
+     */
+    abstract static class Node {
+
+        Node wheelPrev;
+        Node wheelNext;
+
+        /**
+         * @return 按当前状态计算的到期时间
+         */
+        abstract long deadline();
+
+        /**
+         * @return 在给定时间是否已过期
+         */
+        abstract boolean expired(long now);
+    }
+
+    private static final class Sentinel extends Node {
+
+        Sentinel() {
+            wheelPrev = this;
+            wheelNext = this;
+        }
+
+        @Override
+        long deadline() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        boolean expired(long now) {
+            return false;
+        }
+    }
+}
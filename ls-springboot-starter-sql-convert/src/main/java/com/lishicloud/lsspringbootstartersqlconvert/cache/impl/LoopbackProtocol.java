@@ -0,0 +1,74 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache.impl;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * 本地缓存守护进程的线路协议。
+ * <p>
+ * 握手: 连接建立后服务端发送 [nonce:16 bytes]，客户端应答 [HMAC-SHA256(secret, nonce):32 bytes]，
+ * 服务端校验通过后应答 [ok:byte]，否则直接关闭连接；共享密钥本身不在连接上传输。
+ * <p>
+ * 请求: [op:byte][count:int] count * entry
+ * GET_ALL 的 entry 为 [key], 应答 [count:int] count * ([present:byte][value]?)
+ * PUT_ALL 的 entry 为 [key][value], 应答 [ok:byte]
+ * 字符串均为 [length:int][utf8]
+ *
+ * @author ztq
+ */
+final class LoopbackProtocol {
+
+    static final byte GET_ALL = 1;
+    static final byte PUT_ALL = 2;
+    static final byte OK = 0;
+
+    /**
+     * 单个字符串的上限, 防止损坏的长度字段耗尽内存
+     */
+    static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    static final int NONCE_BYTES = 16;
+    static final int MAC_BYTES = 32;
+
+    private LoopbackProtocol() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 握手应答: HMAC-SHA256(secret, nonce)
+     */
+    static byte[] mac(byte[] secret, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] secretBytes(String secret) {
+        assert null != secret && !secret.isEmpty();
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
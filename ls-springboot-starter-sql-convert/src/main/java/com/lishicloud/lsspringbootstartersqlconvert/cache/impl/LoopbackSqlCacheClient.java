@@ -0,0 +1,163 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache.impl;
+
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SecondLevelSqlCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 二级缓存的参考实现: 通过回环地址的 TCP 连接访问本机上的 {@link LoopbackSqlCacheServer}。
+ * <p>
+ * 1. 单连接，请求在独立的 IO 线程上串行执行，调用方只拿到 future；批量合并已由网关完成，单连接足够。
+ * 2. 连接断开或读写失败时关闭连接并以异常完成 future，下一次请求重新连接。
+ * 3. 读超时保证守护进程无响应时 IO 线程不会永久阻塞。
+ * 4. 每次建立连接时以共享密钥完成握手，密钥与守护进程不一致时连接失败。
+ * <p>
+ * 与 {@link LoopbackSqlCacheServer} 一样仅用于测试与验证。
+ *
+ * @author ztq
+ */
+@Slf4j
+public class LoopbackSqlCacheClient implements SecondLevelSqlCache {
+
+    private final InetSocketAddress address;
+    private final int timeoutMillis;
+    private final byte[] secret;
+    private final ExecutorService io;
+
+    // 以下字段只由 io 线程访问
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+
+    public LoopbackSqlCacheClient(int port, String secret) {
+        this("127.0.0.1", port, 1000, secret);
+    }
+
+    /**
+     * @param timeoutMillis 连接与读取超时(毫秒)
+     * @param secret        与守护进程共享的密钥, 不能为空
+     */
+    public LoopbackSqlCacheClient(String host, int port, int timeoutMillis, String secret) {
+        assert timeoutMillis > 0;
+        this.address = new InetSocketAddress(host, port);
+        this.timeoutMillis = timeoutMillis;
+        this.secret = LoopbackProtocol.secretBytes(secret);
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "LoopbackSqlCacheClient-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> getAll(List<String> keys) {
+        return CompletableFuture.supplyAsync(() -> call(() -> {
+            out.writeByte(LoopbackProtocol.GET_ALL);
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                LoopbackProtocol.writeString(out, key);
+            }
+            out.flush();
+            int count = in.readInt();
+            if (count != keys.size()) {
+                throw new IOException("unexpected response size " + count);
+            }
+            Map<String, String> found = new HashMap<>(count * 2);
+            for (String key : keys) {
+                if (in.readByte() != 0) {
+                    found.put(key, LoopbackProtocol.readString(in));
+                }
+            }
+            return found;
+        }), io);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(Map<String, String> entries) {
+        return CompletableFuture.supplyAsync(() -> call(() -> {
+            out.writeByte(LoopbackProtocol.PUT_ALL);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                LoopbackProtocol.writeString(out, entry.getKey());
+                LoopbackProtocol.writeString(out, entry.getValue());
+            }
+            out.flush();
+            if (in.readByte() != LoopbackProtocol.OK) {
+                throw new IOException("put rejected");
+            }
+            return (Void) null;
+        }), io);
+    }
+
+    private <T> T call(IoCall<T> call) {
+        try {
+            if (null == socket) {
+                connect();
+            }
+            return call.execute();
+        } catch (IOException e) {
+            disconnect();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket connected = new Socket();
+        try {
+            connected.setTcpNoDelay(true);
+            connected.connect(address, timeoutMillis);
+            connected.setSoTimeout(timeoutMillis);
+        } catch (IOException e) {
+            connected.close();
+            throw e;
+        }
+        socket = connected;
+        in = new DataInputStream(new BufferedInputStream(connected.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(connected.getOutputStream()));
+        byte[] nonce = new byte[LoopbackProtocol.NONCE_BYTES];
+        in.readFully(nonce);
+        out.write(LoopbackProtocol.mac(secret, nonce));
+        out.flush();
+        if (in.readByte() != LoopbackProtocol.OK) {
+            throw new IOException("handshake rejected");
+        }
+    }
+
+    private void disconnect() {
+        if (null != socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("LoopbackSqlCacheClient close socket failed: {}", e.getMessage());
+            }
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    @Override
+    public void close() {
+        io.execute(this::disconnect);
+        io.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface IoCall<T> {
+        T execute() throws IOException;
+    }
+}
@@ -0,0 +1,174 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache.impl;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+
+/**
+ * 二级缓存的参考守护进程，只监听回环地址，用于在单机上验证多实例共享翻译结果。
+ * <p>
+ * <b>仅用于测试与验证，不要在生产环境中使用。</b> 它存储的值是应用随后直接执行的 SQL，
+ * 能够写入它的进程就能改写应用执行的语句；这里只以共享密钥的握手拒绝本机上不知道密钥的进程，
+ * 没有传输加密、持久化与访问审计。
+ * <p>
+ * 1. 存储是一个有条目上限的 ConcurrentMap，写满后不再接受新 key(已有 key 仍可更新)。
+ * 2. 每个连接一个线程，先完成握手(参见 {@link LoopbackProtocol})，之后请求串行处理；握手失败或超时直接断开。
+ * 3. 可以嵌入进程内启动，也可以通过 main 方法独立运行: {@code LoopbackSqlCacheServer <port> [maxEntries]}，
+ * 共享密钥从环境变量 {@value #SECRET_ENV} 读取，避免出现在进程参数中。
+ *
+ * @author ztq
+ */
+@Slf4j
+public class LoopbackSqlCacheServer implements Closeable {
+
+    public static final String SECRET_ENV = "LOOPBACK_SQL_CACHE_SECRET";
+
+    /**
+     * 握手超时(毫秒), 未完成握手的连接不能长期占用线程
+     */
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private final Map<String, String> store = Maps.newConcurrentMap();
+    private final int maxEntries;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    private final ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * @param port       监听端口, 0 表示随机端口
+     * @param maxEntries 最多保存的条目数
+     * @param secret     与客户端共享的密钥, 不能为空
+     */
+    public LoopbackSqlCacheServer(int port, int maxEntries, String secret) throws IOException {
+        assert maxEntries > 0;
+        this.maxEntries = maxEntries;
+        this.secret = LoopbackProtocol.secretBytes(secret);
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "LoopbackSqlCacheServer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("LoopbackSqlCacheServer listening on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread worker = new Thread(() -> serve(socket), "LoopbackSqlCacheServer-" + socket.getPort());
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.error("LoopbackSqlCacheServer accept failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            if (!handshake(s, in, out)) {
+                log.warn("LoopbackSqlCacheServer rejected connection from port {}: bad handshake", s.getPort());
+                return;
+            }
+            while (running) {
+                byte op = in.readByte();
+                int count = in.readInt();
+                if (count < 0) {
+                    throw new IOException("corrupt count " + count);
+                }
+                if (op == LoopbackProtocol.GET_ALL) {
+                    out.writeInt(count);
+                    for (int i = 0; i < count; i++) {
+                        String value = store.get(LoopbackProtocol.readString(in));
+                        if (null == value) {
+                            out.writeByte(0);
+                        } else {
+                            out.writeByte(1);
+                            LoopbackProtocol.writeString(out, value);
+                        }
+                    }
+                } else if (op == LoopbackProtocol.PUT_ALL) {
+                    for (int i = 0; i < count; i++) {
+                        String key = LoopbackProtocol.readString(in);
+                        String value = LoopbackProtocol.readString(in);
+                        if (store.size() < maxEntries || store.containsKey(key)) {
+                            store.put(key, value);
+                        }
+                    }
+                    out.writeByte(LoopbackProtocol.OK);
+                } else {
+                    throw new IOException("unknown op " + op);
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // 客户端断开
+        } catch (IOException e) {
+            log.warn("LoopbackSqlCacheServer connection closed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 发送随机 nonce 并校验客户端的 HMAC 应答
+     */
+    private boolean handshake(Socket socket, DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] nonce = new byte[LoopbackProtocol.NONCE_BYTES];
+        random.nextBytes(nonce);
+        out.write(nonce);
+        out.flush();
+        byte[] answer = new byte[LoopbackProtocol.MAC_BYTES];
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        in.readFully(answer);
+        socket.setSoTimeout(0);
+        if (!MessageDigest.isEqual(LoopbackProtocol.mac(secret, nonce), answer)) {
+            return false;
+        }
+        out.writeByte(LoopbackProtocol.OK);
+        out.flush();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7420;
+        int maxEntries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        String secret = System.getenv(SECRET_ENV);
+        if (null == secret || secret.isEmpty()) {
+            throw new IllegalStateException("Missing shared secret, set environment variable " + SECRET_ENV);
+        }
+        new LoopbackSqlCacheServer(port, maxEntries, secret);
+        Thread.currentThread().join();
+    }
+}
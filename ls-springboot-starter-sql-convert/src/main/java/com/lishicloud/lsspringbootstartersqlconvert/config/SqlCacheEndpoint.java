@@ -0,0 +1,95 @@
+package com.lishicloud.lsspringbootstartersqlconvert.config;
+
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.SimpleDmlFastPath;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NearSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NegativeSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SecondLevelCacheGateway;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SimpleSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SingleFlight;
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL 翻译缓存的统计端点: /actuator/sqlcache
+ * <p>
+ * 按 Bean 名称输出应用中每个 {@link TranslationEngine} 的统计: cache 为 {@link SimpleSqlCache#stats()} 的快照，
+ * 以及已启用的近端缓存、二级缓存、负缓存、未命中合并与简单 DML 快速路径的统计。
+ * 引擎需要以 Bean 的形式注册(即把 builder.build() 的返回值声明为 Bean)才会出现在端点中。
+ *
+ * @author ztq
+ */
+@Endpoint(id = "sqlcache")
+public class SqlCacheEndpoint {
+
+    private final ListableBeanFactory beanFactory;
+
+    public SqlCacheEndpoint(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Object> sqlCache() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        beanFactory.getBeansOfType(TranslationEngine.class).forEach((name, engine) -> result.put(name, engineStats(engine)));
+        return result;
+    }
+
+    private static Map<String, Object> engineStats(TranslationEngine engine) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        SimpleSqlCache sqlCache = engine.getSqlCache();
+        if (null != sqlCache) {
+            result.put("cache", sqlCache.stats());
+        }
+        NearSqlCache nearCache = engine.getNearCache();
+        if (null != nearCache) {
+            Map<String, Object> near = new LinkedHashMap<>();
+            near.put("nearHitCount", nearCache.nearHitCount());
+            near.put("sharedHitCount", nearCache.sharedHitCount());
+            near.put("missCount", nearCache.missCount());
+            near.put("nearHitRate", nearCache.nearHitRate());
+            near.put("sharedHitRate", nearCache.sharedHitRate());
+            result.put("nearCache", near);
+        }
+        SecondLevelCacheGateway secondLevelCache = engine.getSecondLevelCache();
+        if (null != secondLevelCache) {
+            Map<String, Object> secondLevel = new LinkedHashMap<>();
+            secondLevel.put("hitCount", secondLevelCache.hitCount());
+            secondLevel.put("missCount", secondLevelCache.missCount());
+            secondLevel.put("fallbackCount", secondLevelCache.fallbackCount());
+            secondLevel.put("batchCount", secondLevelCache.batchCount());
+            secondLevel.put("circuitOpen", secondLevelCache.isCircuitOpen());
+            result.put("secondLevelCache", secondLevel);
+        }
+        NegativeSqlCache negativeCache = engine.getNegativeCache();
+        if (null != negativeCache) {
+            Map<String, Object> negative = new LinkedHashMap<>();
+            negative.put("policy", negativeCache.getPolicy());
+            negative.put("hitCount", negativeCache.hitCount());
+            negative.put("recordCount", negativeCache.recordCount());
+            negative.put("evictionCount", negativeCache.evictionCount());
+            negative.put("size", negativeCache.size());
+            result.put("negativeCache", negative);
+        }
+        SingleFlight singleFlight = engine.getSingleFlight();
+        if (null != singleFlight) {
+            Map<String, Object> flight = new LinkedHashMap<>();
+            flight.put("coalescedCount", singleFlight.coalescedCount());
+            flight.put("timeoutCount", singleFlight.timeoutCount());
+            flight.put("inFlightCount", singleFlight.inFlightCount());
+            result.put("singleFlight", flight);
+        }
+        SimpleDmlFastPath fastPath = engine.getSimpleDmlFastPath();
+        if (null != fastPath) {
+            Map<String, Object> simpleDml = new LinkedHashMap<>();
+            simpleDml.put("hitCount", fastPath.hitCount());
+            simpleDml.put("fallbackCount", fastPath.fallbackCount());
+            result.put("simpleDmlFastPath", simpleDml);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+package com.lishicloud.lsspringbootstartersqlconvert.config;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 引入 spring-boot-actuator 时注册 {@link SqlCacheEndpoint}，是否对外暴露由 management.endpoints 配置决定。
+ *
+ * @author ztq
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+public class SqlCacheEndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SqlCacheEndpoint sqlCacheEndpoint(ListableBeanFactory beanFactory) {
+        return new SqlCacheEndpoint(beanFactory);
+    }
+}
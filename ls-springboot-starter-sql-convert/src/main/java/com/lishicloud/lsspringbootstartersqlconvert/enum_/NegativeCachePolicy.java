@@ -0,0 +1,16 @@
+package com.lishicloud.lsspringbootstartersqlconvert.enum_;
+
+/**
+ * 无法翻译的SQL(解析失败、不支持的语句类型)的处理策略
+ *
+ * @author ztq
+ */
+public enum NegativeCachePolicy {
+
+    //原样返回原始 SQL, 交由数据库自行处理
+    PASSTHROUGH,
+
+    //抛出首次失败时的异常
+    RETHROW
+
+}
@@ -0,0 +1,19 @@
+package com.lishicloud.lsspringbootstartersqlconvert.enum_;
+
+/**
+ * SQL 缓存 Map 的 key 形式
+ *
+ * @author ztq
+ */
+public enum SqlCacheKeyMode {
+
+    //SQL 全文作为 key
+    TEXT,
+
+    //128 位指纹作为 key, 节点保留 SQL 全文, 命中后比对全文以排除碰撞
+    FINGERPRINT,
+
+    //128 位指纹作为 key, 不保留 SQL 全文也不比对, 以极低的碰撞概率换取内存
+    FINGERPRINT_UNVERIFIED
+
+}
@@ -0,0 +1,16 @@
+package com.lishicloud.lsspringbootstartersqlconvert.enum_;
+
+/**
+ * SQL 缓存 key 的构建模式
+ *
+ * @author ztq
+ */
+public enum SqlCacheMode {
+
+    //原始 SQL 全文作为 key
+    EXACT,
+
+    //字面量归一化后的模板作为 key, 命中后回填字面量
+    TEMPLATE
+
+}
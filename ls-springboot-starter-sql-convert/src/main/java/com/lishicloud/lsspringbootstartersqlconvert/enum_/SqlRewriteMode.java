@@ -0,0 +1,16 @@
+package com.lishicloud.lsspringbootstartersqlconvert.enum_;
+
+/**
+ * 翻译结果的生成方式
+ *
+ * @author ztq
+ */
+public enum SqlRewriteMode {
+
+    //由 Calcite 重新生成整条语句, 输出为 Calcite 的规范格式
+    UNPARSE,
+
+    //按语法树位置把规则的改动拼接回原始SQL, 保留原有格式、注释与提示; 改动无法局部替换时回退到 UNPARSE
+    SPLICE
+
+}
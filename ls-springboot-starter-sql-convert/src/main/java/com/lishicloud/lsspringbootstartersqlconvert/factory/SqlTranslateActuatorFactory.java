@@ -1,10 +1,16 @@
 package com.lishicloud.lsspringbootstartersqlconvert.factory;
 
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.SimpleDmlFastPath;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.StandardSqlTranslateActuator;
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.TranslateContext;
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.impl.DeleteTranslateActuator;
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.impl.InsertTranslateActuator;
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.impl.SelectTranslateActuator;
 import com.lishicloud.lsspringbootstartersqlconvert.actuator.impl.UpdateTranslateActuator;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.SqlParserPool;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
 import org.apache.calcite.avatica.util.Casing;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.SqlKind;
@@ -12,62 +18,111 @@ import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * Simple Factory
+ * 每个翻译引擎持有一个实例, 携带引擎的方言与转换规则。
+ * 每种 DML 的执行器在构造时创建一次, 之后只读, 由所有线程共享;
+ * 每次翻译只新建一个 {@link TranslateContext} 保存本次解析的语法树, 解析器按线程复用(参见 {@link SqlParserPool})。
+ * <p>
+ * 启用 {@link SimpleDmlFastPath} 时先尝试快速路径，无法识别的语句再交给 Calcite 解析。
+ * 翻译结果的生成方式参见 {@link SqlRewriteMode}，快速路径的输出与 UNPARSE 一致，SPLICE 模式下不启用。
  *
  * @author ztq
  */
 public class SqlTranslateActuatorFactory {
 
-    private static final Map<SqlKind, TranslateActuator> ACTUATORS = new HashMap<>();
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
 
+    private static final SqlParserPool PARSER_POOL = new SqlParserPool(PARSER_CONFIG);
 
-    public static synchronized void putTranslate(SqlKind sqlKind,TranslateActuator translateActuator){
-        ACTUATORS.put(sqlKind,translateActuator);
+    private final Map<SqlKind, StandardSqlTranslateActuator> actuators;
+
+    private final SqlRewriteMode rewriteMode;
+
+    /**
+     * 简单 DML 的快速路径, 为 null 时不启用
+     */
+    @Nullable
+    private final SimpleDmlFastPath simpleDmlFastPath;
+
+    public SqlTranslateActuatorFactory(SqlDialect dialect, TranslateRules rules) {
+        this(dialect, rules, SqlRewriteMode.UNPARSE, true);
+    }
+
+    /**
+     * @param rewriteMode       翻译结果的生成方式
+     * @param simpleDmlFastPath 是否启用简单 DML 的快速路径, 方言或规则不适用、SPLICE 模式下即使启用也不生效
+     */
+    public SqlTranslateActuatorFactory(SqlDialect dialect, TranslateRules rules, SqlRewriteMode rewriteMode,
+                                       boolean simpleDmlFastPath) {
+        assert null != dialect && null != rules && null != rewriteMode;
+        Map<SqlKind, StandardSqlTranslateActuator> actuators = new EnumMap<>(SqlKind.class);
+        for (StandardSqlTranslateActuator actuator : Arrays.asList(
+                new InsertTranslateActuator(dialect, rules),
+                new UpdateTranslateActuator(dialect, rules),
+                new DeleteTranslateActuator(dialect, rules),
+                new SelectTranslateActuator(dialect, rules))) {
+            actuators.put(actuator.DML(), actuator);
+        }
+        // 可以继续添加其他 SQL 操作类型的处理
+        this.actuators = Collections.unmodifiableMap(actuators);
+        this.rewriteMode = rewriteMode;
+        this.simpleDmlFastPath = simpleDmlFastPath && rewriteMode == SqlRewriteMode.UNPARSE ? SimpleDmlFastPath.create(dialect, rules, PARSER_CONFIG, sql -> {
+            try {
+                return translateOfCalcite(sql);
+            } catch (SqlParseException e) {
+                return null;
+            }
+        }) : null;
+    }
+
+    /**
+     * 获取 sqlKind 对应的共享执行器
+     *
+     * @throws UnsupportedOperationException 不支持的 SQL 类型
+     */
+    public TranslateActuator getTranslateActuator(SqlKind sqlKind) {
+        TranslateActuator translateActuator = actuators.get(sqlKind);
+        if (null == translateActuator) {
+            throw new UnsupportedOperationException("Unsupported SQL kind: " + sqlKind);
+        }
+        return translateActuator;
     }
+
     /**
-     * 默认标准SQL
+     * 默认标准SQL: 简单 DML 由快速路径直接翻译, 其余解析后交由对应的执行器翻译
      */
-    public static TranslateActuator getTranslateActuatorOfAuto(String sql, SqlDialect dialect) throws SqlParseException {
-        SqlParser.Config build = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
-        SqlParser parser = SqlParser.create(sql,build);
-        SqlNode sqlNode = parser.parseQuery();
-        TranslateActuator translateActuator;
-        switch (sqlNode.getKind()) {
-            case INSERT:
-                if (null == (translateActuator = ACTUATORS.get(SqlKind.INSERT))) {
-                    translateActuator = new InsertTranslateActuator(sqlNode, dialect);
-                    putTranslate(SqlKind.INSERT,translateActuator);
-                }
-                return translateActuator;
-            case UPDATE:
-                if (null == (translateActuator = ACTUATORS.get(SqlKind.UPDATE))) {
-                    translateActuator = new UpdateTranslateActuator(sqlNode, dialect);
-                    putTranslate(SqlKind.UPDATE,translateActuator);
-                }
-                return translateActuator;
-            case DELETE:
-                if (null == (translateActuator = ACTUATORS.get(SqlKind.DELETE))) {
-                    translateActuator = new DeleteTranslateActuator(sqlNode, dialect);
-                    putTranslate(SqlKind.DELETE,translateActuator);
-                }
-                return translateActuator;
-            case SELECT:
-                if (null == (translateActuator = ACTUATORS.get(SqlKind.SELECT))) {
-                    translateActuator = new SelectTranslateActuator(sqlNode, dialect);
-                    putTranslate(SqlKind.SELECT,translateActuator);
-                }
-                return translateActuator;
-            // 可以继续添加其他 SQL 操作类型的处理
-            default:
-                throw new UnsupportedOperationException("Unsupported SQL kind: " + sqlNode.getKind());
+    public String translateOfAuto(String sql) throws SqlParseException {
+        if (null != simpleDmlFastPath) {
+            String translated = simpleDmlFastPath.translate(sql);
+            if (null != translated) {
+                return translated;
+            }
         }
+        return translateOfCalcite(sql);
+    }
+
+    private String translateOfCalcite(String sql) throws SqlParseException {
+        SqlNode sqlNode = PARSER_POOL.parseQuery(sql);
+        TranslateContext context = rewriteMode == SqlRewriteMode.SPLICE ? new TranslateContext(sqlNode, sql) : new TranslateContext(sqlNode);
+        return getTranslateActuator(sqlNode.getKind()).translateActuatorSql(context);
+    }
+
+    /**
+     * 快速路径的命中统计, 未启用时为 null
+     */
+    @Nullable
+    public SimpleDmlFastPath getSimpleDmlFastPath() {
+        return simpleDmlFastPath;
     }
 
-    public static TranslateActuator getTranslateActuatorOfAuto(String sql, SqlDialect dialect, int mode) throws SqlParseException {
+    public String translateOfAuto(String sql, int mode) throws SqlParseException {
         //todo 未实现
         return null;
     }
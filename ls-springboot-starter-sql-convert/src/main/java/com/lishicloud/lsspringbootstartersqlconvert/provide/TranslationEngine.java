@@ -0,0 +1,364 @@
+package com.lishicloud.lsspringbootstartersqlconvert.provide;
+
+
+import com.lishicloud.lsspringbootstartersqlconvert.actuator.SimpleDmlFastPath;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NearSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.NegativeSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SecondLevelCacheGateway;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SimpleSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SingleFlight;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlDependencies;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlTemplate;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.factory.SqlTranslateActuatorFactory;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerResolver;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+
+/**
+ * SQL 翻译引擎，由 {@link com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder#build()} 创建，创建后不可变。
+ * <p>
+ * 引擎持有自己的方言、转换规则快照({@link TranslateRules})与各级缓存，翻译时不读写任何全局可变状态。
+ * 同一个 JVM 中可以同时运行多个引擎(例如不同的目标方言或表拥有者)，引擎之间互不影响、没有共享的竞争点。
+ * <p>
+ * 配置了 {@link OwnerResolver} 时(每个租户一个 schema)，翻译与各级缓存只处理带拥有者占位符的结果，
+ * 返回前替换为当前调用的拥有者，所有租户共享同一个引擎与同一份缓存。
+ * <p>
+ * 引擎持有 SQL 缓存与二级缓存的后台线程, 不再使用(例如重建引擎)时需要 {@link #close()}，否则要到 JVM 关闭时才会释放。
+ *
+ * @author admin
+ */
+@Slf4j
+public final class TranslationEngine implements AutoCloseable {
+
+    private final SqlDialect sqlDialect;
+    private final TranslateRules rules;
+    private final SqlTranslateActuatorFactory actuatorFactory;
+    /**
+     * SQL缓存, 为 null 时不启用
+     */
+    @Nullable
+    private final SimpleSqlCache sqlCache;
+    private final SqlCacheMode sqlCacheMode;
+    /**
+     * 未命中合并, 为 null 时不启用
+     */
+    @Nullable
+    private final SingleFlight singleFlight;
+    /**
+     * 无法翻译的SQL的负缓存, 为 null 时不启用
+     */
+    @Nullable
+    private final NegativeSqlCache negativeCache;
+    /**
+     * 线程私有的近端缓存, 为 null 时直接访问 sqlCache
+     */
+    @Nullable
+    private final NearSqlCache nearCache;
+    /**
+     * 二级缓存, 为 null 时不启用
+     */
+    @Nullable
+    private final SecondLevelCacheGateway secondLevelCache;
+    /**
+     * 按调用解析的表拥有者, 为 null 时翻译结果中不含拥有者占位符
+     */
+    @Nullable
+    private final OwnerResolver ownerResolver;
+
+    private volatile boolean closed;
+
+    public TranslationEngine(SqlDialect sqlDialect, TranslateRules rules) {
+        this(sqlDialect, rules, SqlRewriteMode.UNPARSE, true, null, SqlCacheMode.EXACT, null, null, null, null, null);
+    }
+
+    /**
+     * @param rewriteMode       翻译结果的生成方式, 参见 {@link SqlRewriteMode}
+     * @param simpleDmlFastPath 是否启用简单 DML 的快速路径, 参见 {@link SimpleDmlFastPath}
+     * @param ownerResolver     规则中 {@link OwnerOfTable#OwnerOfTable(OwnerResolver)} 的解析器, 没有时为 null
+     */
+    public TranslationEngine(SqlDialect sqlDialect, TranslateRules rules, SqlRewriteMode rewriteMode,
+                             boolean simpleDmlFastPath, @Nullable SimpleSqlCache sqlCache,
+                             SqlCacheMode sqlCacheMode, @Nullable SingleFlight singleFlight,
+                             @Nullable NegativeSqlCache negativeCache, @Nullable NearSqlCache nearCache,
+                             @Nullable SecondLevelCacheGateway secondLevelCache, @Nullable OwnerResolver ownerResolver) {
+        assert null != sqlDialect && null != rules && null != sqlCacheMode;
+        this.sqlDialect = sqlDialect;
+        this.rules = rules;
+        this.actuatorFactory = new SqlTranslateActuatorFactory(sqlDialect, rules, rewriteMode, simpleDmlFastPath);
+        this.sqlCache = sqlCache;
+        this.sqlCacheMode = sqlCacheMode;
+        this.singleFlight = singleFlight;
+        this.negativeCache = negativeCache;
+        this.nearCache = nearCache;
+        this.secondLevelCache = secondLevelCache;
+        this.ownerResolver = ownerResolver;
+    }
+
+    /**
+     * @throws IllegalStateException 引擎已关闭
+     */
+    public String convert(String originalSQL) {
+        if (closed) {
+            throw new IllegalStateException("TranslationEngine is closed");
+        }
+        log.info("SQLDialect --> original sql : [{}]", originalSQL);
+        if (null != ownerResolver) {
+            return convertOfOwner(originalSQL);
+        }
+        return convertOfMode(originalSQL);
+    }
+
+    /**
+     * 按调用解析拥有者: 翻译结果(或缓存)中的拥有者为占位符, 返回前替换为当前调用的拥有者
+     *
+     * @throws IllegalArgumentException SQL 中含有拥有者占位符, 无法与翻译规则写入的占位符区分
+     * @throws IllegalStateException    解析器没有返回拥有者, 或返回的拥有者不是普通标识符(拥有者原样拼入SQL)
+     */
+    private String convertOfOwner(String originalSQL) {
+        if (originalSQL.contains(OwnerOfTable.OWNER_PLACEHOLDER)) {
+            throw new IllegalArgumentException("SQL must not contain the table owner placeholder " + OwnerOfTable.OWNER_PLACEHOLDER);
+        }
+        String ownerName = ownerResolver.resolveOwner();
+        if (StringUtils.isBlank(ownerName)) {
+            throw new IllegalStateException("OwnerResolver returned no table owner");
+        }
+        if (!OwnerOfTable.isPlainIdentifier(ownerName)) {
+            throw new IllegalStateException("OwnerResolver returned an illegal table owner : " + ownerName);
+        }
+        return OwnerOfTable.inlineOwner(convertOfMode(originalSQL), ownerName);
+    }
+
+    private String convertOfMode(String originalSQL) {
+        if (null != sqlCache && sqlCacheMode == SqlCacheMode.TEMPLATE) {
+            return convertOfTemplate(originalSQL);
+        }
+        return convertOfExact(originalSQL);
+    }
+
+    private String convertOfExact(String originalSQL) {
+        String newSQL;
+        if (null == sqlCache || StringUtils.isBlank(newSQL = cacheGet(originalSQL))) {
+            if (null != negativeCache && null != (newSQL = negativeCache.lookup(originalSQL))) {
+                log.info("SQLDialect --> after processing sql, From Negative Cache : [{}]", newSQL);
+                return newSQL;
+            }
+            newSQL = load(originalSQL, () -> {
+                String translated = translateAndPut(originalSQL, () -> translate(originalSQL));
+                // 无法翻译且策略为原样返回时不进入SQL缓存
+                return null == translated ? originalSQL : translated;
+            });
+            log.info("SQLDialect --> after processing sql, From TranslateActuator : [{}]", newSQL);
+        } else {
+            log.info("SQLDialect --> after processing sql, From Cache : [{}]", newSQL);
+        }
+        return newSQL;
+    }
+
+    /**
+     * 模板模式: 以字面量归一化后的模板作为缓存 key, 缓存翻译后的模板, 命中时只回填字面量。
+     * 翻译规则改写了字面量的模板会被标记为不可复用, 之后按原始 SQL 精确缓存。
+     * 含有哨兵前缀的 SQL 可能与某个模板全文相同, 不读写SQL缓存, 保证模板的翻译结果与不可复用标记只由模板读到。
+     */
+    private String convertOfTemplate(String originalSQL) {
+        if (SqlTemplate.containsSentinel(originalSQL)) {
+            return convertOfUncached(originalSQL);
+        }
+        SqlTemplate sqlTemplate = SqlTemplate.parse(originalSQL, sqlDialect);
+        if (sqlTemplate.literalSize() == 0) {
+            // 没有可提取的字面量, 模板即原始SQL
+            return convertOfExact(originalSQL);
+        }
+        String translatedTemplate = cacheGet(sqlTemplate.getTemplate());
+        boolean fromCache = StringUtils.isNotBlank(translatedTemplate);
+        if (!fromCache) {
+            translatedTemplate = load(sqlTemplate.getTemplate(),
+                    () -> translateAndPut(sqlTemplate.getTemplate(), () -> translateTemplate(sqlTemplate)));
+        }
+        if (SqlTemplate.NOT_TEMPLATABLE.equals(translatedTemplate)) {
+            return convertOfExact(originalSQL);
+        }
+        String newSQL = sqlTemplate.inline(translatedTemplate);
+        log.info("SQLDialect --> after processing sql, From {} : [{}]", fromCache ? "Template Cache" : "TranslateActuator Of Template", newSQL);
+        return newSQL;
+    }
+
+    private String convertOfUncached(String originalSQL) {
+        String newSQL;
+        if (null != negativeCache && null != (newSQL = negativeCache.lookup(originalSQL))) {
+            log.info("SQLDialect --> after processing sql, From Negative Cache : [{}]", newSQL);
+            return newSQL;
+        }
+        String translated = translate(originalSQL);
+        newSQL = null == translated ? originalSQL : translated;
+        log.info("SQLDialect --> after processing sql, From TranslateActuator : [{}]", newSQL);
+        return newSQL;
+    }
+
+    @Nullable
+    private String cacheGet(String key) {
+        return null != nearCache ? nearCache.get(key) : sqlCache.get(key);
+    }
+
+    /**
+     * 未命中后的加载, 启用 single-flight 时同一 key 的并发加载只执行一次
+     */
+    private String load(String key, Supplier<String> loader) {
+        return null != singleFlight ? singleFlight.execute(key, loader) : loader.get();
+    }
+
+    /**
+     * 执行翻译并写入SQL缓存, 翻译期间收集依赖(表、关键字、函数)随缓存项一起写入, 用于按依赖失效
+     * 启用二级缓存时先查询二级缓存, 命中则跳过翻译; 翻译结果同时异步写入二级缓存
+     *
+     * @return 翻译结果, 为 null 时不写入缓存
+     */
+    @Nullable
+    private String translateAndPut(String key, Supplier<String> translator) {
+        if (null != secondLevelCache) {
+            SecondLevelCacheGateway.Loaded loaded = secondLevelCache.get(key);
+            if (null != loaded) {
+                sqlCache.put(key, loaded.getValue(), loaded.getDependencies());
+                return loaded.getValue();
+            }
+        }
+        String translated;
+        String[] dependencies;
+        SqlDependencies.begin();
+        try {
+            translated = translator.get();
+        } finally {
+            dependencies = SqlDependencies.end();
+        }
+        if (null != translated && null != sqlCache) {
+            sqlCache.put(key, translated, dependencies);
+            if (null != secondLevelCache) {
+                secondLevelCache.put(key, translated, dependencies);
+            }
+        }
+        return translated;
+    }
+
+    private String translateTemplate(SqlTemplate sqlTemplate) {
+        String translatedTemplate;
+        try {
+            translatedTemplate = actuatorFactory.translateOfAuto(sqlTemplate.getTemplate());
+        } catch (SqlParseException e) {
+            // 模板无法解析(例如字面量所在位置受语法约束), 交由精确模式处理
+            log.debug("SQLDialect --> template not parsable : [{}], cause : {}", sqlTemplate.getTemplate(), e.getMessage());
+            return SqlTemplate.NOT_TEMPLATABLE;
+        } catch (RuntimeException e) {
+            // 翻译规则无法处理哨兵(例如要求数值参数), 交由精确模式处理, 精确模式中的异常照常抛出
+            log.warn("SQLDialect --> template not translatable : [{}], falling back to exact mode", sqlTemplate.getTemplate(), e);
+            return SqlTemplate.NOT_TEMPLATABLE;
+        }
+        return sqlTemplate.verify(translatedTemplate) ? translatedTemplate : SqlTemplate.NOT_TEMPLATABLE;
+    }
+
+    /**
+     * 翻译原始SQL, 解析失败或语句类型不受支持时记入负缓存
+     *
+     * @return 无法翻译且负缓存策略为 PASSTHROUGH 时返回 null
+     */
+    @Nullable
+    private String translate(String originalSQL) {
+        RuntimeException failure;
+        try {
+            return actuatorFactory.translateOfAuto(originalSQL);
+        } catch (SqlParseException e) {
+            failure = new RuntimeException(null != e.getCause() ? e.getCause().getMessage() : e.getMessage(), e);
+        } catch (UnsupportedOperationException e) {
+            failure = e;
+        }
+        if (null != negativeCache) {
+            negativeCache.record(originalSQL, failure);
+            return null;
+        }
+        log.warn("SQLDialect --> untranslatable sql : [{}], cause : {}", originalSQL, failure.toString());
+        throw failure;
+    }
+
+    /**
+     * 停止并注销引擎持有的 SQL 缓存与二级缓存(维护线程、派发线程、快照与堆外内存), 重复调用无效。
+     * 转换规则不属于引擎独有(参见 {@link #getRules()}), 不在此释放。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (null != secondLevelCache) {
+            secondLevelCache.close();
+        }
+        if (null != sqlCache) {
+            sqlCache.close();
+        }
+    }
+
+    public SqlDialect getSqlDialect() {
+        return sqlDialect;
+    }
+
+    public TranslateRules getRules() {
+        return rules;
+    }
+
+    public SqlCacheMode getSqlCacheMode() {
+        return sqlCacheMode;
+    }
+
+    /**
+     * 简单 DML 快速路径统计(命中、回退次数), 未启用或不适用时为 null
+     */
+    @Nullable
+    public SimpleDmlFastPath getSimpleDmlFastPath() {
+        return actuatorFactory.getSimpleDmlFastPath();
+    }
+
+    /**
+     * SQL缓存统计, 未启用时为 null
+     */
+    @Nullable
+    public SimpleSqlCache getSqlCache() {
+        return sqlCache;
+    }
+
+    /**
+     * 近端缓存统计(各级命中次数与命中率), 未启用时为 null
+     */
+    @Nullable
+    public NearSqlCache getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * 二级缓存统计(命中、降级次数等), 未启用时为 null
+     */
+    @Nullable
+    public SecondLevelCacheGateway getSecondLevelCache() {
+        return secondLevelCache;
+    }
+
+    /**
+     * 负缓存统计(命中、记录次数等), 未启用时为 null
+     */
+    @Nullable
+    public NegativeSqlCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * 未命中合并统计(避免的重复翻译次数等), 未启用时为 null
+     */
+    @Nullable
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+}
@@ -1,9 +1,8 @@
 package com.lishicloud.lsspringbootstartersqlconvert.translate;
 
 import org.apache.calcite.sql.SqlNode;
-import org.springframework.util.CollectionUtils;
 
-import java.util.List;
+import java.util.Collection;
 
 /**
  * 针对 Select Or Having `s columns 的Translate 流水线式处理
@@ -12,25 +11,12 @@ import java.util.List;
 public abstract class ColumnsTranslate extends Pipeline implements Translate {
 
     /**
-     * 领域私有(实现 SelectRowsTranslate)
+     * 本规则只改写的列名(大小写任意), 在 build 时编入 {@link TranslateRules} 的分派索引。
+     * 声明后只有最后一段名称在其中的标识符会交给 {@link #translate(SqlNode)}, 其余节点跳过本规则;
+     * 返回 null(默认)时每个节点都会交给本规则。
      */
-    protected static List<ColumnsTranslate> selectRowsOfNormTranslateOfUnmodifiable = null;
-
-
-    /**
-     * Pipeline of Translate Actuator
-     *
-     * @param sqlNode 待转换的 SQL 节点。
-     * @return 转换后的 SQL 节点。如果未应用任何转换，则返回原始节点。
-     */
-    public static SqlNode doTranslateOfPipeline(SqlNode sqlNode) {
-        SqlNode targetNode = sqlNode;
-        if (!CollectionUtils.isEmpty(selectRowsOfNormTranslateOfUnmodifiable)) {
-            for (Translate translateObj : selectRowsOfNormTranslateOfUnmodifiable) {
-                targetNode =translateObj.translate(targetNode);
-            }
-        }
-        return targetNode;
+    protected Collection<String> targetColumnNames() {
+        return null;
     }
 
 }
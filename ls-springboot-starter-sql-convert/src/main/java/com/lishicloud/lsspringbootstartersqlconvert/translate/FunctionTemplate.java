@@ -0,0 +1,178 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDataTypeSpec;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlIntervalQualifier;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.util.SqlShuttle;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * 函数改写模板, 例如 IF -> "CASE WHEN $0 THEN $1 ELSE $2 END"。
+ * <p>
+ * 模板在登记规则时解析一次为语法树, $n 表示原函数的第 n 个参数(从 0 开始)。
+ * 翻译时把原参数的语法树直接代入占位符, 不经过字符串转换与再次解析, 参数保留原有的结构与优先级。
+ * 模板的语法树只读, 由所有线程共享; 代入时复制整棵模板树, 返回的语法树不与模板或其他调用共享任何节点,
+ * 翻译的后续步骤可以原地修改它(例如执行器替换子节点)。同一参数被多个占位符引用时, 除第一处外代入的都是参数的副本。
+ *
+ * @author ztq
+ */
+public final class FunctionTemplate {
+
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+
+    private final String template;
+
+    private final SqlNode expression;
+
+    /**
+     * 模板引用的参数个数(最大占位符序号 + 1), 原函数的参数不足时不改写
+     */
+    private final int arity;
+
+    private FunctionTemplate(String template, SqlNode expression, int arity) {
+        this.template = template;
+        this.expression = expression;
+        this.arity = arity;
+    }
+
+    /**
+     * 解析模板
+     *
+     * @throws IllegalArgumentException 模板不是合法的 SQL 表达式
+     */
+    public static FunctionTemplate compile(String template) {
+        assert null != template;
+        SqlNode expression;
+        try {
+            expression = SqlParser.create(template, PARSER_CONFIG).parseExpression();
+        } catch (SqlParseException e) {
+            throw new IllegalArgumentException("Failed to parse function template : " + template, e);
+        }
+        int[] arity = new int[1];
+        expression.accept(new SqlShuttle() {
+            @Override
+            public SqlNode visit(SqlIdentifier id) {
+                arity[0] = Math.max(arity[0], placeholder(id) + 1);
+                return id;
+            }
+        });
+        return new FunctionTemplate(template, expression, arity[0]);
+    }
+
+    /**
+     * 以 call 的参数代入模板
+     *
+     * @return 新的语法树, call 的参数个数少于模板引用的参数时返回 null
+     */
+    @Nullable
+    public SqlNode apply(SqlCall call) {
+        List<SqlNode> operands = call.getOperandList();
+        if (operands.size() < arity) {
+            return null;
+        }
+        return expression.accept(new Copier(operands));
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * 深复制语法树并代入占位符: 叶子节点逐个复制, 因此路径上的每个 SqlCall、SqlNodeList 都会重建;
+     * 没有子节点的 SqlCall、SqlNodeList 单独复制
+     */
+    private static final class Copier extends SqlShuttle {
+
+        /**
+         * 代入占位符的参数, 为 null 时不代入(复制参数本身)
+         */
+        @Nullable
+        private final List<SqlNode> operands;
+
+        @Nullable
+        private final boolean[] substituted;
+
+        private Copier(@Nullable List<SqlNode> operands) {
+            this.operands = operands;
+            this.substituted = null == operands ? null : new boolean[operands.size()];
+        }
+
+        @Override
+        public SqlNode visit(SqlIdentifier id) {
+            int index = null == operands ? -1 : placeholder(id);
+            if (index < 0) {
+                return id.clone(id.getParserPosition());
+            }
+            SqlNode operand = operands.get(index);
+            if (substituted[index]) {
+                return null == operand ? null : operand.accept(new Copier(null));
+            }
+            substituted[index] = true;
+            return operand;
+        }
+
+        @Override
+        public SqlNode visit(SqlLiteral literal) {
+            return literal.clone(literal.getParserPosition());
+        }
+
+        @Override
+        public SqlNode visit(SqlDynamicParam param) {
+            return param.clone(param.getParserPosition());
+        }
+
+        @Override
+        public SqlNode visit(SqlDataTypeSpec type) {
+            return type.clone(type.getParserPosition());
+        }
+
+        @Override
+        public SqlNode visit(SqlIntervalQualifier intervalQualifier) {
+            return intervalQualifier.clone(intervalQualifier.getParserPosition());
+        }
+
+        @Override
+        public SqlNode visit(SqlCall call) {
+            SqlNode copied = super.visit(call);
+            return copied == call ? call.clone(call.getParserPosition()) : copied;
+        }
+
+        @Override
+        public SqlNode visit(SqlNodeList nodeList) {
+            SqlNode copied = super.visit(nodeList);
+            return copied == nodeList ? nodeList.clone(nodeList.getParserPosition()) : copied;
+        }
+    }
+
+    /**
+     * 占位符 $n 的序号, 不是占位符时返回 -1
+     */
+    private static int placeholder(SqlIdentifier id) {
+        if (!id.isSimple()) {
+            return -1;
+        }
+        String name = id.getSimple();
+        if (name.length() < 2 || name.length() > 4 || name.charAt(0) != '$') {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+}
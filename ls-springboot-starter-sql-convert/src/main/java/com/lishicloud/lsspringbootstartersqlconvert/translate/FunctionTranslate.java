@@ -1,7 +1,6 @@
 package com.lishicloud.lsspringbootstartersqlconvert.translate;
 
 
-import com.google.common.collect.Maps;
 import org.apache.calcite.sql.*;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
@@ -10,7 +9,6 @@ import org.apache.calcite.sql.type.InferTypes;
 import org.apache.calcite.sql.type.OperandTypes;
 import org.apache.calcite.sql.type.ReturnTypes;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.util.CollectionUtils;
 
 import java.util.*;
 
@@ -23,22 +21,20 @@ import java.util.*;
 public abstract class FunctionTranslate extends Pipeline implements Translate {
 
     /**
-     * 领域私有(实现 FunctionTranslate)
+     * customTranslateOfArgs 返回的表达式的解析器, 使用 Calcite 的默认配置
      */
-    protected static HashMap<String, FunctionTranslate> rowsFunctionOfTranslateUnmodifiableMap;
+    private static final SqlParserPool CUSTOM_EXPRESSION_PARSERS = new SqlParserPool(SqlParser.config());
 
     /**
-     * 在构造函数中，将此类的实例与目标函数名称相关联并存储到映射中。
+     * {@link #templateOfArgs()} 解析后的模板, 登记规则时由 {@link TranslateRules} 生成
+     */
+    private FunctionTemplate template;
+
+    /**
+     * 实例只在 {@link TranslateRules} 中按目标函数名称(大写)登记, 不写入任何静态状态。
      */
     public FunctionTranslate() {
         super();
-        synchronized (REGISTER_LOCK) {
-            assert this.valid();
-            if (rowsFunctionOfTranslateUnmodifiableMap == null) {
-                rowsFunctionOfTranslateUnmodifiableMap = Maps.newHashMap();
-            }
-            rowsFunctionOfTranslateUnmodifiableMap.put(this.targetFunctionName().toUpperCase(Locale.ROOT), this);
-        }
     }
 
     public boolean valid() {
@@ -81,74 +77,94 @@ public abstract class FunctionTranslate extends Pipeline implements Translate {
     }
 
     /**
-     * 根据提供的函数名称执行 SQL 函数的转换。
-     * 如果映射中存在相应的转换规则，则应用这些规则来转换 SQL 函数。
+     * 以模板声明函数改写, $n 表示原函数的第 n 个参数(从 0 开始)
+     * 例如 IF -> "CASE WHEN $0 THEN $1 ELSE $2 END", DATE_FORMAT -> "TO_CHAR($0, $1)"
+     * 模板在登记规则时只解析一次, 翻译时直接代入原参数的语法树, 参见 {@link FunctionTemplate}。
+     * 返回非 null 时不再使用 simpleTranslateOfArgs 与 customTranslateOfArgs
+     */
+    protected String templateOfArgs() {
+        return null;
+    }
+
+    /**
+     * 解析 {@link #templateOfArgs()}, 登记规则时调用
+     *
+     * @throws IllegalArgumentException 模板不是合法的 SQL 表达式
+     */
+    void compileTemplate() {
+        String templateOfArgs = templateOfArgs();
+        if (null != templateOfArgs && null == template) {
+            template = FunctionTemplate.compile(templateOfArgs);
+        }
+    }
+
+    /**
+     * 以本规则转换已按名称匹配的函数调用, 由 {@link TranslateRules} 的分派索引调用
      *
-     * @param sqlNode 待转换的 SQL 节点。
-     * @return 转换后的 SQL 节点。如果未找到转换规则，则返回原始节点。
+     * @return 转换后的 SQL 节点。规则不适用时返回原始节点。
      */
-    public static SqlNode doTranslateOfPipeline(SqlNode sqlNode) {
-        if (!(sqlNode instanceof SqlCall)) {
-            return sqlNode;
+    SqlNode translateCall(SqlCall call) {
+        // 模板改写: 直接代入参数的语法树
+        if (null != template) {
+            SqlNode translated = template.apply(call);
+            return null != translated ? translated : call;
+        }
+        // 获取新函数名和参数
+        String newFunctionName = newFunctionName();
+        if (StringUtils.isBlank(newFunctionName)) {
+            newFunctionName = call.getOperator().getName();
+        }
+        List<SqlNode> operandList = call.getOperandList();
+        String[] sourceArgs = new String[operandList.size()];
+        for (int i = 0; i < operandList.size(); i++) {
+            sourceArgs[i] = operandList.get(i).toString();
+        }
+        String[] args;
+        // 尝试使用自定义参数转换
+        String customArgs = customTranslateOfArgs(sourceArgs);
+        if (customArgs != null) {
+            return createSqlNodeFromCustomExpression(customArgs, call.getParserPosition());
+        } else {
+            // 否则使用简单参数转换
+            args = simpleTranslateOfArgs(sourceArgs);
         }
-        SqlCall call = (SqlCall) sqlNode;
-        String functionName = call.getOperator().getName();
-        // 检查是否有对应的转换规则
-        if (!CollectionUtils.isEmpty(rowsFunctionOfTranslateUnmodifiableMap) && rowsFunctionOfTranslateUnmodifiableMap.containsKey(functionName.toUpperCase(Locale.ROOT))) {
-            FunctionTranslate sqlFunctionTranslator = rowsFunctionOfTranslateUnmodifiableMap.get(functionName);
-            // 获取新函数名和参数
-            String newFunctionName = sqlFunctionTranslator.newFunctionName();
-            if (StringUtils.isBlank(newFunctionName)) {
-                newFunctionName = functionName;
-            }
-            List<SqlNode> operandList = call.getOperandList();
-            String[] sourceArgs = new String[operandList.size()];
-            for (int i = 0; i < operandList.size(); i++) {
-                sourceArgs[i] = operandList.get(i).toString();
-            }
-            String[] args;
-            // 尝试使用自定义参数转换
-            String customArgs = sqlFunctionTranslator.customTranslateOfArgs(sourceArgs);
-            if (customArgs != null) {
-                return createSqlNodeFromCustomExpression(customArgs, call.getParserPosition());
-            } else {
-                // 否则使用简单参数转换
-                args = sqlFunctionTranslator.simpleTranslateOfArgs(sourceArgs);
-            }
-            if (null == args) {
-                return sqlNode;
-            }
-            // 构建新的函数节点
-            SqlParserPos pos = call.getParserPosition();
-            SqlOperator operator = new SqlUnresolvedFunction(
-                    new SqlIdentifier(newFunctionName, pos),
-                    // 根据需要调整返回类
-                    ReturnTypes.ARG0,
-                    // 根据需要调整类型推断
-                    InferTypes.FIRST_KNOWN,
-                    // 根据需要调整操作数类型
-                    OperandTypes.NILADIC,
-                    null,
-                    SqlFunctionCategory.USER_DEFINED_FUNCTION);
-
-            return new SqlBasicCall(operator, Arrays.stream(args)
-                    .map(arg -> new SqlIdentifier(arg, pos)).toArray(SqlNode[]::new), pos);
+        if (null == args) {
+            return call;
         }
-        // 如果没有对应的规则，返回原始节点
-        return sqlNode;
+        // 构建新的函数节点
+        SqlParserPos pos = call.getParserPosition();
+        SqlOperator operator = new SqlUnresolvedFunction(
+                new SqlIdentifier(newFunctionName, pos),
+                // 根据需要调整返回类
+                ReturnTypes.ARG0,
+                // 根据需要调整类型推断
+                InferTypes.FIRST_KNOWN,
+                // 根据需要调整操作数类型
+                OperandTypes.NILADIC,
+                null,
+                SqlFunctionCategory.USER_DEFINED_FUNCTION);
+
+        return new SqlBasicCall(operator, Arrays.stream(args)
+                .map(arg -> new SqlIdentifier(arg, pos)).toArray(SqlNode[]::new), pos);
     }
 
     private static SqlNode createSqlNodeFromCustomExpression(String expression, SqlParserPos pos) {
         // 使用 Apache Calcite 的 SQL 解析器解析自定义表达式
-        SqlParser parser = SqlParser.create(expression);
         try {
-            return parser.parseExpression();
+            return CUSTOM_EXPRESSION_PARSERS.parseExpression(expression);
         } catch (SqlParseException e) {
             // 处理解析异常
             throw new RuntimeException("Failed to parse custom SQL expression: " + expression, e);
         }
     }
 
+    @Override
+    public String ruleFingerprint() {
+        String templateOfArgs = templateOfArgs();
+        return getClass().getName() + ':' + targetFunctionName() + "->" + newFunctionName()
+                + (null == templateOfArgs ? "" : "=" + templateOfArgs);
+    }
+
     /**
      * empty impl
      */
@@ -157,14 +173,11 @@ public abstract class FunctionTranslate extends Pipeline implements Translate {
         return null;
     }
 
+    /**
+     * 不持有需要释放的资源, 规则随引擎一起交给 GC
+     */
     @Override
     protected void destroy() {
-        synchronized (DESTROY_LOCK) {
-            if (rowsFunctionOfTranslateUnmodifiableMap != null) {
-                // simple destroy, The rest of the work goes to GC
-                rowsFunctionOfTranslateUnmodifiableMap = null;
-            }
-        }
     }
 
 }
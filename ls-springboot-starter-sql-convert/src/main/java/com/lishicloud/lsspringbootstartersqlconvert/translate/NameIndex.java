@@ -0,0 +1,159 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 不区分大小写的名称索引, 构造后不可变, 由所有线程共享。
+ * <p>
+ * 名称按 ASCII 大写折叠后存入开放寻址表, 哈希在构造时预先计算; 查找时直接读取名称的字符计算折叠哈希并逐字符比较,
+ * 不创建大写副本, 一次查找只访问一个连续的探测序列。
+ * 含非 ASCII 字符的名称无法逐字符折叠(例如 'ß' 大写为 "SS"), 与原来一样按 {@link String#toUpperCase(Locale)} 存放在普通 Map 中。
+ *
+ * @author ztq
+ */
+public final class NameIndex<V> {
+
+    private static final NameIndex<?> EMPTY = new NameIndex<>(Maps.newHashMap());
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+    /**
+     * 含非 ASCII 字符的名称, key 为 toUpperCase(Locale.ROOT) 后的名称
+     */
+    private final Map<String, V> nonAscii;
+
+    /**
+     * @param entries key 为名称(大小写任意), 折叠后相同的名称以后出现的为准
+     */
+    private NameIndex(Map<String, V> entries) {
+        int capacity = Integer.highestOneBit(Math.max(4, entries.size() * 2 - 1)) << 1;
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        Map<String, V> nonAscii = Maps.newHashMap();
+        int size = 0;
+        for (Map.Entry<String, V> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            if (!isAscii(name)) {
+                nonAscii.put(name.toUpperCase(Locale.ROOT), entry.getValue());
+                continue;
+            }
+            int hash = hash(name);
+            int slot = hash & mask;
+            while (null != keys[slot] && !(hashes[slot] == hash && equalsFolded(keys[slot], name))) {
+                slot = (slot + 1) & mask;
+            }
+            if (null == keys[slot]) {
+                size++;
+            }
+            keys[slot] = name.toUpperCase(Locale.ROOT);
+            hashes[slot] = hash;
+            values[slot] = entry.getValue();
+        }
+        this.size = size + nonAscii.size();
+        this.nonAscii = nonAscii;
+    }
+
+    public static <V> NameIndex<V> of(Map<String, V> entries) {
+        return entries.isEmpty() ? empty() : new NameIndex<>(entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> NameIndex<V> empty() {
+        return (NameIndex<V>) EMPTY;
+    }
+
+    /**
+     * 不区分大小写地查找名称
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(String name) {
+        if (size == 0) {
+            return null;
+        }
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return nonAscii.isEmpty() ? null : nonAscii.get(name.toUpperCase(Locale.ROOT));
+            }
+            hash = 31 * hash + fold(c);
+        }
+        hash = spread(hash);
+        int slot = hash & mask;
+        String key;
+        while (null != (key = keys[slot])) {
+            if (hashes[slot] == hash && equalsFolded(key, name)) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean contains(String name) {
+        return null != get(name);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static int hash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + fold(name.charAt(i));
+        }
+        return spread(hash);
+    }
+
+    /**
+     * 相近的名称(例如 T_1, T_2)的哈希也相近, 线性探测下会聚成连续的区段, 乘以黄金分割常数打散后再取低位
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static char fold(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    /**
+     * key 已是大写, name 只含 ASCII 字符
+     */
+    private static boolean equalsFolded(String key, String name) {
+        if (key.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (fold(key.charAt(i)) != fold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
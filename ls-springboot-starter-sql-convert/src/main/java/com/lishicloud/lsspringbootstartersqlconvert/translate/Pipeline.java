@@ -1,19 +1,21 @@
 package com.lishicloud.lsspringbootstartersqlconvert.translate;
 
 
-import com.google.common.collect.Lists;
-
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * 流水线的抽象定义。支持资源的自动化管理
  * 用于表示一系列操作的集合，这些操作按照特定的顺序应用于数据或对象。
  * n = 1 也是属于流水线作业
+ * <p>
+ * 实例创建时登记到 DESTROY_LIST, JVM 关闭时统一销毁; 提前通过 {@link #release()} 销毁的实例会被注销,
+ * 每个实例最多销毁一次。登记与注销是线程安全的, 可以并发创建与释放(例如多次 build 翻译引擎)。
  * @author ztq
  */
 public abstract class Pipeline {
 
-    protected static List<Pipeline> DESTROY_LIST = Lists.newLinkedList();
+    protected static final Queue<Pipeline> DESTROY_LIST = new ConcurrentLinkedQueue<>();
 
     public Pipeline() {
         DESTROY_LIST.add(this);
@@ -27,13 +29,22 @@ public abstract class Pipeline {
     static {
         // 注册关闭时的钩子
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                for (Pipeline pipeline : DESTROY_LIST) {
+                Pipeline pipeline;
+                while (null != (pipeline = DESTROY_LIST.poll())) {
                     pipeline.destroy();
                 }
-                DESTROY_LIST = null;
         }));
     }
 
+    /**
+     * 提前销毁并注销, 之后重复调用或 JVM 关闭时不会再次销毁
+     */
+    protected final void release() {
+        if (DESTROY_LIST.remove(this)) {
+            destroy();
+        }
+    }
+
     /**
      * 销毁流水线，进行必要的清理工作。
      * 当流水线不再需要时，或者在应用程序关闭时调用。
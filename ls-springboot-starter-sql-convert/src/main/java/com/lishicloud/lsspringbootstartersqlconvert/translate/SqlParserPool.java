@@ -0,0 +1,134 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import org.apache.calcite.runtime.CalciteContextException;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.impl.SqlParserImpl;
+import org.apache.calcite.util.SourceStringReader;
+
+/**
+ * 按线程复用的 Calcite 解析器。
+ * <p>
+ * {@link SqlParser#create(String, SqlParser.Config)} 每次都会创建新的生成解析器(词法分析器、字符缓冲区、前瞻表等，
+ * 短语句约 50KB)。这里每个线程持有一个解析器，解析前以 ReInit 切换到新的输入并重置随语句变化的状态
+ * (动态参数序号、原始SQL、警告)，解析配置只在创建时应用一次。
+ * <p>
+ * 解析结束后语法树不再引用解析器，因此同一线程上依次解析是安全的；解析过程中重入(同一线程嵌套解析)时改用新建的解析器。
+ * 配置的 parserFactory 不是默认的 {@link SqlParserImpl#FACTORY} 时不复用，每次调用 {@link SqlParser#create(String, SqlParser.Config)}。
+ *
+ * @author ztq
+ */
+public final class SqlParserPool {
+
+    private final SqlParser.Config config;
+
+    private final SqlAbstractParserImpl.LexicalState lexicalState;
+
+    /**
+     * 线程私有的解析器, 配置使用自定义 parserFactory 时为 null
+     */
+    private final ThreadLocal<ReusableParser> parsers;
+
+    public SqlParserPool(SqlParser.Config config) {
+        assert null != config;
+        this.config = config;
+        this.lexicalState = SqlAbstractParserImpl.LexicalState.forConfig(config);
+        this.parsers = config.parserFactory() == SqlParserImpl.FACTORY ? ThreadLocal.withInitial(() -> new ReusableParser(this)) : null;
+    }
+
+    /**
+     * 解析一条语句, 等同于 SqlParser.create(sql, config).parseQuery()
+     */
+    public SqlNode parseQuery(String sql) throws SqlParseException {
+        ReusableParser parser = acquire();
+        if (null == parser) {
+            return SqlParser.create(sql, config).parseQuery();
+        }
+        try {
+            parser.reset(sql);
+            return parser.parseSqlStmtEof();
+        } catch (Throwable ex) {
+            throw parser.normalize(ex);
+        } finally {
+            parser.busy = false;
+        }
+    }
+
+    /**
+     * 解析一个表达式, 等同于 SqlParser.create(expression, config).parseExpression()
+     */
+    public SqlNode parseExpression(String expression) throws SqlParseException {
+        ReusableParser parser = acquire();
+        if (null == parser) {
+            return SqlParser.create(expression, config).parseExpression();
+        }
+        try {
+            parser.reset(expression);
+            return parser.parseSqlExpressionEof();
+        } catch (Throwable ex) {
+            throw parser.normalize(ex);
+        } finally {
+            parser.busy = false;
+        }
+    }
+
+    /**
+     * 取得当前线程的解析器, 不复用或解析器正在使用时返回 null
+     */
+    private ReusableParser acquire() {
+        if (null == parsers) {
+            return null;
+        }
+        ReusableParser parser = parsers.get();
+        if (parser.busy) {
+            return null;
+        }
+        parser.busy = true;
+        return parser;
+    }
+
+    private static final class ReusableParser extends SqlParserImpl {
+
+        private final SqlAbstractParserImpl.LexicalState lexicalState;
+
+        /**
+         * 正在解析, 同一线程重入时不复用
+         */
+        private boolean busy;
+
+        private ReusableParser(SqlParserPool pool) {
+            super(new SourceStringReader(""));
+            // 与 SqlParser 的构造一致
+            SqlParser.Config config = pool.config;
+            setQuotedCasing(config.quotedCasing());
+            setUnquotedCasing(config.unquotedCasing());
+            setIdentifierMaxLength(config.identifierMaxLength());
+            setConformance(config.conformance());
+            this.lexicalState = pool.lexicalState;
+        }
+
+        /**
+         * 切换到新的输入, ReInit 只重置词法与前瞻状态, 其余随语句变化的状态在这里重置
+         */
+        private void reset(String sql) {
+            ReInit(new SourceStringReader(sql));
+            setTabSize(1);
+            switchTo(lexicalState);
+            setOriginalSql(sql);
+            nDynamicParams = 0;
+            warnings.clear();
+        }
+
+        /**
+         * 与 SqlParser 的异常处理一致
+         */
+        private SqlParseException normalize(Throwable ex) {
+            if (ex instanceof CalciteContextException && null != getOriginalSql()) {
+                ((CalciteContextException) ex).setOriginalStatement(getOriginalSql());
+            }
+            return normalizeException(ex);
+        }
+    }
+}
@@ -10,19 +10,15 @@ import org.apache.calcite.sql.SqlNode;
  */
 public abstract class TableNameTranslate extends Pipeline implements Translate {
 
-    /**
-     * 领域私有(实现 TableNameTranslate的私有子类共享)
-     */
-    protected static Translate tableNameNormTranslateOfUnmodifiable = null;
-
     /**
      * Pipeline of Translate Actuator
      *
-     * @param sqlNode 待转换的 SQL 节点。
+     * @param tableNameTranslate 引擎持有的表名规则, 为 null 时不转换, 参见 {@link TranslateRules}
+     * @param sqlNode            待转换的 SQL 节点。
      * @return 转换后的 SQL 节点。如果未应用任何转换，则返回原始节点。
      */
-    public static SqlNode doTranslateOfPipeline(SqlNode sqlNode) {
-        return null != tableNameNormTranslateOfUnmodifiable ? tableNameNormTranslateOfUnmodifiable.translate(sqlNode) : sqlNode;
+    public static SqlNode doTranslateOfPipeline(Translate tableNameTranslate, SqlNode sqlNode) {
+        return null != tableNameTranslate ? tableNameTranslate.translate(sqlNode) : sqlNode;
     }
 
 }
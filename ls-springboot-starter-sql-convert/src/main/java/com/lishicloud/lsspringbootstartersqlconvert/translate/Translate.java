@@ -25,4 +25,15 @@ public interface Translate {
     SqlNode translate(SqlNode node);
 
 
+    /**
+     * 规则指纹, 描述此转换的全部配置。
+     * 用于判断缓存快照是否由同一套规则产生, 带配置的实现需要覆盖。
+     *
+     * @return 规则描述
+     */
+    default String ruleFingerprint() {
+        return getClass().getName();
+    }
+
+
 }
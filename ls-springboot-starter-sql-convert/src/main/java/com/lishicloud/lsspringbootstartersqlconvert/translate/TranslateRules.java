@@ -0,0 +1,186 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 一个翻译引擎的转换规则快照，由 builder 在 build 时生成，之后不可变。
+ * <p>
+ * 表名、列名、函数三类规则分别交给 {@link TableNameTranslate}、{@link ColumnsTranslate}、{@link FunctionTranslate}
+ * 的流水线执行。规则只登记在快照中，不写入任何静态状态，同一个 JVM 中的多个引擎可以持有不同的规则，
+ * 翻译时只读取自己的快照。
+ * <p>
+ * 创建快照时把规则编译为按名称分派的索引({@link NameIndex})，翻译时每个节点只查找一次:
+ * 1. 函数调用按操作符名称(不区分大小写)找到唯一的函数规则；
+ * 2. 标识符按最后一段名称找到需要执行的列名规则，只包含声明了该名称的规则
+ * (参见 {@link ColumnsTranslate#targetColumnNames()})和未声明名称的规则，仍按登记顺序执行。
+ *
+ * @author ztq
+ */
+@Slf4j
+public final class TranslateRules {
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    /**
+     * 表名规则, 为 null 时不转换表名
+     */
+    private final Translate tableNameTranslate;
+
+    /**
+     * 列名规则, 按登记顺序
+     */
+    private final ColumnsTranslate[] columnsTranslates;
+
+    /**
+     * 未声明名称的列名规则的序号, 每个节点都需要执行
+     */
+    private final int[] everyColumnCandidates;
+
+    /**
+     * 名称 -> 需要执行的列名规则的序号(声明了该名称的规则与未声明名称的规则, 升序)
+     */
+    private final NameIndex<int[]> columnCandidates;
+
+    /**
+     * 函数规则, 按目标函数名称索引
+     */
+    private final NameIndex<FunctionTranslate> functionTranslates;
+
+    private TranslateRules(Translate tableNameTranslate, ColumnsTranslate[] columnsTranslates, int[] everyColumnCandidates,
+                           NameIndex<int[]> columnCandidates, NameIndex<FunctionTranslate> functionTranslates) {
+        this.tableNameTranslate = tableNameTranslate;
+        this.columnsTranslates = columnsTranslates;
+        this.everyColumnCandidates = everyColumnCandidates;
+        this.columnCandidates = columnCandidates;
+        this.functionTranslates = functionTranslates;
+    }
+
+    /**
+     * 按类型归类转换规则并编译分派索引。
+     * 表名规则只取第一个; 同名函数规则以后登记的为准, 函数改写模板在此解析; 不属于三类规则的实现会被忽略。
+     */
+    public static TranslateRules of(List<? extends Translate> translates) {
+        Translate tableNameTranslate = null;
+        List<ColumnsTranslate> columnsTranslates = new ArrayList<>();
+        Map<String, FunctionTranslate> functionTranslates = Maps.newHashMap();
+        for (Translate translate : translates) {
+            if (translate instanceof TableNameTranslate) {
+                if (null == tableNameTranslate) {
+                    tableNameTranslate = translate;
+                }
+            } else if (translate instanceof ColumnsTranslate) {
+                columnsTranslates.add((ColumnsTranslate) translate);
+            } else if (translate instanceof FunctionTranslate) {
+                FunctionTranslate functionTranslate = (FunctionTranslate) translate;
+                functionTranslate.compileTemplate();
+                functionTranslates.put(functionTranslate.targetFunctionName().toUpperCase(Locale.ROOT), functionTranslate);
+            } else {
+                log.warn("TranslateRules ignore unknown translate : [{}]", translate.getClass().getName());
+            }
+        }
+        // 未声明名称的规则对每个节点执行, 声明了名称的规则只登记到这些名称下
+        List<Integer> everyColumn = new ArrayList<>();
+        Map<String, TreeSet<Integer>> byName = Maps.newHashMap();
+        for (int i = 0; i < columnsTranslates.size(); i++) {
+            Collection<String> names = columnsTranslates.get(i).targetColumnNames();
+            if (null == names) {
+                everyColumn.add(i);
+                continue;
+            }
+            for (String name : names) {
+                byName.computeIfAbsent(name.toUpperCase(Locale.ROOT), k -> new TreeSet<>()).add(i);
+            }
+        }
+        Map<String, int[]> columnCandidates = Maps.newHashMapWithExpectedSize(byName.size());
+        for (Map.Entry<String, TreeSet<Integer>> entry : byName.entrySet()) {
+            TreeSet<Integer> candidates = entry.getValue();
+            candidates.addAll(everyColumn);
+            columnCandidates.put(entry.getKey(), toArray(candidates));
+        }
+        return new TranslateRules(tableNameTranslate,
+                columnsTranslates.toArray(new ColumnsTranslate[0]),
+                everyColumn.isEmpty() ? NO_CANDIDATES : toArray(everyColumn),
+                NameIndex.of(columnCandidates),
+                NameIndex.of(functionTranslates));
+    }
+
+    /**
+     * 是否登记了指定名称(不区分大小写)的函数规则
+     */
+    public boolean hasFunctionTranslate(String functionName) {
+        return functionTranslates.contains(functionName);
+    }
+
+    public SqlNode translateTableName(SqlNode sqlNode) {
+        return TableNameTranslate.doTranslateOfPipeline(tableNameTranslate, sqlNode);
+    }
+
+    /**
+     * 按登记顺序执行适用于该节点的列名规则; 规则改写了节点时, 之后的规则按新节点重新查找
+     */
+    public SqlNode translateColumn(SqlNode sqlNode) {
+        if (columnsTranslates.length == 0) {
+            return sqlNode;
+        }
+        SqlNode targetNode = sqlNode;
+        int[] candidates = candidatesOf(targetNode);
+        int from = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            int index = candidates[i];
+            if (index < from) {
+                continue;
+            }
+            SqlNode translated = columnsTranslates[index].translate(targetNode);
+            if (translated != targetNode) {
+                targetNode = translated;
+                candidates = candidatesOf(targetNode);
+                from = index + 1;
+                i = -1;
+            }
+        }
+        return targetNode;
+    }
+
+    public SqlNode translateFunction(SqlNode sqlNode) {
+        if (!(sqlNode instanceof SqlCall) || functionTranslates.isEmpty()) {
+            return sqlNode;
+        }
+        SqlCall call = (SqlCall) sqlNode;
+        FunctionTranslate functionTranslate = functionTranslates.get(call.getOperator().getName());
+        return null == functionTranslate ? sqlNode : functionTranslate.translateCall(call);
+    }
+
+    /**
+     * 节点需要执行的列名规则: 标识符按最后一段名称查找, 其余节点只执行未声明名称的规则
+     */
+    private int[] candidatesOf(SqlNode sqlNode) {
+        if (sqlNode instanceof SqlIdentifier && !columnCandidates.isEmpty()) {
+            int[] candidates = columnCandidates.get(Util.last(((SqlIdentifier) sqlNode).names));
+            if (null != candidates) {
+                return candidates;
+            }
+        }
+        return everyColumnCandidates;
+    }
+
+    private static int[] toArray(Collection<Integer> indexes) {
+        int[] array = new int[indexes.size()];
+        int i = 0;
+        for (Integer index : indexes) {
+            array[i++] = index;
+        }
+        return array;
+    }
+}
@@ -1,11 +1,11 @@
 package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common;
 
 
+import com.google.common.collect.Maps;
 import com.lishicloud.lsspringbootstartersqlconvert.enum_.NormDd;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.ColumnsTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.NameIndex;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.Norm;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNode;
@@ -18,6 +18,9 @@ import java.util.function.Function;
 /**
  *
  * 处理列名中的关键字 转义的实现 支持流水线
+ * <p>
+ * 关键字编译为 {@link NameIndex}, 判断列名是否为关键字时直接读取名称的字符, 不创建大写副本;
+ * 转义结果记录在有界的直接映射表中, 同一个列名再次出现时不再调用转义函数。
  *
  * @author ztq
  */
@@ -25,41 +28,68 @@ import java.util.function.Function;
 public class KeyWordTranslator extends ColumnsTranslate implements Norm {
 
     private static String SELECT_ALL_KEYWORD = "*";
+
+    /**
+     * 转义结果表的大小(2 的幂), 超出后按哈希覆盖旧的记录
+     */
+    private static final int ESCAPED_TABLE_SIZE = 256;
+
     private Function<String, String> epp;
-    private static Map<String, Void> KEYWORDS_SAFE = Maps.newHashMap();
 
-    private static void PUSH_KEY_WORD(String keyWord) {
-        KEYWORDS_SAFE.put(keyWord, null);
-    }
+    /**
+     * 默认关键字
+     */
+    private static final Set<String> DEFAULT_KEYWORDS;
 
     static {
-        // 默认关键字添加
-        PUSH_KEY_WORD("BY");
-        PUSH_KEY_WORD("LIABLE");
-        PUSH_KEY_WORD("CHAR");
-        PUSH_KEY_WORD("COLUMN");
-        PUSH_KEY_WORD("COLUMNS");
-        PUSH_KEY_WORD("CURRENT_DATE");
-        PUSH_KEY_WORD("CURRENT_TIME");
-        PUSH_KEY_WORD("CURRENT_TIMESTAMP");
-        PUSH_KEY_WORD("DATE");
-        PUSH_KEY_WORD("DATETIME");
-        PUSH_KEY_WORD("DESC");
-        PUSH_KEY_WORD("KEY");
-        PUSH_KEY_WORD("KEYS");
-        PUSH_KEY_WORD("READ");
-        PUSH_KEY_WORD("TEXT");
+        Set<String> keyWords = new HashSet<>();
+        keyWords.add("BY");
+        keyWords.add("LIABLE");
+        keyWords.add("CHAR");
+        keyWords.add("COLUMN");
+        keyWords.add("COLUMNS");
+        keyWords.add("CURRENT_DATE");
+        keyWords.add("CURRENT_TIME");
+        keyWords.add("CURRENT_TIMESTAMP");
+        keyWords.add("DATE");
+        keyWords.add("DATETIME");
+        keyWords.add("DESC");
+        keyWords.add("KEY");
+        keyWords.add("KEYS");
+        keyWords.add("READ");
+        keyWords.add("TEXT");
+        DEFAULT_KEYWORDS = Collections.unmodifiableSet(keyWords);
     }
 
+    /**
+     * 本实例需要转义的关键字(大写): 默认关键字 + 外部追加, 构造后不再修改
+     */
+    private final Set<String> keyWords;
+
+    /**
+     * keyWords 编译后的匹配表
+     */
+    private final NameIndex<Boolean> keyWordIndex;
+
+    /**
+     * 列名 -> 转义结果, 按列名(区分大小写)的哈希直接映射; 记录不可变, 并发覆盖只会丢失记录
+     */
+    private final Escaped[] escapedTable = new Escaped[ESCAPED_TABLE_SIZE];
+
     public KeyWordTranslator(Function<String, String> epp) {
         this(epp, ArrayUtils.EMPTY_STRING_ARRAY);
     }
 
     public KeyWordTranslator(Function<String, String> epp, String... keyWordsOfExternal) {
-        this();
+        super();
+        Set<String> keyWords = new HashSet<>(DEFAULT_KEYWORDS);
         for (String key : keyWordsOfExternal) {
-            PUSH_KEY_WORD(key.toUpperCase(Locale.ROOT));
+            if (StringUtils.isNotBlank(key) && !SELECT_ALL_KEYWORD.equals(key)) {
+                keyWords.add(key.toUpperCase(Locale.ROOT));
+            }
         }
+        this.keyWords = Collections.unmodifiableSet(keyWords);
+        this.keyWordIndex = compile(keyWords);
         if (null != epp) {
             this.epp = epp;
         }
@@ -67,37 +97,76 @@ public class KeyWordTranslator extends ColumnsTranslate implements Norm {
 
     public KeyWordTranslator() {
         super();
-        synchronized (REGISTER_LOCK) {
-            if (null == selectRowsOfNormTranslateOfUnmodifiable) {
-                selectRowsOfNormTranslateOfUnmodifiable = Lists.newArrayList(this);
-            } else {
-                selectRowsOfNormTranslateOfUnmodifiable.add(this);
-            }
-        }
+        this.keyWords = DEFAULT_KEYWORDS;
+        this.keyWordIndex = compile(DEFAULT_KEYWORDS);
     }
 
+    /**
+     * 只有列名为关键字的标识符需要转义
+     */
+    @Override
+    protected Collection<String> targetColumnNames() {
+        return keyWords;
+    }
+
+    /**
+     * 只转义不带限定的列名, 例如 desc -> 'desc'(默认转义函数 {@link com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.DMNorm#DEFAULT_EPP})。
+     * 带限定的标识符(如 t.desc)保持不变: 转义结果按名称原样输出, 默认转义函数拼在限定名中得到 t.'desc', 不是合法的 SQL
+     */
     @Override
     public SqlNode translate(SqlNode node) {
         if (node instanceof SqlIdentifier) {
             SqlIdentifier identifier = (SqlIdentifier) node;
-            String rowsName = identifier.getSimple();
-            if (!SELECT_ALL_KEYWORD.equals(rowsName) && StringUtils.isNotBlank(rowsName) && KEYWORDS_SAFE.containsKey(rowsName.toUpperCase(Locale.ROOT))) {
-                String modifiedName = epp.apply(rowsName);
-                return new SqlIdentifier(modifiedName, identifier.getParserPosition());
+            if (identifier.isSimple()) {
+                String rowsName = identifier.getSimple();
+                if (keyWordIndex.contains(rowsName)) {
+                    return new SqlIdentifier(escape(rowsName), identifier.getParserPosition());
+                }
             }
         }
         return node;
     }
 
+    /**
+     * 转义列名, 优先使用记录的结果
+     */
+    private String escape(String rowsName) {
+        int slot = rowsName.hashCode() & (ESCAPED_TABLE_SIZE - 1);
+        Escaped escaped = escapedTable[slot];
+        if (null != escaped && escaped.rowsName.equals(rowsName)) {
+            return escaped.modifiedName;
+        }
+        String modifiedName = epp.apply(rowsName);
+        escapedTable[slot] = new Escaped(rowsName, modifiedName);
+        return modifiedName;
+    }
+
+    private static NameIndex<Boolean> compile(Set<String> keyWords) {
+        Map<String, Boolean> index = Maps.newHashMapWithExpectedSize(keyWords.size());
+        for (String keyWord : keyWords) {
+            index.put(keyWord, Boolean.TRUE);
+        }
+        return NameIndex.of(index);
+    }
+
+    private static final class Escaped {
+
+        private final String rowsName;
+        private final String modifiedName;
+
+        private Escaped(String rowsName, String modifiedName) {
+            this.rowsName = rowsName;
+            this.modifiedName = modifiedName;
+        }
+    }
+
+    @Override
+    public String ruleFingerprint() {
+        return getClass().getName() + ':' + new TreeSet<>(keyWords);
+    }
+
     @Override
     public void destroy() {
-        synchronized (DESTROY_LOCK) {
-            if (null != selectRowsOfNormTranslateOfUnmodifiable) {
-                selectRowsOfNormTranslateOfUnmodifiable.clear();
-                KEYWORDS_SAFE = null;
-                selectRowsOfNormTranslateOfUnmodifiable = null;
-            }
-        }
         log.info(this.getClass().getName() + " destroy successful!");
     }
 
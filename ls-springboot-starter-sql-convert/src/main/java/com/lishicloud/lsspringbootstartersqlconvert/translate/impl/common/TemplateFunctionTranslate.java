@@ -0,0 +1,41 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.NormDd;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.FunctionTemplate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.FunctionTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.Norm;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 以模板声明的函数改写, 参见 {@link FunctionTemplate}
+ * 例如 new TemplateFunctionTranslate("IF", "CASE WHEN $0 THEN $1 ELSE $2 END")
+ *
+ * @author ztq
+ */
+public class TemplateFunctionTranslate extends FunctionTranslate implements Norm {
+
+    private final String targetFunctionName;
+    private final String template;
+
+    public TemplateFunctionTranslate(String targetFunctionName, String template) {
+        super();
+        assert StringUtils.isNotBlank(targetFunctionName) && StringUtils.isNotBlank(template);
+        this.targetFunctionName = targetFunctionName;
+        this.template = template;
+    }
+
+    @Override
+    protected String targetFunctionName() {
+        return targetFunctionName;
+    }
+
+    @Override
+    protected String templateOfArgs() {
+        return template;
+    }
+
+    @Override
+    public NormDd fromDb() {
+        return NormDd.COMMON;
+    }
+}
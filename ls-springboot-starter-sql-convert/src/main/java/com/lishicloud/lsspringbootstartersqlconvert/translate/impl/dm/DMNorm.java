@@ -3,6 +3,7 @@ package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
 import com.lishicloud.lsspringbootstartersqlconvert.enum_.NormDd;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.Norm;
 
+import java.util.Locale;
 import java.util.function.Function;
 
 /**
@@ -24,5 +25,10 @@ public interface DMNorm extends Norm {
      */
     Function<String, String> DEFAULT_EPP = content -> "'" + content + "'";
 
+    /**
+     * 以双引号转义为大写的引号标识符: 达梦未加引号的标识符按大写处理, 转义前后指向同一列
+     */
+    Function<String, String> QUOTED_EPP = content -> '"' + content.toUpperCase(Locale.ROOT) + '"';
+
 
 }
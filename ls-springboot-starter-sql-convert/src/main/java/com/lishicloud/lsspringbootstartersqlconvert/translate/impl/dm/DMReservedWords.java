@@ -0,0 +1,23 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/**
+ * 达梦(DM8)保留字中 Calcite 仍按普通标识符解析的部分, 作为列名使用时必须以引号转义,
+ * 由 {@link com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder#keyWordTranslatorDm(String...)} 显式启用。
+ * <p>
+ * Calcite 自身的保留字(SELECT、ORDER 等)无法作为未加引号的列名解析, 不会到达转义规则, 因此不收录;
+ * 只收录确认在 DM8 中为保留字、且常被用作列名的词。目标库开启了其它保留字(参见 V$RESERVED_WORDS)时
+ * 通过 keyWordTranslatorDm(String...) 追加。
+ *
+ * @author ztq
+ */
+public final class DMReservedWords {
+
+    public static final Set<String> WORDS = ImmutableSet.of("COMMENT", "INDEX", "LIST", "TOP");
+
+    private DMReservedWords() {
+    }
+}
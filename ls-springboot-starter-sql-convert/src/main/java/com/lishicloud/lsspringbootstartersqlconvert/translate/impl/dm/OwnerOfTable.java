@@ -1,54 +1,195 @@
 package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
 
 
+import com.google.common.collect.Maps;
 import com.lishicloud.lsspringbootstartersqlconvert.translate.TableNameTranslate;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParserPos;
+
+import java.util.concurrent.ConcurrentMap;
 
 
 /**
  * 表拥有者 通常需要明确的权限申明的SQL实现数据库
+ * <p>
+ * 配置了 {@link TableRoutes} 时先按表路由改写为目标拥有者与表名, 未命中路由的未限定表名再添加默认拥有者;
+ * 已限定的表名(例如 s.t)视为已经指定了拥有者, 不再添加默认拥有者。
+ * 添加了默认拥有者的表名按未限定表名缓存(数量有上限), 与路由的目标表名一样在多次翻译间复用。
+ * <p>
+ * 以 {@link OwnerResolver} 创建时(每个租户一个 schema), 翻译结果中的拥有者为占位符 {@link #OWNER_PLACEHOLDER},
+ * 由引擎在返回结果前以 {@link #inlineOwner(String, String)} 替换为当前调用的拥有者, 同一份缓存服务所有租户。
  *
  * @author admin
  */
 @Slf4j
 public class OwnerOfTable extends TableNameTranslate implements DMNorm {
 
+    /**
+     * 按调用解析的拥有者在翻译结果中的占位符。'#' 不能出现在未加引号的标识符中, 用户SQL只能在字面量、注释或引号标识符中
+     * 写出该占位符, 引擎会拒绝这样的SQL
+     */
+    public static final String OWNER_PLACEHOLDER = "#$OWNER$#";
+
+    /**
+     * 拥有者名称的最大长度
+     */
+    private static final int IDENTIFIER_MAX_LENGTH = 128;
+
+    /**
+     * 缓存的已添加默认拥有者的表名数量上限, 超出后的表名每次新建
+     */
+    static final int QUALIFIED_MAX_SIZE = 1 << 15;
+
     private final String owenName;
     private final Character linker;
 
+    /**
+     * 表路由, 为 null 时所有表使用默认拥有者
+     */
+    private final TableRoutes tableRoutes;
+
+    /**
+     * 按调用解析拥有者, 为 null 时使用固定的拥有者
+     */
+    private final OwnerResolver ownerResolver;
+
+    /**
+     * 未限定表名 -> 添加了默认拥有者的表名, 每次命中返回同一个实例, 调用方不得修改
+     */
+    private final ConcurrentMap<String, SqlIdentifier> qualified = Maps.newConcurrentMap();
+
     public OwnerOfTable(String owenName) {
         super();
         this.owenName = owenName;
         //default
         linker = '.';
-        synchronized (REGISTER_LOCK) {
-            if (null == tableNameNormTranslateOfUnmodifiable) {
-                tableNameNormTranslateOfUnmodifiable = this;
-            }
-        }
+        this.tableRoutes = null;
+        this.ownerResolver = null;
     }
 
     public OwnerOfTable(String owenName, Character linker) {
         super();
         this.owenName = owenName;
         this.linker = linker;
+        this.tableRoutes = null;
+        this.ownerResolver = null;
+    }
+
+    /**
+     * 按调用解析拥有者, 翻译结果中的拥有者为 {@link #OWNER_PLACEHOLDER}
+     */
+    public OwnerOfTable(OwnerResolver ownerResolver) {
+        super();
+        assert null != ownerResolver;
+        this.owenName = OWNER_PLACEHOLDER;
+        //default
+        linker = '.';
+        this.tableRoutes = null;
+        this.ownerResolver = ownerResolver;
+    }
+
+    /**
+     * @param owenName    未命中路由时使用的默认拥有者, 为 null 时未命中路由的表名保持不变
+     * @param tableRoutes 表路由
+     */
+    public OwnerOfTable(String owenName, TableRoutes tableRoutes) {
+        super();
+        assert null != tableRoutes;
+        this.owenName = owenName;
+        //default
+        linker = '.';
+        this.tableRoutes = tableRoutes;
+        this.ownerResolver = null;
     }
 
     @Override
     public SqlNode translate(SqlNode node) {
         SqlIdentifier sqlIdentifier = (SqlIdentifier) node;
-        return new SqlIdentifier(owenName + linker + sqlIdentifier.getSimple(), sqlIdentifier.getParserPosition());
+        if (null != tableRoutes) {
+            SqlIdentifier routed = tableRoutes.route(sqlIdentifier);
+            if (null != routed) {
+                return routed;
+            }
+        }
+        if (null == owenName || !sqlIdentifier.isSimple()) {
+            return sqlIdentifier;
+        }
+        String name = sqlIdentifier.getSimple();
+        SqlIdentifier owned = qualified.get(name);
+        if (null == owned) {
+            owned = new SqlIdentifier(owenName + linker + name, SqlParserPos.ZERO);
+            if (qualified.size() < QUALIFIED_MAX_SIZE) {
+                SqlIdentifier existing = qualified.putIfAbsent(name, owned);
+                if (null != existing) {
+                    owned = existing;
+                }
+            }
+        }
+        return owned;
     }
 
-    @Override
-    public void destroy() {
-        synchronized (DESTROY_LOCK) {
-            if (tableNameNormTranslateOfUnmodifiable != null) {
-                tableNameNormTranslateOfUnmodifiable = null; // Help GC, interrupt strong reference
+    /**
+     * 按调用解析拥有者时返回解析器, 否则返回 null
+     */
+    public OwnerResolver getOwnerResolver() {
+        return ownerResolver;
+    }
+
+    /**
+     * 把翻译结果中的 {@link #OWNER_PLACEHOLDER} 替换为 ownerName, 单次线性拼接; 没有占位符时返回原字符串。
+     * ownerName 原样拼入SQL, 只接受普通标识符(参见 {@link #isPlainIdentifier(String)}), 不做引号转义
+     *
+     * @throws IllegalArgumentException ownerName 不是普通标识符
+     */
+    public static String inlineOwner(String sql, String ownerName) {
+        if (!isPlainIdentifier(ownerName)) {
+            throw new IllegalArgumentException("Table owner must be a plain identifier : " + ownerName);
+        }
+        int idx = sql.indexOf(OWNER_PLACEHOLDER);
+        if (idx < 0) {
+            return sql;
+        }
+        StringBuilder sb = new StringBuilder(sql.length() + 16);
+        int from = 0;
+        do {
+            sb.append(sql, from, idx).append(ownerName);
+            from = idx + OWNER_PLACEHOLDER.length();
+        } while ((idx = sql.indexOf(OWNER_PLACEHOLDER, from)) >= 0);
+        sb.append(sql, from, sql.length());
+        return sb.toString();
+    }
+
+    /**
+     * 是否为不需要引号的普通标识符: 以字母或下划线开头, 其余为字母、数字、'_'、'$'、'#', 长度不超过 128。
+     * 这样的名称拼入SQL后不会改变语句结构
+     */
+    public static boolean isPlainIdentifier(String name) {
+        if (null == name || name.isEmpty() || name.length() > IDENTIFIER_MAX_LENGTH) {
+            return false;
+        }
+        char first = name.charAt(0);
+        if (!Character.isLetter(first) && first != '_') {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$' && c != '#') {
+                return false;
             }
         }
+        return true;
+    }
+
+    @Override
+    public String ruleFingerprint() {
+        return getClass().getName() + ':' + owenName + linker
+                + (null == tableRoutes ? "" : ":routes=" + tableRoutes.size() + '/' + tableRoutes.digest());
+    }
+
+    @Override
+    public void destroy() {
         log.info(this.getClass().getName() +"destroy successful!");
     }
 }
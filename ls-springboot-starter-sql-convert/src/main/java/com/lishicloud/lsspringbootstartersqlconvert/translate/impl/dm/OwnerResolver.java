@@ -0,0 +1,19 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
+
+/**
+ * 按调用解析表拥有者, 用于每个租户一个 schema 的场景, 参见 {@link OwnerOfTable#OwnerOfTable(OwnerResolver)}。
+ * <p>
+ * 翻译结果(以及各级缓存)中的拥有者是占位符 {@link OwnerOfTable#OWNER_PLACEHOLDER}, 引擎每次返回结果前调用
+ * {@link #resolveOwner()} 并替换占位符, 因此所有租户共享同一个引擎与同一份缓存。
+ * 实现可以读取线程变量(参见 {@link ThreadLocalOwnerResolver})或当前请求的属性, 每次转换都会调用, 应当足够轻量。
+ *
+ * @author ztq
+ */
+@FunctionalInterface
+public interface OwnerResolver {
+
+    /**
+     * @return 当前调用的表拥有者, 不能为空, 必须是普通标识符(参见 {@link OwnerOfTable#isPlainIdentifier(String)})
+     */
+    String resolveOwner();
+}
@@ -0,0 +1,210 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.NameIndex;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.Util;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 表路由: 源表名(不区分大小写) -> 目标拥有者与表名, 供 {@link OwnerOfTable} 按表改写拥有者或表名。
+ * <p>
+ * 路由在启动时加载一次, 之后不可变, 由所有线程共享:
+ * 1. 以源表名的最后一段编入 {@link NameIndex}, 同名的表再按限定名区分;
+ * 2. 目标表名预先创建为 OWNER.TABLE 形式的 {@link SqlIdentifier}, 每次命中返回同一个实例, 调用方不得修改;
+ * 3. 查找直接读取原标识符的各段名称, 不拼接字符串, 不创建对象。
+ * <p>
+ * 文件为 UTF-8 文本, 每行一条路由, 空行与 # 开头的行忽略:
+ * <pre>
+ * # 源表名 = 目标拥有者.目标表名
+ * t_order = OWNER_A.T_ORDER
+ * legacy.t_user = OWNER_B.T_USER_NEW
+ * </pre>
+ * 未限定的源表名只匹配未限定的表引用, 限定的源表名只匹配限定名相同的表引用。
+ *
+ * @author ztq
+ */
+public final class TableRoutes {
+
+    private final NameIndex<Route[]> routes;
+
+    private final int size;
+
+    /**
+     * 路由内容的摘要, 用于翻译规则指纹
+     */
+    private final String digest;
+
+    private TableRoutes(NameIndex<Route[]> routes, int size, String digest) {
+        this.routes = routes;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    /**
+     * 从文件加载路由
+     *
+     * @throws IOException              读取文件失败
+     * @throws IllegalArgumentException 存在格式错误或重复的路由, 异常信息中包含行号
+     */
+    public static TableRoutes load(Path file) throws IOException {
+        assert null != file;
+        Map<String, String> entries = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while (null != (line = reader.readLine())) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                int separator = line.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Bad table route at " + file + ":" + lineNumber + " : " + line);
+                }
+                String source = line.substring(0, separator).trim();
+                String target = line.substring(separator + 1).trim();
+                if (null != entries.put(canonical(source, file + ":" + lineNumber), target)) {
+                    throw new IllegalArgumentException("Duplicate table route at " + file + ":" + lineNumber + " : " + source);
+                }
+            }
+        }
+        return compile(entries);
+    }
+
+    /**
+     * 以 源表名 -> "目标拥有者.目标表名" 创建路由
+     *
+     * @throws IllegalArgumentException 存在格式错误或(不区分大小写)重复的路由
+     */
+    public static TableRoutes of(Map<String, String> routes) {
+        assert null != routes;
+        Map<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, String> route : routes.entrySet()) {
+            if (null != entries.put(canonical(route.getKey(), route.getKey()), route.getValue())) {
+                throw new IllegalArgumentException("Duplicate table route : " + route.getKey());
+            }
+        }
+        return compile(entries);
+    }
+
+    /**
+     * 查找表引用的路由
+     *
+     * @return 预先创建的目标表名, 没有路由时返回 null
+     */
+    @Nullable
+    public SqlIdentifier route(SqlIdentifier table) {
+        List<String> names = table.names;
+        Route[] candidates = routes.get(Util.last(names));
+        if (null == candidates) {
+            return null;
+        }
+        for (Route route : candidates) {
+            if (route.matches(names)) {
+                return route.target;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String digest() {
+        return digest;
+    }
+
+    /**
+     * 校验源表名并统一为大写, 同时作为去重与排序的 key
+     */
+    private static String canonical(String source, String location) {
+        String[] parts = StringUtils.splitPreserveAllTokens(source, '.');
+        for (String part : parts) {
+            if (StringUtils.isBlank(part) || !part.trim().equals(part)) {
+                throw new IllegalArgumentException("Bad source table of route at " + location + " : " + source);
+            }
+        }
+        return source.toUpperCase(Locale.ROOT);
+    }
+
+    private static TableRoutes compile(Map<String, String> entries) {
+        Map<String, List<Route>> byName = Maps.newHashMapWithExpectedSize(entries.size());
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String[] source = StringUtils.splitPreserveAllTokens(entry.getKey(), '.');
+            String[] target = StringUtils.splitPreserveAllTokens(entry.getValue(), '.');
+            if (target.length != 2 || StringUtils.isBlank(target[0]) || StringUtils.isBlank(target[1])) {
+                throw new IllegalArgumentException("Bad target table of route " + entry.getKey() + " : " + entry.getValue());
+            }
+            String[] qualifier = new String[source.length - 1];
+            System.arraycopy(source, 0, qualifier, 0, qualifier.length);
+            SqlIdentifier targetIdentifier = new SqlIdentifier(ImmutableList.of(target[0].trim(), target[1].trim()), SqlParserPos.ZERO);
+            byName.computeIfAbsent(source[source.length - 1], k -> new ArrayList<>(1)).add(new Route(qualifier, targetIdentifier));
+            content.append(entry.getKey()).append('=').append(String.join(".", targetIdentifier.names)).append('\n');
+        }
+        Map<String, Route[]> index = Maps.newHashMapWithExpectedSize(byName.size());
+        for (Map.Entry<String, List<Route>> entry : byName.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().toArray(new Route[0]));
+        }
+        return new TableRoutes(NameIndex.of(index), entries.size(), digest(content.toString()));
+    }
+
+    private static String digest(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Route {
+
+        /**
+         * 源表名除最后一段以外的限定名(大写), 未限定时为空数组
+         */
+        private final String[] qualifier;
+
+        private final SqlIdentifier target;
+
+        private Route(String[] qualifier, SqlIdentifier target) {
+            this.qualifier = qualifier;
+            this.target = target;
+        }
+
+        private boolean matches(List<String> names) {
+            if (names.size() != qualifier.length + 1) {
+                return false;
+            }
+            for (int i = 0; i < qualifier.length; i++) {
+                if (!qualifier[i].equalsIgnoreCase(names.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
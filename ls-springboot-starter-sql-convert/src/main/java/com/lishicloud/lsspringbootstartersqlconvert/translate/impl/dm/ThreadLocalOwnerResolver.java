@@ -0,0 +1,40 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 以线程变量保存当前租户的表拥有者, 由请求入口(例如过滤器)设置, 请求结束时清除。
+ *
+ * @author ztq
+ */
+public class ThreadLocalOwnerResolver implements OwnerResolver {
+
+    private final ThreadLocal<String> owner = new ThreadLocal<>();
+
+    /**
+     * 设置当前线程的表拥有者
+     */
+    public void set(String ownerName) {
+        assert StringUtils.isNotBlank(ownerName);
+        owner.set(ownerName);
+    }
+
+    /**
+     * 清除当前线程的表拥有者, 线程池中的线程在请求结束时必须清除
+     */
+    public void clear() {
+        owner.remove();
+    }
+
+    /**
+     * @throws IllegalStateException 当前线程未设置表拥有者
+     */
+    @Override
+    public String resolveOwner() {
+        String ownerName = owner.get();
+        if (null == ownerName) {
+            throw new IllegalStateException("No table owner bound to thread " + Thread.currentThread().getName());
+        }
+        return ownerName;
+    }
+}
@@ -0,0 +1,463 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.factory.SqlTranslateActuatorFactory;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.KeyWordTranslator;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.DMNorm;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快速路径与 Calcite 路径的差分测试: 对随机生成的语料, 快速路径接受的每一条语句的输出都必须与 Calcite 路径逐字节相同,
+ * Calcite 无法翻译的语句快速路径也不能接受。
+ * <p>
+ * 语料分两类: 规整的语料大多落在快速路径识别的形态内, 用于覆盖命中; 嘈杂的语料混入保留字、非保留关键字、
+ * 引号标识符、边界数值与字符串、注释、子查询、连接等, 用于覆盖回退的边界。规则为 {@link OwnerOfTable} 与默认转义的
+ * {@link KeyWordTranslator}, 与 builder 默认配置一致。
+ *
+ * @author ztq
+ */
+@Slf4j
+class SimpleDmlFastPathDifferentialTest {
+
+    /**
+     * 嘈杂语料大多被 Calcite 拒绝, 解析失败的代价较高, 条数少一些
+     */
+    private static final int CLEAN_STATEMENTS = 20_000;
+    private static final int NOISY_STATEMENTS = 8_000;
+
+    private static final List<String> RESERVED = new ArrayList<>();
+    private static final List<String> NON_RESERVED = new ArrayList<>();
+
+    private static SqlTranslateActuatorFactory calcite;
+    private static SimpleDmlFastPath fastPath;
+
+    @BeforeAll
+    static void setUp() {
+        SqlAbstractParserImpl.Metadata metadata = SqlParser.create("", SqlParser.config()).getMetadata();
+        for (String token : metadata.getTokens()) {
+            if (!token.matches("[A-Z_]+")) {
+                continue;
+            }
+            if (metadata.isReservedWord(token)) {
+                RESERVED.add(token);
+            } else if (metadata.isNonReservedKeyword(token)) {
+                NON_RESERVED.add(token);
+            }
+        }
+        SqlDialect dialect = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+        TranslateRules rules = TranslateRules.of(Arrays.asList(new OwnerOfTable("OWNER_A"), new KeyWordTranslator(DMNorm.DEFAULT_EPP)));
+        calcite = new SqlTranslateActuatorFactory(dialect, rules, SqlRewriteMode.UNPARSE, false);
+        fastPath = new SqlTranslateActuatorFactory(dialect, rules, SqlRewriteMode.UNPARSE, true).getSimpleDmlFastPath();
+        assertNotNull(fastPath, "fast path should be enabled for the default rules");
+    }
+
+    @Test
+    void cleanCorpusMatchesCalcite() {
+        int hits = compare(new Corpus(20240611L, true), CLEAN_STATEMENTS);
+        // 规整的语料应有相当一部分由快速路径翻译, 否则差分没有意义
+        assertTrue(hits > CLEAN_STATEMENTS / 5, "fast path hits: " + hits);
+    }
+
+    @Test
+    void noisyCorpusMatchesCalcite() {
+        int hits = compare(new Corpus(19700101L, false), NOISY_STATEMENTS);
+        assertTrue(hits > 0, "fast path hits: " + hits);
+    }
+
+    /**
+     * @return 快速路径翻译的语句数
+     */
+    private static int compare(Corpus corpus, int statements) {
+        int hits = 0;
+        int calciteAccepted = 0;
+        for (int i = 0; i < statements; i++) {
+            String sql = corpus.statement();
+            String expected;
+            try {
+                expected = calcite.translateOfAuto(sql);
+                calciteAccepted++;
+            } catch (Exception e) {
+                expected = "Calcite rejected: " + e.getClass().getSimpleName();
+            }
+            String actual = fastPath.translate(sql);
+            if (null != actual) {
+                hits++;
+                assertEquals(expected, actual, sql);
+            }
+        }
+        log.info("clean={} statements={} calciteAccepted={} fastPathHits={}", corpus.clean, statements, calciteAccepted, hits);
+        return hits;
+    }
+
+    /**
+     * 随机语料生成器, 同一个种子生成相同的语料
+     */
+    private static final class Corpus {
+
+        private final Random random;
+        private final boolean clean;
+
+        private Corpus(long seed, boolean clean) {
+            this.random = new Random(seed);
+            this.clean = clean;
+        }
+
+        String statement() {
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                return select();
+            }
+            if (kind < 7) {
+                return insert();
+            }
+            return kind < 9 ? update() : delete();
+        }
+
+        private String select() {
+            StringBuilder sql = new StringBuilder(keyword("select")).append(ws());
+            if (random.nextInt(6) == 0) {
+                sql.append(keyword(pick("distinct", "all"))).append(ws());
+            }
+            int columns = 1 + random.nextInt(6);
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) {
+                    sql.append(',').append(ws());
+                }
+                int k = random.nextInt(20);
+                if (k == 0) {
+                    sql.append('*');
+                    if (random.nextInt(5) == 0) {
+                        sql.append(" as x");
+                    }
+                } else if (k == 1) {
+                    sql.append(identifier()).append(".*");
+                } else if (k == 2) {
+                    sql.append(value(false));
+                } else if (k == 3) {
+                    sql.append("count(*)");
+                } else {
+                    sql.append(column()).append(alias());
+                }
+            }
+            sql.append(ws()).append(keyword("from")).append(ws()).append(table()).append(alias());
+            if (random.nextInt(15) == 0) {
+                sql.append(", t2");
+            }
+            if (random.nextInt(15) == 0) {
+                sql.append(" join t2 on t.id = t2.id");
+            }
+            return sql.append(where()).append(tail()).toString();
+        }
+
+        private String insert() {
+            if (random.nextInt(20) == 0) {
+                return keyword("insert into ") + table() + " select * from t2";
+            }
+            StringBuilder sql = new StringBuilder(keyword("insert")).append(ws()).append(keyword("into")).append(ws()).append(table());
+            if (random.nextInt(15) == 0) {
+                sql.append(" a");
+            }
+            int columns = 1 + random.nextInt(5);
+            if (random.nextInt(4) != 0) {
+                sql.append(random.nextBoolean() ? " (" : "(");
+                for (int i = 0; i < columns; i++) {
+                    if (i > 0) {
+                        sql.append(',').append(ws());
+                    }
+                    sql.append(random.nextInt(12) == 0 ? column() : identifier());
+                }
+                sql.append(')');
+            }
+            sql.append(ws()).append(keyword(random.nextInt(20) == 0 ? "value" : "values")).append(ws());
+            int rows = 1 + random.nextInt(3);
+            for (int j = 0; j < rows; j++) {
+                if (j > 0) {
+                    sql.append(',').append(ws());
+                }
+                sql.append('(');
+                for (int i = 0; i < columns; i++) {
+                    if (i > 0) {
+                        sql.append(',').append(ws());
+                    }
+                    sql.append(value(random.nextInt(10) == 0));
+                }
+                sql.append(')');
+            }
+            return sql.append(tail()).toString();
+        }
+
+        private String update() {
+            StringBuilder sql = new StringBuilder(keyword("update")).append(ws()).append(table()).append(alias())
+                    .append(ws()).append(keyword("set")).append(ws());
+            int columns = 1 + random.nextInt(4);
+            for (int i = 0; i < columns; i++) {
+                if (i > 0) {
+                    sql.append(',').append(ws());
+                }
+                sql.append(random.nextInt(10) == 0 ? column() : identifier())
+                        .append(ws()).append(pick("=", "=", "=", "==")).append(ws()).append(value(true));
+            }
+            return sql.append(where()).append(tail()).toString();
+        }
+
+        private String delete() {
+            return keyword("delete") + ws() + keyword("from") + ws() + table() + alias() + where() + tail();
+        }
+
+        private String where() {
+            if (random.nextInt(4) == 0) {
+                return "";
+            }
+            StringBuilder sql = new StringBuilder(ws()).append(keyword("where")).append(ws()).append(predicate());
+            int more = random.nextInt(6);
+            for (int i = 0; i < more; i++) {
+                String connective = clean ? pick("and", "or") : pick("and", "or", "and", "AND", "xor", "&&");
+                sql.append(ws()).append(keyword(connective)).append(ws()).append(predicate());
+            }
+            return sql.toString();
+        }
+
+        private String predicate() {
+            int k = random.nextInt(clean ? 23 : 30);
+            String column = !clean && random.nextInt(15) == 0 ? value(false) : column();
+            if (k < 12) {
+                String operator = clean ? pick("=", "<>", "<", ">", "<=", ">=")
+                        : pick("=", "<>", "<", ">", "<=", ">=", "=", "=", "!=", "==", "<=>", "= ");
+                return column + ws() + operator + ws() + value(true);
+            }
+            if (k < 15) {
+                String pattern = clean ? pick(string(), "?") : pick(string(), "?", "'x%'", "'a' escape '\\'");
+                return column + ws() + not() + keyword("like") + ws() + pattern;
+            }
+            if (k < 19) {
+                StringBuilder sql = new StringBuilder(column).append(ws()).append(not()).append(keyword("in")).append(ws()).append('(');
+                int values = 1 + random.nextInt(5);
+                for (int i = 0; i < values; i++) {
+                    if (i > 0) {
+                        sql.append(',').append(ws());
+                    }
+                    sql.append(value(random.nextInt(8) == 0));
+                }
+                return sql.append(')').toString();
+            }
+            if (k < 23) {
+                return column + ws() + keyword("is") + ws() + not() + pick("null", "NULL", "true", "unknown");
+            }
+            switch (k) {
+                case 23:
+                    return keyword("not") + ws() + column + " = 1";
+                case 24:
+                    return "(" + predicate() + ")";
+                case 25:
+                    return "(" + predicate() + " or " + predicate() + ")";
+                case 26:
+                    return column + " between 1 and 2";
+                case 27:
+                    return "exists (select 1 from t)";
+                default:
+                    return column + " = " + value(true);
+            }
+        }
+
+        private String not() {
+            return random.nextBoolean() ? keyword("not") + ws() : "";
+        }
+
+        private String value(boolean columnAllowed) {
+            int k = random.nextInt(clean ? 10 : 12);
+            if (k < 3) {
+                return number();
+            }
+            if (k < 6) {
+                return string();
+            }
+            if (k < 8) {
+                return "?";
+            }
+            if (k < 9) {
+                return keyword(pick("null", "true", "false", "unknown"));
+            }
+            if (k < 10 && columnAllowed) {
+                return column();
+            }
+            return pick("1", "?", "'s'", "(1)", "abs(1)", "1 + 2", "cast(1 as int)", ":p", "$1");
+        }
+
+        private String number() {
+            int k = clean ? 5 + random.nextInt(15) : random.nextInt(20);
+            if (clean && (k == 10 || k == 11 || k == 13 || k == 14)) {
+                k = 16;
+            }
+            switch (k) {
+                case 0:
+                    return "007";
+                case 1:
+                    return ".5";
+                case 2:
+                    return "5.";
+                case 3:
+                    return "1e3";
+                case 4:
+                    return "1.5E-2";
+                case 5:
+                    return "0";
+                case 6:
+                    return "0.000";
+                case 7:
+                    return "12345678901234567890123";
+                case 8:
+                    return "1.50";
+                case 9:
+                    return "-" + random.nextInt(100);
+                case 10:
+                    return "- 3";
+                case 11:
+                    return "-0";
+                case 12:
+                    return "-0.0";
+                case 13:
+                    return "+3";
+                case 14:
+                    return "1abc";
+                case 15:
+                    return "0.0001";
+                default:
+                    return String.valueOf(random.nextInt(100_000));
+            }
+        }
+
+        private String string() {
+            int k = clean ? (random.nextBoolean() ? 0 : 11 + random.nextInt(3)) : random.nextInt(14);
+            switch (k) {
+                case 0:
+                    return "'it''s'";
+                case 1:
+                    return "''";
+                case 2:
+                    return "'中文'";
+                case 3:
+                    return "'a\tb'";
+                case 4:
+                    return "'x\\y'";
+                case 5:
+                    return "N'abc'";
+                case 6:
+                    return "x'AB'";
+                case 7:
+                    return "'#$L0$#'";
+                case 8:
+                    return "'a' 'b'";
+                case 9:
+                    return "'unterminated";
+                case 10:
+                    return "date '2020-01-01'";
+                case 11:
+                    return "'%x%'";
+                default:
+                    return "'v" + random.nextInt(1000) + "'";
+            }
+        }
+
+        private String table() {
+            if (random.nextInt(6) == 0) {
+                return identifier() + "." + identifier();
+            }
+            return random.nextInt(4) == 0 ? identifier() : pick("t", "user_info", "T_ORDER", "s");
+        }
+
+        private String column() {
+            int k = random.nextInt(10);
+            if (k < 7) {
+                return identifier();
+            }
+            return k < 9 ? identifier() + "." + identifier() : identifier() + "." + identifier() + "." + identifier();
+        }
+
+        private String alias() {
+            int k = random.nextInt(6);
+            if (k < 3) {
+                return "";
+            }
+            return k < 5 ? ws() + keyword("as") + ws() + identifier() : " " + identifier();
+        }
+
+        /**
+         * 普通名称、Calcite 非保留关键字、保留字(仅嘈杂语料)与各种不合法或边界写法(仅嘈杂语料)
+         */
+        private String identifier() {
+            int k = random.nextInt(100);
+            if (k < 55) {
+                return pick("id", "a", "b", "c", "user_id", "ID", "Name", "t", "col1", "x", "amount", "created_at",
+                        "text", "TEXT", "key", "char", "liable", "read", "keys", "columns", "datetime");
+            }
+            if (k < 85) {
+                return keyword(NON_RESERVED.get(random.nextInt(NON_RESERVED.size())));
+            }
+            if (clean) {
+                return pick("id", "name", "a", "B");
+            }
+            if (k < 92) {
+                return keyword(RESERVED.get(random.nextInt(RESERVED.size())));
+            }
+            return pick("\"id\"", "`id`", "_x", "x$y", "中文", "a1b2", "A_", "[id]",
+                    StringUtils.repeat('x', 129), StringUtils.repeat('x', 128), "u&\"x\"");
+        }
+
+        private String tail() {
+            if (clean) {
+                return random.nextBoolean() ? "" : "\n";
+            }
+            return pick(";", " -- c", " /* c */", " order by id", " limit 10", " group by id", "  ", "\n",
+                    "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "", "");
+        }
+
+        private String ws() {
+            int k = random.nextInt(20);
+            if (k < 15) {
+                return " ";
+            }
+            return k < 17 ? "  " : k < 18 ? "\n" : k < 19 ? "\t" : " \r\n ";
+        }
+
+        /**
+         * 随机大小写
+         */
+        private String keyword(String word) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    return word.toLowerCase();
+                case 1:
+                    return word.toUpperCase();
+                case 2:
+                    return word;
+                default:
+                    StringBuilder mixed = new StringBuilder(word.length());
+                    for (char c : word.toCharArray()) {
+                        mixed.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+                    }
+                    return mixed.toString();
+            }
+        }
+
+        private String pick(String... candidates) {
+            return candidates[random.nextInt(candidates.length)];
+        }
+    }
+}
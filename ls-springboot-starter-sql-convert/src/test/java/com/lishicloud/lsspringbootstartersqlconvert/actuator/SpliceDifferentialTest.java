@@ -0,0 +1,74 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SPLICE 与 UNPARSE 的差分测试: 拼接结果保留原有格式, 重新解析并生成后必须与 UNPARSE 的结果相同
+ *
+ * @author ztq
+ */
+class SpliceDifferentialTest {
+
+    private static final SqlDialect DIALECT = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+
+    private static final String[] CORPUS = {
+            "select id, name from t_order where id = 1",
+            "SELECT o.id, u.name FROM t_order o JOIN t_user u ON o.user_id = u.id WHERE u.name LIKE 'a%'",
+            "select id from t_order /* hint */ where status in (1, 2, 3)\r\n  and amount > -5",
+            "select comment, list from t_order where index = 2",
+            "select \"id\" from \"t_order\" where \"status\" = 1",
+            "select if(a > 1, 'x', 'y'), nvl(b, 0) from t_order",
+            "select upper(name) || 'x' from t_user where id = (select max(user_id) from t_order)",
+            "select a - b, a -b, -a from t_order",
+            "select count(*) from t_order where exists (select 1 from t_user where t_user.id = t_order.user_id)",
+            "select case when a = 1 then 'one' else 'many' end from t_order",
+            "select cast(id as varchar(10)) from t_order",
+            "insert into t_order (id, comment) values (1, 'x')",
+            "update t_order set comment = 'y', amount = amount - 1 where id = 3",
+            "delete from t_order where id in (select order_id from t_refund)",
+            "select t.* from t_order t where t.id between 1 and 10",
+    };
+
+    private static TranslationEngine engine(SqlRewriteMode mode) {
+        return DMNormTranslateBuilder.builder(converter -> { })
+                .ownerOfTableDefault("OWN")
+                .keyWordTranslatorDm()
+                .translateFunctionTemplate("IF", "CASE WHEN $0 THEN $1 ELSE $2 END")
+                .translateFunctionTemplate("NVL", "COALESCE($0, $1)")
+                .rewriteMode(mode)
+                .build();
+    }
+
+    private static String normalize(String sql) throws SqlParseException {
+        return SqlParser.create(sql, PARSER_CONFIG).parseStmt().toSqlString(DIALECT).getSql();
+    }
+
+    @Test
+    void splicedOutputMatchesUnparse() throws SqlParseException {
+        int spliced = 0;
+        try (TranslationEngine splice = engine(SqlRewriteMode.SPLICE);
+             TranslationEngine unparse = engine(SqlRewriteMode.UNPARSE)) {
+            for (String sql : CORPUS) {
+                String expected = unparse.convert(sql);
+                String actual = splice.convert(sql);
+                if (!actual.equals(expected)) {
+                    spliced++;
+                }
+                assertEquals(normalize(expected), normalize(actual), sql);
+            }
+        }
+        // 大部分语句应由拼接得到, 否则差分没有意义
+        assertTrue(spliced > CORPUS.length / 2, "spliced: " + spliced);
+    }
+}
@@ -0,0 +1,120 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * SPLICE 模式的局部替换与各个回退分支: 无法局部替换时 {@link TranslateContext#splice(SqlDialect)} 返回 null
+ *
+ * @author ztq
+ */
+class SqlTextEditsTest {
+
+    private static final SqlDialect DIALECT = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+    private static final SqlParser.Config UNCHANGED = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+    private static final SqlParserPos POS = SqlParserPos.ZERO;
+
+    private static SqlSelect parse(String sql, SqlParser.Config config) throws SqlParseException {
+        return (SqlSelect) SqlParser.create(sql, config).parseQuery();
+    }
+
+    private static SqlIdentifier owned(String name) {
+        return new SqlIdentifier(Arrays.asList("OWN", name), POS);
+    }
+
+    @Test
+    void splicesLocalEditsInPositionOrder() throws SqlParseException {
+        String sql = "select a /* keep */ from t\r\nwhere b = 1";
+        SqlSelect select = parse(sql, UNCHANGED);
+        TranslateContext context = new TranslateContext(select, sql);
+        context.replace(select.getFrom(), owned("t"));
+        context.replace(select.getSelectList().get(0), new SqlIdentifier("A2", POS));
+        assertEquals("select A2 /* keep */ from OWN.t\r\nwhere b = 1", context.splice(DIALECT));
+    }
+
+    @Test
+    void withoutEditsReturnsOriginalText() throws SqlParseException {
+        String sql = "select a\nfrom t";
+        assertEquals(sql, new TranslateContext(parse(sql, UNCHANGED), sql).splice(DIALECT));
+        // UNPARSE 模式不记录改动
+        assertNull(new TranslateContext(parse(sql, UNCHANGED)).splice(DIALECT));
+    }
+
+    @Test
+    void quotedIdentifierFallsBack() throws SqlParseException {
+        String sql = "select a from \"t\"";
+        SqlSelect select = parse(sql, UNCHANGED);
+        TranslateContext context = new TranslateContext(select, sql);
+        context.replace(select.getFrom(), owned("t"));
+        assertNull(context.splice(DIALECT));
+    }
+
+    @Test
+    void caseFoldedIdentifierFallsBack() throws SqlParseException {
+        String sql = "select a from t";
+        // 默认配置把未加引号的标识符转为大写, 节点与原文不再逐字相同
+        SqlSelect select = parse(sql, SqlParser.config());
+        TranslateContext context = new TranslateContext(select, sql);
+        context.replace(select.getFrom(), owned("T"));
+        assertNull(context.splice(DIALECT));
+    }
+
+    @Test
+    void overlappingEditsFallBack() throws SqlParseException {
+        String sql = "select upper(b) from t";
+        SqlSelect select = parse(sql, UNCHANGED);
+        SqlBasicCall upper = (SqlBasicCall) select.getSelectList().get(0);
+        TranslateContext context = new TranslateContext(select, sql);
+        context.replace(upper.operand(0), new SqlIdentifier("B2", POS));
+        context.replace(upper, SqlStdOperatorTable.LOWER.createCall(POS, new SqlIdentifier("b", POS)));
+        assertNull(context.splice(DIALECT));
+    }
+
+    @Test
+    void replacementThatIsNotSelfDelimitedFallsBack() throws SqlParseException {
+        String sql = "select a * b from t";
+        SqlSelect select = parse(sql, UNCHANGED);
+        SqlBasicCall times = (SqlBasicCall) select.getSelectList().get(0);
+        TranslateContext context = new TranslateContext(select, sql);
+        // 拼接为 a * x + y 会改变优先级
+        SqlNode plus = SqlStdOperatorTable.PLUS.createCall(POS, new SqlIdentifier("x", POS), new SqlIdentifier("y", POS));
+        context.replace(times.operand(1), plus);
+        assertNull(context.splice(DIALECT));
+    }
+
+    @Test
+    void replacementStartingWithMinusFallsBack() throws SqlParseException {
+        String sql = "select a -b from t";
+        SqlSelect select = parse(sql, UNCHANGED);
+        SqlBasicCall minus = (SqlBasicCall) select.getSelectList().get(0);
+        TranslateContext context = new TranslateContext(select, sql);
+        // 拼接为 a --1 会变成注释
+        context.replace(minus.operand(1), SqlLiteral.createExactNumeric("-1", POS));
+        assertNull(context.splice(DIALECT));
+    }
+
+    @Test
+    void splicesSelfDelimitedCallAndLiteral() throws SqlParseException {
+        String sql = "select upper(b), c from t";
+        SqlSelect select = parse(sql, UNCHANGED);
+        TranslateContext context = new TranslateContext(select, sql);
+        context.replace(select.getSelectList().get(0), SqlStdOperatorTable.LOWER.createCall(POS, new SqlIdentifier("b", POS)));
+        context.replace(select.getSelectList().get(1), SqlLiteral.createExactNumeric("1", POS));
+        assertEquals("select LOWER(b), 1 from t", context.splice(DIALECT));
+    }
+}
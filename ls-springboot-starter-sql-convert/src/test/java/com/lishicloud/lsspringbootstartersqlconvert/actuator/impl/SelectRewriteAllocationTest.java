@@ -0,0 +1,102 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
+
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.KeyWordTranslator;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.TemplateFunctionTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 改写一步(不含解析与生成)在语料上的内存分配。
+ * <p>
+ * 语法树预先解析好, 只统计 {@link SelectTranslateActuator#extractAndModifySourceTableInSelectSql} 本身分配的字节数,
+ * 结果写入日志以便与改写实现的变更前后对比。
+ *
+ * @author ztq
+ */
+@Slf4j
+class SelectRewriteAllocationTest {
+
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+    private static final int WARM_UP = 2_000;
+    private static final int MEASURED = 500;
+
+    private static final String[] CORPUS = {
+            "select id, name from t_order where id = 1",
+            "select o.id, u.name from t_order o join t_user u on o.user_id = u.id where u.name like 'a%'",
+            "select o.id from t_order o left join t_user u on o.user_id = u.id join t_item i on i.order_id = o.id",
+            "select id from t_order where user_id in (select id from t_user where status = 1)",
+            "select case when status = 1 then 'paid' else 'open' end from t_order",
+            "select nvl(amount, 0), upper(name), count(distinct user_id) from t_order group by name",
+            "select t.id from (select id from t_order union all select id from t_refund) t",
+            "select a, b, c, d, e, f, g, h, i, j, k, l, m, n, o, p from t_wide where a = 1 and b = 2 and c = 3",
+            "select comment, list from t_order where index = 2",
+            "select id from t_order where status = 1 and amount > 100 or user_id = 7",
+    };
+
+    @Test
+    void measuresRewriteAllocation() throws SqlParseException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        SelectTranslateActuator actuator = actuator();
+        rewrite(actuator, parse(WARM_UP));
+        SqlNode[] trees = parse(MEASURED);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        rewrite(actuator, trees);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        log.info("rewrite allocation: {} bytes per statement over {} statements", allocated / trees.length, trees.length);
+    }
+
+    /**
+     * 只改表名的语句: 选择列表与条件保持原实例
+     */
+    @Test
+    void tableOnlyChangeSharesOtherClauses() throws SqlParseException {
+        SqlSelect select = (SqlSelect) SqlParser.create(CORPUS[0], PARSER_CONFIG).parseQuery();
+        SqlNode selectList = select.getSelectList();
+        SqlNode where = select.getWhere();
+        actuator().extractAndModifySourceTableInSelectSql(select, false);
+        assertSame(selectList, select.getSelectList());
+        assertSame(where, select.getWhere());
+    }
+
+    private static void rewrite(SelectTranslateActuator actuator, SqlNode[] trees) {
+        for (SqlNode tree : trees) {
+            actuator.extractAndModifySourceTableInSelectSql(tree, false);
+        }
+    }
+
+    /**
+     * 改写会原地修改 SELECT 节点, 每次统计都使用新解析的语法树
+     */
+    private static SqlNode[] parse(int rounds) throws SqlParseException {
+        SqlNode[] trees = new SqlNode[rounds * CORPUS.length];
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = SqlParser.create(CORPUS[i % CORPUS.length], PARSER_CONFIG).parseQuery();
+        }
+        return trees;
+    }
+
+    private static SelectTranslateActuator actuator() {
+        SqlDialect dialect = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+        return new SelectTranslateActuator(dialect, TranslateRules.of(Arrays.asList(new OwnerOfTable("OWN"),
+                new KeyWordTranslator(), new TemplateFunctionTranslate("NVL", "COALESCE($0, $1)"))));
+    }
+}
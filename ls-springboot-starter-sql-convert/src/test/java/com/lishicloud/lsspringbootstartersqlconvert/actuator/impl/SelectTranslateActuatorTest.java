@@ -0,0 +1,199 @@
+package com.lishicloud.lsspringbootstartersqlconvert.actuator.impl;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.FunctionTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.TemplateFunctionTranslate;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlBinaryOperator;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SelectTranslateActuator} 的显式工作栈遍历: 超长的 AND/OR 链、深层嵌套的子查询, 以及链节点上的函数规则只执行一次
+ *
+ * @author ztq
+ */
+class SelectTranslateActuatorTest {
+
+    private static final SqlDialect DIALECT = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+    private static final SqlParserPos POS = SqlParserPos.ZERO;
+
+    private static SqlNode parseExpression(String expression) throws SqlParseException {
+        return SqlParser.create(expression, PARSER_CONFIG).parseExpression();
+    }
+
+    private static TranslationEngine spliceEngine() {
+        return DMNormTranslateBuilder.builder(converter -> { })
+                .ownerOfTableDefault("OWN")
+                .translateFunctionTemplate("NVL", "COALESCE($0, $1)")
+                .rewriteMode(SqlRewriteMode.SPLICE)
+                .build();
+    }
+
+    /**
+     * 链直接构造: Calcite 的解析与生成都是递归的, 这里只验证遍历本身
+     */
+    @Test
+    void translatesTenThousandTermChain() throws SqlParseException {
+        int terms = 10_000;
+        int hit = 5_000;
+        SelectTranslateActuator actuator = new SelectTranslateActuator(DIALECT, TranslateRules.of(Arrays.asList(
+                new OwnerOfTable("OWN"), new TemplateFunctionTranslate("NVL", "COALESCE($0, $1)"))));
+        for (SqlBinaryOperator operator : new SqlBinaryOperator[]{SqlStdOperatorTable.AND, SqlStdOperatorTable.OR}) {
+            SqlNode[] originals = new SqlNode[terms];
+            SqlNode where = null;
+            for (int i = 0; i < terms; i++) {
+                originals[i] = i == hit
+                        ? parseExpression("nvl(a, 0) = " + i)
+                        : SqlStdOperatorTable.EQUALS.createCall(POS, new SqlIdentifier("a", POS), SqlLiteral.createExactNumeric(String.valueOf(i), POS));
+                where = null == where ? originals[i] : operator.createCall(POS, where, originals[i]);
+            }
+            SqlSelect select = (SqlSelect) SqlParser.create("select id from t_order", PARSER_CONFIG).parseQuery();
+            select.setWhere(where);
+
+            actuator.extractAndModifySourceTableInSelectSql(select, false);
+            assertEquals("OWN.t_order", select.getFrom().toString());
+            SqlNode current = select.getWhere();
+            for (int i = terms - 1; i >= 0; i--) {
+                SqlNode term = current;
+                if (i > 0) {
+                    assertEquals(operator, ((SqlCall) current).getOperator());
+                    term = ((SqlCall) current).operand(1);
+                    current = ((SqlCall) current).operand(0);
+                }
+                if (i == hit) {
+                    assertEquals("COALESCE", ((SqlCall) ((SqlCall) term).operand(0)).getOperator().getName());
+                } else {
+                    assertSame(originals[i], term);
+                }
+            }
+        }
+    }
+
+    @Test
+    void translatesDeeplyNestedSubqueries() {
+        int depth = 200;
+        String sql = StringUtils.repeat("select id from t_order where id in (", depth)
+                + "select id from t_order" + StringUtils.repeat(")", depth);
+        try (TranslationEngine engine = spliceEngine()) {
+            String translated = engine.convert(sql);
+            assertEquals(depth + 1, StringUtils.countMatches(translated, "from OWN.t_order"));
+            assertEquals(sql.replace("from t_order", "from OWN.t_order"), translated);
+        }
+    }
+
+    /**
+     * 只有通向改动的路径会被复制: 深层嵌套的函数调用逐层新建, 旁边未改动的子树保持原实例
+     */
+    @Test
+    void copiesOnlyThePathToADeeplyNestedChange() throws SqlParseException {
+        int depth = 5_000;
+        SqlNode[] levels = new SqlNode[depth + 1];
+        levels[0] = parseExpression("nvl(a, 0)");
+        for (int i = 1; i <= depth; i++) {
+            levels[i] = SqlStdOperatorTable.ABS.createCall(POS, levels[i - 1]);
+        }
+        SqlSelect select = (SqlSelect) SqlParser.create("select b, upper(c) from t_order where id = 1", PARSER_CONFIG).parseQuery();
+        select.getSelectList().set(0, levels[depth]);
+        SqlNode sibling = select.getSelectList().get(1);
+        SqlNode where = select.getWhere();
+        SelectTranslateActuator actuator = new SelectTranslateActuator(DIALECT, TranslateRules.of(Arrays.asList(
+                new OwnerOfTable("OWN"), new TemplateFunctionTranslate("NVL", "COALESCE($0, $1)"))));
+
+        actuator.extractAndModifySourceTableInSelectSql(select, false);
+        assertSame(sibling, select.getSelectList().get(1));
+        assertSame(where, select.getWhere());
+        SqlNode current = select.getSelectList().get(0);
+        for (int i = depth; i > 0; i--) {
+            assertNotSame(levels[i], current);
+            assertSame(SqlStdOperatorTable.ABS, ((SqlCall) current).getOperator());
+            current = ((SqlCall) current).operand(0);
+        }
+        assertEquals("COALESCE", ((SqlCall) current).getOperator().getName());
+    }
+
+    @Test
+    void chainLinkRuleRunsOnce() throws SqlParseException {
+        CountingOrTranslate counting = new CountingOrTranslate("B10");
+        SelectTranslateActuator actuator = new SelectTranslateActuator(DIALECT,
+                TranslateRules.of(Arrays.asList(new OwnerOfTable("OWN"), counting)));
+        StringBuilder sql = new StringBuilder("select id from t_order where B0 = 0");
+        for (int i = 1; i < 20; i++) {
+            sql.append(" or B").append(i).append(" = ").append(i);
+        }
+        SqlSelect select = (SqlSelect) SqlParser.create(sql.toString(), PARSER_CONFIG).parseQuery();
+
+        String translated = actuator.extractAndModify(select, DIALECT, false);
+        assertTrue(translated.contains("HIT(B10)"), translated);
+        // 从最外层的链节点到命中的链节点各执行一次, 命中的链节点以下不再访问
+        assertEquals(10, counting.calls.size());
+        counting.calls.forEach((term, calls) -> assertEquals(1, calls, term));
+    }
+
+    @Test
+    void unchangedChainIsReturnedAsIs() throws SqlParseException {
+        SelectTranslateActuator actuator = new SelectTranslateActuator(DIALECT, TranslateRules.of(Arrays.asList(new OwnerOfTable("OWN"))));
+        StringBuilder sql = new StringBuilder("select id from t_order where a = 0");
+        for (int i = 1; i < 1_000; i++) {
+            sql.append(" and a = ").append(i);
+        }
+        SqlSelect select = (SqlSelect) SqlParser.create(sql.toString(), PARSER_CONFIG).parseQuery();
+        SqlNode where = select.getWhere();
+        actuator.extractAndModifySourceTableInSelectSql(select, false);
+        assertSame(where, select.getWhere());
+    }
+
+    /**
+     * 按右操作数记录 OR 链节点的规则执行次数, 右操作数含有 hit 时改写为 HIT(hit)
+     */
+    private static final class CountingOrTranslate extends FunctionTranslate {
+
+        private final String hit;
+        private final Map<String, Integer> calls = new HashMap<>();
+
+        private CountingOrTranslate(String hit) {
+            this.hit = hit;
+        }
+
+        @Override
+        protected String targetFunctionName() {
+            return "OR";
+        }
+
+        @Override
+        protected String newFunctionName() {
+            return "HIT";
+        }
+
+        @Override
+        protected String[] simpleTranslateOfArgs(String[] sourceArgs) {
+            String right = sourceArgs[1];
+            calls.merge(right, 1, Integer::sum);
+            return right.contains(hit) ? new String[]{hit} : null;
+        }
+    }
+}
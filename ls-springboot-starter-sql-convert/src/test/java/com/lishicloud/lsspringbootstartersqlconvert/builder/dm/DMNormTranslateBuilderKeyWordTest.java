@@ -0,0 +1,52 @@
+package com.lishicloud.lsspringbootstartersqlconvert.builder.dm;
+
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 关键字转义的两种配置: 默认配置不改写达梦保留字, 显式启用的达梦配置以引号标识符转义
+ *
+ * @author ztq
+ */
+class DMNormTranslateBuilderKeyWordTest {
+
+    private static final String[] SQL = {
+            "SELECT a, comment, list, index, top FROM t",
+            "INSERT INTO t (comment, list, index, top) VALUES (1, 2, 3, 4)",
+            "UPDATE t SET comment = 1, list = 2, index = 3, top = 4"
+    };
+
+    @Test
+    void defaultKeepsDmReservedWordsUnchanged() {
+        assertTranslations(DMNormTranslateBuilder.builder(converter -> { })
+                        .ownerOfTableDefault("OWN")
+                        .keyWordTranslatorDefault()
+                        .build(),
+                "SELECT a, comment, list, index, top\nFROM OWN.t",
+                "INSERT INTO OWN.t (comment, list, index, top)\nVALUES ROW(1, 2, 3, 4)",
+                "UPDATE OWN.t SET comment = 1, list = 2, index = 3, top = 4");
+    }
+
+    @Test
+    void dmQuotesReservedWords() {
+        assertTranslations(DMNormTranslateBuilder.builder(converter -> { })
+                        .ownerOfTableDefault("OWN")
+                        .keyWordTranslatorDm()
+                        .build(),
+                "SELECT a, \"COMMENT\", \"LIST\", \"INDEX\", \"TOP\"\nFROM OWN.t",
+                "INSERT INTO OWN.t (\"COMMENT\", \"LIST\", \"INDEX\", \"TOP\")\nVALUES ROW(1, 2, 3, 4)",
+                "UPDATE OWN.t SET \"COMMENT\" = 1, \"LIST\" = 2, \"INDEX\" = 3, \"TOP\" = 4");
+    }
+
+    private static void assertTranslations(TranslationEngine engine, String... expected) {
+        try {
+            for (int i = 0; i < SQL.length; i++) {
+                assertEquals(expected[i], engine.convert(SQL[i]), SQL[i]);
+            }
+        } finally {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CacheSnapshot} 的读写往返与损坏文件的拒绝, 以及 {@link SimpleSqlCache} 关闭时写入、启用时加载的完整流程
+ *
+ * @author ztq
+ */
+class CacheSnapshotTest {
+
+    private static final long FINGERPRINT = 0x1234_5678_9abc_def0L;
+
+    private static List<CacheSnapshot.Entry> entries() {
+        return Arrays.asList(
+                new CacheSnapshot.Entry("select id from t_order", "select id from OWN.t_order", 3, new String[]{"t_order"}),
+                new CacheSnapshot.Entry("select '名称' from t_user u join t_item i on u.id = i.uid",
+                        "select '名称' from OWN.t_user u join OWN.t_item i on u.id = i.uid", 0, new String[]{"t_user", "t_item"}),
+                new CacheSnapshot.Entry("select 1", "select 1", 7, new String[0]));
+    }
+
+    private static void assertSameEntries(List<CacheSnapshot.Entry> expected, List<CacheSnapshot.Entry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            assertEquals(expected.get(i).getUseSize(), actual.get(i).getUseSize());
+            assertArrayEquals(expected.get(i).getDependencies(), actual.get(i).getDependencies());
+        }
+    }
+
+    @Test
+    void roundTripsEntriesInOrder(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("nested").resolve("sql.snapshot");
+        CacheSnapshot.write(file, FINGERPRINT, entries());
+        assertSameEntries(entries(), CacheSnapshot.load(file, FINGERPRINT));
+        assertFalse(Files.exists(file.resolveSibling("sql.snapshot.tmp")));
+
+        CacheSnapshot.write(file, FINGERPRINT, Collections.emptyList());
+        assertTrue(CacheSnapshot.load(file, FINGERPRINT).isEmpty());
+    }
+
+    @Test
+    void rejectsMissingFileAndChangedRules(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sql.snapshot");
+        assertTrue(CacheSnapshot.load(file, FINGERPRINT).isEmpty());
+        CacheSnapshot.write(file, FINGERPRINT, entries());
+        assertTrue(CacheSnapshot.load(file, FINGERPRINT + 1).isEmpty());
+    }
+
+    @Test
+    void rejectsTruncatedFiles(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sql.snapshot");
+        CacheSnapshot.write(file, FINGERPRINT, entries());
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.snapshot");
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertTrue(CacheSnapshot.load(truncated, FINGERPRINT).isEmpty(), "length " + length);
+        }
+    }
+
+    /**
+     * 任意一个字节损坏(包括只改变字符串内容、长度字段仍然完好的情况)都拒绝整个快照
+     */
+    @Test
+    void rejectsAnyCorruptedByte(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sql.snapshot");
+        CacheSnapshot.write(file, FINGERPRINT, entries());
+        byte[] bytes = Files.readAllBytes(file);
+        Path corrupted = dir.resolve("corrupted.snapshot");
+        for (int i = 0; i < bytes.length; i++) {
+            // createTime 不参与校验
+            if (i >= 16 && i < 24) {
+                continue;
+            }
+            byte[] copy = bytes.clone();
+            copy[i] ^= 0x20;
+            Files.write(corrupted, copy);
+            assertTrue(CacheSnapshot.load(corrupted, FINGERPRINT).isEmpty(), "offset " + i);
+        }
+    }
+
+    @Test
+    void rejectsTrailingBytes(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("sql.snapshot");
+        CacheSnapshot.write(file, FINGERPRINT, entries());
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length + 8));
+        assertTrue(CacheSnapshot.load(file, FINGERPRINT).isEmpty());
+    }
+
+    @Test
+    void cacheWritesSnapshotOnCloseAndLoadsItOnEnable(@TempDir Path dir) {
+        Path file = dir.resolve("sql.snapshot");
+        SimpleSqlCache first = new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+        first.enableSnapshot(file, FINGERPRINT, 1, TimeUnit.HOURS, 100);
+        first.put("select id from t_order", "select id from OWN.t_order");
+        first.put("select id from t_user", "select id from OWN.t_user");
+        first.close();
+        assertEquals(2, CacheSnapshot.load(file, FINGERPRINT).size());
+
+        SimpleSqlCache second = new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+        second.useOffHeapValueStore(new OffHeapValueStore(OffHeapValueStore.SLAB_SIZE, false));
+        try {
+            second.enableSnapshot(file, FINGERPRINT, 1, TimeUnit.HOURS, 100);
+            assertEquals("select id from OWN.t_order", second.get("select id from t_order"));
+            assertEquals("select id from OWN.t_user", second.get("select id from t_user"));
+        } finally {
+            second.close();
+        }
+
+        SimpleSqlCache changedRules = new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+        try {
+            changedRules.enableSnapshot(file, FINGERPRINT + 1, 1, TimeUnit.HOURS, 100);
+            assertNull(changedRules.get("select id from t_order"));
+        } finally {
+            changedRules.close();
+        }
+    }
+}
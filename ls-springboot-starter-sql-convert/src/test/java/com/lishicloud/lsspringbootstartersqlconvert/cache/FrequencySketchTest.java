@@ -0,0 +1,49 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FrequencySketch} 的规模、饱和与老化
+ *
+ * @author ztq
+ */
+class FrequencySketchTest {
+
+    @Test
+    void tableSizeIsBounded() {
+        assertEquals(16, new FrequencySketch(0).tableLength());
+        assertEquals(1024, new FrequencySketch(1000).tableLength());
+        // 很大的 maximumWeight 不能分配巨大的数组, 采样上限也不能溢出
+        FrequencySketch huge = new FrequencySketch(Long.MAX_VALUE);
+        assertEquals(FrequencySketch.MAXIMUM_TABLE_LENGTH, huge.tableLength());
+        huge.increment(42);
+        assertEquals(1, huge.frequency(42));
+    }
+
+    @Test
+    void frequencySaturatesAtFifteen() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(7);
+        }
+        assertEquals(15, sketch.frequency(7));
+        assertEquals(0, sketch.frequency(8));
+    }
+
+    @Test
+    void agesAfterSampleSize() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment(7);
+        }
+        // 采样上限为 10 * 16, 其余的增量来自不同的 key
+        for (int i = 100; i < 400; i++) {
+            sketch.increment(i);
+        }
+        int aged = sketch.frequency(7);
+        assertTrue(aged < 15 && aged >= 3, "frequency after reset: " + aged);
+    }
+}
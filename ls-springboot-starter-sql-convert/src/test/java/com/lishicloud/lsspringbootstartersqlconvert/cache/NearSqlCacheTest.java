@@ -0,0 +1,89 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link NearSqlCache} 与 L2 的一致性: L1 命中要计入 L2 的访问, L1 副本不能比 L2 的缓存项存活得更久
+ *
+ * @author ztq
+ */
+class NearSqlCacheTest {
+
+    private static final long EXPIRED = TimeUnit.MINUTES.toMillis(10);
+    private static final long BUFFER = TimeUnit.MINUTES.toMillis(1);
+    private static final long WHEEL_SLACK = TimeUnit.SECONDS.toMillis(70);
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleSqlCache shared;
+    private NearSqlCache near;
+
+    @BeforeEach
+    void setUp() {
+        shared = new SimpleSqlCache(EXPIRED, TimeUnit.MILLISECONDS, BUFFER, TimeUnit.MILLISECONDS, 2);
+        shared.useTicker(now::get);
+        near = new NearSqlCache(shared, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shared.close();
+    }
+
+    @Test
+    void nearHitsKeepSharedEntryAlive() {
+        shared.put("q1", "v1");
+        assertEquals("v1", near.get("q1"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals("v1", near.get("q1"));
+        }
+        assertEquals(1, near.sharedHitCount());
+        // 不足一批的近端命中尚未提交
+        assertEquals(0, near.nearHitCount());
+        near.flushHits();
+        assertEquals(5, near.nearHitCount());
+        shared.cleanUp();
+
+        now.set(BUFFER + WHEEL_SLACK);
+        shared.cleanUp();
+        assertEquals(0, shared.stats().getExpirationCount());
+        assertEquals(1, shared.stats().getEntryCount());
+    }
+
+    @Test
+    void nearHitsAreFlushedInBatches() {
+        shared.put("q1", "v1");
+        assertEquals("v1", near.get("q1"));
+        long generation = shared.generation();
+        for (int i = 0; i < NearSqlCache.FLUSH_HITS; i++) {
+            assertEquals("v1", near.get("q1"));
+        }
+        assertEquals(NearSqlCache.FLUSH_HITS, near.nearHitCount());
+        shared.cleanUp();
+        // 过期、淘汰等维护不改变代数, 近端副本继续命中
+        assertEquals(generation, shared.generation());
+        assertEquals("v1", near.get("q1"));
+        assertEquals(1, near.sharedHitCount());
+    }
+
+    @Test
+    void nearCopyDoesNotOutliveExpiredSharedEntry() {
+        shared.put("q1", "v1", new String[]{SqlDependencies.table("T_ORDER")});
+        assertEquals("v1", near.get("q1"));
+        shared.cleanUp();
+
+        now.set(BUFFER + WHEEL_SLACK);
+        shared.cleanUp();
+        assertEquals(1, shared.stats().getExpirationCount());
+        // 过期已注销依赖, 之后的失效在 L2 中找不到节点, 但仍要让 L1 副本失效
+        assertEquals(0, shared.invalidate(SqlDependencies.table("T_ORDER")));
+        assertNull(near.get("q1"));
+    }
+}
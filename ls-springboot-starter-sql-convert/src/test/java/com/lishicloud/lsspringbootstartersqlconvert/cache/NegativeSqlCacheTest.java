@@ -0,0 +1,101 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.NegativeCachePolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link NegativeSqlCache} 的策略、有效期与按写入顺序的淘汰
+ *
+ * @author ztq
+ */
+class NegativeSqlCacheTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(1);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private NegativeSqlCache cache(int maxEntries, NegativeCachePolicy policy) {
+        return new NegativeSqlCache(TTL, TimeUnit.MILLISECONDS, maxEntries, policy, now::get);
+    }
+
+    @Test
+    void passthroughReturnsSqlUntilExpired() {
+        NegativeSqlCache cache = cache(10, NegativeCachePolicy.PASSTHROUGH);
+        cache.record("create table t (id int)", new UnsupportedOperationException("DDL"));
+        assertEquals("create table t (id int)", cache.lookup("create table t (id int)"));
+        assertEquals(1, cache.hitCount());
+
+        now.set(TTL + 1);
+        assertNull(cache.lookup("create table t (id int)"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void rethrowThrowsFreshExceptionCausedByTheRecordedOne() {
+        NegativeSqlCache cache = cache(10, NegativeCachePolicy.RETHROW);
+        UnsupportedOperationException recorded = new UnsupportedOperationException("Unsupported SQL kind: MERGE");
+        assertSame(recorded, assertThrows(UnsupportedOperationException.class, () -> cache.record("merge", recorded)));
+
+        UnsupportedOperationException first = assertThrows(UnsupportedOperationException.class, () -> cache.lookup("merge"));
+        UnsupportedOperationException second = assertThrows(UnsupportedOperationException.class, () -> cache.lookup("merge"));
+        assertNotSame(first, second);
+        assertNotSame(recorded, first);
+        assertSame(recorded, first.getCause());
+        assertEquals(recorded.getMessage(), first.getMessage());
+
+        assertThrows(RuntimeException.class, () -> cache.record("selec 1", new RuntimeException("Encountered \"selec\"")));
+        RuntimeException parse = assertThrows(RuntimeException.class, () -> cache.lookup("selec 1"));
+        assertEquals("Encountered \"selec\"", parse.getMessage());
+    }
+
+    @Test
+    void evictsOldestRecordWhenFull() {
+        NegativeSqlCache cache = cache(3, NegativeCachePolicy.PASSTHROUGH);
+        for (int i = 0; i < 4; i++) {
+            now.set(i);
+            cache.record("q" + i, new UnsupportedOperationException());
+        }
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNull(cache.lookup("q0"));
+        for (int i = 1; i < 4; i++) {
+            assertEquals("q" + i, cache.lookup("q" + i));
+        }
+    }
+
+    @Test
+    void expiredRecordsAreDroppedBeforeEvicting() {
+        NegativeSqlCache cache = cache(3, NegativeCachePolicy.PASSTHROUGH);
+        cache.record("q0", new UnsupportedOperationException());
+        cache.record("q1", new UnsupportedOperationException());
+        now.set(TTL + 1);
+        cache.record("q2", new UnsupportedOperationException());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    void staysBoundedUnderChurn() {
+        NegativeSqlCache cache = cache(100, NegativeCachePolicy.PASSTHROUGH);
+        for (int i = 0; i < 100_000; i++) {
+            now.set(i);
+            cache.record("q" + i, new UnsupportedOperationException());
+            if (i % 7 == 0) {
+                // 覆盖已有记录, 队列中留下过时的记录
+                cache.record("q" + (i / 2), new UnsupportedOperationException());
+            }
+            assertTrue(cache.size() <= 100);
+        }
+        assertEquals("q99999", cache.lookup("q99999"));
+    }
+}
@@ -0,0 +1,214 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link OffHeapValueStore} 的读写往返、失效句柄、容量上限、并发复用与命中时的内存分配
+ *
+ * @author ztq
+ */
+class OffHeapValueStoreTest {
+
+    private static final long CAPACITY = 4L * OffHeapValueStore.SLAB_SIZE;
+
+    /**
+     * 生成指定长度的 SQL 文本, 含中文以覆盖多字节 UTF-8
+     */
+    private static String sql(int length, long seed) {
+        StringBuilder sb = new StringBuilder(length + 32);
+        Random random = new Random(seed);
+        while (sb.length() < length) {
+            sb.append("select id, '名称").append(random.nextInt(1_000_000)).append("' from t_order where id = ")
+                    .append(random.nextLong()).append(" union all ");
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    @Test
+    void roundTripsValuesOfEverySize() {
+        for (boolean compress : new boolean[]{false, true}) {
+            OffHeapValueStore store = new OffHeapValueStore(CAPACITY, compress);
+            for (int length : new int[]{0, 1, 63, 64, 1_000, 4_096, 100_000, 1_000_000}) {
+                String value = sql(length, length);
+                OffHeapValueStore.Slot slot = store.write(value);
+                assertNotNull(slot, "length " + length);
+                assertEquals(value, store.read(slot), "length " + length);
+                // 第二次读取复用线程私有的缓冲, 结果不变
+                assertEquals(value, store.read(slot), "length " + length);
+            }
+            store.release();
+        }
+    }
+
+    @Test
+    void compressesLargeRepetitiveValues() {
+        String value = StringUtils.repeat("select id from t_order where id = 1 union all ", 100_000);
+        OffHeapValueStore plain = new OffHeapValueStore(CAPACITY, false);
+        OffHeapValueStore deflated = new OffHeapValueStore(CAPACITY, true);
+        // 不压缩时超过单个 slab, 不能写入堆外
+        assertNull(plain.write(value));
+        OffHeapValueStore.Slot slot = deflated.write(value);
+        assertNotNull(slot);
+        assertEquals(value, deflated.read(slot));
+        assertEquals(OffHeapValueStore.SLAB_SIZE, deflated.allocatedBytes());
+    }
+
+    @Test
+    void freedOrReusedChunkIsNeverReadThroughAStaleSlot() {
+        OffHeapValueStore store = new OffHeapValueStore(CAPACITY, false);
+        OffHeapValueStore.Slot first = store.write(sql(500, 1));
+        store.free(first);
+        assertNull(store.read(first));
+        // 同一尺寸级别的 chunk 被复用, 旧句柄的戳记不再匹配
+        String second = sql(500, 2);
+        OffHeapValueStore.Slot reused = store.write(second);
+        assertNull(store.read(first));
+        assertEquals(second, store.read(reused));
+        // 重复释放旧句柄不影响新值
+        store.free(first);
+        assertEquals(second, store.read(reused));
+    }
+
+    @Test
+    void forgedSlotsReadAsMisses() {
+        OffHeapValueStore store = new OffHeapValueStore(CAPACITY, false);
+        OffHeapValueStore.Slot slot = store.write(sql(500, 1));
+        assertNull(store.read(new OffHeapValueStore.Slot(0, 12345, 0)));
+        assertNull(store.read(new OffHeapValueStore.Slot(7L << 32, 1, 0)));
+        store.free(new OffHeapValueStore.Slot(0, 12345, 0));
+        assertEquals(sql(500, 1), store.read(slot));
+    }
+
+    @Test
+    void capacityAndReleaseBoundTheStore() {
+        OffHeapValueStore store = new OffHeapValueStore(OffHeapValueStore.SLAB_SIZE, false);
+        String value = sql(OffHeapValueStore.SLAB_SIZE / 2, 1);
+        OffHeapValueStore.Slot slot = store.write(value);
+        assertNotNull(slot);
+        // 剩余空间足够, 但下一个 chunk 需要新的 slab
+        assertNull(store.write(value));
+        assertEquals(OffHeapValueStore.SLAB_SIZE, store.allocatedBytes());
+
+        store.release();
+        assertEquals(0, store.allocatedBytes());
+        assertNull(store.read(slot));
+    }
+
+    /**
+     * 写线程不断替换并释放值, 读线程持有的句柄只能读到原值或未命中, 不能读到被复用后的其他值
+     */
+    @Test
+    void concurrentReuseNeverReturnsAnotherValue() throws Exception {
+        OffHeapValueStore store = new OffHeapValueStore(CAPACITY, true);
+        AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(64);
+        for (int i = 0; i < entries.length(); i++) {
+            String value = sql(200 + i * 97, i);
+            entries.set(i, new Entry(store.write(value), value));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                long seed = t;
+                readers.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    int hits = 0;
+                    while (running.get()) {
+                        Entry entry = entries.get(random.nextInt(entries.length()));
+                        String read = store.read(entry.slot);
+                        if (null != read) {
+                            assertEquals(entry.value, read);
+                            hits++;
+                        }
+                    }
+                    return hits;
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                Random random = new Random(42);
+                for (int i = 0; i < 50_000; i++) {
+                    int index = random.nextInt(entries.length());
+                    // 长度只在少数几个尺寸级别内变化, 释放的 chunk 会被很快复用
+                    String value = sql(200 + random.nextInt(6_000), i);
+                    Entry previous = entries.getAndSet(index, new Entry(store.write(value), value));
+                    store.free(previous.slot);
+                }
+            });
+            writer.get(2, TimeUnit.MINUTES);
+            running.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 命中时只创建结果字符串: 每次读取的分配量与直接解码同样字节的分配量相当
+     */
+    @Test
+    void readAllocatesOnlyTheResultString() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        for (boolean compress : new boolean[]{false, true}) {
+            OffHeapValueStore store = new OffHeapValueStore(CAPACITY, compress);
+            String value = sql(20_000, 7);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            OffHeapValueStore.Slot slot = store.write(value);
+            int reads = 2_000;
+            long threadId = Thread.currentThread().getId();
+            for (int i = 0; i < reads; i++) {
+                assertEquals(value.length(), store.read(slot).length());
+                assertEquals(value.length(), new String(bytes, StandardCharsets.UTF_8).length());
+            }
+
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < reads; i++) {
+                assertEquals(value.length(), new String(bytes, StandardCharsets.UTF_8).length());
+            }
+            long decode = (threads.getThreadAllocatedBytes(threadId) - before) / reads;
+            before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < reads; i++) {
+                assertEquals(value.length(), store.read(slot).length());
+            }
+            long read = (threads.getThreadAllocatedBytes(threadId) - before) / reads;
+            assertTrue(read <= decode + 256, "compress=" + compress + " read " + read + " bytes, decode " + decode + " bytes");
+            store.release();
+        }
+    }
+
+    private static final class Entry {
+        private final OffHeapValueStore.Slot slot;
+        private final String value;
+
+        private Entry(OffHeapValueStore.Slot slot, String value) {
+            this.slot = slot;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SecondLevelCacheGateway} 的熔断: 连续失败后熔断, 到期后只放行一个探测查询
+ *
+ * @author ztq
+ */
+class SecondLevelCacheGatewayTest {
+
+    private static final long OPEN_MILLIS = 200;
+
+    private final ScriptedBackend backend = new ScriptedBackend();
+    private SecondLevelCacheGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new SecondLevelCacheGateway(backend, 1L, 2_000, 16, 2, OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.close();
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() throws Exception {
+        openCircuit();
+
+        assertNull(gateway.get("q1"));
+        assertEquals(2, backend.calls.get());
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAndReopensWhenItFails() throws Exception {
+        openCircuit();
+        backend.hold = true;
+        Thread.sleep(OPEN_MILLIS + 50);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<SecondLevelCacheGateway.Loaded> probe = executor.submit(() -> gateway.get("probe"));
+            CompletableFuture<Map<String, String>> pending = backend.pending.poll(2, TimeUnit.SECONDS);
+            assertNotNull(pending);
+            // 探测进行中, 其余查询不访问后端
+            List<Future<SecondLevelCacheGateway.Loaded>> others = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                others.add(executor.submit(() -> gateway.get("other")));
+            }
+            for (Future<SecondLevelCacheGateway.Loaded> other : others) {
+                assertNull(other.get(2, TimeUnit.SECONDS));
+            }
+            assertEquals(3, backend.calls.get());
+
+            pending.completeExceptionally(new IllegalStateException("still down"));
+            assertNull(probe.get(2, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(gateway.isCircuitOpen());
+        assertNull(gateway.get("q1"));
+        assertEquals(3, backend.calls.get());
+    }
+
+    @Test
+    void successfulProbeClosesCircuit() throws Exception {
+        openCircuit();
+        Thread.sleep(OPEN_MILLIS + 50);
+
+        backend.failing = false;
+        backend.value = "\u0000SELECT 1";
+        SecondLevelCacheGateway.Loaded loaded = gateway.get("probe");
+        assertNotNull(loaded);
+        assertEquals("SELECT 1", loaded.getValue());
+        assertFalse(gateway.isCircuitOpen());
+
+        assertNotNull(gateway.get("q2"));
+        assertEquals(4, backend.calls.get());
+    }
+
+    private void openCircuit() {
+        backend.failing = true;
+        assertNull(gateway.get("f1"));
+        assertNull(gateway.get("f2"));
+        assertTrue(gateway.isCircuitOpen());
+        backend.failing = false;
+    }
+
+    /**
+     * 按脚本应答的后端: failing 时立即失败, hold 时挂起第一个查询直到测试完成它
+     */
+    private static final class ScriptedBackend implements SecondLevelSqlCache {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final BlockingQueue<CompletableFuture<Map<String, String>>> pending = new LinkedBlockingQueue<>();
+        private volatile boolean failing;
+        private volatile boolean hold;
+        private volatile String value;
+
+        @Override
+        public CompletableFuture<Map<String, String>> getAll(List<String> keys) {
+            calls.incrementAndGet();
+            CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+            if (failing) {
+                future.completeExceptionally(new IllegalStateException("down"));
+            } else if (hold) {
+                hold = false;
+                pending.add(future);
+            } else {
+                future.complete(null == value ? Collections.emptyMap() : Collections.singletonMap(keys.get(0), value));
+            }
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<Void> putAll(Map<String, String> entries) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
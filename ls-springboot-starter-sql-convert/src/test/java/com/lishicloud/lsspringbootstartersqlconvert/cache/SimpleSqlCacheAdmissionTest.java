@@ -0,0 +1,75 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SimpleSqlCache} 的权重计算与 TinyLFU 准入: 一次性的 SQL 不能挤出热点
+ *
+ * @author ztq
+ */
+class SimpleSqlCacheAdmissionTest {
+
+    /**
+     * 键、值各3个字符, 每条权重 (3 + 3) * 2
+     */
+    private static final long ENTRY_WEIGHT = 12;
+
+    private static SimpleSqlCache cache(long maximumWeight) {
+        return new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 2, maximumWeight);
+    }
+
+    @Test
+    void weightFollowsKeyValueAndDependencies() {
+        SimpleSqlCache cache = cache(SimpleSqlCache.DEFAULT_MAXIMUM_WEIGHT);
+        try {
+            cache.put("select 1", "SELECT 1");
+            cache.put("ab", "cd");
+            cache.put("x", "y", new String[]{"T:A"});
+            cache.cleanUp();
+            assertEquals(2 * (8 + 8) + 2 * (2 + 2) + 2 * (1 + 1 + 3), cache.stats().getWeightedSize());
+
+            cache.remove("ab");
+            cache.put("x", "yy");
+            cache.cleanUp();
+            assertEquals(2 * (8 + 8) + 2 * (1 + 2), cache.stats().getWeightedSize());
+            assertEquals(2, cache.stats().getEntryCount());
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    void oneShotEntriesDoNotEvictHotEntry() {
+        SimpleSqlCache cache = cache(4 * ENTRY_WEIGHT);
+        try {
+            cache.put("k00", "v00");
+            cache.cleanUp();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("v00", cache.get("k00"));
+                cache.cleanUp();
+            }
+            for (int i = 1; i <= 20; i++) {
+                String suffix = String.format("%02d", i);
+                cache.put("k" + suffix, "v" + suffix);
+                cache.cleanUp();
+            }
+
+            SqlCacheStats stats = cache.stats();
+            assertEquals("v00", cache.get("k00"));
+            assertTrue(stats.getRejectionCount() > 0, "rejections: " + stats.getRejectionCount());
+            assertTrue(stats.getWeightedSize() <= stats.getMaximumWeight());
+            assertEquals(stats.getEntryCount() * ENTRY_WEIGHT, stats.getWeightedSize());
+            assertEquals(stats.getPutCount(), stats.getEntryCount() + stats.getRejectionCount() + stats.getEvictionCount());
+            // 最后写入的一次性 SQL 与已有条目频率相同, 不被准入
+            assertNull(cache.get("k20"));
+        } finally {
+            cache.close();
+        }
+    }
+}
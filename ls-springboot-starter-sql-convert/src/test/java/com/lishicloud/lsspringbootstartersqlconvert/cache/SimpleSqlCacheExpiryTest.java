@@ -0,0 +1,172 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以可控时钟验证 {@link SimpleSqlCache} 的过期: 缓冲期、空闲过期、访问后的重调度与非尾部节点的回收。
+ * <p>
+ * 配置: 空闲 10 分钟过期, 缓冲期 1 分钟, 缓冲期结束时使用次数不超过 2 的缓存项过期。
+ * 时间轮按桶回收, 回收最多滞后所在层级的一个桶(1 分钟以内的到期为 1 秒, 更长的为 65.5 秒),
+ * 因此回收的断言在到期后再推进 {@link #WHEEL_SLACK}。
+ *
+ * @author ztq
+ */
+class SimpleSqlCacheExpiryTest {
+
+    private static final long EXPIRED = TimeUnit.MINUTES.toMillis(10);
+    private static final long BUFFER = TimeUnit.MINUTES.toMillis(1);
+    private static final int DEL_THRESHOLD = 2;
+    private static final long WHEEL_SLACK = TimeUnit.SECONDS.toMillis(70);
+
+    private final FakeTicker ticker = new FakeTicker();
+    private SimpleSqlCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SimpleSqlCache(EXPIRED, TimeUnit.MILLISECONDS, BUFFER, TimeUnit.MILLISECONDS, DEL_THRESHOLD);
+        cache.useTicker(ticker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void rarelyUsedEntryExpiresWhenBufferPeriodEnds() {
+        cache.put("q1", "v1");
+        cache.cleanUp();
+
+        ticker.set(BUFFER - 1_000);
+        assertEquals("v1", cache.get("q1"));
+        cache.cleanUp();
+        assertEquals(0, cache.stats().getExpirationCount());
+
+        ticker.set(BUFFER + 1_000);
+        assertNull(cache.get("q1"));
+
+        ticker.set(BUFFER + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(0, cache.stats().getEntryCount());
+    }
+
+    @Test
+    void frequentlyUsedEntryExpiresAfterIdleTime() {
+        cache.put("q1", "v1");
+        hit("q1", "v1", DEL_THRESHOLD + 1);
+
+        // 缓冲期结束后仍在使用阈值之上, 不过期
+        ticker.set(BUFFER + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getEntryCount());
+
+        ticker.set(EXPIRED - 1_000);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getEntryCount());
+
+        ticker.set(EXPIRED + 1_000);
+        assertNull(cache.get("q1"));
+
+        ticker.set(EXPIRED + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(0, cache.stats().getEntryCount());
+    }
+
+    @Test
+    void accessReschedulesExpiry() {
+        cache.put("q1", "v1");
+        hit("q1", "v1", DEL_THRESHOLD + 1);
+
+        long accessAt = TimeUnit.MINUTES.toMillis(9);
+        ticker.set(accessAt);
+        hit("q1", "v1", 1);
+
+        // 最初的空闲到期时间已过, 时间轮按新的访问时间重新调度
+        ticker.set(EXPIRED + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(0, cache.stats().getExpirationCount());
+        assertEquals(1, cache.stats().getEntryCount());
+
+        ticker.set(accessAt + EXPIRED + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(0, cache.stats().getEntryCount());
+    }
+
+    @Test
+    void reclaimsExpiredEntryThatIsNotAtTheTail() {
+        // 链表顺序(头 -> 尾): hot2, cold, hot1
+        cache.put("hot1", "v1");
+        hit("hot1", "v1", DEL_THRESHOLD + 1);
+        cache.put("cold", "v2");
+        cache.put("hot2", "v3");
+        hit("hot2", "v3", DEL_THRESHOLD + 1);
+
+        ticker.set(BUFFER + WHEEL_SLACK);
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getExpirationCount());
+        assertEquals(2, cache.stats().getEntryCount());
+        assertNull(cache.get("cold"));
+        assertEquals("v1", cache.get("hot1"));
+        assertEquals("v3", cache.get("hot2"));
+    }
+
+    @Test
+    void droppedHitRecordsStillCountTowardsThreshold() {
+        int threshold = 1_000;
+        SimpleSqlCache busy = new SimpleSqlCache(EXPIRED, TimeUnit.MILLISECONDS, BUFFER, TimeUnit.MILLISECONDS, threshold);
+        busy.useTicker(ticker);
+        try {
+            busy.put("q1", "v1");
+            busy.cleanUp();
+            for (int i = 0; i <= threshold; i++) {
+                assertEquals("v1", busy.get("q1"));
+            }
+            // 命中次数远超缓冲区容量, 大部分访问记录被丢弃, 使用次数不受影响
+            assertTrue(busy.stats().getReadBufferDropCount() > 0);
+            busy.cleanUp();
+
+            ticker.set(BUFFER + WHEEL_SLACK);
+            busy.cleanUp();
+            assertEquals(0, busy.stats().getExpirationCount());
+            assertEquals("v1", busy.get("q1"));
+        } finally {
+            busy.close();
+        }
+    }
+
+    /**
+     * 命中 times 次并等待维护线程消费命中记录
+     */
+    private void hit(String key, String value, int times) {
+        for (int i = 0; i < times; i++) {
+            assertEquals(value, cache.get(key));
+        }
+        cache.cleanUp();
+    }
+
+    private static final class FakeTicker implements Ticker {
+
+        private final AtomicLong now = new AtomicLong();
+
+        void set(long millis) {
+            now.set(millis);
+        }
+
+        @Override
+        public long read() {
+            return now.get();
+        }
+    }
+}
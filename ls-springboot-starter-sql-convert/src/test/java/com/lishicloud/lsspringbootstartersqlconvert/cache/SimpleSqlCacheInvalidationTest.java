@@ -0,0 +1,166 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SimpleSqlCache#invalidate(String)} 按依赖精确失效: 只移除受影响的缓存项, 递增代数使近端副本失效, 与并发写入不丢失登记
+ *
+ * @author ztq
+ */
+class SimpleSqlCacheInvalidationTest {
+
+    private static final String T_ORDER = SqlDependencies.table("t_order");
+    private static final String T_USER = SqlDependencies.table("T_USER");
+    private static final String NVL = SqlDependencies.function("nvl");
+
+    private SimpleSqlCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void collectsDependenciesOfTheCurrentThreadOnly() {
+        SqlDependencies.record(T_ORDER);
+        assertArrayEquals(new String[0], SqlDependencies.end());
+
+        SqlDependencies.begin();
+        SqlDependencies.record(T_ORDER);
+        SqlDependencies.record(NVL);
+        SqlDependencies.record(SqlDependencies.table("T_ORDER"));
+        assertArrayEquals(new String[]{"TABLE:T_ORDER", "FUNCTION:NVL"}, SqlDependencies.end());
+        // 结束后不再收集
+        SqlDependencies.record(T_USER);
+        assertArrayEquals(new String[0], SqlDependencies.end());
+    }
+
+    @Test
+    void removesOnlyDependentEntries() {
+        cache.put("q1", "v1", new String[]{T_ORDER});
+        cache.put("q2", "v2", new String[]{T_ORDER, T_USER});
+        cache.put("q3", "v3", new String[]{T_USER, NVL});
+        cache.put("q4", "v4");
+
+        long generation = cache.generation();
+        assertEquals(2, cache.invalidate(T_ORDER));
+        assertEquals(generation + 1, cache.generation());
+        assertNull(cache.get("q1"));
+        assertNull(cache.get("q2"));
+        assertEquals("v3", cache.get("q3"));
+        assertEquals("v4", cache.get("q4"));
+        assertEquals(2, cache.stats().getRemovalCount());
+
+        // q2 已移除, 剩下的 T_USER 依赖只有 q3
+        assertEquals(1, cache.invalidate(T_USER));
+        assertNull(cache.get("q3"));
+        assertEquals(0, cache.invalidate(NVL));
+        assertEquals(0, cache.invalidate(SqlDependencies.keyword("NAME")));
+        assertEquals("v4", cache.get("q4"));
+
+        cache.cleanUp();
+        assertEquals(1, cache.stats().getEntryCount());
+    }
+
+    @Test
+    void reinsertedEntryDependsOnItsNewDependencies() {
+        cache.put("q1", "v1", new String[]{T_ORDER});
+        assertEquals(1, cache.invalidate(T_ORDER));
+        cache.put("q1", "v1", new String[]{T_ORDER});
+        assertEquals("v1", cache.get("q1"));
+        assertEquals(1, cache.invalidate(T_ORDER));
+
+        // 值不同的 put 替换旧节点, 旧节点的依赖不再影响新节点
+        cache.put("q2", "v2", new String[]{T_ORDER});
+        cache.put("q2", "v2'", new String[]{T_USER});
+        assertEquals(0, cache.invalidate(T_ORDER));
+        assertEquals("v2'", cache.get("q2"));
+        assertEquals(1, cache.invalidate(T_USER));
+        assertNull(cache.get("q2"));
+    }
+
+    @Test
+    void invalidationReachesNearCopies() {
+        NearSqlCache near = new NearSqlCache(cache, 64);
+        cache.put("q1", "v1", new String[]{T_ORDER});
+        cache.put("q2", "v2", new String[]{T_USER});
+        assertEquals("v1", near.get("q1"));
+        assertEquals("v2", near.get("q2"));
+        assertEquals("v1", near.get("q1"));
+
+        assertEquals(1, cache.invalidate(T_ORDER));
+        assertNull(near.get("q1"));
+        // 代数是整体的, 未受影响的副本重新从 L2 读取一次
+        long sharedHits = near.sharedHitCount();
+        assertEquals("v2", near.get("q2"));
+        assertEquals(sharedHits + 1, near.sharedHitCount());
+        assertEquals("v2", near.get("q2"));
+        assertEquals(sharedHits + 1, near.sharedHitCount());
+    }
+
+    /**
+     * 写线程与失效并发: 最后一次失效返回之后, 没有任何依赖于它的缓存项可以留存
+     */
+    @Test
+    void concurrentPutsNeverEscapeInvalidation() throws Exception {
+        int writers = 3;
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < writers; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    for (int i = 0; running.get(); i++) {
+                        String key = "q" + thread + "_" + (i % 500);
+                        cache.put(key, "v" + i, new String[]{T_ORDER, i % 2 == 0 ? T_USER : NVL});
+                    }
+                }));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 2_000; i++) {
+                cache.invalidate(i % 3 == 0 ? T_USER : T_ORDER);
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        cache.invalidate(T_ORDER);
+        for (int t = 0; t < writers; t++) {
+            for (int i = 0; i < 500; i++) {
+                assertNull(cache.get("q" + t + "_" + i));
+            }
+        }
+        cache.cleanUp();
+        assertEquals(0, cache.stats().getEntryCount());
+        // 已移除的节点都已注销, 其余依赖上不再有节点
+        assertEquals(0, cache.invalidate(T_USER));
+        assertEquals(0, cache.invalidate(NVL));
+    }
+}
@@ -0,0 +1,181 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SingleFlight} 的合并: 并发未命中只加载一次, leader 的异常传递给所有等待方, 等待超时后自行加载
+ *
+ * @author ztq
+ */
+class SingleFlightTest {
+
+    private static final int WAITERS = 7;
+
+    private static final String THREAD_NAME = "single-flight-test";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1, r -> new Thread(r, THREAD_NAME));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * leader 在加载中阻塞, 直到所有等待方都进入等待后才完成
+     */
+    private List<Future<String>> race(SingleFlight flight, AtomicInteger loads, CountDownLatch release,
+                                      RuntimeException failure) throws InterruptedException {
+        CountDownLatch leading = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> flight.execute("q", () -> {
+            loads.incrementAndGet();
+            leading.countDown();
+            await(release);
+            if (null != failure) {
+                throw failure;
+            }
+            return "v";
+        })));
+        assertTrue(leading.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < WAITERS; i++) {
+            futures.add(executor.submit(() -> flight.execute("q", () -> {
+                loads.incrementAndGet();
+                return "self";
+            })));
+        }
+        return futures;
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        SingleFlight flight = new SingleFlight(1, TimeUnit.MINUTES);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> futures = race(flight, loads, release, null);
+        waitForWaiters(flight, futures);
+        release.countDown();
+        for (Future<String> future : futures) {
+            assertEquals("v", future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(WAITERS, flight.coalescedCount());
+        assertEquals(0, flight.inFlightCount());
+
+        // 加载完成后不再合并, 下一次未命中重新加载
+        assertEquals("again", flight.execute("q", () -> "again"));
+    }
+
+    @Test
+    void leaderFailureReachesEveryWaiter() throws Exception {
+        SingleFlight flight = new SingleFlight(1, TimeUnit.MINUTES);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        UnsupportedOperationException failure = new UnsupportedOperationException("Unsupported SQL kind: MERGE");
+        List<Future<String>> futures = race(flight, loads, release, failure);
+        waitForWaiters(flight, futures);
+        release.countDown();
+
+        assertSame(failure, causeOf(futures.get(0)));
+        Set<Throwable> thrown = new HashSet<>();
+        for (Future<String> future : futures.subList(1, futures.size())) {
+            Throwable waiter = causeOf(future);
+            // 类型与消息不变, 每个等待方抛出自己的实例
+            assertTrue(waiter instanceof UnsupportedOperationException, waiter.toString());
+            assertEquals(failure.getMessage(), waiter.getMessage());
+            assertSame(failure, waiter.getCause());
+            assertTrue(thrown.add(waiter));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    void waiterLoadsBySelfAfterTimeout() throws Exception {
+        SingleFlight flight = new SingleFlight(50, TimeUnit.MILLISECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> futures = race(flight, loads, release, null);
+        for (Future<String> future : futures.subList(1, futures.size())) {
+            assertEquals("self", future.get(10, TimeUnit.SECONDS));
+        }
+        release.countDown();
+        assertEquals("v", futures.get(0).get(10, TimeUnit.SECONDS));
+        assertEquals(WAITERS + 1, loads.get());
+        assertEquals(WAITERS, flight.timeoutCount());
+    }
+
+    @Test
+    void differentKeysDoNotWaitForEachOther() {
+        SingleFlight flight = new SingleFlight(1, TimeUnit.MINUTES);
+        String nested = flight.execute("outer", () -> flight.execute("inner", () -> "inner") + "+outer");
+        assertEquals("inner+outer", nested);
+        RuntimeException failure = new IllegalStateException("boom");
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> flight.execute("q", () -> {
+            throw failure;
+        })));
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    /**
+     * 等待方都已进入 future 的等待(线程处于 WAITING/TIMED_WAITING)之前不能让 leader 完成, 否则等待方会成为新的 leader
+     */
+    private static void waitForWaiters(SingleFlight flight, List<Future<String>> futures) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (waiting() < WAITERS + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, flight.inFlightCount());
+        assertEquals(WAITERS + 1, futures.size());
+    }
+
+    /**
+     * 线程池中阻塞的线程数(leader 阻塞在 release 上, 等待方阻塞在 future 上)
+     */
+    private static int waiting() {
+        int waiting = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(THREAD_NAME) && (thread.getState() == Thread.State.WAITING
+                    || thread.getState() == Thread.State.TIMED_WAITING)) {
+                for (StackTraceElement element : thread.getStackTrace()) {
+                    if (element.getClassName().equals(SingleFlight.class.getName())) {
+                        waiting++;
+                        break;
+                    }
+                }
+            }
+        }
+        return waiting;
+    }
+
+    private static Throwable causeOf(Future<String> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheKeyMode;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SqlFingerprint} 的 key 语义与碰撞处理。
+ * <p>
+ * MurmurHash3 x64_128 的每一块都能任意设置内部状态(两个混合函数都是可逆的),
+ * 因此可以直接构造两条长度相同、指纹相同的不同 SQL, 验证 {@link SqlCacheKeyMode#FINGERPRINT} 比对全文后不会串用结果。
+ *
+ * @author ztq
+ */
+class SqlFingerprintTest {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @Test
+    void equalTextHasEqualFingerprint() {
+        String sql = "select id, name from t_order where id = 1";
+        String copy = new String(sql.toCharArray());
+        assertEquals(SqlFingerprint.of(sql), SqlFingerprint.of(copy));
+        assertEquals(SqlFingerprint.of(sql).hashCode(), SqlFingerprint.of(copy).hashCode());
+        // 查找用的实例与保存的实例相互相等
+        assertEquals(SqlFingerprint.of(sql), SqlFingerprint.probe(copy));
+        assertEquals(SqlFingerprint.probe(copy), SqlFingerprint.of(sql));
+        assertEquals(SqlFingerprint.of(sql).hashCode(), SqlFingerprint.probe(copy).hashCode());
+
+        assertNotEquals(SqlFingerprint.of(sql), SqlFingerprint.of(sql + " "));
+        assertNotEquals(SqlFingerprint.of(""), SqlFingerprint.of("\0"));
+    }
+
+    @Test
+    void probeDoesNotChangeStoredFingerprints() {
+        SqlFingerprint stored = SqlFingerprint.of("select 1");
+        String before = stored.toString();
+        SqlFingerprint.probe("select 2");
+        assertEquals(before, stored.toString());
+    }
+
+    @Test
+    void similarStatementsDoNotCollide() {
+        Set<SqlFingerprint> seen = new HashSet<>();
+        Set<Integer> hashes = new HashSet<>();
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            // 覆盖整块与各种长度的尾部
+            String sql = "select id from t_order where id = " + i + (i % 9 == 0 ? "" : " and v = " + (i % 7));
+            assertTrue(seen.add(SqlFingerprint.of(sql)), sql);
+            hashes.add(SqlFingerprint.of(sql).hashCode());
+        }
+        // 32 位 hashCode 在 20 万个 key 中只会有少量碰撞
+        assertTrue(hashes.size() > count - 100, "distinct hash codes: " + hashes.size());
+    }
+
+    @Test
+    void constructedCollisionIsDetected() {
+        String[] pair = collidingPair();
+        assertNotEquals(pair[0], pair[1]);
+        assertEquals(SqlFingerprint.of(pair[0]), SqlFingerprint.of(pair[1]));
+
+        SimpleSqlCache verified = cache(SqlCacheKeyMode.FINGERPRINT);
+        try {
+            verified.put(pair[0], "v0");
+            assertEquals("v0", verified.get(pair[0]));
+            assertNull(verified.get(pair[1]));
+            // 碰撞的 put 替换旧节点, 之后只有新的 SQL 命中
+            verified.put(pair[1], "v1");
+            assertEquals("v1", verified.get(pair[1]));
+            assertNull(verified.get(pair[0]));
+        } finally {
+            verified.close();
+        }
+
+        // 不比对全文的模式以碰撞概率换取内存, 碰撞时返回另一条 SQL 的结果
+        SimpleSqlCache unverified = cache(SqlCacheKeyMode.FINGERPRINT_UNVERIFIED);
+        try {
+            unverified.put(pair[0], "v0");
+            assertEquals("v0", unverified.get(pair[1]));
+        } finally {
+            unverified.close();
+        }
+    }
+
+    /**
+     * 指纹模式的命中路径不创建指纹对象: 每次 get 的分配量与 TEXT 模式相当
+     */
+    @Test
+    void fingerprintLookupDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        long text = allocationPerGet(threads, SqlCacheKeyMode.TEXT);
+        long fingerprint = allocationPerGet(threads, SqlCacheKeyMode.FINGERPRINT);
+        assertTrue(fingerprint <= text + 8, "fingerprint " + fingerprint + " bytes, text " + text + " bytes");
+    }
+
+    private static long allocationPerGet(com.sun.management.ThreadMXBean threads, SqlCacheKeyMode mode) {
+        SimpleSqlCache cache = cache(mode);
+        try {
+            String sql = "select id, name from t_order where id = 1";
+            cache.put(sql, "select id, name from OWN.t_order where id = 1");
+            String lookup = new String(sql.toCharArray());
+            int gets = 100_000;
+            for (int i = 0; i < gets; i++) {
+                assertEquals(45, cache.get(lookup).length());
+            }
+            long threadId = Thread.currentThread().getId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < gets; i++) {
+                assertEquals(45, cache.get(lookup).length());
+            }
+            return (threads.getThreadAllocatedBytes(threadId) - before) / gets;
+        } finally {
+            cache.close();
+        }
+    }
+
+    private static SimpleSqlCache cache(SqlCacheKeyMode mode) {
+        SimpleSqlCache cache = new SimpleSqlCache(10, TimeUnit.MINUTES, 1, TimeUnit.MINUTES, 0);
+        cache.useKeyMode(mode);
+        return cache;
+    }
+
+    /**
+     * 两条 16 个 char 的 SQL: 第一块不同, 第二块把内部状态都设为 0, 长度相同, 因此最终指纹相同
+     */
+    private static String[] collidingPair() {
+        String[] pair = new String[2];
+        String[] prefixes = {"select 1", "select 2"};
+        for (int p = 0; p < 2; p++) {
+            String first = prefixes[p];
+            long h1 = 0;
+            long h2 = 0;
+            long[] state = round(h1, h2, pack(first, 0), pack(first, 4));
+            h1 = state[0];
+            h2 = state[1];
+            // 目标: round(h1, h2, k1, k2) 后两个状态都为 0
+            long m1 = Long.rotateRight((0 - 0x52dce729) * inverse(5) - h2, 27) ^ h1;
+            long m2 = Long.rotateRight((0 - 0x38495ab5) * inverse(5) - 0, 31) ^ h2;
+            long k1 = Long.rotateRight(m1 * inverse(C2), 31) * inverse(C1);
+            long k2 = Long.rotateRight(m2 * inverse(C1), 33) * inverse(C2);
+            pair[p] = first + unpack(k1) + unpack(k2);
+            long[] check = round(h1, h2, k1, k2);
+            assertEquals(0, check[0]);
+            assertEquals(0, check[1]);
+        }
+        return pair;
+    }
+
+    /**
+     * 与 {@link SqlFingerprint} 相同的一块处理
+     */
+    private static long[] round(long h1, long h2, long k1, long k2) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+        return new long[]{h1, h2};
+    }
+
+    private static long pack(String s, int i) {
+        return (long) s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+    }
+
+    private static String unpack(long k) {
+        return new String(new char[]{(char) k, (char) (k >>> 16), (char) (k >>> 32), (char) (k >>> 48)});
+    }
+
+    /**
+     * 奇数在模 2^64 下的乘法逆元(牛顿迭代)
+     */
+    private static long inverse(long odd) {
+        long inverse = odd;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+}
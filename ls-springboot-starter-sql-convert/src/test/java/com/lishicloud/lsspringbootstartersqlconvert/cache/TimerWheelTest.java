@@ -0,0 +1,157 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link TimerWheel} 的调度、惰性重调度与跨层级回收
+ *
+ * @author ztq
+ */
+class TimerWheelTest {
+
+    private final List<TimerWheel.Node> expired = new ArrayList<>();
+
+    @Test
+    void expiresOnlyAfterDeadline() {
+        TimerWheel wheel = new TimerWheel(0);
+        TestNode node = new TestNode(5_000);
+        wheel.schedule(node);
+
+        wheel.advance(4_999, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(6_100, expired::add);
+        assertEquals(1, expired.size());
+        assertTrue(expired.contains(node));
+    }
+
+    @Test
+    void reschedulesNodeWhoseDeadlineMoved() {
+        TimerWheel wheel = new TimerWheel(0);
+        TestNode node = new TestNode(5_000);
+        wheel.schedule(node);
+        // 访问推迟了到期时间, 时间轮不感知, 桶到期时重新计算
+        node.deadline = 20_000;
+
+        wheel.advance(6_100, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(19_999, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(21_100, expired::add);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    void descheduledNodeNeverExpires() {
+        TimerWheel wheel = new TimerWheel(0);
+        TestNode node = new TestNode(5_000);
+        wheel.schedule(node);
+        wheel.deschedule(node);
+
+        wheel.advance(TimeUnit.DAYS.toMillis(400), expired::add);
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void expiresEveryLevelInOneAdvance() {
+        TimerWheel wheel = new TimerWheel(0);
+        long[] deadlines = {
+                TimeUnit.SECONDS.toMillis(3),
+                TimeUnit.MINUTES.toMillis(2),
+                TimeUnit.HOURS.toMillis(2),
+                TimeUnit.DAYS.toMillis(4),
+                TimeUnit.DAYS.toMillis(300)};
+        for (long deadline : deadlines) {
+            wheel.schedule(new TestNode(deadline));
+        }
+
+        wheel.advance(TimeUnit.DAYS.toMillis(400), expired::add);
+        assertEquals(deadlines.length, expired.size());
+    }
+
+    /**
+     * 每一层的跨度必须等于 桶数 * 桶宽, 否则略小于层级上限的到期时间会绕回到较早的桶, 提前被访问并在同一层反复重调度
+     */
+    @Test
+    void cascadesOncePerLevelJustUnderEachBoundary() {
+        long start = 12_345;
+        TimerWheel wheel = new TimerWheel(start);
+        List<TestNode> nodes = new ArrayList<>();
+        for (int shift : new int[]{16, 22, 28, 34}) {
+            TestNode node = new TestNode(start + (1L << shift) - 1);
+            nodes.add(node);
+            wheel.schedule(node);
+        }
+
+        long end = start + (1L << 34) + TimeUnit.SECONDS.toMillis(10);
+        for (long now = start + 1_000; now <= end; now += 1_000) {
+            final long at = now;
+            wheel.advance(now, node -> ((TestNode) node).expiredAt = at);
+        }
+        for (TestNode node : nodes) {
+            assertTrue(node.expiredAt >= node.deadline, "expired before deadline " + node.deadline);
+            assertTrue(node.expiredAt - node.deadline <= 2_048, "expired late " + node.deadline + " at " + node.expiredAt);
+            // 首次调度加上每下沉一层一次
+            assertTrue(node.scheduled <= 5, "rescheduled " + node.scheduled + " times, deadline " + node.deadline);
+        }
+    }
+
+    @Test
+    void expiresCloseToDeadlineWhenAdvancedSteadily() {
+        TimerWheel wheel = new TimerWheel(0);
+        long[] deadlines = {
+                1_500,
+                TimeUnit.SECONDS.toMillis(70),
+                TimeUnit.MINUTES.toMillis(10) + 1,
+                TimeUnit.HOURS.toMillis(2) + 17,
+                TimeUnit.DAYS.toMillis(3) + 123};
+        List<TestNode> nodes = new ArrayList<>();
+        for (long deadline : deadlines) {
+            TestNode node = new TestNode(deadline);
+            nodes.add(node);
+            wheel.schedule(node);
+        }
+
+        long end = TimeUnit.DAYS.toMillis(3) + TimeUnit.SECONDS.toMillis(10);
+        for (long now = 500; now <= end; now += 500) {
+            final long at = now;
+            wheel.advance(now, node -> ((TestNode) node).expiredAt = at);
+        }
+        for (TestNode node : nodes) {
+            assertTrue(node.expiredAt >= node.deadline, "expired before deadline " + node.deadline);
+            // 逐级下沉后由最精细的层级回收, 误差不超过两个最小桶
+            assertTrue(node.expiredAt - node.deadline <= 2_048, "expired late " + node.deadline + " at " + node.expiredAt);
+        }
+    }
+
+    private static final class TestNode extends TimerWheel.Node {
+
+        private long deadline;
+        private long expiredAt = -1;
+        private int scheduled;
+
+        private TestNode(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        long deadline() {
+            scheduled++;
+            return deadline;
+        }
+
+        @Override
+        boolean expired(long now) {
+            return now >= deadline;
+        }
+    }
+}
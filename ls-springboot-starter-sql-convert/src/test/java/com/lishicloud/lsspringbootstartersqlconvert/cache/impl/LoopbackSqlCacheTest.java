@@ -0,0 +1,79 @@
+package com.lishicloud.lsspringbootstartersqlconvert.cache.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 回环参考实现的读写与共享密钥握手
+ *
+ * @author ztq
+ */
+class LoopbackSqlCacheTest {
+
+    private static final String SECRET = "test-secret";
+
+    private LoopbackSqlCacheServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new LoopbackSqlCacheServer(0, 100, SECRET);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void roundTripWithSharedSecret() throws Exception {
+        try (LoopbackSqlCacheClient client = new LoopbackSqlCacheClient(server.getPort(), SECRET)) {
+            client.putAll(Collections.singletonMap("k1", "SELECT 1 FROM DUAL")).get(2, TimeUnit.SECONDS);
+            Map<String, String> found = client.getAll(Arrays.asList("k1", "k2")).get(2, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonMap("k1", "SELECT 1 FROM DUAL"), found);
+        }
+    }
+
+    @Test
+    void rejectsClientWithWrongSecret() throws Exception {
+        try (LoopbackSqlCacheClient client = new LoopbackSqlCacheClient(server.getPort(), "wrong")) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> client.putAll(Collections.singletonMap("k1", "DROP TABLE T")).get(2, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof UncheckedIOException);
+        }
+        assertEquals(0, server.size());
+    }
+
+    @Test
+    void rejectsRequestWithoutHandshake() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setSoTimeout(2000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            // 直接发送写入请求(长度超过握手应答), 被当作握手应答校验失败
+            out.writeByte(LoopbackProtocol.PUT_ALL);
+            out.writeInt(1);
+            LoopbackProtocol.writeString(out, "k1");
+            LoopbackProtocol.writeString(out, "DROP TABLE T_ORDER_HISTORY");
+            out.flush();
+            in.readFully(new byte[LoopbackProtocol.NONCE_BYTES]);
+            assertEquals(-1, in.read());
+        }
+        assertEquals(0, server.size());
+    }
+}
@@ -0,0 +1,169 @@
+package com.lishicloud.lsspringbootstartersqlconvert.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlCacheStats;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
+import com.lishicloud.lsspringbootstartersqlconvert.provide.TranslationEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * /actuator/sqlcache 按 Bean 名称输出每个引擎的统计, 只包含已启用的部分, 序列化后的字段名即对外的格式
+ *
+ * @author ztq
+ */
+class SqlCacheEndpointTest {
+
+    private static final String SELECT = "select ID from T_ORDER where ID = 1";
+    private static final String UPDATE = "update T_ORDER set NAME = 'x' where ID = 2";
+
+    /**
+     * 近端缓存每个线程累计的命中达到该数量才提交, 与 NearSqlCache.FLUSH_HITS 相同
+     */
+    private static final int FLUSH_HITS = 64;
+
+    @Configuration(proxyBeanMethods = false)
+    static class Engines {
+
+        @Bean
+        TranslationEngine fullEngine() {
+            return DMNormTranslateBuilder.builder(converter -> { })
+                    .ownerOfTableDefault("OWN")
+                    .simpleDmlFastPath(true)
+                    .enableSqlCache()
+                    .sqlCacheMode(SqlCacheMode.EXACT)
+                    .enableNearCache()
+                    .enableSingleFlight()
+                    .enableNegativeCache()
+                    .build();
+        }
+
+        @Bean
+        TranslationEngine bareEngine() {
+            return DMNormTranslateBuilder.builder(converter -> { })
+                    .ownerOfTableDefault("OWN")
+                    .simpleDmlFastPath(false)
+                    .build();
+        }
+    }
+
+    private static AnnotationConfigApplicationContext context() {
+        return new AnnotationConfigApplicationContext(Engines.class, SqlCacheEndpointAutoConfiguration.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reportsEnabledPartsOfEveryEngine() {
+        try (AnnotationConfigApplicationContext context = context()) {
+            SqlCacheEndpoint endpoint = context.getBean(SqlCacheEndpoint.class);
+            TranslationEngine full = context.getBean("fullEngine", TranslationEngine.class);
+            for (int i = 0; i < 2 + FLUSH_HITS; i++) {
+                full.convert(SELECT);
+            }
+            full.convert(UPDATE);
+            for (int i = 0; i < 2; i++) {
+                assertThrows(RuntimeException.class, () -> full.convert("selec ID from T_ORDER"));
+            }
+
+            Map<String, Object> result = endpoint.sqlCache();
+            assertEquals(Arrays.asList("fullEngine", "bareEngine"), Arrays.asList(result.keySet().toArray()));
+
+            Map<String, Object> fullStats = (Map<String, Object>) result.get("fullEngine");
+            assertEquals(Arrays.asList("cache", "nearCache", "negativeCache", "singleFlight", "simpleDmlFastPath"),
+                    Arrays.asList(fullStats.keySet().toArray()));
+            SqlCacheStats cache = (SqlCacheStats) fullStats.get("cache");
+            assertEquals(2, cache.getPutCount());
+            assertEquals(2, cache.getEntryCount());
+
+            Map<String, Object> near = (Map<String, Object>) fullStats.get("nearCache");
+            assertEquals(1L, near.get("sharedHitCount"));
+            assertEquals((long) FLUSH_HITS, near.get("nearHitCount"));
+
+            Map<String, Object> negative = (Map<String, Object>) fullStats.get("negativeCache");
+            assertEquals(1L, negative.get("recordCount"));
+            assertEquals(1L, negative.get("hitCount"));
+            assertEquals(0L, negative.get("evictionCount"));
+            assertEquals(1, ((Number) negative.get("size")).intValue());
+
+            Map<String, Object> flight = (Map<String, Object>) fullStats.get("singleFlight");
+            assertEquals(Arrays.asList("coalescedCount", "timeoutCount", "inFlightCount"), Arrays.asList(flight.keySet().toArray()));
+            assertEquals(0, ((Number) flight.get("inFlightCount")).intValue());
+
+            Map<String, Object> fastPath = (Map<String, Object>) fullStats.get("simpleDmlFastPath");
+            // SELECT 与 UPDATE 都是快速路径支持的形态, 无法解析的语句回退一次, 之后由负缓存拦截
+            assertEquals(2L, fastPath.get("hitCount"));
+            assertEquals(1L, fastPath.get("fallbackCount"));
+
+            // 未启用缓存与快速路径的引擎只有名称
+            assertTrue(((Map<String, Object>) result.get("bareEngine")).isEmpty());
+        }
+    }
+
+    /**
+     * 端点每次读取当前的统计, 而不是注册时的快照
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void readsLiveCounters() {
+        try (AnnotationConfigApplicationContext context = context()) {
+            SqlCacheEndpoint endpoint = context.getBean(SqlCacheEndpoint.class);
+            TranslationEngine full = context.getBean("fullEngine", TranslationEngine.class);
+            SqlCacheStats before = (SqlCacheStats) ((Map<String, Object>) endpoint.sqlCache().get("fullEngine")).get("cache");
+            assertEquals(0, before.getPutCount());
+            full.convert(SELECT);
+            SqlCacheStats after = (SqlCacheStats) ((Map<String, Object>) endpoint.sqlCache().get("fullEngine")).get("cache");
+            assertEquals(1, after.getPutCount());
+            assertEquals(1, after.getMissCount());
+        }
+    }
+
+    /**
+     * 端点结果由 Jackson 序列化输出, 字段名(含 evictionCount、hitRate 等计算字段)即对外的格式
+     */
+    @Test
+    void serializesToJson() throws Exception {
+        try (AnnotationConfigApplicationContext context = context()) {
+            TranslationEngine full = context.getBean("fullEngine", TranslationEngine.class);
+            full.convert(SELECT);
+            full.convert(SELECT);
+            JsonNode json = new ObjectMapper().valueToTree(context.getBean(SqlCacheEndpoint.class).sqlCache());
+
+            JsonNode cache = json.path("fullEngine").path("cache");
+            for (String field : new String[]{"hitCount", "missCount", "hitRate", "putCount", "evictionCount", "rejectionCount",
+                    "expirationCount", "removalCount", "readBufferDropCount", "entryCount", "weightedSize", "maximumWeight",
+                    "offHeapBytes", "pendingCommands", "maintenanceLagMillis"}) {
+                assertTrue(cache.has(field), field);
+            }
+            assertEquals(1, cache.path("putCount").asLong());
+            assertEquals(0.5, cache.path("hitRate").asDouble());
+            assertEquals("RETHROW", json.path("fullEngine").path("negativeCache").path("policy").asText());
+            assertEquals(0, json.path("fullEngine").path("singleFlight").path("coalescedCount").asLong());
+            assertFalse(json.path("bareEngine").fieldNames().hasNext());
+        }
+    }
+
+    @Test
+    void userDefinedEndpointReplacesTheDefault() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            SqlCacheEndpoint custom = new SqlCacheEndpoint(context);
+            context.registerBean("customSqlCacheEndpoint", SqlCacheEndpoint.class, () -> custom);
+            context.register(SqlCacheEndpointAutoConfiguration.class);
+            context.refresh();
+            assertSame(custom, context.getBean(SqlCacheEndpoint.class));
+            assertTrue(custom.sqlCache().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.lishicloud.lsspringbootstartersqlconvert.factory;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.KeyWordTranslator;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多线程共享同一个工厂(执行器)时的正确性与吞吐。
+ * <p>
+ * 每个线程翻译自己的一组语句(表名与字面量各不相同), 结果逐条与单线程下同一条语句的结果比较,
+ * 语句之间串用了语法树时表名或字面量会不一致。快速路径与 Calcite 路径分别验证。
+ * 吞吐按 1 个线程与多个线程分别统计; 只有 CPU 核数足够时才断言扩展性。
+ *
+ * @author ztq
+ */
+@Slf4j
+class SqlTranslateActuatorFactoryConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int STATEMENTS_PER_THREAD = 600;
+    private static final int ROUNDS = 5;
+    private static final int TABLES = 50;
+
+    @Test
+    void sharedFactoryWithFastPath() throws Exception {
+        stress(true);
+    }
+
+    @Test
+    void sharedFactoryWithCalcitePath() throws Exception {
+        stress(false);
+    }
+
+    private void stress(boolean fastPath) throws Exception {
+        SqlTranslateActuatorFactory factory = factory(fastPath);
+        List<List<String>> statements = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<String> own = new ArrayList<>();
+            List<String> ownExpected = new ArrayList<>();
+            for (int i = 0; i < STATEMENTS_PER_THREAD; i++) {
+                long literal = t * 1_000_000L + i;
+                String sql = statement(i, "T_ORDER_" + (i % TABLES), literal);
+                String translated = factory.translateOfAuto(sql);
+                assertTrue(translated.contains("OWNER.T_ORDER_" + (i % TABLES)), translated);
+                assertTrue(translated.contains(Long.toString(literal)), translated);
+                own.add(sql);
+                ownExpected.add(translated);
+            }
+            statements.add(own);
+            expected.add(ownExpected);
+        }
+
+        double single = run(factory, statements.subList(0, 1), expected.subList(0, 1));
+        double multi = run(factory, statements, expected);
+        int cores = Runtime.getRuntime().availableProcessors();
+        log.info("fastPath={} cores={} throughput: 1 thread {} /s, {} threads {} /s",
+                fastPath, cores, (long) single, THREADS, (long) multi);
+        if (cores >= 4) {
+            // 线性扩展时 4 核约为 4 倍, 留出调度与 GC 的余量
+            assertTrue(multi >= single * 2, "throughput did not scale: " + (long) single + " -> " + (long) multi);
+        }
+    }
+
+    /**
+     * 各线程同时开始, 每个线程按轮次翻译自己的语句并与期望结果比较
+     *
+     * @return 每秒翻译的语句数
+     */
+    private static double run(SqlTranslateActuatorFactory factory, List<List<String>> statements,
+                              List<List<String>> expected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(statements.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < statements.size(); t++) {
+                List<String> own = statements.get(t);
+                List<String> ownExpected = expected.get(t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int translated = 0;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < own.size(); i++) {
+                            assertEquals(ownExpected.get(i), factory.translateOfAuto(own.get(i)));
+                            translated++;
+                        }
+                    }
+                    return translated;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            long total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get(2, TimeUnit.MINUTES);
+            }
+            return total * 1e9 / (System.nanoTime() - begin);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 简单 DML 走快速路径(启用时), 连接与子查询总是走 Calcite 路径
+     */
+    private static String statement(int i, String table, long literal) {
+        switch (i % 6) {
+            case 0:
+                return "SELECT ID, NAME FROM " + table + " WHERE ID = " + literal;
+            case 1:
+                return "UPDATE " + table + " SET NAME = 'n" + literal + "' WHERE ID = " + literal;
+            case 2:
+                return "DELETE FROM " + table + " WHERE ID = " + literal;
+            case 3:
+                return "INSERT INTO " + table + " (ID, NAME) VALUES (" + literal + ", 'n')";
+            case 4:
+                return "SELECT A.ID FROM " + table + " A JOIN T_ITEM B ON A.ID = B.ORDER_ID WHERE B.QTY > " + literal;
+            default:
+                return "SELECT ID FROM " + table + " WHERE ID IN (SELECT ORDER_ID FROM T_ITEM WHERE QTY = " + literal + ")";
+        }
+    }
+
+    private static SqlTranslateActuatorFactory factory(boolean fastPath) throws SqlParseException {
+        SqlDialect dialect = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+        TranslateRules rules = TranslateRules.of(Arrays.asList(new OwnerOfTable("OWNER"), new KeyWordTranslator()));
+        SqlTranslateActuatorFactory factory = new SqlTranslateActuatorFactory(dialect, rules, SqlRewriteMode.UNPARSE, fastPath);
+        assertEquals(fastPath, null != factory.getSimpleDmlFastPath());
+        // 预热, 避免单线程的吞吐受 JIT 编译影响
+        for (int i = 0; i < 20_000; i++) {
+            factory.translateOfAuto(statement(i, "T_WARM_" + (i % TABLES), i));
+        }
+        return factory;
+    }
+}
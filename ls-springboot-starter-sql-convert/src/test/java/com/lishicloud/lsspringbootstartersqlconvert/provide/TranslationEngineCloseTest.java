@@ -0,0 +1,49 @@
+package com.lishicloud.lsspringbootstartersqlconvert.provide;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 重建引擎时关闭旧引擎: 缓存维护线程随之停止, 重复关闭无效, 关闭后不能再翻译
+ *
+ * @author ztq
+ */
+class TranslationEngineCloseTest {
+
+    private static final String ACTUATOR_THREAD = "SimpleSqlCache-linkedActuator-";
+
+    @Test
+    void rebuildingEnginesDoesNotLeakCacheThreads() {
+        DMNormTranslateBuilder builder = DMNormTranslateBuilder.builder(converter -> { })
+                .keyWordTranslatorDefault()
+                .enableSqlCache();
+        long before = actuatorThreads();
+        for (int i = 0; i < 5; i++) {
+            TranslationEngine engine = builder.build();
+            assertEquals(before + 1, actuatorThreads());
+            engine.convert("SELECT ID FROM T_ORDER");
+            engine.close();
+            assertEquals(before, actuatorThreads());
+        }
+    }
+
+    @Test
+    void closeIsIdempotentAndRejectsLaterCalls() {
+        TranslationEngine engine = DMNormTranslateBuilder.builder(converter -> { })
+                .keyWordTranslatorDefault()
+                .enableSqlCache()
+                .build();
+        engine.close();
+        engine.close();
+        assertThrows(IllegalStateException.class, () -> engine.convert("SELECT ID FROM T_ORDER"));
+    }
+
+    private static long actuatorThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith(ACTUATOR_THREAD))
+                .count();
+    }
+}
@@ -0,0 +1,63 @@
+package com.lishicloud.lsspringbootstartersqlconvert.provide;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SimpleSqlCache;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlDependencies;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 翻译时收集的依赖随缓存项写入, 失效一个表或函数只移除经过它的语句
+ *
+ * @author ztq
+ */
+class TranslationEngineInvalidationTest {
+
+    private static final String ORDER_SELECT = "select ID from T_ORDER where ID = 1";
+    private static final String JOIN = "select O.ID from T_ORDER O join T_USER U on O.UID = U.ID";
+    private static final String USER_UPDATE = "update T_USER set NAME = 'x' where ID = 2";
+    private static final String NVL_SELECT = "select nvl(NAME, 'n') from T_ITEM";
+
+    @Test
+    void invalidatesStatementsThatUsedTheDependency() {
+        for (boolean fastPath : new boolean[]{false, true}) {
+            try (TranslationEngine engine = DMNormTranslateBuilder.builder(converter -> { })
+                    .ownerOfTableDefault("OWN")
+                    .simpleDmlFastPath(fastPath)
+                    .enableSqlCache()
+                    .sqlCacheMode(SqlCacheMode.EXACT)
+                    .enableNearCache()
+                    .build()) {
+                String[] statements = {ORDER_SELECT, JOIN, USER_UPDATE, NVL_SELECT};
+                String[] translated = new String[statements.length];
+                for (int i = 0; i < statements.length; i++) {
+                    translated[i] = engine.convert(statements[i]);
+                }
+                SimpleSqlCache cache = engine.getSqlCache();
+                for (String statement : statements) {
+                    assertNotNull(cache.get(statement), statement);
+                }
+
+                assertEquals(2, cache.invalidate(SqlDependencies.table("T_USER")), "fastPath=" + fastPath);
+                assertNull(cache.get(JOIN));
+                assertNull(cache.get(USER_UPDATE));
+                assertNotNull(cache.get(ORDER_SELECT));
+                assertNotNull(cache.get(NVL_SELECT));
+
+                assertEquals(1, cache.invalidate(SqlDependencies.function("NVL")));
+                assertNull(cache.get(NVL_SELECT));
+                assertNotNull(cache.get(ORDER_SELECT));
+
+                // 失效后重新翻译并重新登记依赖, 结果不变
+                for (int i = 0; i < statements.length; i++) {
+                    assertEquals(translated[i], engine.convert(statements[i]));
+                }
+                assertEquals(2, cache.invalidate(SqlDependencies.table("T_ORDER")));
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.lishicloud.lsspringbootstartersqlconvert.provide;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.OwnerOfTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 按调用解析的拥有者原样拼入SQL, 只接受普通标识符
+ *
+ * @author ztq
+ */
+class TranslationEngineOwnerTest {
+
+    private volatile String owner;
+    private TranslationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = DMNormTranslateBuilder.builder(converter -> { })
+                .ownerOfTableResolver(() -> owner)
+                .enableSqlCache()
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    void inlinesPlainOwner() {
+        owner = "TENANT_01";
+        assertEquals("SELECT ID\nFROM TENANT_01.T_ORDER\nWHERE ID = 1", engine.convert("select ID from T_ORDER where ID = 1"));
+        owner = "租户$2#";
+        assertEquals("SELECT ID\nFROM 租户$2#.T_ORDER\nWHERE ID = 1", engine.convert("select ID from T_ORDER where ID = 1"));
+    }
+
+    @Test
+    void rejectsOwnerThatWouldChangeTheStatement() {
+        for (String illegal : new String[]{"T1.T_ORDER; DROP TABLE T_USER; --", "A B", "S.T", "\"TENANT\"", "1TENANT", "T'1", ""}) {
+            owner = illegal;
+            assertThrows(IllegalStateException.class, () -> engine.convert("select ID from T_ORDER where ID = 1"), illegal);
+        }
+    }
+
+    @Test
+    void inlineOwnerRejectsIllegalOwner() {
+        String translated = "SELECT ID\nFROM " + OwnerOfTable.OWNER_PLACEHOLDER + ".T_ORDER";
+        assertThrows(IllegalArgumentException.class, () -> OwnerOfTable.inlineOwner(translated, "X.T_USER --"));
+        assertEquals("SELECT ID\nFROM S1.T_ORDER", OwnerOfTable.inlineOwner(translated, "S1"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.lishicloud.lsspringbootstartersqlconvert.provide;
+
+import com.lishicloud.lsspringbootstartersqlconvert.builder.dm.DMNormTranslateBuilder;
+import com.lishicloud.lsspringbootstartersqlconvert.cache.SqlCacheStats;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlCacheMode;
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 模板模式的结果必须与精确模式逐字节相同, 并记录参数化负载下两种模式的命中率
+ *
+ * @author ztq
+ */
+@Slf4j
+class TranslationEngineTemplateTest {
+
+    private static final String[] CASES = {
+            "select ID from T_ORDER where NAME = '中文'",
+            "select ID from T_ORDER where V = 1e3",
+            "select ID from T_ORDER where V = - 1",
+            "select ID from T_ORDER where V = +1 and W = 1-2",
+            "select ID from T_ORDER where V = 007 or V = 0.0000001 or V = 1.50",
+            "select ID from T_ORDER where NAME = 'it''s' and CODE = 'a' 'b'",
+            "select ID from T_ORDER where NAME = 'tab\there' and ID in (1, 2, 3)",
+            "select ID from T_ORDER where CREATED > DATE '2024-01-01' and V = 5",
+            "select cast(ID as varchar(10)) from T_ORDER where ID = 42",
+            "insert into T_ORDER (ID, NAME) values (1, 'x')",
+            "update T_ORDER set NAME = 'y', V = 2.5 where ID = 3",
+            "delete from T_ORDER where ID = 0",
+    };
+
+    private static final String[] SHAPES = {
+            "select ID, NAME from T_ORDER where ID = %d",
+            "select ID from T_ORDER where NAME = '%s' and V > %d",
+            "update T_ORDER set NAME = '%s' where ID = %d",
+            "delete from T_ORDER where ID = %d",
+            "insert into T_ORDER (ID, NAME) values (%d, '%s')",
+    };
+
+    private static TranslationEngine engine(SqlCacheMode mode, SqlRewriteMode rewriteMode) {
+        return DMNormTranslateBuilder.builder(converter -> { })
+                .ownerOfTableDefault("OWN")
+                .keyWordTranslatorDefault()
+                .rewriteMode(rewriteMode)
+                .enableSqlCache()
+                .sqlCacheMode(mode)
+                .build();
+    }
+
+    @Test
+    void templateOutputMatchesExact() {
+        for (SqlRewriteMode rewriteMode : SqlRewriteMode.values()) {
+            try (TranslationEngine exact = engine(SqlCacheMode.EXACT, rewriteMode);
+                 TranslationEngine template = engine(SqlCacheMode.TEMPLATE, rewriteMode)) {
+                for (String sql : CASES) {
+                    String expected = exact.convert(sql);
+                    // 第二次由模板缓存回填字面量
+                    assertEquals(expected, template.convert(sql), rewriteMode + " " + sql);
+                    assertEquals(expected, template.convert(sql), rewriteMode + " " + sql);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sqlEqualToATemplateIsNotServedTheMarker() {
+        try (TranslationEngine template = engine(SqlCacheMode.TEMPLATE, SqlRewriteMode.UNPARSE)) {
+            // 模板 varchar('#$L0$#') 无法解析, 被标记为不可复用; 之后与模板全文相同的SQL不能读到该标记
+            assertEquals("SELECT CAST(ID AS VARCHAR(10))\nFROM OWN.T_ORDER\nWHERE ID = 42",
+                    template.convert("select cast(ID as varchar(10)) from T_ORDER where ID = 42"));
+            assertThrows(RuntimeException.class,
+                    () -> template.convert("select cast(ID as varchar('#$L0$#')) from T_ORDER where ID = '#$L1$#'"));
+            assertEquals("SELECT ID\nFROM OWN.T_ORDER\nWHERE ID = '#$L0$#'",
+                    template.convert("select ID from T_ORDER where ID = '#$L0$#'"));
+        }
+    }
+
+    /**
+     * 5 种语句形态、随机字面量: 模板模式只在每种形态第一次出现时未命中
+     */
+    @Test
+    void parameterizedWorkloadHitRate() {
+        int statements = 5_000;
+        Random random = new Random(20240618L);
+        try (TranslationEngine exact = engine(SqlCacheMode.EXACT, SqlRewriteMode.UNPARSE);
+             TranslationEngine template = engine(SqlCacheMode.TEMPLATE, SqlRewriteMode.UNPARSE)) {
+            for (int i = 0; i < statements; i++) {
+                String sql = statement(random);
+                assertEquals(exact.convert(sql), template.convert(sql), sql);
+            }
+            double exactRate = hitRate(exact.getSqlCache().stats());
+            double templateRate = hitRate(template.getSqlCache().stats());
+            log.info("statements={} shapes={} hit rate: exact {} template {}", statements, SHAPES.length, exactRate, templateRate);
+            assertTrue(templateRate >= 1 - (double) SHAPES.length / statements, "template hit rate: " + templateRate);
+            assertTrue(templateRate > exactRate);
+        }
+    }
+
+    private static String statement(Random random) {
+        int shape = random.nextInt(SHAPES.length);
+        int id = random.nextInt(100_000);
+        String name = "N" + random.nextInt(1_000);
+        switch (shape) {
+            case 0:
+            case 3:
+                return String.format(SHAPES[shape], id);
+            case 4:
+                return String.format(SHAPES[shape], id, name);
+            default:
+                return String.format(SHAPES[shape], name, id);
+        }
+    }
+
+    private static double hitRate(SqlCacheStats stats) {
+        long total = stats.getHitCount() + stats.getMissCount();
+        return total == 0 ? 0 : (double) stats.getHitCount() / total;
+    }
+}
@@ -0,0 +1,105 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.util.SqlShuttle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link FunctionTemplate} 每次代入都返回独立的语法树, 修改返回值不影响模板与之后的代入
+ *
+ * @author ztq
+ */
+class FunctionTemplateTest {
+
+    @Test
+    void templateWithoutPlaceholdersReturnsCopy() throws SqlParseException {
+        FunctionTemplate template = FunctionTemplate.compile("COALESCE(1, CAST(NULL AS DATE))");
+        SqlCall call = call("NOW()");
+
+        SqlCall first = (SqlCall) template.apply(call);
+        SqlCall second = (SqlCall) template.apply(call);
+        assertNotSame(first, second);
+        first.setOperand(0, SqlLiteral.createExactNumeric("2", SqlParserPos.ZERO));
+
+        assertEquals(expression("COALESCE(1, CAST(NULL AS DATE))"), second.toString());
+        assertEquals(expression("COALESCE(1, CAST(NULL AS DATE))"), template.apply(call).toString());
+    }
+
+    @Test
+    void nestedTemplateNodesAreNotShared() throws SqlParseException {
+        // UPPER(TRIM('y')) 不在到占位符的路径上
+        FunctionTemplate template = FunctionTemplate.compile("CASE WHEN $0 THEN UPPER(TRIM('y')) ELSE $1 END");
+        SqlCall call = call("IF(a > 1, b)");
+
+        SqlCall first = (SqlCall) template.apply(call);
+        SqlCall upper = (SqlCall) find(first, "UPPER");
+        upper.setOperand(0, new SqlIdentifier("c", SqlParserPos.ZERO));
+
+        SqlNode second = template.apply(call("IF(a > 1, b)"));
+        assertEquals(expression("CASE WHEN a > 1 THEN UPPER(TRIM('y')) ELSE b END"), second.toString());
+    }
+
+    @Test
+    void repeatedPlaceholderGetsDistinctOperandCopies() throws SqlParseException {
+        FunctionTemplate template = FunctionTemplate.compile("CASE WHEN $0 IS NULL THEN $1 ELSE $0 END");
+        SqlCall call = call("IFNULL(t.a, 0)");
+
+        SqlNode translated = template.apply(call);
+        List<SqlIdentifier> identifiers = new ArrayList<>();
+        translated.accept(new SqlShuttle() {
+            @Override
+            public SqlNode visit(SqlIdentifier id) {
+                identifiers.add(id);
+                return id;
+            }
+        });
+        assertEquals(2, identifiers.size());
+        assertNotSame(identifiers.get(0), identifiers.get(1));
+        assertEquals(identifiers.get(0).toString(), identifiers.get(1).toString());
+    }
+
+    @Test
+    void missingOperandsLeaveCallUnchanged() throws SqlParseException {
+        assertNull(FunctionTemplate.compile("CASE WHEN $0 THEN $1 ELSE $2 END").apply(call("IF(a, b)")));
+    }
+
+    private static SqlCall call(String sql) throws SqlParseException {
+        return (SqlCall) parse(sql);
+    }
+
+    private static String expression(String sql) throws SqlParseException {
+        return parse(sql).toString();
+    }
+
+    private static SqlNode parse(String sql) throws SqlParseException {
+        return SqlParser.create(sql, SqlParser.config().withUnquotedCasing(Casing.UNCHANGED)).parseExpression();
+    }
+
+    private static SqlCall find(SqlNode root, String operator) {
+        SqlCall[] found = new SqlCall[1];
+        root.accept(new SqlShuttle() {
+            @Override
+            public SqlNode visit(SqlCall call) {
+                if (call.getOperator().getName().equalsIgnoreCase(operator)) {
+                    found[0] = call;
+                }
+                return super.visit(call);
+            }
+        });
+        return found[0];
+    }
+}
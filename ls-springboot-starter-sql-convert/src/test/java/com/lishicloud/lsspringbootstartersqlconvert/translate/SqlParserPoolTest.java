@@ -0,0 +1,90 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link SqlParserPool} 复用的解析器在解析失败后不残留状态: 之后的结果与异常都与新建的解析器相同
+ *
+ * @author ztq
+ */
+class SqlParserPoolTest {
+
+    private static final SqlParser.Config CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+
+    /**
+     * 失败的位置各不相同: 语法错误、未结束的字符串、注释与引号标识符(词法状态停留在其中)、括号嵌套之中、动态参数之后
+     */
+    private static final String[] FAILING = {
+            "selec id from t_order",
+            "select id from t_order where name = 'abc",
+            "select id /* unterminated comment from t_order",
+            "select \"id from t_order",
+            "select id from t_order where id in (select id from (select id from t_user where",
+            "select ?, ? from t_order where a = ? and",
+            "select id from t_order where a = 1 ) extra",
+    };
+
+    private static final String[] STATEMENTS = {
+            "select id, name from t_order where id = 1",
+            "select ? from t_order where a = ? and b = 'x'",
+            "select \"Id\" from t_order /* comment */ where c in (1, 2)",
+            "select id from t_order where name = 'it''s'",
+    };
+
+    private static SqlNode fresh(String sql) throws SqlParseException {
+        return SqlParser.create(sql, CONFIG).parseQuery();
+    }
+
+    @Test
+    void failedParseLeavesNoStateBehind() throws SqlParseException {
+        SqlParserPool pool = new SqlParserPool(CONFIG);
+        for (String failing : FAILING) {
+            SqlParseException expected = assertThrows(SqlParseException.class, () -> fresh(failing));
+            SqlParseException actual = assertThrows(SqlParseException.class, () -> pool.parseQuery(failing));
+            assertEquals(expected.getMessage(), actual.getMessage(), failing);
+            assertEquals(expected.getPos(), actual.getPos(), failing);
+
+            for (String sql : STATEMENTS) {
+                assertEquals(fresh(sql).toString(), pool.parseQuery(sql).toString(), failing + " -> " + sql);
+            }
+        }
+    }
+
+    @Test
+    void dynamicParamsAreNumberedFromZeroAfterAFailure() throws SqlParseException {
+        SqlParserPool pool = new SqlParserPool(CONFIG);
+        assertThrows(SqlParseException.class, () -> pool.parseQuery("select ?, ?, ? from t_order where"));
+        SqlSelect select = (SqlSelect) pool.parseQuery("select ?, ? from t_order");
+        assertEquals(0, ((SqlDynamicParam) select.getSelectList().get(0)).getIndex());
+        assertEquals(1, ((SqlDynamicParam) select.getSelectList().get(1)).getIndex());
+    }
+
+    @Test
+    void errorsReportTheirOwnStatement() {
+        SqlParserPool pool = new SqlParserPool(CONFIG);
+        assertThrows(SqlParseException.class, () -> pool.parseQuery("select id from t_order where name = 'abc"));
+        String second = "select id from t_user where";
+        SqlParseException e = assertThrows(SqlParseException.class, () -> pool.parseQuery(second));
+        assertEquals(assertThrows(SqlParseException.class, () -> fresh(second)).getMessage(), e.getMessage());
+        assertEquals(1, e.getPos().getLineNum());
+    }
+
+    @Test
+    void expressionParsesAfterAFailedQuery() throws SqlParseException {
+        SqlParserPool pool = new SqlParserPool(CONFIG);
+        assertThrows(SqlParseException.class, () -> pool.parseQuery("select 'abc"));
+        assertEquals(SqlParser.create("nvl(a, 0) + ?", CONFIG).parseExpression().toString(),
+                pool.parseExpression("nvl(a, 0) + ?").toString());
+        assertThrows(SqlParseException.class, () -> pool.parseExpression("nvl(a,"));
+        assertEquals(fresh(STATEMENTS[0]).toString(), pool.parseQuery(STATEMENTS[0]).toString());
+    }
+}
@@ -0,0 +1,130 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate;
+
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common.TemplateFunctionTranslate;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 函数规则分派: {@link NameIndex} 查找与逐条比较规则名称的耗时随规则数量的变化。
+ * <p>
+ * 每种规模分别查找第一条规则、最后一条规则与不存在的名称, 取多轮中最快的一轮, 结果写入日志;
+ * 规则数量较多时索引查找必须明显快于逐条比较。
+ *
+ * @author ztq
+ */
+@Slf4j
+class TranslateRulesDispatchTest {
+
+    private static final SqlParser.Config PARSER_CONFIG = SqlParser.config().withUnquotedCasing(Casing.UNCHANGED);
+    private static final int[] RULE_COUNTS = {10, 100, 1_000, 10_000};
+    private static final int ROUNDS = 5;
+    private static final int LOOKUPS = 20_000;
+
+    @Test
+    void indexLookupDoesNotGrowWithRuleCount() throws SqlParseException {
+        for (int count : RULE_COUNTS) {
+            List<FunctionTranslate> translates = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                translates.add(new TemplateFunctionTranslate("F_" + i, "G_" + i + "($0)"));
+            }
+            TranslateRules rules = TranslateRules.of(translates);
+            SqlCall[] calls = {call("f_0(a)"), call("f_" + (count - 1) + "(a)"), call("missing(a)")};
+            String[] names = new String[calls.length];
+            for (int i = 0; i < calls.length; i++) {
+                names[i] = calls[i].getOperator().getName();
+            }
+
+            // 两种查找的结果一致, 小写的调用也能命中
+            assertSame(translates.get(0), scan(translates, names[0]));
+            assertEquals("G_0", ((SqlCall) rules.translateFunction(calls[0])).getOperator().getName());
+            assertNotSame(calls[1], rules.translateFunction(calls[1]));
+            assertSame(calls[2], rules.translateFunction(calls[2]));
+            assertNull(scan(translates, names[2]));
+
+            NameIndex<FunctionTranslate> index = index(translates);
+            long scanNanos = best(() -> {
+                int found = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    found += null == scan(translates, names[i % names.length]) ? 0 : 1;
+                }
+                return found;
+            });
+            long indexNanos = best(() -> {
+                int found = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    found += null == index.get(names[i % names.length]) ? 0 : 1;
+                }
+                return found;
+            });
+            long translateNanos = best(() -> {
+                int changed = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    SqlCall call = calls[i % calls.length];
+                    changed += rules.translateFunction(call) == call ? 0 : 1;
+                }
+                return changed;
+            });
+            log.info("rules={} per lookup: scan {} ns, index {} ns, translateFunction {} ns",
+                    count, scanNanos / LOOKUPS, indexNanos / LOOKUPS, translateNanos / LOOKUPS);
+            if (count >= 1_000) {
+                // 逐条比较平均要比较数百条以上的名称, 留出足够余量
+                assertTrue(indexNanos * 10 < scanNanos, "index " + indexNanos + " ns, scan " + scanNanos + " ns");
+            }
+        }
+    }
+
+    /**
+     * 编译索引前的分派方式: 逐条比较规则的目标函数名称
+     */
+    private static FunctionTranslate scan(List<FunctionTranslate> translates, String name) {
+        for (FunctionTranslate translate : translates) {
+            if (translate.targetFunctionName().equalsIgnoreCase(name)) {
+                return translate;
+            }
+        }
+        return null;
+    }
+
+    private static NameIndex<FunctionTranslate> index(List<FunctionTranslate> translates) {
+        Map<String, FunctionTranslate> entries = new HashMap<>();
+        for (FunctionTranslate translate : translates) {
+            entries.put(translate.targetFunctionName(), translate);
+        }
+        return NameIndex.of(entries);
+    }
+
+    /**
+     * 多轮中最快一轮的耗时, 结果累加到 sink 中避免循环被优化掉
+     */
+    private static long best(IntSupplier round) {
+        long best = Long.MAX_VALUE;
+        int sink = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long begin = System.nanoTime();
+            sink += round.getAsInt();
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        assertTrue(sink >= 0);
+        return best;
+    }
+
+    private static SqlCall call(String expression) throws SqlParseException {
+        return (SqlCall) SqlParser.create(expression, PARSER_CONFIG).parseExpression();
+    }
+}
@@ -0,0 +1,38 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.common;
+
+import com.lishicloud.lsspringbootstartersqlconvert.enum_.SqlRewriteMode;
+import com.lishicloud.lsspringbootstartersqlconvert.factory.SqlTranslateActuatorFactory;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.TranslateRules;
+import com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm.DMNorm;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link KeyWordTranslator} 只转义不带限定的关键字列名, 快速路径与 Calcite 路径一致
+ *
+ * @author ztq
+ */
+class KeyWordTranslatorTest {
+
+    @Test
+    void escapesSimpleKeywordColumnsOnly() throws SqlParseException {
+        for (boolean fastPath : new boolean[]{true, false}) {
+            SqlTranslateActuatorFactory factory = factory(fastPath);
+            assertEquals("SELECT 'desc', t.desc, t.ID\nFROM T_ORDER AS t\nWHERE key = 1 AND t.key = 2",
+                    factory.translateOfAuto("select desc, t.desc, t.ID from T_ORDER t where key = 1 and t.key = 2"));
+            assertEquals("UPDATE T_ORDER SET 'text' = ?\nWHERE ID = 1",
+                    factory.translateOfAuto("update T_ORDER set text = ? where ID = 1"));
+        }
+    }
+
+    private static SqlTranslateActuatorFactory factory(boolean fastPath) {
+        SqlDialect dialect = new SqlDialect(SqlDialect.EMPTY_CONTEXT.withIdentifierQuoteString(""));
+        TranslateRules rules = TranslateRules.of(Collections.singletonList(new KeyWordTranslator(DMNorm.DEFAULT_EPP)));
+        return new SqlTranslateActuatorFactory(dialect, rules, SqlRewriteMode.UNPARSE, fastPath);
+    }
+}
@@ -0,0 +1,114 @@
+package com.lishicloud.lsspringbootstartersqlconvert.translate.impl.dm;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link TableRoutes} 的加载与查找, 以及 {@link OwnerOfTable} 对路由与默认拥有者的表名复用
+ *
+ * @author ztq
+ */
+class TableRoutesTest {
+
+    private static final SqlParserPos POS = SqlParserPos.ZERO;
+
+    private static SqlIdentifier table(String... names) {
+        return new SqlIdentifier(Arrays.asList(names), POS);
+    }
+
+    @Test
+    void routesByNameIgnoringCaseAndQualifier() {
+        TableRoutes routes = TableRoutes.of(ImmutableMap.of(
+                "t_order", "OWNER_A.T_ORDER",
+                "legacy.t_user", "OWNER_B.T_USER_NEW"));
+        SqlIdentifier order = routes.route(table("T_Order"));
+        assertEquals(Arrays.asList("OWNER_A", "T_ORDER"), order.names);
+        assertSame(order, routes.route(table("t_order")));
+        // 未限定的源表名只匹配未限定的表引用, 限定的源表名只匹配限定名相同的表引用
+        assertNull(routes.route(table("s", "t_order")));
+        assertEquals(Arrays.asList("OWNER_B", "T_USER_NEW"), routes.route(table("LEGACY", "t_user")).names);
+        assertNull(routes.route(table("t_user")));
+        assertNull(routes.route(table("other", "t_user")));
+        assertNull(routes.route(table("t_item")));
+        assertEquals(2, routes.size());
+    }
+
+    @Test
+    void rejectsDuplicateAndMalformedRoutes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TableRoutes.of(ImmutableMap.of("t_order", "A.T_ORDER", "T_ORDER", "B.T_ORDER")));
+        assertThrows(IllegalArgumentException.class, () -> TableRoutes.of(ImmutableMap.of("t_order", "T_ORDER")));
+        assertThrows(IllegalArgumentException.class, () -> TableRoutes.of(ImmutableMap.of("s..t_order", "A.T_ORDER")));
+    }
+
+    @Test
+    void loadsRoutesFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("routes.txt");
+        Files.write(file, Arrays.asList("# comment", "", " t_order = OWNER_A.T_ORDER ", "legacy.t_user=OWNER_B.T_USER_NEW"),
+                StandardCharsets.UTF_8);
+        TableRoutes routes = TableRoutes.load(file);
+        assertEquals(2, routes.size());
+        assertEquals(Arrays.asList("OWNER_A", "T_ORDER"), routes.route(table("t_order")).names);
+        // 内容相同的路由摘要相同
+        assertEquals(TableRoutes.of(ImmutableMap.of("T_ORDER", "OWNER_A.T_ORDER", "LEGACY.T_USER", "OWNER_B.T_USER_NEW")).digest(),
+                routes.digest());
+
+        Files.write(file, Arrays.asList("t_order = OWNER_A.T_ORDER", "t_user OWNER_B.T_USER"), StandardCharsets.UTF_8);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> TableRoutes.load(file));
+        assertTrue(e.getMessage().contains(":2 "), e.getMessage());
+    }
+
+    @Test
+    void ownerOfTableReusesQualifiedIdentifiers() {
+        OwnerOfTable owner = new OwnerOfTable("OWN", TableRoutes.of(ImmutableMap.of("t_order", "OWNER_A.T_ORDER")));
+        SqlNode routed = owner.translate(table("t_order"));
+        assertSame(routed, owner.translate(table("T_ORDER")));
+
+        SqlNode first = owner.translate(table("t_item"));
+        assertEquals("OWN.t_item", ((SqlIdentifier) first).getSimple());
+        assertSame(first, owner.translate(table("t_item")));
+        // 未加引号的表名保持原样大小写, 不同大小写分别缓存
+        assertNotSame(first, owner.translate(table("T_ITEM")));
+
+        SqlIdentifier qualified = table("s", "t_item");
+        assertSame(qualified, owner.translate(qualified));
+    }
+
+    @Test
+    void ownerOfTableWithoutDefaultOwnerKeepsUnroutedTables() {
+        OwnerOfTable owner = new OwnerOfTable(null, TableRoutes.of(ImmutableMap.of("t_order", "OWNER_A.T_ORDER")));
+        SqlIdentifier item = table("t_item");
+        assertSame(item, owner.translate(item));
+        assertEquals(Arrays.asList("OWNER_A", "T_ORDER"), ((SqlIdentifier) owner.translate(table("t_order"))).names);
+    }
+
+    @Test
+    void qualifiedCacheIsBounded() {
+        OwnerOfTable owner = new OwnerOfTable("OWN");
+        for (int i = 0; i < OwnerOfTable.QUALIFIED_MAX_SIZE; i++) {
+            owner.translate(table("t_" + i));
+        }
+        // 超出上限的表名每次新建, 结果不变
+        SqlNode overflow = owner.translate(table("t_overflow"));
+        assertEquals("OWN.t_overflow", ((SqlIdentifier) overflow).getSimple());
+        assertNotSame(overflow, owner.translate(table("t_overflow")));
+        assertSame(owner.translate(table("t_0")), owner.translate(table("t_0")));
+    }
+}